@@ -5,18 +5,36 @@ import java.io.InputStreamReader;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import fi.iki.elonen.NanoHTTPD;
 
+import org.openhab.binding.zwave.internal.protocol.AirtimePacer;
+import org.openhab.binding.zwave.internal.protocol.AsyncEventSubscriber;
 import org.openhab.binding.zwave.internal.protocol.ConfigurationParameter;
+import org.openhab.binding.zwave.internal.protocol.EventJournal;
+import org.openhab.binding.zwave.internal.protocol.LatencyHistogram;
+import org.openhab.binding.zwave.internal.protocol.NodeStage;
+import org.openhab.binding.zwave.internal.protocol.NodeMailboxExecutor;
 import org.openhab.binding.zwave.internal.protocol.SerialMessage;
+import org.openhab.binding.zwave.internal.protocol.SerialMessage.SerialMessageClass;
+import org.openhab.binding.zwave.internal.protocol.SerialMessage.SerialMessageLatencyClass;
+import org.openhab.binding.zwave.internal.protocol.SerialMessage.SerialMessagePriority;
+import org.openhab.binding.zwave.internal.protocol.ValueEventCoalescer;
 import org.openhab.binding.zwave.internal.protocol.ZWaveController;
 import org.openhab.binding.zwave.internal.protocol.ZWaveNode;
+import org.openhab.binding.zwave.internal.protocol.ZWaveNodeFootprint;
+import org.openhab.binding.zwave.internal.protocol.ZWaveNodeSnapshot;
+import org.openhab.binding.zwave.internal.protocol.ZWaveSendQueue;
 import org.openhab.binding.zwave.internal.protocol.commandclass.*;
+import org.openhab.binding.zwave.internal.protocol.initialization.ZWaveInterviewProfiler;
+import org.openhab.binding.zwave.internal.protocol.initialization.ZWaveInterviewScheduler;
 
 import me.wbarlow.zwavemanagement.logging.Logger;
 import me.wbarlow.zwavemanagement.logging.LoggerFactory;
+import me.wbarlow.zwavemanagement.mqtt.MqttPublisher;
+import me.wbarlow.zwavemanagement.rules.RulesEngine;
 
 /**
  * Extending the NanoHTTPD to provide a web interface suitable for managing
@@ -29,6 +47,8 @@ public class WebGUI extends NanoHTTPD {
 
 	private static final Logger logger = LoggerFactory.getLogger(WebGUI.class);
 	private ZWaveController controller;
+	private MqttPublisher mqttPublisher;
+	private RulesEngine rulesEngine;
 	private ArrayList<String> successMessages = new ArrayList<String>();
 	private ArrayList<String> failureMessages = new ArrayList<String>();
 
@@ -136,6 +156,22 @@ public class WebGUI extends NanoHTTPD {
 		this(controller, 8080);
 	}
 
+	/**
+	 * Sets the MQTT publisher to show the state of.
+	 * @param mqttPublisher the publisher, or null if events aren't published.
+	 */
+	public void setMqttPublisher(MqttPublisher mqttPublisher) {
+		this.mqttPublisher = mqttPublisher;
+	}
+
+	/**
+	 * Sets the rules engine to show the state of.
+	 * @param rulesEngine the rules engine, or null if there are no local rules.
+	 */
+	public void setRulesEngine(RulesEngine rulesEngine) {
+		this.rulesEngine = rulesEngine;
+	}
+
 	/**
 	 * Process any requests from the GET parameters, then build the webpage and
 	 * send it to the client as an HTTP response.
@@ -263,6 +299,24 @@ public class WebGUI extends NanoHTTPD {
 		return null;
 	}
 
+	/**
+	 * Hands a control's message to the controller. Messages from controls are
+	 * sent as interactive messages, so they don't wait behind polls and node
+	 * interviews. If the controller refuses the message (it is invalid, or the
+	 * send queue is full), a failure message is recorded.
+	 * @param friendlyName The friendly name of the control, used for feedback.
+	 * @param msg
+	 * @return true if the controller accepted the message.
+	 */
+	private boolean sendControlMessage(String friendlyName, SerialMessage msg) {
+		msg.setLatencyClass(SerialMessageLatencyClass.Interactive);
+		if(this.controller.sendData(msg)) return true;
+
+		logger.error(friendlyName + " Control: Command rejected by the controller (send queue full).");
+		failureMessages.add(friendlyName + " Control: Command rejected by the controller (send queue full). Try again later.");
+		return false;
+	}
+
 	/**
 	 * The processing function for an association control.
 	 * @param node
@@ -307,7 +361,7 @@ public class WebGUI extends NanoHTTPD {
 			msg = cc.setAssociationMessage(groupId, nodeId);
 		else
 			msg = cc.removeAssociationMessage(groupId, nodeId);
-		this.controller.sendData(msg);
+		if(!sendControlMessage("Association", msg)) return;
 		logger.info("Association Control: Command sent successfully.");
 		successMessages.add("Association Control: Command sent successfully.");
 
@@ -330,7 +384,7 @@ public class WebGUI extends NanoHTTPD {
 
 		if(parms.get("update") != null) {
 			SerialMessage msg = cc.getValueMessage();
-			this.controller.sendData(msg);
+			if(!sendControlMessage("Basic", msg)) return;
 			logger.info("Basic Control: Cache update command sent successfully.");
 			successMessages.add("Basic Control: Cache update command sent successfully.");
 			// only return if update was the only parameter (besides node and command)
@@ -348,7 +402,7 @@ public class WebGUI extends NanoHTTPD {
 		}
 
 		SerialMessage msg = cc.setValueMessage(level);
-		this.controller.sendData(msg);
+		if(!sendControlMessage("Basic", msg)) return;
 		logger.info("Basic Control: Command sent successfully.");
 		successMessages.add("Basic Control: Command sent successfully.");
 	}
@@ -370,7 +424,7 @@ public class WebGUI extends NanoHTTPD {
 
 		if(parms.get("update") != null) {
 			SerialMessage msg = cc.getValueMessage();
-			this.controller.sendData(msg);
+			if(!sendControlMessage("Binary Switch", msg)) return;
 			logger.info("Binary Switch Control: Cache update command sent successfully.");
 			successMessages.add("Binary Switch Control: Cache update command sent successfully.");
 			// only return if update was the only parameter (besides node and command)
@@ -388,7 +442,7 @@ public class WebGUI extends NanoHTTPD {
 		}
 
 		SerialMessage msg = cc.setValueMessage(level);
-		this.controller.sendData(msg);
+		if(!sendControlMessage("Binary Switch", msg)) return;
 		logger.info("Binary Switch Control: Command sent successfully.");
 		successMessages.add("Binary Switch Control: Command sent successfully.");
 	}
@@ -440,7 +494,7 @@ public class WebGUI extends NanoHTTPD {
 		}
 
 		SerialMessage msg = cc.setConfigMessage(configuration);
-		this.controller.sendData(msg);
+		if(!sendControlMessage("Configuration", msg)) return;
 		logger.info("Configuration Control: Command sent successfully.");
 		successMessages.add("Configuration Control: Command sent successfully.");
 	}
@@ -461,7 +515,7 @@ public class WebGUI extends NanoHTTPD {
 
 		if(parms.get("update") != null) {
 			SerialMessage msg = cc.getValueMessage();
-			this.controller.sendData(msg);
+			if(!sendControlMessage("Multi-Level Switch", msg)) return;
 			logger.info("Multi-Level Switch Control: Cache update command sent successfully.");
 			successMessages.add("Multi-Level Switch Control: Cache update command sent successfully.");
 			// only return if update was the only parameter (besides node and command)
@@ -484,7 +538,7 @@ public class WebGUI extends NanoHTTPD {
 		}
 
 		SerialMessage msg = cc.setValueMessage(level);
-		this.controller.sendData(msg);
+		if(!sendControlMessage("Multi-Level Switch", msg)) return;
 		logger.info("Multi-Level Switch Control: Command sent successfully.");
 		successMessages.add("Multi-Level Switch Control: Command sent successfully.");
 	}
@@ -521,7 +575,7 @@ public class WebGUI extends NanoHTTPD {
 		}
 
 		SerialMessage msg = cc.setValueMessage(mode);
-		this.controller.sendData(msg);
+		if(!sendControlMessage("Thermostat Fan Mode", msg)) return;
 		logger.info("Thermostat Fan Mode Control: Command sent successfully.");
 		successMessages.add("Thermostat Fan Mode Control: Command sent successfully.");
 	}
@@ -558,7 +612,7 @@ public class WebGUI extends NanoHTTPD {
 		}
 
 		SerialMessage msg = cc.setValueMessage(mode);
-		this.controller.sendData(msg);
+		if(!sendControlMessage("Thermostat Mode", msg)) return;
 		logger.info("Thermostat Mode Control: Command sent successfully.");
 		successMessages.add("Thermostat Mode Control: Command sent successfully.");
 	}
@@ -611,7 +665,7 @@ public class WebGUI extends NanoHTTPD {
 		}
 
 		SerialMessage msg = cc.setMessage(scale, setpointType, setpoint);
-		this.controller.sendData(msg);
+		if(!sendControlMessage("Thermostat Setpoint", msg)) return;
 		logger.info("Thermostat Setpoint Control: Command sent successfully.");
 		successMessages.add("Thermostat Setpoint Control: Command sent successfully.");
 	}
@@ -632,13 +686,24 @@ public class WebGUI extends NanoHTTPD {
 
 		if(parms.get("update") != null) {
 			SerialMessage msg = cc.getVersionMessage();
-			this.controller.sendData(msg);
+			if(!sendControlMessage("Version", msg)) return;
 			logger.info("Version Control: Cache update command sent successfully.");
 			successMessages.add("Version Control: Cache update command sent successfully.");
 			// only return if update was the only parameter (besides node and command)
 			if(parms.size() <= 3) return;
 		}
 
+		if(parms.get("reinterview") != null) {
+			if(!this.controller.reinterviewNode(node.getNodeId())) {
+				logger.error("Version Control: The node has not finished its first interview yet.");
+				failureMessages.add("Version Control: The node has not finished its first interview yet.");
+				return;
+			}
+			logger.info("Version Control: Re-interview started.");
+			successMessages.add("Version Control: Re-interview started. Only command classes that changed will be queried.");
+			return;
+		}
+
 		// this is where other processing would go, but version is read-only
 
 	}
@@ -659,9 +724,9 @@ public class WebGUI extends NanoHTTPD {
 
 		if(parms.get("update") != null) {
 			SerialMessage msg = cc.getIntervalCapabilitiesMessage();
-			this.controller.sendData(msg);
+			if(!sendControlMessage("Wake-Up", msg)) return;
 			msg = cc.getIntervalMessage();
-			this.controller.sendData(msg);
+			if(!sendControlMessage("Wake-Up", msg)) return;
 			logger.error("Wake-Up Control: Cache updating not yet supported.");
 			failureMessages.add("Wake-Up Control: Cache updating not yet supported.");
 			// only return if update was the only parameter (besides node and command)
@@ -679,7 +744,7 @@ public class WebGUI extends NanoHTTPD {
 		}
 
 		SerialMessage msg = cc.setInterval(interval);
-		this.controller.sendData(msg);
+		if(!sendControlMessage("Wake-Up", msg)) return;
 		logger.info("Wake-Up Control: Command sent successfully.");
 		successMessages.add("Wake-Up Control: Command sent successfully.");
 	}
@@ -754,8 +819,9 @@ public class WebGUI extends NanoHTTPD {
 			"    <select name='node' id='selection_node'>\n";
 
 		for(ZWaveNode node : this.controller.getNodes()) {
-			String id = String.valueOf(node.getNodeId());
-			String name = node.getName();
+			ZWaveNodeSnapshot snapshot = node.getSnapshot();
+			String id = String.valueOf(snapshot.getNodeId());
+			String name = snapshot.getName();
 			if(name == null || name.equals("")) name = "Z-Wave Node " + id;
 			if(id.equals(nodeIdStr)) s += "      <option value='" + id + "' selected>" + name + "</option>\n";
 			else s += "      <option value='" + id + "'>" + name + "</option>\n";
@@ -765,6 +831,10 @@ public class WebGUI extends NanoHTTPD {
 			s += "      <option value='controller' selected>Z-Wave USB Controller</option>\n";
 		else
 			s += "      <option value='controller'>Z-Wave USB Controller</option>\n";
+		if(nodeIdStr != null && nodeIdStr.equals("interviews"))
+			s += "      <option value='interviews' selected>Interview Profile</option>\n";
+		else
+			s += "      <option value='interviews'>Interview Profile</option>\n";
 		s +=
 			"    </select>\n" +
 			"    <input type='submit' id='selection_submit' value='Go'>\n" +
@@ -782,6 +852,10 @@ public class WebGUI extends NanoHTTPD {
 	 */
 	private String buildControllerDialogue() {
 
+		ZWaveSendQueue queue = this.controller.getSendQueue();
+		AirtimePacer pacer = this.controller.getAirtimePacer();
+		NodeMailboxExecutor workers = this.controller.getNodeExecutor();
+		ValueEventCoalescer coalescer = this.controller.getValueCoalescer();
 		String s =
 			"<div class='controller dialogue'>\n" +
 			"  <h2>Z-Wave Controller: Information and Settings</h2>\n" +
@@ -789,12 +863,170 @@ public class WebGUI extends NanoHTTPD {
 			"    <li><span>Controller Device Type:</span> " + this.controller.getControllerType().toString() + "</li>\n" +
 			"    <li><span>Serial API Version:</span> " + this.controller.getSerialAPIVersion() + "</li>\n" +
 			"    <li><span>Z-Wave Version:</span> " + this.controller.getZWaveVersion() + "</li>\n" +
+			"    <li><span>Serial API Functions:</span> " + buildFunctionList() + "</li>\n" +
+			"  </ul>\n" +
+			"  <h3>Send Queue</h3>\n" +
+			"  <ul>\n" +
+			"    <li><span>Depth:</span> " + queue.size() + " of " + queue.getCapacity() + " (max " + queue.getMaxDepth() + ")</li>\n";
+		for(SerialMessagePriority priority : SerialMessagePriority.values()) {
+			s += "    <li><span>" + priority + " Priority:</span> " + queue.size(priority) + " of " + queue.getCapacity(priority) +
+				" queued, " + queue.getRejectedCount(priority) + " rejected, " + queue.getShedCount(priority) + " shed, " +
+				queue.getExpiredCount(priority) + " expired</li>\n";
+		}
+		String expired = "";
+		for(SerialMessageClass messageClass : SerialMessageClass.values()) {
+			long count = queue.getExpiredCount(messageClass);
+			if(count == 0) continue;
+			expired += (expired.length() == 0 ? "" : ", ") + messageClass.getLabel() + ": " + count;
+		}
+		if(expired.length() > 0)
+			s += "    <li><span>Expired:</span> " + expired + "</li>\n";
+		s +=
+			"    <li><span>Queue Wait:</span> " + queue.getAverageWaitTime() + " ms average, " + queue.getMaxWaitTime() + " ms max</li>\n";
+		for(SerialMessageLatencyClass latencyClass : SerialMessageLatencyClass.values()) {
+			LatencyHistogram histogram = queue.getWaitHistogram(latencyClass);
+			s += "    <li><span>" + latencyClass + " Queue Wait:</span> " + histogram.getCount() + " messages, 50% under " +
+				histogram.getPercentile(50) + " ms, 99% under " + histogram.getPercentile(99) + " ms</li>\n";
+		}
+		s +=
+			"    <li><span>Serial Link:</span> " + this.controller.getCANCount() + " CAN (" + this.controller.getCANRate() + "/min), " +
+				this.controller.getNAKCount() + " NAK (" + this.controller.getNAKRate() + "/min), " +
+				this.controller.getOOFCount() + " OOF (" + this.controller.getOOFRate() + "/min), " +
+				this.controller.getTimeOutCount() + " timeouts, " + this.controller.getRequeueDropCount() + " retries dropped</li>\n" +
+			"    <li><span>Airtime Pacing:</span> " + (pacer.getGlobalRate() / 10) + "% of airtime, " + pacer.getPacedFrameCount() +
+				" frames delayed by " + pacer.getTotalDelay() + " ms, " + pacer.getCongestionCount() + " CAN/NAK</li>\n" +
+			"    <li><span>Node Workers:</span> " + workers.getThreadCount() + " threads, " + workers.getExecutedCount() +
+				" messages processed, " + workers.getOverflowCount() + " overflows, deepest mailbox " + workers.getMaxDepth() + "</li>\n" +
+			"    <li><span>Value Coalescing:</span> " + (coalescer.isChangeOnly() ? "change only" : "all values") + ", " +
+				(coalescer.getWindow() > 0 ? coalescer.getWindow() + " ms window" : "no window") + ", " +
+				coalescer.getPublishedCount() + " published, " + coalescer.getUnchangedCount() + " unchanged, " +
+				coalescer.getMergedCount() + " merged</li>\n";
+		int nodeFootprint = 0;
+		int boxedFootprint = 0;
+		for (ZWaveNode node : this.controller.getNodes()) {
+			nodeFootprint += ZWaveNodeFootprint.estimate(node);
+			boxedFootprint += ZWaveNodeFootprint.estimateBoxed(node);
+		}
+		s += "    <li><span>Node Memory:</span> about " + nodeFootprint + " bytes of node state (" + boxedFootprint +
+			" bytes with maps, lists and dates)</li>\n";
+		ZWaveInterviewScheduler interviews = this.controller.getInterviewScheduler();
+		long remaining = interviews.getEstimatedTimeRemaining();
+		s += "    <li><span>Interviews:</span> " + interviews.getCompletedCount() + " of " + interviews.getRequestedCount() +
+			" complete, " + interviews.getFailedCount() + " failed, " + interviews.getActiveCount() + "/" +
+			interviews.getMaxConcurrent() + " in progress, " + interviews.getQueuedCount() + " queued, " +
+			interviews.getSleepingCount() + " waiting for wake up, average " + interviews.getAverageInterviewTime() +
+			" ms awake, " + interviews.getAverageSleepingInterviewTime() + " ms sleeping, " + (remaining < 0 ? "no estimate yet" : "about " + (remaining / 1000) + " s left") + "</li>\n";
+		EventJournal journal = this.controller.getEventJournal();
+		if (journal != null) {
+			s += "    <li><span>Event Journal:</span> " + journal.getSegmentCount() + " segments, offsets " +
+				journal.getFirstOffset() + " to " + journal.getNextOffset() + "</li>\n";
+		}
+		if (this.mqttPublisher != null) {
+			s += "    <li><span>MQTT:</span> " + this.mqttPublisher.getBroker() + " " +
+				(this.mqttPublisher.isConnected() ? "connected" : "disconnected") + ", " + this.mqttPublisher.getPendingCount() +
+				" pending, " + this.mqttPublisher.getPublishedCount() + " published in " + this.mqttPublisher.getBatchCount() +
+				" batches, " + this.mqttPublisher.getDroppedCount() + " dropped, " + this.mqttPublisher.getReconnectCount() +
+				" reconnects</li>\n";
+		}
+		if (this.rulesEngine != null) {
+			LatencyHistogram sent = this.rulesEngine.getSentLatency();
+			s += "    <li><span>Local Rules:</span> " + this.rulesEngine.getRules().size() + " rules, fired " +
+				this.rulesEngine.getFiredCount() + " times, " + this.rulesEngine.getMessageCount() + " messages sent, " +
+				this.rulesEngine.getRejectedCount() + " rejected, " + this.rulesEngine.getFailedCount() + " failed</li>\n" +
+				"    <li><span>Rule Trigger to Send:</span> 50% under " + sent.getPercentile(50) + " ms, 99% under " +
+				sent.getPercentile(99) + " ms</li>\n";
+		}
+		for (AsyncEventSubscriber subscriber : this.controller.getEventBus().getAsyncSubscribers()) {
+			s += "    <li><span>" + subscriber.getName() + " Events:</span> " + subscriber.size() + "/" + subscriber.getCapacity() +
+				" queued (" + subscriber.getPolicy() + "), " + subscriber.getDeliveredCount() + " delivered, lag " + subscriber.getLag() +
+				" ms (average " + subscriber.getAverageLag() + " ms, max " + subscriber.getMaxLag() + " ms), " +
+				subscriber.getDroppedCount() + " dropped, " + subscriber.getCoalescedCount() + " coalesced, " +
+				subscriber.getBlockedCount() + " blocked</li>\n";
+		}
+		s +=
 			"  </ul>\n" +
 			"</div>\n";
 
 		return s;
 	}
 
+	/**
+	 * Builds the interview profile dialogue. This will display what the
+	 * interviews cost per device model and per node, the most expensive first.
+	 * @return
+	 */
+	private String buildInterviewDialogue() {
+
+		ZWaveInterviewProfiler profiler = this.controller.getInterviewProfiler();
+		String s =
+			"<div class='interviews dialogue'>\n" +
+			"  <h2>Interview Profile</h2>\n" +
+			"  <h3>Device Models</h3>\n" +
+			"  <ul>\n";
+		List<ZWaveInterviewProfiler.ModelProfile> models = profiler.getModelProfiles();
+		if(models.isEmpty())
+			s += "    <li>No interview has finished yet.</li>\n";
+		for(ZWaveInterviewProfiler.ModelProfile model : models) {
+			LatencyHistogram times = model.getInterviewTimes();
+			NodeStage slowest = model.getSlowestStage();
+			s += "    <li><span>" + model.getKey() + ":</span> " + model.getCompletedCount() + " complete, " +
+				model.getFailedCount() + " failed, average " + model.getAverageTime() + " ms, 50% under " +
+				times.getPercentile(50) + " ms, 99% under " + times.getPercentile(99) + " ms, " + model.getFrames() +
+				" frames, " + model.getRetries() + " retries, " + model.getTimeouts() + " timeouts" +
+				(slowest == null ? "" : ", slowest stage " + slowest.getLabel()) + "</li>\n";
+			for(Map.Entry<NodeStage, LatencyHistogram> entry : model.getStageTimes().entrySet()) {
+				s += "    <li><span>&nbsp;&nbsp;" + entry.getKey().getLabel() + ":</span> " + entry.getValue() + "</li>\n";
+			}
+		}
+		s +=
+			"  </ul>\n" +
+			"  <h3>Nodes</h3>\n" +
+			"  <ul>\n";
+		for(ZWaveInterviewProfiler.NodeProfile profile : profiler.getNodeProfiles()) {
+			String stages = "";
+			for(Map.Entry<NodeStage, ZWaveInterviewProfiler.StageCost> entry : profile.getStages().entrySet()) {
+				ZWaveInterviewProfiler.StageCost cost = entry.getValue();
+				stages += (stages.length() == 0 ? "" : ", ") + entry.getKey() + " " + cost.getDuration() + " ms/" +
+					cost.getFrames() + "f/" + cost.getRetries() + "r/" + cost.getTimeouts() + "t";
+			}
+			s += "    <li><span>Node " + profile.getNodeId() + ":</span> " + profile.getDuration() + " ms" +
+				(profile.getStage() == NodeStage.DONE || profile.getStage() == NodeStage.FAILED ? "" : " so far") + ", " +
+				profile.getStage().getLabel() + ", " + profile.getFrames() + " frames, " + profile.getRetries() + " retries, " +
+				profile.getTimeouts() + " timeouts (" + stages + ")</li>\n";
+		}
+		s +=
+			"  </ul>\n" +
+			"</div>\n";
+
+		return s;
+	}
+
+	/**
+	 * Builds the list of Serial API functions the controller supports.
+	 * Functions the controller doesn't support are struck through. Message
+	 * classes the controller only sends by itself aren't listed, since they
+	 * can't be requested.
+	 * @return
+	 */
+	private String buildFunctionList() {
+
+		if(!this.controller.isCapabilitiesKnown())
+			return "Unknown";
+
+		String s = "";
+		for(SerialMessageClass messageClass : SerialMessageClass.values()) {
+			if(!messageClass.isRequestable()) continue;
+			if(s.length() > 0) s += ", ";
+			if(this.controller.isFunctionSupported(messageClass))
+				s += messageClass.getLabel();
+			else
+				s += "<del>" + messageClass.getLabel() + "</del>";
+		}
+		s += " (" + this.controller.getUnsupportedCount() + " unsupported requests rejected)";
+
+		return s;
+	}
+
 	/**
 	 * Builds the node dialogue, including all controls for that node.
 	 * If passed null as a node ID, nothing is built (and an empty string is
@@ -808,6 +1040,8 @@ public class WebGUI extends NanoHTTPD {
 		if(nodeIdStr == null) return "";
 		else if(nodeIdStr.equals("controller"))
 			return buildControllerDialogue();
+		else if(nodeIdStr.equals("interviews"))
+			return buildInterviewDialogue();
 
 		/* attempt to read the nodeId as an int */
 		int nodeId;
@@ -833,19 +1067,33 @@ public class WebGUI extends NanoHTTPD {
 			return "";
 		}
 
+		/* read the node through a snapshot, the receive thread may be updating it */
+		ZWaveNodeSnapshot snapshot = node.getSnapshot();
+
 		/* if the node has a name, use that. otherwise, use "Z-Wave Node 1" */
-		String nodeName = node.getName();
+		String nodeName = snapshot.getName();
 		if(nodeName == null || nodeName.equals("")) nodeName = "Z-Wave Node " + nodeIdStr;
 
 		String ret =
 				"<div class='node dialogue'>\n" +
-	        	"  <h2>" + nodeName + "</h2>\n";
-
-		if(node.getCommandClasses().size() == 0)
+	        	"  <h2>" + nodeName + "</h2>\n" +
+	        	"  <span>Stage: " + snapshot.getNodeStage().getLabel() + ", " + snapshot.getSendCount() + " sent, " +
+	        	snapshot.getReceiveCount() + " received, " + snapshot.getRetryCount() + " retries, dead " +
+	        	snapshot.getDeadCount() + " times</span> <br>\n" +
+	        	"  <span>Node state: about " + ZWaveNodeFootprint.estimate(node) + " bytes (" +
+	        	ZWaveNodeFootprint.estimateBoxed(node) + " bytes with maps, lists and dates)</span> <br>\n";
+
+		ZWaveInterviewProfiler.NodeProfile profile = this.controller.getInterviewProfiler().getNodeProfile(nodeId);
+		if(profile != null && profile.getSlowestStage() != null)
+			ret += "  <span>Interview: " + profile.getDuration() + " ms, " + profile.getFrames() + " frames, " +
+				profile.getRetries() + " retries, " + profile.getTimeouts() + " timeouts, slowest stage " +
+				profile.getSlowestStage().getLabel() + "</span> <br>\n";
+
+		if(snapshot.getCommandClasses().size() == 0)
 			ret += "<span>This node does not have any available controls.</span> <br>\n";
 
 		/* go through each command class, then build controls as appropriate */
-		for(ZWaveCommandClass cc : node.getCommandClasses()) {
+		for(ZWaveCommandClass cc : snapshot.getCommandClasses()) {
 			Control control = Control.fromCommandClass(cc);
 			if(control == Control.NOOPERATION) continue;
 			HashMap<String,String> vars = new HashMap<String,String>();
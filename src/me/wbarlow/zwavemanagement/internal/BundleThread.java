@@ -1,11 +1,16 @@
 package me.wbarlow.zwavemanagement.internal;
 
+import java.io.File;
 import java.io.IOException;
 
 import org.openhab.binding.zwave.internal.protocol.*;
 import org.openhab.binding.zwave.internal.protocol.event.*;
+import org.openhab.binding.zwave.internal.protocol.initialization.ZWaveInterviewCheckpoints;
 
 import me.wbarlow.zwavemanagement.http.WebGUI;
+import me.wbarlow.zwavemanagement.mqtt.MqttPublisher;
+import me.wbarlow.zwavemanagement.rules.RuleFileParser;
+import me.wbarlow.zwavemanagement.rules.RulesEngine;
 import me.wbarlow.zwavemanagement.logging.LoggerFactory;
 import me.wbarlow.zwavemanagement.logging.Logger;
 
@@ -22,9 +27,27 @@ public class BundleThread extends Thread implements ZWaveEventListener {
 
 	private volatile ZWaveController controller;
 	private volatile WebGUI gui;
+	private volatile MqttPublisher mqttPublisher;
+	private volatile RulesEngine rulesEngine;
 
 	private boolean networkReady = false;
 
+	private static final int EVENT_QUEUE_CAPACITY = 256;
+
+	private static final String JOURNAL_DIRECTORY = "journal";
+	private static final int JOURNAL_SEGMENT_SIZE = 1024 * 1024;	// bytes
+	private static final int JOURNAL_SEGMENTS = 8;
+
+	private static final String CHECKPOINT_DIRECTORY = "checkpoints";
+
+	private static final String MQTT_HOST_PROPERTY = "zwave.mqtt.host";
+	private static final String MQTT_PORT_PROPERTY = "zwave.mqtt.port";
+	private static final String MQTT_CLIENT_ID = "zwavemanagement";
+	private static final String MQTT_TOPIC_PREFIX = "zwave";
+	private static final int MQTT_BUFFER_CAPACITY = 512;
+
+	private static final String RULES_FILE = "rules.conf";
+
 	private static final Logger logger = LoggerFactory.getLogger(BundleThread.class);
 
 	/**
@@ -32,9 +55,25 @@ public class BundleThread extends Thread implements ZWaveEventListener {
 	 */
 	public void initController() {
 		try {
-			this.controller = new ZWaveController(false, "/dev/ttyUSB0", 15);
+			this.controller = new ZWaveController(false, "/dev/ttyUSB0", 5000);
+			// set before initializing, the interviews start as soon as the nodes are known.
+			try {
+				this.controller.setInterviewCheckpoints(new ZWaveInterviewCheckpoints(new File(CHECKPOINT_DIRECTORY)));
+			} catch (IOException e) {
+				logger.error("Interview checkpoints failed to open, interviews will start over after a restart. ", e);
+			}
 			this.controller.initialize();
-			this.controller.addEventListener(this);
+			// Meters and sensors repeat their last reading every few seconds.
+			this.controller.getValueCoalescer().setChangeOnly(true);
+			try {
+				this.controller.setEventJournal(new EventJournal(new File(JOURNAL_DIRECTORY), JOURNAL_SEGMENT_SIZE, JOURNAL_SEGMENTS));
+			} catch (IOException e) {
+				logger.error("Event journal failed to open, events will not be journaled. ", e);
+			}
+			// Events are only logged here, so they are delivered on a thread of
+			// our own and bursts of value events are coalesced per node.
+			this.controller.getEventBus().subscribeAsync(ZWaveEvent.class, ZWaveEventBus.ANY_NODE, null, this,
+					EVENT_QUEUE_CAPACITY, AsyncEventSubscriber.OverflowPolicy.Coalesce);
 		}
 		catch(SerialInterfaceException e) {
 			logger.error("Serial Interface failed to connect. ", e);
@@ -43,12 +82,45 @@ public class BundleThread extends Thread implements ZWaveEventListener {
 		return;
 	}
 
+	/**
+	 * Called when the bundle is initialized. Starts publishing events to an
+	 * MQTT broker if one is configured with the zwave.mqtt.host property.
+	 * The controller must have already been initialized.
+	 */
+	public void initMqtt() {
+		String host = System.getProperty(MQTT_HOST_PROPERTY);
+		if (host == null)
+			return;
+		int port = Integer.getInteger(MQTT_PORT_PROPERTY, 1883);
+		this.mqttPublisher = new MqttPublisher(host, port, MQTT_CLIENT_ID, MQTT_TOPIC_PREFIX, MQTT_BUFFER_CAPACITY);
+		this.mqttPublisher.start(this.controller.getEventBus());
+	}
+
+	/**
+	 * Called when the bundle is initialized. Starts the local rules, if
+	 * there is a rules file. The controller must have already been initialized.
+	 */
+	public void initRules() {
+		File file = new File(RULES_FILE);
+		if (!file.exists())
+			return;
+		this.rulesEngine = new RulesEngine(this.controller);
+		try {
+			this.rulesEngine.setRules(RuleFileParser.parse(file));
+		} catch (IOException e) {
+			logger.error("Rules file could not be read. ", e);
+		}
+		this.rulesEngine.start();
+	}
+
 	/**
 	 * Called when the bundle is initialized. This sets up the web interface.
 	 * The controller must have already been initialized.
 	 */
 	public void initInterface() {
 		this.gui = new WebGUI(this.controller);
+		this.gui.setMqttPublisher(this.mqttPublisher);
+		this.gui.setRulesEngine(this.rulesEngine);
 		try { this.gui.start(); }
 		catch(IOException e) {
 			logger.error("Web Interface failed to start.");
@@ -63,6 +135,8 @@ public class BundleThread extends Thread implements ZWaveEventListener {
 	public void run() {
 		try {
 			this.initController();
+			this.initMqtt();
+			this.initRules();
 			this.initInterface();
 			while (active) {
 				try {
@@ -83,11 +157,26 @@ public class BundleThread extends Thread implements ZWaveEventListener {
 	 */
 	public void stopThread() {
 		this.gui.stop();
+		MqttPublisher publisher = this.mqttPublisher;
+		if(publisher != null) {
+			this.mqttPublisher = null;
+			publisher.stop();
+		}
+		RulesEngine rules = this.rulesEngine;
+		if(rules != null) {
+			this.rulesEngine = null;
+			rules.stop();
+		}
 		ZWaveController cntr = this.controller;
 		if(cntr != null) {
 			this.controller = null;
 			cntr.close();
 			cntr.removeEventListener(this);
+			EventJournal journal = cntr.getEventJournal();
+			if (journal != null) {
+				cntr.setEventJournal(null);
+				journal.close();
+			}
 		}
 		active = false;
 	}
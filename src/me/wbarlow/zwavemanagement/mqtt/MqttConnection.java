@@ -0,0 +1,163 @@
+package me.wbarlow.zwavemanagement.mqtt;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * A connection to an MQTT 3.1.1 broker. Only what a publisher needs is
+ * implemented: connecting with a clean session, publishing at QoS 0,
+ * keep-alive pings and disconnecting. Publishes are written to a buffered
+ * stream and only go out on {@link #flush()}, so a batch of publishes is
+ * sent back to back without waiting for the broker.
+ * @author Woodrow Barlow
+ *
+ */
+public class MqttConnection {
+
+	private static final int CONNECT = 0x10;
+	private static final int CONNACK = 0x20;
+	private static final int PUBLISH = 0x30;
+	private static final int PINGREQ = 0xC0;
+	private static final int DISCONNECT = 0xE0;
+
+	private static final int RETAIN = 0x01;
+	private static final int CLEAN_SESSION = 0x02;
+
+	private static final int CONNECT_TIMEOUT = 5000;	// ms
+	private static final int OUTPUT_BUFFER_SIZE = 8192;	// bytes
+
+	private final Socket socket;
+	private final InputStream in;
+	private final OutputStream out;
+
+	/**
+	 * Opens a connection to a broker and waits for it to accept the connection.
+	 * @param host the host name of the broker.
+	 * @param port the port of the broker.
+	 * @param clientId the client id to connect with.
+	 * @param keepAlive the keep alive interval in seconds.
+	 * @throws IOException when the broker can't be reached or refuses the connection.
+	 */
+	public MqttConnection(String host, int port, String clientId, int keepAlive) throws IOException {
+		this.socket = new Socket();
+		try {
+			socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT);
+			socket.setTcpNoDelay(true);
+			socket.setSoTimeout(CONNECT_TIMEOUT);
+			this.in = socket.getInputStream();
+			this.out = new BufferedOutputStream(socket.getOutputStream(), OUTPUT_BUFFER_SIZE);
+
+			byte[] protocolName = encode("MQTT");
+			byte[] client = encode(clientId);
+			out.write(CONNECT);
+			writeLength(2 + protocolName.length + 4 + 2 + client.length);
+			writeString(protocolName);
+			out.write(4);	// protocol level 3.1.1
+			out.write(CLEAN_SESSION);
+			out.write(keepAlive >> 8);
+			out.write(keepAlive & 0xFF);
+			writeString(client);
+			out.flush();
+
+			int type = in.read();
+			int length = in.read();
+			in.read();	// acknowledge flags
+			int returnCode = in.read();
+			if (type != CONNACK || length != 2)
+				throw new IOException("Unexpected reply from broker: " + type);
+			if (returnCode != 0)
+				throw new IOException("Broker refused the connection: return code " + returnCode);
+		} catch (IOException e) {
+			socket.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Writes a QoS 0 publish to the output buffer.
+	 * @param topic the topic
+	 * @param payload the payload
+	 * @param retain true if the broker should keep the message for new subscribers.
+	 * @throws IOException when the connection failed.
+	 */
+	public void publish(String topic, byte[] payload, boolean retain) throws IOException {
+		byte[] topicBytes = encode(topic);
+		out.write(PUBLISH | (retain ? RETAIN : 0));
+		writeLength(2 + topicBytes.length + payload.length);
+		writeString(topicBytes);
+		out.write(payload);
+	}
+
+	/**
+	 * Writes a ping to the output buffer, to keep the connection alive
+	 * while there is nothing to publish.
+	 * @throws IOException when the connection failed.
+	 */
+	public void ping() throws IOException {
+		out.write(PINGREQ);
+		out.write(0);
+	}
+
+	/**
+	 * Sends the buffered messages to the broker and discards what the
+	 * broker sent us, which for a publisher is only ping responses.
+	 * @throws IOException when the connection failed.
+	 */
+	public void flush() throws IOException {
+		out.flush();
+		int available = in.available();
+		if (available > 0)
+			in.skip(available);
+	}
+
+	/**
+	 * Disconnects from the broker and closes the connection.
+	 */
+	public void close() {
+		try {
+			out.write(DISCONNECT);
+			out.write(0);
+			out.flush();
+		} catch (IOException e) {
+			// the connection is closed below anyway
+		}
+		try {
+			socket.close();
+		} catch (IOException e) {
+			// nothing left to do
+		}
+	}
+
+	private void writeLength(int length) throws IOException {
+		// Seven bits per byte, the high bit set when another byte follows.
+		do {
+			int digit = length & 0x7F;
+			length >>= 7;
+			out.write(length > 0 ? digit | 0x80 : digit);
+		} while (length > 0);
+	}
+
+	private void writeString(byte[] bytes) throws IOException {
+		out.write(bytes.length >> 8);
+		out.write(bytes.length & 0xFF);
+		out.write(bytes);
+	}
+
+	/**
+	 * Encodes a string as UTF-8.
+	 * @param s the string
+	 * @return the encoded bytes
+	 */
+	static byte[] encode(String s) {
+		try {
+			return s.getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,297 @@
+package me.wbarlow.zwavemanagement.mqtt;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openhab.binding.zwave.internal.protocol.FixedPoint;
+import org.openhab.binding.zwave.internal.protocol.ZWaveEventBus;
+import org.openhab.binding.zwave.internal.protocol.ZWaveEventListener;
+import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveMeterCommandClass.ZWaveMeterValueEvent;
+import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveMultiLevelSensorCommandClass.ZWaveMultiLevelSensorValueEvent;
+import org.openhab.binding.zwave.internal.protocol.event.ZWaveCommandClassValueEvent;
+import org.openhab.binding.zwave.internal.protocol.event.ZWaveEvent;
+import org.openhab.binding.zwave.internal.protocol.event.ZWaveNetworkEvent;
+import org.openhab.binding.zwave.internal.protocol.event.ZWaveNodeStatusEvent;
+
+import me.wbarlow.zwavemanagement.logging.Logger;
+import me.wbarlow.zwavemanagement.logging.LoggerFactory;
+
+/**
+ * Publishes value, node status and network events to an MQTT broker, on a
+ * topic per node and command class:
+ * <pre>
+ * &lt;prefix&gt;/node/5/sensor_multilevel/temperature
+ * &lt;prefix&gt;/node/5/endpoint/2/switch_binary
+ * &lt;prefix&gt;/node/5/status
+ * &lt;prefix&gt;/node/5/network
+ * </pre>
+ * Events are put in a bounded outbound buffer and never wait for the
+ * broker; when the buffer is full the oldest message is dropped. A thread
+ * of the publisher sends the buffered messages in batches over a single
+ * connection and reconnects with a backoff when the connection fails.
+ * @author Woodrow Barlow
+ *
+ */
+public class MqttPublisher implements ZWaveEventListener {
+
+	private static final Logger logger = LoggerFactory.getLogger(MqttPublisher.class);
+
+	private static final int KEEP_ALIVE = 60;			// s
+	private static final int BATCH_SIZE = 64;			// messages per flush
+	private static final long MIN_RECONNECT_DELAY = 1000;	// ms
+	private static final long MAX_RECONNECT_DELAY = 30000;	// ms
+
+	private final String host;
+	private final int port;
+	private final String clientId;
+	private final String topicPrefix;
+	private final ArrayBlockingQueue<Message> outbound;
+	private final List<Message> batch = new ArrayList<Message>(BATCH_SIZE);
+
+	private ZWaveEventBus eventBus;
+	private Thread sender;
+	private volatile boolean running = false;
+	private volatile boolean connected = false;
+
+	private final AtomicLong publishedCount = new AtomicLong(0);
+	private final AtomicLong droppedCount = new AtomicLong(0);
+	private final AtomicLong batchCount = new AtomicLong(0);
+	private final AtomicLong reconnectCount = new AtomicLong(0);
+
+	/**
+	 * Constructor. Creates a new instance of the MqttPublisher class.
+	 * @param host the host name of the broker.
+	 * @param port the port of the broker.
+	 * @param clientId the client id to connect with.
+	 * @param topicPrefix the prefix of all topics, i.e. "zwave".
+	 * @param capacity the number of messages the outbound buffer holds.
+	 */
+	public MqttPublisher(String host, int port, String clientId, String topicPrefix, int capacity) {
+		this.host = host;
+		this.port = port;
+		this.clientId = clientId;
+		this.topicPrefix = topicPrefix;
+		this.outbound = new ArrayBlockingQueue<Message>(capacity);
+	}
+
+	/**
+	 * Subscribes to the events on an event bus and starts the sender thread.
+	 * @param eventBus the event bus of the controller.
+	 */
+	public synchronized void start(ZWaveEventBus eventBus) {
+		if (running)
+			return;
+		this.eventBus = eventBus;
+		running = true;
+		sender = new Thread("MqttPublisher") {
+			@Override
+			public void run() {
+				send();
+			}
+		};
+		sender.setDaemon(true);
+		sender.start();
+
+		eventBus.subscribe(ZWaveCommandClassValueEvent.class, this);
+		eventBus.subscribe(ZWaveNodeStatusEvent.class, this);
+		eventBus.subscribe(ZWaveNetworkEvent.class, this);
+	}
+
+	/**
+	 * Unsubscribes from the event bus and stops the sender thread. Messages
+	 * still in the outbound buffer are discarded.
+	 */
+	public synchronized void stop() {
+		if (!running)
+			return;
+		running = false;
+		eventBus.unsubscribe(this);
+		sender.interrupt();
+		sender = null;
+		outbound.clear();
+	}
+
+	/**
+	 * Puts a message for an event in the outbound buffer. Called on the
+	 * thread that published the event, so this never blocks.
+	 * @param event the event
+	 */
+	public void ZWaveIncomingEvent(ZWaveEvent event) {
+		Message message = toMessage(event);
+		if (message == null)
+			return;
+		while (!outbound.offer(message)) {
+			if (outbound.poll() != null)
+				droppedCount.incrementAndGet();
+		}
+	}
+
+	private Message toMessage(ZWaveEvent event) {
+		StringBuilder topic = new StringBuilder(topicPrefix).append("/node/").append(event.getNodeId());
+		if (event.getEndpoint() != 0)
+			topic.append("/endpoint/").append(event.getEndpoint());
+
+		if (event instanceof ZWaveCommandClassValueEvent) {
+			ZWaveCommandClassValueEvent valueEvent = (ZWaveCommandClassValueEvent) event;
+			topic.append('/').append(valueEvent.getCommandClass().getLabel().toLowerCase());
+			if (event instanceof ZWaveMeterValueEvent)
+				topic.append('/').append(((ZWaveMeterValueEvent) event).getMeterScale().name().toLowerCase());
+			else if (event instanceof ZWaveMultiLevelSensorValueEvent)
+				topic.append('/').append(((ZWaveMultiLevelSensorValueEvent) event).getSensorType().name().toLowerCase());
+
+			String payload;
+			if (valueEvent.isFixedPoint())
+				payload = FixedPoint.toString(valueEvent.getFixedPointValue());
+			else
+				payload = String.valueOf(valueEvent.getValue());
+			return new Message(topic.toString(), payload, false);
+		}
+		if (event instanceof ZWaveNodeStatusEvent) {
+			topic.append("/status");
+			return new Message(topic.toString(), ((ZWaveNodeStatusEvent) event).getState().toString(), true);
+		}
+		if (event instanceof ZWaveNetworkEvent) {
+			ZWaveNetworkEvent networkEvent = (ZWaveNetworkEvent) event;
+			topic.append("/network");
+			return new Message(topic.toString(), networkEvent.getEvent() + " " + networkEvent.getState(), false);
+		}
+		return null;
+	}
+
+	/**
+	 * Main loop of the sender thread: connects, sends the outbound buffer
+	 * in batches and pings the broker when there is nothing to send.
+	 */
+	private void send() {
+		MqttConnection connection = null;
+		long reconnectDelay = MIN_RECONNECT_DELAY;
+
+		while (running) {
+			try {
+				if (connection == null) {
+					connection = new MqttConnection(host, port, clientId, KEEP_ALIVE);
+					connected = true;
+					reconnectDelay = MIN_RECONNECT_DELAY;
+					logger.info("MQTT: Connected to " + host + ":" + port);
+				}
+
+				Message first = outbound.poll(KEEP_ALIVE / 2, TimeUnit.SECONDS);
+				if (first == null) {
+					connection.ping();
+					connection.flush();
+					continue;
+				}
+
+				batch.add(first);
+				outbound.drainTo(batch, BATCH_SIZE - 1);
+				for (Message message : batch)
+					connection.publish(message.topic, message.payload, message.retain);
+				connection.flush();
+				publishedCount.addAndGet(batch.size());
+				batchCount.incrementAndGet();
+				batch.clear();
+			} catch (InterruptedException e) {
+				break;
+			} catch (IOException e) {
+				// QoS 0: the batch that was on its way is lost.
+				droppedCount.addAndGet(batch.size());
+				batch.clear();
+				if (connection != null) {
+					connection.close();
+					connection = null;
+					connected = false;
+					reconnectCount.incrementAndGet();
+				}
+				logger.warn("MQTT: Connection to " + host + ":" + port + " failed, retrying in " + reconnectDelay + "ms: " + e.getMessage());
+				try {
+					Thread.sleep(reconnectDelay);
+				} catch (InterruptedException ie) {
+					break;
+				}
+				reconnectDelay = Math.min(MAX_RECONNECT_DELAY, reconnectDelay * 2);
+			}
+		}
+
+		if (connection != null)
+			connection.close();
+		connected = false;
+	}
+
+	/**
+	 * Gets whether the publisher is connected to the broker.
+	 * @return true if connected
+	 */
+	public boolean isConnected() {
+		return connected;
+	}
+
+	/**
+	 * Gets the address of the broker, for display.
+	 * @return host:port
+	 */
+	public String getBroker() {
+		return host + ":" + port;
+	}
+
+	/**
+	 * Gets the number of messages waiting in the outbound buffer.
+	 * @return the pending count
+	 */
+	public int getPendingCount() {
+		return outbound.size();
+	}
+
+	/**
+	 * Gets the number of messages sent to the broker.
+	 * @return the published count
+	 */
+	public long getPublishedCount() {
+		return publishedCount.get();
+	}
+
+	/**
+	 * Gets the number of messages dropped because the outbound buffer was
+	 * full or the connection failed while they were sent.
+	 * @return the dropped count
+	 */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	/**
+	 * Gets the number of batches sent to the broker.
+	 * @return the batch count
+	 */
+	public long getBatchCount() {
+		return batchCount.get();
+	}
+
+	/**
+	 * Gets the number of times the connection failed after it was made.
+	 * @return the reconnect count
+	 */
+	public long getReconnectCount() {
+		return reconnectCount.get();
+	}
+
+	/**
+	 * A message in the outbound buffer.
+	 * @author Woodrow Barlow
+	 *
+	 */
+	private static class Message {
+		private final String topic;
+		private final byte[] payload;
+		private final boolean retain;
+
+		private Message(String topic, String payload, boolean retain) {
+			this.topic = topic;
+			this.payload = MqttConnection.encode(payload);
+			this.retain = retain;
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package me.wbarlow.zwavemanagement.rules;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.openhab.binding.zwave.internal.protocol.FixedPoint;
+import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveCommandClass.CommandClass;
+
+/**
+ * A local automation rule: when a node reports a value of a command class
+ * that meets the condition, the actions are carried out.
+ * @author Woodrow Barlow
+ *
+ */
+public class Rule {
+
+	/**
+	 * How the reported value is compared with the value of the rule.
+	 * @author Woodrow Barlow
+	 *
+	 */
+	public enum Operator {
+		Any,		// every report fires the rule
+		Equal,
+		NotEqual,
+		Above,
+		Below
+	}
+
+	private final String name;
+	private final int nodeId;
+	private final CommandClass commandClass;
+	private final Operator operator;
+	private final long value;	// FixedPoint
+	private final List<RuleAction> actions;
+
+	/**
+	 * Constructor. Creates a new instance of the Rule class.
+	 * @param name the name of the rule.
+	 * @param nodeId the node that triggers the rule.
+	 * @param commandClass the command class that triggers the rule.
+	 * @param operator how the reported value is compared with the value.
+	 * @param value the {@link FixedPoint} value to compare with.
+	 * @param actions the actions to carry out when the rule fires.
+	 */
+	public Rule(String name, int nodeId, CommandClass commandClass, Operator operator, long value, List<RuleAction> actions) {
+		if (nodeId < 0 || nodeId > 255)
+			throw new IllegalArgumentException("Invalid node id " + nodeId);
+		this.name = name;
+		this.nodeId = nodeId;
+		this.commandClass = commandClass;
+		this.operator = operator;
+		this.value = value;
+		this.actions = Collections.unmodifiableList(new ArrayList<RuleAction>(actions));
+	}
+
+	/**
+	 * Checks a reported value against the condition of the rule.
+	 * @param reported the reported {@link FixedPoint} value.
+	 * @param comparable false if the report has no numeric value; then
+	 * only a rule without a condition matches.
+	 * @return true if the rule fires.
+	 */
+	public boolean matches(long reported, boolean comparable) {
+		if (operator == Operator.Any)
+			return true;
+		if (!comparable)
+			return false;
+		int comparison = FixedPoint.compare(reported, value);
+		switch (operator) {
+		case Equal:
+			return comparison == 0;
+		case NotEqual:
+			return comparison != 0;
+		case Above:
+			return comparison > 0;
+		case Below:
+			return comparison < 0;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Gets the name of the rule.
+	 * @return the name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Gets the node that triggers the rule.
+	 * @return the node id
+	 */
+	public int getNodeId() {
+		return nodeId;
+	}
+
+	/**
+	 * Gets the command class that triggers the rule.
+	 * @return the command class
+	 */
+	public CommandClass getCommandClass() {
+		return commandClass;
+	}
+
+	/**
+	 * Gets the actions of the rule.
+	 * @return the actions
+	 */
+	public List<RuleAction> getActions() {
+		return actions;
+	}
+
+	@Override
+	public String toString() {
+		String condition = operator == Operator.Any ? "" : " " + operator + " " + FixedPoint.toString(value);
+		return name + ": when " + nodeId + " " + commandClass.getLabel() + condition + " then " + actions;
+	}
+}
@@ -0,0 +1,22 @@
+package me.wbarlow.zwavemanagement.rules;
+
+import java.util.List;
+
+import org.openhab.binding.zwave.internal.protocol.SerialMessage;
+import org.openhab.binding.zwave.internal.protocol.ZWaveController;
+
+/**
+ * An action of a rule. Turns into the messages that carry out the action
+ * when the rule fires.
+ * @author Woodrow Barlow
+ *
+ */
+public interface RuleAction {
+
+	/**
+	 * Adds the messages that carry out the action to a list.
+	 * @param controller the controller, to look up the target nodes.
+	 * @param messages the list to add the messages to.
+	 */
+	public void createMessages(ZWaveController controller, List<SerialMessage> messages);
+}
@@ -0,0 +1,169 @@
+package me.wbarlow.zwavemanagement.rules;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openhab.binding.zwave.internal.protocol.FixedPoint;
+import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveCommandClass.CommandClass;
+
+import me.wbarlow.zwavemanagement.logging.Logger;
+import me.wbarlow.zwavemanagement.logging.LoggerFactory;
+
+/**
+ * Reads rules and scenes from a text file, one per line:
+ * <pre>
+ * # comments start with a hash
+ * scene evening = set 7 SWITCH_MULTILEVEL 30; set 8 SWITCH_BINARY 255
+ * rule porch = when 5 SENSOR_BINARY = 255 then set 9 SWITCH_BINARY 255
+ * rule dusk = when 12 SENSOR_MULTILEVEL &lt; 10.5 then scene evening
+ * rule remote = when 3 SCENE_ACTIVATION = 2 then scene evening; set 4.2 SWITCH_BINARY 0
+ * </pre>
+ * The operators are =, !=, &gt; and &lt;; a trigger without an operator fires
+ * on every report. A node can be followed by .endpoint in a set action.
+ * Scenes must be defined before the rules that use them. Lines that can't
+ * be parsed are logged and skipped.
+ * @author Woodrow Barlow
+ *
+ */
+public class RuleFileParser {
+
+	private static final Logger logger = LoggerFactory.getLogger(RuleFileParser.class);
+
+	private final Map<String, SceneAction> scenes = new HashMap<String, SceneAction>();
+	private final List<Rule> rules = new ArrayList<Rule>();
+
+	/**
+	 * Parses a rule file.
+	 * @param file the file
+	 * @return the rules in the file.
+	 * @throws IOException when the file can't be read.
+	 */
+	public static List<Rule> parse(File file) throws IOException {
+		RuleFileParser parser = new RuleFileParser();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		try {
+			String line;
+			int lineNumber = 0;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				line = line.trim();
+				if (line.length() == 0 || line.startsWith("#"))
+					continue;
+				try {
+					parser.parseLine(line);
+				} catch (IllegalArgumentException e) {
+					logger.error("Rule file " + file + " line " + lineNumber + ": " + e.getMessage());
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return parser.rules;
+	}
+
+	private void parseLine(String line) {
+		int equals = line.indexOf('=');
+		if (equals < 0)
+			throw new IllegalArgumentException("Missing '='");
+		String[] head = line.substring(0, equals).trim().split("\\s+");
+		String body = line.substring(equals + 1).trim();
+		if (head.length != 2)
+			throw new IllegalArgumentException("Expected 'scene <name>' or 'rule <name>'");
+
+		if (head[0].equals("scene")) {
+			scenes.put(head[1], new SceneAction(head[1], parseActions(body)));
+		} else if (head[0].equals("rule")) {
+			rules.add(parseRule(head[1], body));
+		} else {
+			throw new IllegalArgumentException("Unknown definition '" + head[0] + "'");
+		}
+	}
+
+	private Rule parseRule(String name, String body) {
+		int then = body.indexOf(" then ");
+		if (!body.startsWith("when ") || then < 0)
+			throw new IllegalArgumentException("Expected 'when <node> <command class> [<operator> <value>] then <actions>'");
+		String[] trigger = body.substring(5, then).trim().split("\\s+");
+		List<RuleAction> actions = parseActions(body.substring(then + 6));
+
+		if (trigger.length != 2 && trigger.length != 4)
+			throw new IllegalArgumentException("Invalid trigger");
+		int nodeId = parseInt(trigger[0]);
+		CommandClass commandClass = parseCommandClass(trigger[1]);
+		Rule.Operator operator = Rule.Operator.Any;
+		long value = 0;
+		if (trigger.length == 4) {
+			operator = parseOperator(trigger[2]);
+			try {
+				value = FixedPoint.valueOf(new BigDecimal(trigger[3]));
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid value '" + trigger[3] + "'");
+			} catch (ArithmeticException e) {
+				throw new IllegalArgumentException("Value out of range '" + trigger[3] + "'");
+			}
+		}
+		return new Rule(name, nodeId, commandClass, operator, value, actions);
+	}
+
+	private List<RuleAction> parseActions(String body) {
+		List<RuleAction> actions = new ArrayList<RuleAction>();
+		for (String part : body.split(";")) {
+			String[] words = part.trim().split("\\s+");
+			if (words[0].equals("set") && words.length == 4) {
+				int nodeId;
+				int endpoint = 0;
+				int dot = words[1].indexOf('.');
+				if (dot < 0) {
+					nodeId = parseInt(words[1]);
+				} else {
+					nodeId = parseInt(words[1].substring(0, dot));
+					endpoint = parseInt(words[1].substring(dot + 1));
+				}
+				actions.add(new SetValueAction(nodeId, endpoint, parseCommandClass(words[2]), parseInt(words[3])));
+			} else if (words[0].equals("scene") && words.length == 2) {
+				SceneAction scene = scenes.get(words[1]);
+				if (scene == null)
+					throw new IllegalArgumentException("Unknown scene '" + words[1] + "'");
+				actions.add(scene);
+			} else {
+				throw new IllegalArgumentException("Invalid action '" + part.trim() + "'");
+			}
+		}
+		return actions;
+	}
+
+	private static Rule.Operator parseOperator(String s) {
+		if (s.equals("="))
+			return Rule.Operator.Equal;
+		if (s.equals("!="))
+			return Rule.Operator.NotEqual;
+		if (s.equals(">"))
+			return Rule.Operator.Above;
+		if (s.equals("<"))
+			return Rule.Operator.Below;
+		throw new IllegalArgumentException("Unknown operator '" + s + "'");
+	}
+
+	private static CommandClass parseCommandClass(String s) {
+		CommandClass commandClass = CommandClass.getCommandClass(s);
+		if (commandClass == null)
+			throw new IllegalArgumentException("Unknown command class '" + s + "'");
+		return commandClass;
+	}
+
+	private static int parseInt(String s) {
+		try {
+			return Integer.parseInt(s);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid number '" + s + "'");
+		}
+	}
+}
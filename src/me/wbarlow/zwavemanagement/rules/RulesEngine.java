@@ -0,0 +1,256 @@
+package me.wbarlow.zwavemanagement.rules;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openhab.binding.zwave.internal.protocol.FixedPoint;
+import org.openhab.binding.zwave.internal.protocol.LatencyHistogram;
+import org.openhab.binding.zwave.internal.protocol.SerialMessage;
+import org.openhab.binding.zwave.internal.protocol.SerialMessage.SerialMessageLatencyClass;
+import org.openhab.binding.zwave.internal.protocol.SerialMessageCompletionHandler;
+import org.openhab.binding.zwave.internal.protocol.ZWaveController;
+import org.openhab.binding.zwave.internal.protocol.ZWaveEventListener;
+import org.openhab.binding.zwave.internal.protocol.event.ZWaveCommandClassValueEvent;
+import org.openhab.binding.zwave.internal.protocol.event.ZWaveEvent;
+
+import me.wbarlow.zwavemanagement.logging.Logger;
+import me.wbarlow.zwavemanagement.logging.LoggerFactory;
+
+/**
+ * Runs local automation rules on the value events of the controller.
+ * Rules are compiled into an index by node and command class, so finding
+ * the rules of an event takes two array lookups however many rules there
+ * are. The messages of the actions go straight into the send queue as
+ * interactive messages, and the time from the trigger to the frame being
+ * sent is recorded.
+ * @author Woodrow Barlow
+ *
+ */
+public class RulesEngine implements ZWaveEventListener {
+
+	private static final Logger logger = LoggerFactory.getLogger(RulesEngine.class);
+
+	private static final int MAX_NODES = 256;
+	private static final int MAX_COMMAND_CLASSES = 256;
+	private static final Rule[] NO_RULES = new Rule[0];
+
+	private final ZWaveController controller;
+	private final Map<String, Rule> rules = new LinkedHashMap<String, Rule>();
+
+	// index[node][command class]; a node without rules has no second level.
+	private volatile Rule[][][] index = new Rule[MAX_NODES][][];
+
+	private final AtomicLong firedCount = new AtomicLong(0);
+	private final AtomicLong messageCount = new AtomicLong(0);
+	private final AtomicLong rejectedCount = new AtomicLong(0);
+	private final AtomicLong failedCount = new AtomicLong(0);
+	private final LatencyHistogram sentLatency = new LatencyHistogram();
+	private final LatencyHistogram completedLatency = new LatencyHistogram();
+
+	/**
+	 * Constructor. Creates a new instance of the RulesEngine class.
+	 * @param controller the controller to send the messages of the actions with.
+	 */
+	public RulesEngine(ZWaveController controller) {
+		this.controller = controller;
+	}
+
+	/**
+	 * Starts running the rules on the value events of the controller.
+	 */
+	public void start() {
+		controller.getEventBus().subscribe(ZWaveCommandClassValueEvent.class, this);
+	}
+
+	/**
+	 * Stops running the rules.
+	 */
+	public void stop() {
+		controller.getEventBus().unsubscribe(this);
+	}
+
+	/**
+	 * Adds a rule, replacing a rule with the same name.
+	 * @param rule the rule
+	 */
+	public synchronized void addRule(Rule rule) {
+		rules.put(rule.getName(), rule);
+		compile();
+	}
+
+	/**
+	 * Replaces all rules.
+	 * @param newRules the rules
+	 */
+	public synchronized void setRules(Collection<Rule> newRules) {
+		rules.clear();
+		for (Rule rule : newRules)
+			rules.put(rule.getName(), rule);
+		compile();
+	}
+
+	/**
+	 * Removes a rule.
+	 * @param name the name of the rule.
+	 * @return true if the rule existed.
+	 */
+	public synchronized boolean removeRule(String name) {
+		if (rules.remove(name) == null)
+			return false;
+		compile();
+		return true;
+	}
+
+	/**
+	 * Gets the rules.
+	 * @return a copy of the rules, in the order they were added.
+	 */
+	public synchronized List<Rule> getRules() {
+		return new ArrayList<Rule>(rules.values());
+	}
+
+	/**
+	 * Builds a new index from the rules and swaps it in. Events that are
+	 * being matched keep using the old index.
+	 */
+	private void compile() {
+		Rule[][][] compiled = new Rule[MAX_NODES][][];
+		for (Rule rule : rules.values()) {
+			Rule[][] byCommandClass = compiled[rule.getNodeId()];
+			if (byCommandClass == null)
+				byCommandClass = compiled[rule.getNodeId()] = new Rule[MAX_COMMAND_CLASSES][];
+			int key = rule.getCommandClass().getKey();
+			Rule[] existing = byCommandClass[key] == null ? NO_RULES : byCommandClass[key];
+			Rule[] appended = new Rule[existing.length + 1];
+			System.arraycopy(existing, 0, appended, 0, existing.length);
+			appended[existing.length] = rule;
+			byCommandClass[key] = appended;
+		}
+		index = compiled;
+		logger.info("Compiled " + rules.size() + " rules");
+	}
+
+	/**
+	 * Matches a value event against the rules and carries out the actions
+	 * of the rules that fire.
+	 * @param event the event
+	 */
+	public void ZWaveIncomingEvent(ZWaveEvent event) {
+		if (!(event instanceof ZWaveCommandClassValueEvent))
+			return;
+		ZWaveCommandClassValueEvent valueEvent = (ZWaveCommandClassValueEvent) event;
+		int nodeId = event.getNodeId();
+		if (nodeId < 0 || nodeId >= MAX_NODES)
+			return;
+		Rule[][] byCommandClass = index[nodeId];
+		if (byCommandClass == null)
+			return;
+		Rule[] candidates = byCommandClass[valueEvent.getCommandClass().getKey()];
+		if (candidates == null)
+			return;
+
+		long triggerTime = System.currentTimeMillis();
+		boolean comparable = true;
+		long value = 0;
+		Object raw = valueEvent.getValue();
+		if (valueEvent.isFixedPoint()) {
+			value = valueEvent.getFixedPointValue();
+		} else if (raw instanceof Integer || raw instanceof Short || raw instanceof Byte) {
+			value = FixedPoint.valueOf(((Number) raw).intValue(), 0);
+		} else if (raw instanceof Boolean) {
+			value = FixedPoint.valueOf(((Boolean) raw).booleanValue() ? 1 : 0, 0);
+		} else {
+			comparable = false;
+		}
+
+		for (Rule rule : candidates) {
+			if (rule.matches(value, comparable))
+				fire(rule, triggerTime);
+		}
+	}
+
+	private void fire(Rule rule, final long triggerTime) {
+		logger.debug("Rule " + rule.getName() + " fired");
+		firedCount.incrementAndGet();
+
+		List<SerialMessage> messages = new ArrayList<SerialMessage>();
+		for (RuleAction action : rule.getActions())
+			action.createMessages(controller, messages);
+
+		for (SerialMessage message : messages) {
+			message.setLatencyClass(SerialMessageLatencyClass.Interactive);
+			message.setCompletionHandler(new SerialMessageCompletionHandler() {
+				public void messageTransmitted(SerialMessage serialMessage) {
+				}
+
+				public void messageCompleted(SerialMessage serialMessage) {
+					if (serialMessage.getTransmitTime() > 0)
+						sentLatency.record(serialMessage.getTransmitTime() - triggerTime);
+					completedLatency.record(System.currentTimeMillis() - triggerTime);
+				}
+
+				public void messageFailed(SerialMessage serialMessage, FailureReason reason) {
+					failedCount.incrementAndGet();
+				}
+			});
+			if (controller.sendData(message)) {
+				messageCount.incrementAndGet();
+			} else {
+				rejectedCount.incrementAndGet();
+				logger.warn("Rule " + rule.getName() + ": Message rejected by the controller (send queue full).");
+			}
+		}
+	}
+
+	/**
+	 * Gets the number of times a rule fired.
+	 * @return the fired count
+	 */
+	public long getFiredCount() {
+		return firedCount.get();
+	}
+
+	/**
+	 * Gets the number of messages the actions of rules sent.
+	 * @return the message count
+	 */
+	public long getMessageCount() {
+		return messageCount.get();
+	}
+
+	/**
+	 * Gets the number of messages the controller refused.
+	 * @return the rejected count
+	 */
+	public long getRejectedCount() {
+		return rejectedCount.get();
+	}
+
+	/**
+	 * Gets the number of messages that were dropped without completing.
+	 * @return the failed count
+	 */
+	public long getFailedCount() {
+		return failedCount.get();
+	}
+
+	/**
+	 * Gets the latencies from a rule firing to the frame being sent to the controller.
+	 * @return the latency histogram
+	 */
+	public LatencyHistogram getSentLatency() {
+		return sentLatency;
+	}
+
+	/**
+	 * Gets the latencies from a rule firing to the transaction of the frame completing.
+	 * @return the latency histogram
+	 */
+	public LatencyHistogram getCompletedLatency() {
+		return completedLatency;
+	}
+}
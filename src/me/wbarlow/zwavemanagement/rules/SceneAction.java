@@ -0,0 +1,47 @@
+package me.wbarlow.zwavemanagement.rules;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openhab.binding.zwave.internal.protocol.SerialMessage;
+import org.openhab.binding.zwave.internal.protocol.ZWaveController;
+
+/**
+ * Rule action that runs a named scene: a list of actions that are carried
+ * out together.
+ * @author Woodrow Barlow
+ *
+ */
+public class SceneAction implements RuleAction {
+
+	private final String name;
+	private final List<RuleAction> actions;
+
+	/**
+	 * Constructor. Creates a new instance of the SceneAction class.
+	 * @param name the name of the scene.
+	 * @param actions the actions of the scene.
+	 */
+	public SceneAction(String name, List<RuleAction> actions) {
+		this.name = name;
+		this.actions = new ArrayList<RuleAction>(actions);
+	}
+
+	public void createMessages(ZWaveController controller, List<SerialMessage> messages) {
+		for (RuleAction action : actions)
+			action.createMessages(controller, messages);
+	}
+
+	/**
+	 * Gets the name of the scene.
+	 * @return the name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public String toString() {
+		return "scene " + name;
+	}
+}
@@ -0,0 +1,64 @@
+package me.wbarlow.zwavemanagement.rules;
+
+import java.util.List;
+
+import org.openhab.binding.zwave.internal.protocol.SerialMessage;
+import org.openhab.binding.zwave.internal.protocol.ZWaveController;
+import org.openhab.binding.zwave.internal.protocol.ZWaveNode;
+import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveCommandClass;
+import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveCommandClass.CommandClass;
+import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveSetCommands;
+
+import me.wbarlow.zwavemanagement.logging.Logger;
+import me.wbarlow.zwavemanagement.logging.LoggerFactory;
+
+/**
+ * Rule action that sets a value on a node with the SET command of a
+ * command class, i.e. switches a binary switch on or dims a light.
+ * @author Woodrow Barlow
+ *
+ */
+public class SetValueAction implements RuleAction {
+
+	private static final Logger logger = LoggerFactory.getLogger(SetValueAction.class);
+
+	private final int nodeId;
+	private final int endpoint;
+	private final CommandClass commandClass;
+	private final int value;
+
+	/**
+	 * Constructor. Creates a new instance of the SetValueAction class.
+	 * @param nodeId the node to set the value on.
+	 * @param endpoint the endpoint to set the value on, or 0 for the node itself.
+	 * @param commandClass the command class to send the SET command of.
+	 * @param value the value to set.
+	 */
+	public SetValueAction(int nodeId, int endpoint, CommandClass commandClass, int value) {
+		this.nodeId = nodeId;
+		this.endpoint = endpoint;
+		this.commandClass = commandClass;
+		this.value = value;
+	}
+
+	public void createMessages(ZWaveController controller, List<SerialMessage> messages) {
+		ZWaveNode node = controller.getNode(nodeId);
+		if (node == null) {
+			logger.warn("NODE " + nodeId + ": Rule action on unknown node.");
+			return;
+		}
+		ZWaveCommandClass target = node.resolveCommandClass(commandClass, endpoint);
+		if (!(target instanceof ZWaveSetCommands)) {
+			logger.warn("NODE " + nodeId + ": Rule action needs " + commandClass.getLabel() + " SET, which the node doesn't support.");
+			return;
+		}
+		SerialMessage message = node.encapsulate(((ZWaveSetCommands) target).setValueMessage(value), target, endpoint);
+		if (message != null)
+			messages.add(message);
+	}
+
+	@Override
+	public String toString() {
+		return "set " + nodeId + (endpoint != 0 ? "." + endpoint : "") + " " + commandClass.getLabel() + " " + value;
+	}
+}
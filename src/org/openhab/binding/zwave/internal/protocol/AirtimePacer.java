@@ -0,0 +1,203 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.internal.protocol;
+
+/**
+ * Airtime pacer. Estimates the time a frame occupies the radio channel from
+ * its payload length and the link speed of the destination node, and charges
+ * that airtime against a global token bucket and a token bucket for the
+ * node. When a bucket runs dry, the sender has to wait until it has been
+ * refilled.
+ * The refill rate of a bucket is the share of airtime it may use. The rate
+ * is adjusted by additive increase on every completed transaction and
+ * multiplicative decrease on every CAN or NAK from the controller.
+ * @author Woodrow Barlow
+ */
+public class AirtimePacer {
+
+	private static final int MAX_NODES = 256;
+
+	private static final int MAC_HEADER_LENGTH = 10;	// SOF, home id, source, frame control, length, destination
+	private static final int ACK_TURNAROUND_TIME = 1000;	// microseconds between a frame and its acknowledgement
+
+	private static final int GLOBAL_INITIAL_RATE = 500;	// parts per thousand of airtime
+	private static final int GLOBAL_MIN_RATE = 50;
+	private static final int GLOBAL_MAX_RATE = 800;
+	private static final long GLOBAL_BURST = 250000;	// microseconds of airtime
+
+	private static final int NODE_INITIAL_RATE = 300;
+	private static final int NODE_MIN_RATE = 20;
+	private static final int NODE_MAX_RATE = 600;
+	private static final long NODE_BURST = 100000;
+
+	private static final int RATE_INCREASE = 10;
+
+	private final TokenBucket globalBucket = new TokenBucket(GLOBAL_INITIAL_RATE, GLOBAL_MIN_RATE, GLOBAL_MAX_RATE, GLOBAL_BURST);
+	private final TokenBucket[] nodeBuckets = new TokenBucket[MAX_NODES];
+
+	private long pacedFrameCount = 0;
+	private long totalDelay = 0;
+	private long congestionCount = 0;
+
+	/**
+	 * Estimates the airtime of a frame and its acknowledgement.
+	 * @param payloadLength the length of the frame payload in bytes.
+	 * @param baudRate the link speed in bit/s (9600, 40000 or 100000).
+	 * @return the estimated airtime in microseconds.
+	 */
+	public static long estimateAirtime(int payloadLength, int baudRate) {
+		if (baudRate <= 0)
+			baudRate = 9600;
+		return frameAirtime(payloadLength, baudRate) + ACK_TURNAROUND_TIME + frameAirtime(0, baudRate);
+	}
+
+	private static long frameAirtime(int payloadLength, int baudRate) {
+		int preambleLength = baudRate >= 100000 ? 40 : (baudRate >= 40000 ? 20 : 10);
+		int checksumLength = baudRate >= 100000 ? 2 : 1;
+		long bits = (preambleLength + MAC_HEADER_LENGTH + payloadLength + checksumLength) * 8L;
+		return bits * 1000000L / baudRate;
+	}
+
+	/**
+	 * Charges the airtime of a frame to the global bucket and the bucket of
+	 * the destination node.
+	 * @param nodeId the destination node.
+	 * @param airtime the airtime of the frame in microseconds.
+	 * @return the time in milliseconds the sender has to wait before sending the frame.
+	 */
+	public synchronized long reserve(int nodeId, long airtime) {
+		long now = System.nanoTime();
+		long delay = globalBucket.charge(airtime, now);
+		TokenBucket nodeBucket = getNodeBucket(nodeId);
+		if (nodeBucket != null)
+			delay = Math.max(delay, nodeBucket.charge(airtime, now));
+
+		if (delay > 0) {
+			pacedFrameCount++;
+			totalDelay += delay;
+		}
+		return delay;
+	}
+
+	/**
+	 * Signals that a transaction completed. The airtime share of the global
+	 * bucket and the node's bucket is increased.
+	 * @param nodeId the node the transaction was for.
+	 */
+	public synchronized void onSuccess(int nodeId) {
+		globalBucket.increase();
+		TokenBucket nodeBucket = getNodeBucket(nodeId);
+		if (nodeBucket != null)
+			nodeBucket.increase();
+	}
+
+	/**
+	 * Signals that the controller answered with a CAN or a NAK. The airtime
+	 * share of the global bucket and the node's bucket is halved.
+	 * @param nodeId the node the frame was for, or 0 if it was not a frame for a node.
+	 */
+	public synchronized void onCongestion(int nodeId) {
+		congestionCount++;
+		globalBucket.decrease();
+		TokenBucket nodeBucket = getNodeBucket(nodeId);
+		if (nodeBucket != null)
+			nodeBucket.decrease();
+	}
+
+	private TokenBucket getNodeBucket(int nodeId) {
+		if (nodeId <= 0 || nodeId >= 255)
+			return null;
+		if (nodeBuckets[nodeId] == null)
+			nodeBuckets[nodeId] = new TokenBucket(NODE_INITIAL_RATE, NODE_MIN_RATE, NODE_MAX_RATE, NODE_BURST);
+		return nodeBuckets[nodeId];
+	}
+
+	/**
+	 * Gets the share of airtime currently allowed by the global bucket.
+	 * @return the airtime share in parts per thousand.
+	 */
+	public synchronized int getGlobalRate() {
+		return globalBucket.rate;
+	}
+
+	/**
+	 * Gets the share of airtime currently allowed for a node.
+	 * @param nodeId the node
+	 * @return the airtime share in parts per thousand.
+	 */
+	public synchronized int getNodeRate(int nodeId) {
+		TokenBucket nodeBucket = getNodeBucket(nodeId);
+		return nodeBucket == null ? 0 : nodeBucket.rate;
+	}
+
+	/**
+	 * Gets the number of frames that were delayed by pacing.
+	 * @return the paced frame count
+	 */
+	public synchronized long getPacedFrameCount() {
+		return pacedFrameCount;
+	}
+
+	/**
+	 * Gets the total time frames were delayed by pacing.
+	 * @return the total delay in milliseconds.
+	 */
+	public synchronized long getTotalDelay() {
+		return totalDelay;
+	}
+
+	/**
+	 * Gets the number of CANs and NAKs that lowered the pacing rate.
+	 * @return the congestion count
+	 */
+	public synchronized long getCongestionCount() {
+		return congestionCount;
+	}
+
+	/**
+	 * Token bucket holding microseconds of airtime. The bucket may go into
+	 * debt; the debt determines how long the sender has to wait.
+	 * @author Woodrow Barlow
+	 */
+	private static class TokenBucket {
+		private final int minRate;
+		private final int maxRate;
+		private final long burst;
+
+		private int rate;		// parts per thousand, which equals microseconds of airtime per millisecond
+		private long tokens;
+		private long lastRefill;
+
+		private TokenBucket(int rate, int minRate, int maxRate, long burst) {
+			this.rate = rate;
+			this.minRate = minRate;
+			this.maxRate = maxRate;
+			this.burst = burst;
+			this.tokens = burst;
+			this.lastRefill = System.nanoTime();
+		}
+
+		private long charge(long airtime, long now) {
+			tokens = Math.min(burst, tokens + (now - lastRefill) * rate / 1000000L);
+			lastRefill = now;
+			tokens -= airtime;
+			if (tokens >= 0)
+				return 0;
+			return (-tokens + rate - 1) / rate;
+		}
+
+		private void increase() {
+			rate = Math.min(maxRate, rate + RATE_INCREASE);
+		}
+
+		private void decrease() {
+			rate = Math.max(minRate, rate / 2);
+		}
+	}
+}
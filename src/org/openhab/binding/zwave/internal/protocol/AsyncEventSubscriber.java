@@ -0,0 +1,305 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.internal.protocol;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+import org.openhab.binding.zwave.internal.protocol.event.ZWaveCommandClassValueEvent;
+import org.openhab.binding.zwave.internal.protocol.event.ZWaveEvent;
+
+import me.wbarlow.zwavemanagement.logging.Logger;
+import me.wbarlow.zwavemanagement.logging.LoggerFactory;
+
+/**
+ * Asynchronous event subscriber. Events published to the subscriber are put
+ * in a bounded queue and delivered to the listener by a dispatcher thread of
+ * its own, so a slow listener doesn't hold up the thread that published the
+ * event. What happens when the queue is full is decided by the overflow
+ * policy of the subscriber.
+ * @author Woodrow Barlow
+ */
+public class AsyncEventSubscriber implements ZWaveEventListener {
+
+	private static final Logger logger = LoggerFactory.getLogger(AsyncEventSubscriber.class);
+
+	/**
+	 * What to do with an event when the queue of the subscriber is full.
+	 * @author Woodrow Barlow
+	 */
+	public enum OverflowPolicy {
+		Block,		// the publisher waits until there is room in the queue
+		DropOldest,	// the oldest queued event is dropped
+		Coalesce	// a queued value event for the same value is replaced; otherwise the oldest is dropped
+	}
+
+	private final ZWaveEventListener listener;
+	private final String name;
+	private final int capacity;
+	private final OverflowPolicy policy;
+
+	private final LinkedList<PendingEvent> queue = new LinkedList<PendingEvent>();
+	private final Map<Long, PendingEvent> pendingByKey = new LinkedHashMap<Long, PendingEvent>();
+	private Thread dispatcher;
+	private boolean stopped = false;
+
+	private long deliveredCount = 0;
+	private long droppedCount = 0;
+	private long coalescedCount = 0;
+	private long blockedCount = 0;
+	private long totalLag = 0;
+	private long maxLag = 0;
+
+	/**
+	 * Constructor. Creates a new instance of the AsyncEventSubscriber class.
+	 * The dispatcher thread is started when the first event is published.
+	 * @param listener the listener to deliver the events to.
+	 * @param capacity the maximum number of queued events.
+	 * @param policy what to do with an event when the queue is full.
+	 */
+	public AsyncEventSubscriber(ZWaveEventListener listener, int capacity, OverflowPolicy policy) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("Capacity must be at least 1");
+		this.listener = listener;
+		this.name = listener.getClass().getSimpleName();
+		this.capacity = capacity;
+		this.policy = policy;
+	}
+
+	/**
+	 * Queues an event for delivery to the listener.
+	 * @param event the event
+	 */
+	public void ZWaveIncomingEvent(ZWaveEvent event) {
+		PendingEvent pending = new PendingEvent(event);
+		synchronized (this) {
+			if (stopped)
+				return;
+			startDispatcher();
+
+			if (queue.size() >= capacity && pending.key != null) {
+				PendingEvent queued = pendingByKey.get(pending.key);
+				if (queued != null) {
+					// Keep the place in the queue, but deliver the latest value.
+					queued.event = event;
+					coalescedCount++;
+					return;
+				}
+			}
+
+			if (queue.size() >= capacity) {
+				if (policy == OverflowPolicy.Block && Thread.currentThread() != dispatcher) {
+					blockedCount++;
+					while (queue.size() >= capacity && !stopped) {
+						try {
+							wait();
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+							break;
+						}
+					}
+				}
+				if (queue.size() >= capacity && policy != OverflowPolicy.Block) {
+					forget(queue.removeFirst());
+					droppedCount++;
+				}
+				if (stopped)
+					return;
+			}
+
+			queue.addLast(pending);
+			if (pending.key != null)
+				pendingByKey.put(pending.key, pending);
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Removes an event that left the queue from the coalescing index, unless
+	 * a later event for the same value is indexed.
+	 */
+	private void forget(PendingEvent pending) {
+		if (pending.key != null && pendingByKey.get(pending.key) == pending)
+			pendingByKey.remove(pending.key);
+	}
+
+	private void startDispatcher() {
+		if (dispatcher != null)
+			return;
+		dispatcher = new Thread("ZWaveEventDispatcher-" + name) {
+			@Override
+			public void run() {
+				dispatch();
+			}
+		};
+		dispatcher.setDaemon(true);
+		dispatcher.start();
+	}
+
+	private void dispatch() {
+		while (true) {
+			PendingEvent pending;
+			synchronized (this) {
+				while (queue.isEmpty() && !stopped) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				if (stopped)
+					return;
+				pending = queue.removeFirst();
+				forget(pending);
+				notifyAll();
+			}
+
+			long lag = System.currentTimeMillis() - pending.queueTime;
+			try {
+				listener.ZWaveIncomingEvent(pending.event);
+			} catch (RuntimeException e) {
+				logger.error("Event listener {} failed on {}.", name, pending.event.getClass().getSimpleName(), e);
+			}
+
+			synchronized (this) {
+				deliveredCount++;
+				totalLag += lag;
+				if (lag > maxLag)
+					maxLag = lag;
+			}
+		}
+	}
+
+	/**
+	 * Stops the dispatcher thread. Queued events are discarded.
+	 */
+	public synchronized void stop() {
+		stopped = true;
+		queue.clear();
+		pendingByKey.clear();
+		notifyAll();
+	}
+
+	/**
+	 * Gets the listener the events are delivered to.
+	 * @return the listener
+	 */
+	public ZWaveEventListener getListener() {
+		return listener;
+	}
+
+	/**
+	 * Gets the name of the subscriber, for display.
+	 * @return the name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Gets the overflow policy.
+	 * @return the overflow policy
+	 */
+	public OverflowPolicy getPolicy() {
+		return policy;
+	}
+
+	/**
+	 * Gets the queue capacity.
+	 * @return the capacity
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Gets the number of queued events.
+	 * @return the queue size
+	 */
+	public synchronized int size() {
+		return queue.size();
+	}
+
+	/**
+	 * Gets the time the oldest queued event has been waiting.
+	 * @return the current lag in milliseconds.
+	 */
+	public synchronized long getLag() {
+		if (queue.isEmpty())
+			return 0;
+		return System.currentTimeMillis() - queue.getFirst().queueTime;
+	}
+
+	/**
+	 * Gets the longest time an event waited before it was delivered.
+	 * @return the maximum lag in milliseconds.
+	 */
+	public synchronized long getMaxLag() {
+		return maxLag;
+	}
+
+	/**
+	 * Gets the average time events waited before they were delivered.
+	 * @return the average lag in milliseconds.
+	 */
+	public synchronized long getAverageLag() {
+		return deliveredCount == 0 ? 0 : totalLag / deliveredCount;
+	}
+
+	/**
+	 * Gets the number of delivered events.
+	 * @return the delivered count
+	 */
+	public synchronized long getDeliveredCount() {
+		return deliveredCount;
+	}
+
+	/**
+	 * Gets the number of events dropped because the queue was full.
+	 * @return the dropped count
+	 */
+	public synchronized long getDroppedCount() {
+		return droppedCount;
+	}
+
+	/**
+	 * Gets the number of value events that replaced a queued event for the same value.
+	 * @return the coalesced count
+	 */
+	public synchronized long getCoalescedCount() {
+		return coalescedCount;
+	}
+
+	/**
+	 * Gets the number of times a publisher had to wait for room in the queue.
+	 * @return the blocked count
+	 */
+	public synchronized long getBlockedCount() {
+		return blockedCount;
+	}
+
+	/**
+	 * An event waiting in the queue.
+	 * @author Woodrow Barlow
+	 */
+	private class PendingEvent {
+		private ZWaveEvent event;
+		private final Long key;
+		private final long queueTime = System.currentTimeMillis();
+
+		private PendingEvent(ZWaveEvent event) {
+			this.event = event;
+			// Only value events are coalesced; every status and network
+			// event is a transition of its own.
+			this.key = policy == OverflowPolicy.Coalesce && event instanceof ZWaveCommandClassValueEvent ?
+					Long.valueOf(ValueEventCoalescer.getValueKey((ZWaveCommandClassValueEvent) event)) : null;
+		}
+	}
+}
@@ -0,0 +1,451 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.internal.protocol;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Properties;
+
+import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveCommandClass.CommandClass;
+import org.openhab.binding.zwave.internal.protocol.event.ZWaveCommandClassValueEvent;
+import org.openhab.binding.zwave.internal.protocol.event.ZWaveEvent;
+import org.openhab.binding.zwave.internal.protocol.event.ZWaveInclusionEvent;
+import org.openhab.binding.zwave.internal.protocol.event.ZWaveNetworkEvent;
+import org.openhab.binding.zwave.internal.protocol.event.ZWaveNodeStatusEvent;
+
+import me.wbarlow.zwavemanagement.logging.Logger;
+import me.wbarlow.zwavemanagement.logging.LoggerFactory;
+
+/**
+ * Append-only journal of Z-Wave events. Events are written to memory-mapped
+ * segment files in a directory; when a segment is full a new one is started
+ * and the oldest segments beyond the retention limit are deleted. Every
+ * record has an offset, one higher than the record before it. A consumer
+ * that restarts reads on from the offset it committed, which is a
+ * sequential file read instead of polling the network again.
+ * <p>
+ * A record is a length followed by the record itself. The length is written
+ * last, so a record that was cut off by a crash is never read; a length of
+ * zero marks the end of a segment.
+ * @author Woodrow Barlow
+ */
+public class EventJournal {
+
+	private static final Logger logger = LoggerFactory.getLogger(EventJournal.class);
+
+	private static final String SEGMENT_PREFIX = "events-";
+	private static final String SEGMENT_SUFFIX = ".journal";
+	private static final String CONSUMERS_FILE = "consumers.properties";
+
+	private static final int MAX_TEXT_LENGTH = 256;	// bytes
+
+	private static final byte VALUE_NONE = 0;
+	private static final byte VALUE_FIXED_POINT = 1;
+	private static final byte VALUE_TEXT = 2;
+
+	private final File directory;
+	private final int segmentSize;
+	private final int maxSegments;
+
+	private final LinkedList<Segment> segments = new LinkedList<Segment>();
+	private MappedByteBuffer buffer;	// of the last segment
+	private long nextOffset;
+	private final Properties consumerOffsets = new Properties();
+
+	/**
+	 * Constructor. Opens the journal in a directory, continuing after the
+	 * last complete record of an existing journal.
+	 * @param directory the directory of the segment files.
+	 * @param segmentSize the size of a segment file in bytes.
+	 * @param maxSegments the number of segments to keep.
+	 * @throws IOException when the journal can't be opened.
+	 */
+	public EventJournal(File directory, int segmentSize, int maxSegments) throws IOException {
+		if (maxSegments < 1)
+			throw new IllegalArgumentException("At least one segment must be kept");
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.maxSegments = maxSegments;
+
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("Could not create journal directory " + directory);
+
+		loadSegments();
+		loadConsumerOffsets();
+
+		if (segments.isEmpty()) {
+			startSegment(0);
+		} else {
+			Segment last = segments.getLast();
+			buffer = map(last.file, FileChannel.MapMode.READ_WRITE);
+			nextOffset = recover(buffer, last.firstOffset);
+		}
+		logger.info("Opened event journal in {}, {} segments, next offset {}", directory, segments.size(), nextOffset);
+	}
+
+	private void loadSegments() {
+		String[] names = directory.list();
+		if (names == null)
+			return;
+		Arrays.sort(names);	// the offsets are zero padded, so this is offset order
+		for (String name : names) {
+			if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX))
+				continue;
+			try {
+				long firstOffset = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+				segments.add(new Segment(new File(directory, name), firstOffset));
+			} catch (NumberFormatException e) {
+				logger.warn("Ignoring journal file {}", name);
+			}
+		}
+	}
+
+	/**
+	 * Finds the end of the records in a segment and positions the buffer there.
+	 * @return the offset of the next record.
+	 */
+	private static long recover(MappedByteBuffer buffer, long firstOffset) {
+		long offset = firstOffset;
+		int position = 0;
+		while (position + 4 <= buffer.capacity()) {
+			int length = buffer.getInt(position);
+			if (length <= 0 || position + 4 + length > buffer.capacity())
+				break;
+			offset = buffer.getLong(position + 4) + 1;
+			position += 4 + length;
+		}
+		buffer.position(position);
+		return offset;
+	}
+
+	private void startSegment(long firstOffset) throws IOException {
+		if (buffer != null)
+			buffer.force();
+
+		File file = new File(directory, String.format("%s%020d%s", SEGMENT_PREFIX, firstOffset, SEGMENT_SUFFIX));
+		buffer = map(file, FileChannel.MapMode.READ_WRITE);
+		buffer.position(0);
+		segments.add(new Segment(file, firstOffset));
+		nextOffset = firstOffset;
+
+		while (segments.size() > maxSegments) {
+			Segment oldest = segments.removeFirst();
+			if (!oldest.file.delete())
+				logger.warn("Could not delete journal segment {}", oldest.file);
+		}
+	}
+
+	private MappedByteBuffer map(File file, FileChannel.MapMode mode) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, mode == FileChannel.MapMode.READ_ONLY ? "r" : "rw");
+		try {
+			long size = mode == FileChannel.MapMode.READ_ONLY ? raf.length() : segmentSize;
+			// The mapping stays valid after the channel is closed.
+			return raf.getChannel().map(mode, 0, size);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Appends an event to the journal.
+	 * @param event the event
+	 * @return the offset of the record, or -1 if the event could not be journaled.
+	 */
+	public synchronized long append(ZWaveEvent event) {
+		if (buffer == null)
+			return -1;
+
+		byte[] eventType = encode(event.getClass().getSimpleName());
+		CommandClass commandClass = null;
+		byte valueKind = VALUE_NONE;
+		long fixedPointValue = 0;
+		byte[] text = null;
+
+		if (event instanceof ZWaveCommandClassValueEvent) {
+			ZWaveCommandClassValueEvent valueEvent = (ZWaveCommandClassValueEvent) event;
+			commandClass = valueEvent.getCommandClass();
+			if (valueEvent.isFixedPoint()) {
+				valueKind = VALUE_FIXED_POINT;
+				fixedPointValue = valueEvent.getFixedPointValue();
+			} else if (valueEvent.getValue() != null) {
+				valueKind = VALUE_TEXT;
+				text = encode(valueEvent.getValue().toString());
+			}
+		} else {
+			String state = getState(event);
+			if (state != null) {
+				valueKind = VALUE_TEXT;
+				text = encode(state);
+			}
+		}
+
+		// offset, time, node, endpoint, command class, value kind, value, event type
+		int length = 8 + 8 + 2 + 1 + 2 + 1 + (valueKind == VALUE_FIXED_POINT ? 8 : 0)
+				+ (text != null ? 2 + text.length : 0) + 2 + eventType.length;
+		if (4 + length > segmentSize) {
+			logger.warn("NODE {}: Event too large for the journal.", event.getNodeId());
+			return -1;
+		}
+
+		try {
+			if (buffer.remaining() < 4 + length)
+				startSegment(nextOffset);
+		} catch (IOException e) {
+			logger.error("Could not start a new journal segment.", e);
+			buffer = null;
+			return -1;
+		}
+
+		long offset = nextOffset++;
+		int start = buffer.position();
+		buffer.position(start + 4);
+		buffer.putLong(offset);
+		buffer.putLong(System.currentTimeMillis());
+		buffer.putShort((short) event.getNodeId());
+		buffer.put((byte) event.getEndpoint());
+		buffer.putShort((short) (commandClass == null ? -1 : commandClass.getKey()));
+		buffer.put(valueKind);
+		if (valueKind == VALUE_FIXED_POINT)
+			buffer.putLong(fixedPointValue);
+		if (text != null)
+			putBytes(buffer, text);
+		putBytes(buffer, eventType);
+		// The length goes in last; until then the record doesn't exist.
+		buffer.putInt(start, length);
+		return offset;
+	}
+
+	private static String getState(ZWaveEvent event) {
+		if (event instanceof ZWaveNodeStatusEvent)
+			return ((ZWaveNodeStatusEvent) event).getState().toString();
+		if (event instanceof ZWaveNetworkEvent)
+			return ((ZWaveNetworkEvent) event).getEvent() + " " + ((ZWaveNetworkEvent) event).getState();
+		if (event instanceof ZWaveInclusionEvent)
+			return ((ZWaveInclusionEvent) event).getEvent().toString();
+		return null;
+	}
+
+	/**
+	 * Reads records from the journal, starting at an offset. Records that
+	 * were removed by retention are skipped, so the first record returned
+	 * can have a higher offset than asked for.
+	 * @param offset the offset of the first record to read.
+	 * @param maxRecords the maximum number of records to read.
+	 * @return the records, in offset order.
+	 * @throws IOException when a segment can't be read.
+	 */
+	public List<EventJournalRecord> read(long offset, int maxRecords) throws IOException {
+		List<Segment> snapshot;
+		File activeFile;
+		int activeLimit;
+		synchronized (this) {
+			snapshot = new ArrayList<Segment>(segments);
+			activeFile = segments.getLast().file;
+			activeLimit = buffer == null ? segmentSize : buffer.position();
+		}
+
+		List<EventJournalRecord> records = new ArrayList<EventJournalRecord>();
+		for (int i = 0; i < snapshot.size() && records.size() < maxRecords; i++) {
+			Segment segment = snapshot.get(i);
+			// Skip the segment if the next one starts at or before the offset.
+			if (i + 1 < snapshot.size() && snapshot.get(i + 1).firstOffset <= offset)
+				continue;
+
+			MappedByteBuffer segmentBuffer;
+			try {
+				segmentBuffer = map(segment.file, FileChannel.MapMode.READ_ONLY);
+			} catch (IOException e) {
+				if (!segment.file.exists())
+					continue;	// removed by retention while we were reading
+				throw e;
+			}
+
+			int limit = segment.file.equals(activeFile) ? activeLimit : segmentBuffer.capacity();
+			readSegment(segmentBuffer, limit, offset, maxRecords, records);
+		}
+		return records;
+	}
+
+	private static void readSegment(MappedByteBuffer segmentBuffer, int limit, long offset, int maxRecords,
+			List<EventJournalRecord> records) {
+		int position = 0;
+		while (position + 4 <= limit && records.size() < maxRecords) {
+			int length = segmentBuffer.getInt(position);
+			if (length <= 0 || position + 4 + length > limit)
+				break;
+
+			segmentBuffer.position(position + 4);
+			long recordOffset = segmentBuffer.getLong();
+			if (recordOffset >= offset) {
+				long timestamp = segmentBuffer.getLong();
+				int nodeId = segmentBuffer.getShort();
+				int endpoint = segmentBuffer.get() & 0xFF;
+				int commandClassKey = segmentBuffer.getShort();
+				byte valueKind = segmentBuffer.get();
+				long fixedPointValue = valueKind == VALUE_FIXED_POINT ? segmentBuffer.getLong() : 0;
+				String text = valueKind == VALUE_TEXT ? getString(segmentBuffer) : null;
+				String eventType = getString(segmentBuffer);
+				CommandClass commandClass = commandClassKey < 0 ? null : CommandClass.getCommandClass(commandClassKey);
+				records.add(new EventJournalRecord(recordOffset, timestamp, eventType, nodeId, endpoint,
+						commandClass, valueKind == VALUE_FIXED_POINT, fixedPointValue, text));
+			}
+			position += 4 + length;
+		}
+	}
+
+	private static byte[] encode(String s) {
+		try {
+			byte[] bytes = s.getBytes("UTF-8");
+			if (bytes.length <= MAX_TEXT_LENGTH)
+				return bytes;
+			byte[] truncated = new byte[MAX_TEXT_LENGTH];
+			System.arraycopy(bytes, 0, truncated, 0, MAX_TEXT_LENGTH);
+			return truncated;
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+		buffer.putShort((short) bytes.length);
+		buffer.put(bytes);
+	}
+
+	private static String getString(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getShort()];
+		buffer.get(bytes);
+		try {
+			return new String(bytes, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private void loadConsumerOffsets() {
+		File file = new File(directory, CONSUMERS_FILE);
+		if (!file.exists())
+			return;
+		try {
+			FileInputStream in = new FileInputStream(file);
+			try {
+				consumerOffsets.load(in);
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			logger.error("Could not read the journal consumer offsets.", e);
+		}
+	}
+
+	/**
+	 * Stores the offset a consumer should continue reading at.
+	 * @param consumer the name of the consumer.
+	 * @param offset the offset of the next record the consumer wants.
+	 * @throws IOException when the offset can't be stored.
+	 */
+	public synchronized void commitOffset(String consumer, long offset) throws IOException {
+		consumerOffsets.setProperty(consumer, Long.toString(offset));
+		File file = new File(directory, CONSUMERS_FILE + ".tmp");
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			consumerOffsets.store(out, "Z-Wave event journal consumer offsets");
+			out.getFD().sync();
+		} finally {
+			out.close();
+		}
+		if (!file.renameTo(new File(directory, CONSUMERS_FILE)))
+			throw new IOException("Could not store the journal consumer offsets");
+	}
+
+	/**
+	 * Gets the offset a consumer committed.
+	 * @param consumer the name of the consumer.
+	 * @return the committed offset, or the first offset in the journal if
+	 * the consumer never committed one.
+	 */
+	public synchronized long getCommittedOffset(String consumer) {
+		String offset = consumerOffsets.getProperty(consumer);
+		if (offset != null) {
+			try {
+				return Long.parseLong(offset);
+			} catch (NumberFormatException e) {
+				logger.warn("Invalid journal offset {} for consumer {}", offset, consumer);
+			}
+		}
+		return getFirstOffset();
+	}
+
+	/**
+	 * Gets the offset of the oldest record that is kept.
+	 * @return the first offset
+	 */
+	public synchronized long getFirstOffset() {
+		return segments.getFirst().firstOffset;
+	}
+
+	/**
+	 * Gets the offset the next record will get.
+	 * @return the next offset
+	 */
+	public synchronized long getNextOffset() {
+		return nextOffset;
+	}
+
+	/**
+	 * Gets the number of segment files.
+	 * @return the segment count
+	 */
+	public synchronized int getSegmentCount() {
+		return segments.size();
+	}
+
+	/**
+	 * Gets the directory of the journal.
+	 * @return the directory
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Flushes the journal to disk and stops appending.
+	 */
+	public synchronized void close() {
+		if (buffer == null)
+			return;
+		buffer.force();
+		buffer = null;
+		logger.info("Closed event journal, next offset {}", nextOffset);
+	}
+
+	/**
+	 * A segment file and the offset of its first record.
+	 * @author Woodrow Barlow
+	 */
+	private static class Segment {
+		private final File file;
+		private final long firstOffset;
+
+		private Segment(File file, long firstOffset) {
+			this.file = file;
+			this.firstOffset = firstOffset;
+		}
+	}
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.internal.protocol;
+
+import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveCommandClass.CommandClass;
+
+/**
+ * An event as it was stored in the {@link EventJournal}. Holds what a
+ * consumer needs to catch up: the type of event, the node, endpoint and
+ * command class it came from and its value or state.
+ * @author Woodrow Barlow
+ */
+public class EventJournalRecord {
+
+	private final long offset;
+	private final long timestamp;
+	private final String eventType;
+	private final int nodeId;
+	private final int endpoint;
+	private final CommandClass commandClass;
+	private final boolean fixedPoint;
+	private final long fixedPointValue;
+	private final String text;
+
+	/**
+	 * Constructor. Creates a new instance of the EventJournalRecord class.
+	 * @param offset the offset of the record in the journal.
+	 * @param timestamp the time the event was journaled.
+	 * @param eventType the simple class name of the event.
+	 * @param nodeId the node of the event.
+	 * @param endpoint the endpoint of the event.
+	 * @param commandClass the command class of a value event, or null.
+	 * @param fixedPoint true if the value is a {@link FixedPoint} value.
+	 * @param fixedPointValue the {@link FixedPoint} value.
+	 * @param text the value or state of the event as text, or null.
+	 */
+	EventJournalRecord(long offset, long timestamp, String eventType, int nodeId, int endpoint,
+			CommandClass commandClass, boolean fixedPoint, long fixedPointValue, String text) {
+		this.offset = offset;
+		this.timestamp = timestamp;
+		this.eventType = eventType;
+		this.nodeId = nodeId;
+		this.endpoint = endpoint;
+		this.commandClass = commandClass;
+		this.fixedPoint = fixedPoint;
+		this.fixedPointValue = fixedPointValue;
+		this.text = text;
+	}
+
+	/**
+	 * Gets the offset of the record. The next record has the next offset.
+	 * @return the offset
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
+	/**
+	 * Gets the time the event was journaled.
+	 * @return the time in milliseconds since the epoch.
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * Gets the simple class name of the event, i.e. ZWaveMeterValueEvent.
+	 * @return the event type
+	 */
+	public String getEventType() {
+		return eventType;
+	}
+
+	/**
+	 * Gets the node of the event.
+	 * @return the node id
+	 */
+	public int getNodeId() {
+		return nodeId;
+	}
+
+	/**
+	 * Gets the endpoint of the event.
+	 * @return the endpoint
+	 */
+	public int getEndpoint() {
+		return endpoint;
+	}
+
+	/**
+	 * Gets the command class of a value event.
+	 * @return the command class, or null if the event is not a value event.
+	 */
+	public CommandClass getCommandClass() {
+		return commandClass;
+	}
+
+	/**
+	 * Gets whether the record holds a decimal value.
+	 * @return true if {@link #getFixedPointValue()} holds the value.
+	 */
+	public boolean isFixedPoint() {
+		return fixedPoint;
+	}
+
+	/**
+	 * Gets the decimal value of the event.
+	 * @return the {@link FixedPoint} value
+	 */
+	public long getFixedPointValue() {
+		return fixedPointValue;
+	}
+
+	/**
+	 * Gets the value or state of the event as text.
+	 * @return the text, or null if the event has none.
+	 */
+	public String getText() {
+		return text;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder s = new StringBuilder();
+		s.append(offset).append(' ').append(eventType).append(" node ").append(nodeId);
+		if (endpoint != 0)
+			s.append(" endpoint ").append(endpoint);
+		if (commandClass != null)
+			s.append(' ').append(commandClass.getLabel());
+		if (fixedPoint)
+			s.append(" = ").append(FixedPoint.toString(fixedPointValue));
+		else if (text != null)
+			s.append(" = ").append(text);
+		return s.toString();
+	}
+}
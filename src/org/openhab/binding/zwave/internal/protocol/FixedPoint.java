@@ -0,0 +1,130 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.internal.protocol;
+
+import java.math.BigDecimal;
+
+/**
+ * Fixed-point decimal values as Z-Wave encodes them: a signed mantissa of
+ * at most 32 bits and a precision of 0 to 7 decimal places. A value is
+ * packed in a single long, the mantissa in the upper bits and the precision
+ * in the lowest three, so it can be decoded, compared and passed around
+ * without allocating. A BigDecimal is only created when it is asked for.
+ * @author Woodrow Barlow
+ */
+public final class FixedPoint {
+
+	/**
+	 * The largest precision Z-Wave can encode.
+	 */
+	public static final int MAX_PRECISION = 7;
+
+	private static final int PRECISION_BITS = 3;
+	private static final long PRECISION_MASK = 0x07;
+
+	private static final long[] POWERS_OF_TEN = { 1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L };
+
+	private FixedPoint() {
+	}
+
+	/**
+	 * Packs a mantissa and a precision into a fixed-point value.
+	 * @param unscaledValue the mantissa, i.e. 225 for 22.5
+	 * @param precision the number of decimal places, i.e. 1 for 22.5
+	 * @return the fixed-point value
+	 * @throws ArithmeticException when the mantissa doesn't fit in 32 bits
+	 * or the precision is out of range.
+	 */
+	public static long valueOf(long unscaledValue, int precision) throws ArithmeticException {
+		if (unscaledValue < Integer.MIN_VALUE || unscaledValue > Integer.MAX_VALUE)
+			throw new ArithmeticException("Value out of range: " + unscaledValue);
+		if (precision < 0 || precision > MAX_PRECISION)
+			throw new ArithmeticException("Precision out of range: " + precision);
+		return (unscaledValue << PRECISION_BITS) | precision;
+	}
+
+	/**
+	 * Converts a decimal value to a fixed-point value.
+	 * @param value the decimal value
+	 * @return the fixed-point value
+	 * @throws ArithmeticException when the value can't be encoded without
+	 * losing digits.
+	 */
+	public static long valueOf(BigDecimal value) throws ArithmeticException {
+		if (value.scale() > MAX_PRECISION)
+			value = value.stripTrailingZeros();
+		// 2E+1, also what 20.000000000 strips to.
+		if (value.scale() < 0)
+			value = value.setScale(0);
+		if (value.unscaledValue().bitLength() > 31)
+			throw new ArithmeticException("Value out of range: " + value);
+		return valueOf(value.unscaledValue().longValue(), value.scale());
+	}
+
+	/**
+	 * Gets the mantissa of a fixed-point value.
+	 * @param value the fixed-point value
+	 * @return the mantissa, i.e. 225 for 22.5
+	 */
+	public static long getUnscaledValue(long value) {
+		return value >> PRECISION_BITS;
+	}
+
+	/**
+	 * Gets the precision of a fixed-point value.
+	 * @param value the fixed-point value
+	 * @return the number of decimal places
+	 */
+	public static int getPrecision(long value) {
+		return (int) (value & PRECISION_MASK);
+	}
+
+	/**
+	 * Converts a fixed-point value to a double.
+	 * @param value the fixed-point value
+	 * @return the value as a double.
+	 */
+	public static double toDouble(long value) {
+		return (double) getUnscaledValue(value) / POWERS_OF_TEN[getPrecision(value)];
+	}
+
+	/**
+	 * Converts a fixed-point value to a BigDecimal.
+	 * @param value the fixed-point value
+	 * @return the value as a BigDecimal, with the precision as its scale.
+	 */
+	public static BigDecimal toBigDecimal(long value) {
+		return BigDecimal.valueOf(getUnscaledValue(value), getPrecision(value));
+	}
+
+	/**
+	 * Compares two fixed-point values numerically, so 21.5 and 21.50 are equal.
+	 * @param a the first value
+	 * @param b the second value
+	 * @return a negative number, zero or a positive number as the first value
+	 * is less than, equal to or greater than the second.
+	 */
+	public static int compare(long a, long b) {
+		int precisionA = getPrecision(a);
+		int precisionB = getPrecision(b);
+		// A 32 bit mantissa scaled by 10^7 still fits in a long.
+		long scaledA = getUnscaledValue(a) * POWERS_OF_TEN[Math.max(precisionA, precisionB) - precisionA];
+		long scaledB = getUnscaledValue(b) * POWERS_OF_TEN[Math.max(precisionA, precisionB) - precisionB];
+		return scaledA < scaledB ? -1 : (scaledA == scaledB ? 0 : 1);
+	}
+
+	/**
+	 * Formats a fixed-point value as a plain decimal string.
+	 * @param value the fixed-point value
+	 * @return the formatted value, i.e. "22.5"
+	 */
+	public static String toString(long value) {
+		return toBigDecimal(value).toPlainString();
+	}
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.internal.protocol;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe latency histogram with power-of-two buckets. Bucket 0 counts
+ * latencies below 1ms, bucket n counts latencies from 2^(n-1) up to 2^n ms,
+ * and the last bucket counts everything longer.
+ * @author Woodrow Barlow
+ */
+public class LatencyHistogram {
+
+	public static final int BUCKET_COUNT = 18;	// the last bucket starts at 2^16 ms, about 65 seconds
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+	/**
+	 * Records a latency.
+	 * @param latency the latency in milliseconds.
+	 */
+	public void record(long latency) {
+		buckets.incrementAndGet(getBucket(latency));
+	}
+
+	private static int getBucket(long latency) {
+		if (latency < 1)
+			return 0;
+		int bucket = 64 - Long.numberOfLeadingZeros(latency);
+		return Math.min(bucket, BUCKET_COUNT - 1);
+	}
+
+	/**
+	 * Gets the upper bound of a bucket.
+	 * @param bucket the bucket index
+	 * @return the upper bound in milliseconds, or Long.MAX_VALUE for the last bucket.
+	 */
+	public static long getUpperBound(int bucket) {
+		if (bucket >= BUCKET_COUNT - 1)
+			return Long.MAX_VALUE;
+		return 1L << bucket;
+	}
+
+	/**
+	 * Gets the number of latencies recorded in a bucket.
+	 * @param bucket the bucket index
+	 * @return the count
+	 */
+	public long getCount(int bucket) {
+		return buckets.get(bucket);
+	}
+
+	/**
+	 * Gets the number of latencies recorded.
+	 * @return the count
+	 */
+	public long getCount() {
+		long count = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++)
+			count += buckets.get(i);
+		return count;
+	}
+
+	/**
+	 * Gets an upper bound for a percentile of the recorded latencies.
+	 * @param percentile the percentile (0-100).
+	 * @return the upper bound of the bucket containing the percentile in
+	 * milliseconds, or 0 if nothing was recorded.
+	 */
+	public long getPercentile(int percentile) {
+		long[] counts = new long[BUCKET_COUNT];
+		long total = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			counts[i] = buckets.get(i);
+			total += counts[i];
+		}
+		if (total == 0)
+			return 0;
+
+		long threshold = (total * percentile + 99) / 100;
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += counts[i];
+			if (seen >= threshold)
+				return getUpperBound(i);
+		}
+		return Long.MAX_VALUE;
+	}
+
+	/**
+	 * Formats the non-empty buckets of the histogram.
+	 * @return the histogram as a string
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			long count = buckets.get(i);
+			if (count == 0)
+				continue;
+			if (sb.length() > 0)
+				sb.append(", ");
+			if (i == BUCKET_COUNT - 1)
+				sb.append(">=").append(1L << (i - 1));
+			else
+				sb.append('<').append(1L << i);
+			sb.append("ms: ").append(count);
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,224 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.internal.protocol;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import me.wbarlow.zwavemanagement.logging.Logger;
+import me.wbarlow.zwavemanagement.logging.LoggerFactory;
+
+/**
+ * Executes work for nodes on a small pool of worker threads. Every node has
+ * a mailbox; the work in a mailbox is executed in order and by one worker
+ * at a time, so the state of a node is only changed by one thread at a time
+ * while work for different nodes runs in parallel.
+ * Work is never dropped: a report in a mailbox can be the one that
+ * completes the transaction the send thread waits for. A mailbox grows
+ * past its usual depth when a node floods the network, and that's logged.
+ * @author Woodrow Barlow
+ */
+public class NodeMailboxExecutor {
+
+	private static final Logger logger = LoggerFactory.getLogger(NodeMailboxExecutor.class);
+
+	private static final int MAX_NODES = 256;
+	private static final int MAILBOX_WARNING_DEPTH = 32;	// pending work items per node before warning
+	private static final int BATCH_SIZE = 8;		// work items executed before yielding the worker
+
+	private final Mailbox[] mailboxes = new Mailbox[MAX_NODES];
+	private final int threadCount;
+	private ExecutorService executor;
+	private boolean shutdown = false;
+
+	private final AtomicLong executedCount = new AtomicLong(0);
+	private final AtomicLong overflowCount = new AtomicLong(0);
+	private final AtomicInteger maxDepth = new AtomicInteger(0);
+
+	/**
+	 * Constructor. Creates a new instance of the NodeMailboxExecutor class.
+	 * @param threadCount the number of worker threads.
+	 */
+	public NodeMailboxExecutor(int threadCount) {
+		this.threadCount = threadCount;
+	}
+
+	/**
+	 * Submits work for a node. The work is executed after all work that was
+	 * submitted for the node before. After {@link #shutdown()} the work is
+	 * discarded.
+	 * @param nodeId the node the work is for.
+	 * @param work the work to execute.
+	 */
+	public void submit(int nodeId, Runnable work) {
+		Mailbox mailbox = getMailbox(nodeId);
+		if (mailbox == null) {
+			logger.warn("NODE {}: Invalid node id, executing work on the calling thread.", nodeId);
+			work.run();
+			return;
+		}
+
+		mailbox.queue.offer(work);
+		int depth = mailbox.size.incrementAndGet();
+		if (depth == MAILBOX_WARNING_DEPTH + 1) {
+			overflowCount.incrementAndGet();
+			logger.warn("NODE {}: More than {} messages pending in the mailbox.", nodeId, MAILBOX_WARNING_DEPTH);
+		}
+		int max = maxDepth.get();
+		while (depth > max && !maxDepth.compareAndSet(max, depth))
+			max = maxDepth.get();
+		schedule(mailbox);
+	}
+
+	private synchronized Mailbox getMailbox(int nodeId) {
+		if (nodeId < 0 || nodeId >= MAX_NODES)
+			return null;
+		if (mailboxes[nodeId] == null)
+			mailboxes[nodeId] = new Mailbox(nodeId);
+		return mailboxes[nodeId];
+	}
+
+	private void schedule(Mailbox mailbox) {
+		if (!mailbox.scheduled.compareAndSet(false, true))
+			return;
+		try {
+			getExecutor().execute(mailbox);
+		} catch (RejectedExecutionException e) {
+			mailbox.scheduled.set(false);
+			mailbox.queue.clear();
+			mailbox.size.set(0);
+			logger.debug("NODE {}: Mailbox could not be scheduled, executor is shut down.", mailbox.nodeId);
+		}
+	}
+
+	private synchronized ExecutorService getExecutor() {
+		if (shutdown)
+			throw new RejectedExecutionException("Node executor is shut down");
+		if (executor == null) {
+			executor = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+				private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "ZWaveNodeWorker-" + threadNumber.getAndIncrement());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return executor;
+	}
+
+	/**
+	 * Stops the worker threads. Pending work, and work submitted later, is
+	 * discarded; no new workers are started.
+	 */
+	public void shutdown() {
+		ExecutorService stopped;
+		synchronized (this) {
+			shutdown = true;
+			stopped = executor;
+			executor = null;
+			for (Mailbox mailbox : mailboxes) {
+				if (mailbox == null)
+					continue;
+				mailbox.queue.clear();
+				mailbox.size.set(0);
+				mailbox.scheduled.set(false);
+			}
+		}
+		if (stopped != null)
+			stopped.shutdownNow();
+	}
+
+	/**
+	 * Gets the number of work items waiting in the mailbox of a node.
+	 * @param nodeId the node
+	 * @return the number of pending work items.
+	 */
+	public int getPendingCount(int nodeId) {
+		Mailbox mailbox = getMailbox(nodeId);
+		return mailbox == null ? 0 : mailbox.size.get();
+	}
+
+	/**
+	 * Gets the number of work items that were executed.
+	 * @return the executed count
+	 */
+	public long getExecutedCount() {
+		return executedCount.get();
+	}
+
+	/**
+	 * Gets the number of times a mailbox grew past its usual depth.
+	 * @return the overflow count
+	 */
+	public long getOverflowCount() {
+		return overflowCount.get();
+	}
+
+	/**
+	 * Gets the largest number of work items that were pending in one mailbox.
+	 * @return the maximum depth
+	 */
+	public int getMaxDepth() {
+		return maxDepth.get();
+	}
+
+	/**
+	 * Gets the number of worker threads.
+	 * @return the thread count
+	 */
+	public int getThreadCount() {
+		return threadCount;
+	}
+
+	/**
+	 * Mailbox of a node. Executes a batch of pending work when it is run,
+	 * and schedules itself again if more work is pending after the batch.
+	 * @author Woodrow Barlow
+	 */
+	private class Mailbox implements Runnable {
+		private final int nodeId;
+		private final ConcurrentLinkedQueue<Runnable> queue = new ConcurrentLinkedQueue<Runnable>();
+		private final AtomicInteger size = new AtomicInteger(0);
+		private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+		private Mailbox(int nodeId) {
+			this.nodeId = nodeId;
+		}
+
+		public void run() {
+			try {
+				for (int i = 0; i < BATCH_SIZE; i++) {
+					Runnable work = queue.poll();
+					if (work == null)
+						break;
+					size.decrementAndGet();
+					try {
+						work.run();
+					} catch (RuntimeException e) {
+						logger.error("NODE {}: Exception while processing message.", nodeId, e);
+					}
+					executedCount.incrementAndGet();
+				}
+			} finally {
+				scheduled.set(false);
+				// Work that arrived while the flag was still set has to be picked up here.
+				if (!queue.isEmpty())
+					schedule(this);
+			}
+		}
+	}
+}
@@ -8,9 +8,6 @@
  */
 package org.openhab.binding.zwave.internal.protocol;
 
-import java.util.HashMap;
-import java.util.Map;
-
 /**
  * Node Stage Enumeration. Represents the state the node
  * is in.
@@ -46,17 +43,16 @@ public enum NodeStage {
 	 * A mapping between the integer code and its corresponding
 	 * Node Stage to facilitate lookup by code.
 	 */
-	private static Map<Integer, NodeStage> codeToNodeStageMapping;
+	private static final NodeStage[] codeToNodeStageMapping = new NodeStage[256];
 	
 	private NodeStage (int s, String l) {
 		stage = s;
 		label = l;
 	}
 	
-	private static void initMapping() {
-		codeToNodeStageMapping = new HashMap<Integer, NodeStage>();
+	static {
 		for (NodeStage s : values()) {
-			codeToNodeStageMapping.put(s.stage, s);
+			codeToNodeStageMapping[s.stage] = s;
 		}
 	}
 	
@@ -83,11 +79,9 @@ public enum NodeStage {
 	 * @return enumeration value of the command class.
 	 */
 	public static NodeStage getNodeStage(int i) {
-		if (codeToNodeStageMapping == null) {
-			initMapping();
-		}
-		
-		return codeToNodeStageMapping.get(i);
+		if (i < 0 || i >= codeToNodeStageMapping.length)
+			return null;
+		return codeToNodeStageMapping[i];
 	}
 }
 
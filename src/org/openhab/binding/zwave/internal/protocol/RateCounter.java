@@ -0,0 +1,60 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.internal.protocol;
+
+/**
+ * Thread-safe event counter. Keeps the total number of events as well as
+ * the number of events per second for the last minute, so that the rate of
+ * events can be reported.
+ * @author Woodrow Barlow
+ */
+public class RateCounter {
+
+	private static final int WINDOW_SECONDS = 60;
+
+	private final long[] buckets = new long[WINDOW_SECONDS];
+	private final long[] bucketSeconds = new long[WINDOW_SECONDS];
+	private long count = 0;
+
+	/**
+	 * Counts an event.
+	 */
+	public synchronized void increment() {
+		long second = System.currentTimeMillis() / 1000;
+		int index = (int) (second % WINDOW_SECONDS);
+		if (bucketSeconds[index] != second) {
+			bucketSeconds[index] = second;
+			buckets[index] = 0;
+		}
+		buckets[index]++;
+		count++;
+	}
+
+	/**
+	 * Gets the total number of events.
+	 * @return the event count
+	 */
+	public synchronized long getCount() {
+		return count;
+	}
+
+	/**
+	 * Gets the number of events in the last minute.
+	 * @return the events per minute
+	 */
+	public synchronized long getRatePerMinute() {
+		long oldest = System.currentTimeMillis() / 1000 - WINDOW_SECONDS;
+		long total = 0;
+		for (int i = 0; i < WINDOW_SECONDS; i++) {
+			if (bucketSeconds[i] > oldest)
+				total += buckets[i];
+		}
+		return total;
+	}
+}
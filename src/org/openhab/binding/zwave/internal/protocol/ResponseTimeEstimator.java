@@ -0,0 +1,129 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.internal.protocol;
+
+/**
+ * Response time estimator. Keeps a smoothed mean and mean deviation of the
+ * time it takes a node to complete a transaction, and derives a timeout from
+ * them the same way TCP derives its retransmission timeout (RFC 6298).
+ * Every consecutive timeout doubles the timeout (exponential backoff) until
+ * a new sample is taken.
+ * @author Woodrow Barlow
+ */
+public class ResponseTimeEstimator {
+
+	private static final int ALPHA_SHIFT = 3;	// gain 1/8 for the smoothed mean
+	private static final int BETA_SHIFT = 2;	// gain 1/4 for the mean deviation
+	private static final int DEVIATION_FACTOR = 4;
+	private static final int MAX_BACKOFF_SHIFT = 3;
+
+	private final long minTimeout;
+	private final long maxTimeout;
+
+	private long smoothedResponseTime = 0;
+	private long responseTimeVariance = 0;
+	private long lastResponseTime = 0;
+	private long sampleCount = 0;
+	private int backoffShift = 0;
+
+	/**
+	 * Constructor. Creates a new instance of the ResponseTimeEstimator class.
+	 * Until the first sample is taken the maximum timeout is used.
+	 * @param minTimeout the lower bound of the timeout in milliseconds.
+	 * @param maxTimeout the upper bound of the timeout in milliseconds.
+	 */
+	public ResponseTimeEstimator(long minTimeout, long maxTimeout) {
+		this.minTimeout = minTimeout;
+		this.maxTimeout = Math.max(minTimeout, maxTimeout);
+	}
+
+	/**
+	 * Adds a response time sample and resets the backoff.
+	 * @param responseTime the measured response time in milliseconds.
+	 */
+	public synchronized void addSample(long responseTime) {
+		if (responseTime < 0)
+			return;
+
+		if (sampleCount == 0) {
+			smoothedResponseTime = responseTime;
+			responseTimeVariance = responseTime / 2;
+		} else {
+			long error = responseTime - smoothedResponseTime;
+			smoothedResponseTime += error >> ALPHA_SHIFT;
+			responseTimeVariance += (Math.abs(error) - responseTimeVariance) >> BETA_SHIFT;
+		}
+
+		lastResponseTime = responseTime;
+		sampleCount++;
+		backoffShift = 0;
+	}
+
+	/**
+	 * Signals that a transaction timed out. The next timeout will be doubled,
+	 * up to the maximum timeout.
+	 */
+	public synchronized void backoff() {
+		if (backoffShift < MAX_BACKOFF_SHIFT)
+			backoffShift++;
+	}
+
+	/**
+	 * Gets the timeout to use for the next transaction.
+	 * @return the timeout in milliseconds.
+	 */
+	public synchronized long getTimeout() {
+		if (sampleCount == 0)
+			return maxTimeout;
+
+		long timeout = smoothedResponseTime + DEVIATION_FACTOR * responseTimeVariance;
+		timeout = Math.max(minTimeout, timeout) << backoffShift;
+		return Math.min(maxTimeout, timeout);
+	}
+
+	/**
+	 * Gets the smoothed response time.
+	 * @return the smoothed response time in milliseconds, or 0 if no samples were taken.
+	 */
+	public synchronized long getSmoothedResponseTime() {
+		return smoothedResponseTime;
+	}
+
+	/**
+	 * Gets the mean deviation of the response time.
+	 * @return the response time deviation in milliseconds.
+	 */
+	public synchronized long getResponseTimeVariance() {
+		return responseTimeVariance;
+	}
+
+	/**
+	 * Gets the last measured response time.
+	 * @return the last response time in milliseconds.
+	 */
+	public synchronized long getLastResponseTime() {
+		return lastResponseTime;
+	}
+
+	/**
+	 * Gets the number of samples taken.
+	 * @return the sample count
+	 */
+	public synchronized long getSampleCount() {
+		return sampleCount;
+	}
+
+	/**
+	 * Gets the current backoff multiplier.
+	 * @return 1 if not backing off, doubling on every consecutive timeout.
+	 */
+	public synchronized int getBackoffMultiplier() {
+		return 1 << backoffShift;
+	}
+}
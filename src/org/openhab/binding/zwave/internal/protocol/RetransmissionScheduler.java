@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.internal.protocol;
+
+import java.util.Random;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import me.wbarlow.zwavemanagement.logging.Logger;
+import me.wbarlow.zwavemanagement.logging.LoggerFactory;
+
+/**
+ * Retransmission scheduler. Puts messages that were refused by the
+ * controller (CAN or NAK) back on the send queue after a randomized
+ * exponential backoff, without blocking the thread that asks for the
+ * retransmission.
+ * @author Woodrow Barlow
+ */
+public class RetransmissionScheduler {
+
+	private static final Logger logger = LoggerFactory.getLogger(RetransmissionScheduler.class);
+
+	private static final long BASE_BACKOFF = 100;	// ms
+	private static final long MAX_BACKOFF = 2000;	// ms
+
+	private final ZWaveController controller;
+	private final Random random = new Random();
+	private Timer timer;
+	private boolean cancelled = false;
+
+	/**
+	 * Constructor. Creates a new instance of the RetransmissionScheduler class.
+	 * @param controller the controller to enqueue the messages with.
+	 */
+	RetransmissionScheduler(ZWaveController controller) {
+		this.controller = controller;
+	}
+
+	/**
+	 * Schedules a message for retransmission. Every retransmission of a
+	 * message doubles the backoff, up to the maximum backoff. The actual
+	 * delay is chosen at random between half the backoff and the full backoff.
+	 * Uses up one of the message's attempts. After {@link #cancel()} the
+	 * message is discarded instead.
+	 * @param serialMessage the message to retransmit.
+	 * @return false if the message has no attempts left, or the scheduler
+	 * was cancelled, and the message was discarded.
+	 */
+	public synchronized boolean schedule(final SerialMessage serialMessage) {
+		if (cancelled) {
+			logger.debug("NODE {}: Controller closed, not retransmitting message", serialMessage.getMessageNode());
+			serialMessage.notifyFailed(SerialMessageCompletionHandler.FailureReason.Discarded);
+			return false;
+		}
+		if (--serialMessage.attempts < 0) {
+			logger.warn("NODE {}: Discarding message after repeated CAN/NAK: {}", serialMessage.getMessageNode(), serialMessage.toString());
+			serialMessage.notifyFailed(SerialMessageCompletionHandler.FailureReason.Discarded);
+			return false;
+		}
+
+		long delay = getBackoff(serialMessage.incrementRetransmitCount());
+		logger.debug("NODE {}: Retransmitting message in {}ms", serialMessage.getMessageNode(), delay);
+
+		if (timer == null)
+			timer = new Timer("ZWaveRetransmissionTimer", true);
+		timer.schedule(new TimerTask() {
+			@Override
+			public void run() {
+				controller.requeue(serialMessage);
+			}
+		}, delay);
+		return true;
+	}
+
+	/**
+	 * Gets the randomized backoff for a retransmission.
+	 * @param retransmitCount the number of earlier retransmissions of the message.
+	 * @return the delay in milliseconds.
+	 */
+	private long getBackoff(int retransmitCount) {
+		long backoff = BASE_BACKOFF << Math.min(retransmitCount, 5);
+		backoff = Math.min(MAX_BACKOFF, backoff);
+		return backoff / 2 + (long) (random.nextDouble() * (backoff / 2));
+	}
+
+	/**
+	 * Cancels all scheduled retransmissions. The timer thread isn't started
+	 * again; later retransmissions are discarded.
+	 */
+	public synchronized void cancel() {
+		cancelled = true;
+		if (timer != null) {
+			timer.cancel();
+			timer = null;
+		}
+	}
+}
@@ -12,8 +12,6 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Comparator;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveCommandClass.CommandClass;
@@ -49,6 +47,7 @@ public class SerialMessage {
 	private SerialMessageType messageType;
 	private SerialMessageClass messageClass;
 	private SerialMessagePriority priority;
+	private SerialMessageLatencyClass latencyClass;
 	private SerialMessageClass expectedReply;
 
 	private int messageNode = 255;
@@ -57,6 +56,11 @@ public class SerialMessage {
 	private int callbackId = 0;
 	
 	private boolean transActionCanceled = false;
+	private long transmitTime = 0;
+	private long enqueueTime = 0;
+	private int retransmitCount = 0;
+	private long deadline = 0;
+	private SerialMessageCompletionHandler completionHandler;
 
 	/**
 	 * Indicates whether the serial message is valid.
@@ -359,6 +363,26 @@ public class SerialMessage {
 		return priority;
 	}
 
+	/**
+	 * Returns the latency class of this Serial message. Unless set
+	 * explicitly, Low priority messages are Background and all other
+	 * messages are Normal.
+	 * @return the latency class
+	 */
+	public SerialMessageLatencyClass getLatencyClass() {
+		if (latencyClass != null)
+			return latencyClass;
+		return priority == SerialMessagePriority.Low ? SerialMessageLatencyClass.Background : SerialMessageLatencyClass.Normal;
+	}
+
+	/**
+	 * Sets the latency class of this Serial message.
+	 * @param latencyClass the latency class to set
+	 */
+	public void setLatencyClass(SerialMessageLatencyClass latencyClass) {
+		this.latencyClass = latencyClass;
+	}
+
 	/**
 	 * Indicates that the transaction for the incoming message is canceled by a command class
 	 * @return the transActionCanceled
@@ -375,6 +399,145 @@ public class SerialMessage {
 		this.transActionCanceled = transActionCanceled;
 	}
 
+	/**
+	 * Gets the time this message was last written to the controller.
+	 * @return the transmit time in milliseconds, or 0 if the message was not sent yet.
+	 */
+	public long getTransmitTime() {
+		return transmitTime;
+	}
+
+	/**
+	 * Sets the time this message was written to the controller.
+	 * @param transmitTime the transmit time in milliseconds.
+	 */
+	public void setTransmitTime(long transmitTime) {
+		this.transmitTime = transmitTime;
+	}
+
+	/**
+	 * Gets the time this message was last placed on the send queue.
+	 * @return the enqueue time in milliseconds.
+	 */
+	public long getEnqueueTime() {
+		return enqueueTime;
+	}
+
+	/**
+	 * Sets the time this message was placed on the send queue.
+	 * @param enqueueTime the enqueue time in milliseconds.
+	 */
+	void setEnqueueTime(long enqueueTime) {
+		this.enqueueTime = enqueueTime;
+	}
+
+	/**
+	 * Gets the sequence number of this message. Messages created later
+	 * have a higher sequence number.
+	 * @return the sequence number
+	 */
+	long getSequenceNumber() {
+		return sequenceNumber;
+	}
+
+	/**
+	 * Gets the deadline of this message.
+	 * @return the deadline in milliseconds, or 0 if the message has no deadline.
+	 */
+	public long getDeadline() {
+		return deadline;
+	}
+
+	/**
+	 * Sets the deadline of this message. A message whose deadline has
+	 * passed is dropped instead of sent.
+	 * @param deadline the deadline in milliseconds, or 0 for no deadline.
+	 */
+	public void setDeadline(long deadline) {
+		this.deadline = deadline;
+	}
+
+	/**
+	 * Sets the deadline of this message relative to the current time.
+	 * @param timeToLive the time to live in milliseconds.
+	 */
+	public void setTimeToLive(long timeToLive) {
+		this.deadline = System.currentTimeMillis() + timeToLive;
+	}
+
+	/**
+	 * Indicates whether the deadline of this message has passed.
+	 * @return true if the message has expired.
+	 */
+	public boolean isExpired() {
+		return deadline != 0 && System.currentTimeMillis() > deadline;
+	}
+
+	/**
+	 * Gets the completion handle of this message.
+	 * @return the completion handler, or null
+	 */
+	public SerialMessageCompletionHandler getCompletionHandler() {
+		return completionHandler;
+	}
+
+	/**
+	 * Sets the completion handle of this message, which is notified when the
+	 * transaction completes or the message is dropped.
+	 * @param completionHandler the completion handler to set
+	 */
+	public void setCompletionHandler(SerialMessageCompletionHandler completionHandler) {
+		this.completionHandler = completionHandler;
+	}
+
+	/**
+	 * Notifies the completion handle that the node acknowledged this message.
+	 */
+	public void notifyTransmitted() {
+		if (completionHandler == null)
+			return;
+		try {
+			completionHandler.messageTransmitted(this);
+		} catch (RuntimeException e) {
+			logger.error("Exception in completion handler: {}", e);
+		}
+	}
+
+	/**
+	 * Notifies the completion handle that the transaction of this message completed.
+	 */
+	public void notifyCompleted() {
+		if (completionHandler == null)
+			return;
+		try {
+			completionHandler.messageCompleted(this);
+		} catch (RuntimeException e) {
+			logger.error("Exception in completion handler: {}", e);
+		}
+	}
+
+	/**
+	 * Notifies the completion handle that this message was dropped.
+	 * @param reason the reason the message was dropped
+	 */
+	public void notifyFailed(SerialMessageCompletionHandler.FailureReason reason) {
+		if (completionHandler == null)
+			return;
+		try {
+			completionHandler.messageFailed(this, reason);
+		} catch (RuntimeException e) {
+			logger.error("Exception in completion handler: {}", e);
+		}
+	}
+
+	/**
+	 * Counts a retransmission of this message after a CAN or NAK.
+	 * @return the number of retransmissions before this one.
+	 */
+	int incrementRetransmitCount() {
+		return retransmitCount++;
+	}
+
 	/**
 	 * Serial message type enumeration. Indicates whether the message
 	 * is a request or a response.
@@ -399,6 +562,19 @@ public class SerialMessage {
 		Get,																				// 0x03
 		Low 																				// 0x04
 	}
+
+	/**
+	 * Serial message latency class enumeration. Indicates how long a message
+	 * may wait in the send queue. Interactive messages (commands issued by a
+	 * user) are taken from the send queue before all other messages.
+	 * @author Woodrow Barlow
+	 */
+	public enum SerialMessageLatencyClass
+	{
+		Interactive,
+		Normal,
+		Background
+	}
 	
 	/**
 	 * Serial message class enumeration. Enumerates the different messages
@@ -480,7 +656,7 @@ public class SerialMessage {
 		 * A mapping between the integer code and its corresponding ZWaveMessage
 		 * value to facilitate lookup by code.
 		 */
-		private static Map<Integer, SerialMessageClass> codeToMessageClassMapping;
+		private static final SerialMessageClass[] codeToMessageClassMapping = new SerialMessageClass[256];
 
 		private int key;
 		private String label;
@@ -490,10 +666,9 @@ public class SerialMessage {
 			this.label = label;
 		}
 
-		private static void initMapping() {
-			codeToMessageClassMapping = new HashMap<Integer, SerialMessageClass>();
+		static {
 			for (SerialMessageClass s : values()) {
-				codeToMessageClassMapping.put(s.key, s);
+				codeToMessageClassMapping[s.key] = s;
 			}
 		}
 
@@ -503,10 +678,9 @@ public class SerialMessage {
 		 * @return enumeration value of the generic device class.
 		 */
 		public static SerialMessageClass getMessageClass(int i) {
-			if (codeToMessageClassMapping == null) {
-				initMapping();
-			}
-			return codeToMessageClassMapping.get(i);
+			if (i < 0 || i >= codeToMessageClassMapping.length)
+				return null;
+			return codeToMessageClassMapping[i];
 		}
 		
 		/**
@@ -524,6 +698,23 @@ public class SerialMessage {
 		public String getLabel() {
 			return label;
 		}
+
+		/**
+		 * Returns whether the message class can be requested from the
+		 * controller. Some are only sent by the controller, unsolicited.
+		 * @return false for the handlers of incoming frames and updates.
+		 */
+		public boolean isRequestable() {
+			switch (this) {
+			case ApplicationCommandHandler:
+			case ApplicationUpdate:
+			case ApplicationSlaveCommandHandler:
+			case PromiscuousApplicationCommandHandler:
+				return false;
+			default:
+				return true;
+			}
+		}
 	}
 
 	/**
@@ -552,6 +743,15 @@ public class SerialMessage {
 		 */
 		public int compare(SerialMessage arg0, SerialMessage arg1) {
 
+			// interactive messages go before everything else, so that a
+			// user's command only waits for the transaction in progress.
+			boolean arg0Interactive = arg0.getLatencyClass() == SerialMessageLatencyClass.Interactive;
+			boolean arg1Interactive = arg1.getLatencyClass() == SerialMessageLatencyClass.Interactive;
+			if (arg0Interactive && !arg1Interactive)
+				return -1;
+			else if (arg1Interactive && !arg0Interactive)
+				return 1;
+
 			boolean arg0Awake = false;
 			boolean arg0Listening = true;
 			boolean arg1Awake = false;
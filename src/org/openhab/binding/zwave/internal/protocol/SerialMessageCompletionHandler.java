@@ -0,0 +1,51 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.internal.protocol;
+
+/**
+ * Completion handle of a serial message. Tells the sender of a message
+ * whether its transaction completed or why the message was dropped.
+ * Handlers are called from the send and receive threads and should return
+ * quickly.
+ * @author Woodrow Barlow
+ */
+public interface SerialMessageCompletionHandler {
+
+	/**
+	 * Reasons a message can fail without completing its transaction.
+	 * @author Woodrow Barlow
+	 */
+	public enum FailureReason {
+		Rejected,	// the send queue was full
+		Unsupported,	// the controller does not support the message class
+		Shed,		// removed from the send queue to make room for a more important message
+		Expired,	// the deadline of the message passed before it was sent
+		Discarded	// all attempts to send the message were used up
+	}
+
+	/**
+	 * Called when the node acknowledged the frame of a SendData message.
+	 * The transaction may still wait for the report the message asked for.
+	 * @param serialMessage the message
+	 */
+	public void messageTransmitted(SerialMessage serialMessage);
+
+	/**
+	 * Called when the transaction of a message completed.
+	 * @param serialMessage the message
+	 */
+	public void messageCompleted(SerialMessage serialMessage);
+
+	/**
+	 * Called when a message was dropped without completing its transaction.
+	 * @param serialMessage the message
+	 * @param reason the reason the message was dropped
+	 */
+	public void messageFailed(SerialMessage serialMessage, FailureReason reason);
+}
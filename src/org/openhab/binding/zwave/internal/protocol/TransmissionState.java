@@ -8,9 +8,6 @@
  */
 package org.openhab.binding.zwave.internal.protocol;
 
-import java.util.HashMap;
-import java.util.Map;
-
 /**
  * Transmission state enumeration. Indicates the
  * transmission state of the message to the node.
@@ -28,7 +25,7 @@ public enum TransmissionState {
 	 * A mapping between the integer code and its corresponding transmission state
 	 * class to facilitate lookup by code.
 	 */
-	private static Map<Integer, TransmissionState> codeToTransmissionStateMapping;
+	private static final TransmissionState[] codeToTransmissionStateMapping = new TransmissionState[256];
 
 	private int key;
 	private String label;
@@ -38,10 +35,9 @@ public enum TransmissionState {
 		this.label = label;
 	}
 
-	private static void initMapping() {
-		codeToTransmissionStateMapping = new HashMap<Integer, TransmissionState>();
+	static {
 		for (TransmissionState s : values()) {
-			codeToTransmissionStateMapping.put(s.key, s);
+			codeToTransmissionStateMapping[s.key] = s;
 		}
 	}
 
@@ -52,11 +48,9 @@ public enum TransmissionState {
 	 * @return enumeration value of the transmission state.
 	 */
 	public static TransmissionState getTransmissionState(int i) {
-		if (codeToTransmissionStateMapping == null) {
-			initMapping();
-		}
-		
-		return codeToTransmissionStateMapping.get(i);
+		if (i < 0 || i >= codeToTransmissionStateMapping.length)
+			return null;
+		return codeToTransmissionStateMapping[i];
 	}
 
 	/**
@@ -8,9 +8,6 @@
  */
 package org.openhab.binding.zwave.internal.protocol;
 
-import java.util.HashMap;
-import java.util.Map;
-
 /**
  * Update state enumeration. Indicates the type of application update state that was sent.
  * @author Jan-Willem Spuij
@@ -29,7 +26,7 @@ public enum UpdateState {
 	 * A mapping between the integer code and its corresponding update state
 	 * class to facilitate lookup by code.
 	 */
-	private static Map<Integer, UpdateState> codeToUpdateStateMapping;
+	private static final UpdateState[] codeToUpdateStateMapping = new UpdateState[256];
 
 	private int key;
 	private String label;
@@ -39,10 +36,9 @@ public enum UpdateState {
 		this.label = label;
 	}
 
-	private static void initMapping() {
-		codeToUpdateStateMapping = new HashMap<Integer, UpdateState>();
+	static {
 		for (UpdateState s : values()) {
-			codeToUpdateStateMapping.put(s.key, s);
+			codeToUpdateStateMapping[s.key] = s;
 		}
 	}
 
@@ -53,11 +49,9 @@ public enum UpdateState {
 	 * @return enumeration value of the update state.
 	 */
 	public static UpdateState getUpdateState(int i) {
-		if (codeToUpdateStateMapping == null) {
-			initMapping();
-		}
-		
-		return codeToUpdateStateMapping.get(i);
+		if (i < 0 || i >= codeToUpdateStateMapping.length)
+			return null;
+		return codeToUpdateStateMapping[i];
 	}
 
 	/**
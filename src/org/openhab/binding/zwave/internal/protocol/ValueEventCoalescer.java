@@ -0,0 +1,259 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.internal.protocol;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveAlarmCommandClass.ZWaveAlarmValueEvent;
+import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveMeterCommandClass.ZWaveMeterValueEvent;
+import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveMultiLevelSensorCommandClass.ZWaveMultiLevelSensorValueEvent;
+import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveThermostatSetpointCommandClass.ZWaveThermostatSetpointValueEvent;
+import org.openhab.binding.zwave.internal.protocol.event.ZWaveCommandClassValueEvent;
+
+import me.wbarlow.zwavemanagement.logging.Logger;
+import me.wbarlow.zwavemanagement.logging.LoggerFactory;
+
+/**
+ * Coalesces meter and multilevel sensor value events before they are
+ * published. Values are tracked per node, endpoint, command class, type and
+ * scale. With change-only enabled, a report that repeats the last published
+ * value is dropped. With a window set, the first report opens the window and
+ * is published; later reports in the window only replace the pending value,
+ * which is published when the window closes. Both are off by default.
+ * @author Woodrow Barlow
+ */
+public class ValueEventCoalescer {
+
+	private static final Logger logger = LoggerFactory.getLogger(ValueEventCoalescer.class);
+
+	private final ZWaveController controller;
+	private final Map<Long, ValueState> states = new HashMap<Long, ValueState>();
+	private Timer timer;
+
+	private volatile boolean changeOnly = false;
+	private volatile long window = 0;	// ms, 0 disables windowing
+
+	private long publishedCount = 0;
+	private long unchangedCount = 0;
+	private long mergedCount = 0;
+
+	/**
+	 * Constructor. Creates a new instance of the ValueEventCoalescer class.
+	 * @param controller the controller to publish the pending values with
+	 * when their window closes.
+	 */
+	ValueEventCoalescer(ZWaveController controller) {
+		this.controller = controller;
+	}
+
+	/**
+	 * Offers a value event to the coalescer.
+	 * @param event the event
+	 * @return true if the event should be published now, false if it was
+	 * dropped or is held until its window closes.
+	 */
+	public synchronized boolean offer(ZWaveCommandClassValueEvent event) {
+		long key = getKey(event);
+		if (key < 0 || (!changeOnly && window <= 0))
+			return true;
+
+		ValueState state = states.get(key);
+		if (state == null) {
+			state = new ValueState();
+			states.put(key, state);
+		}
+
+		if (state.windowOpen) {
+			if (state.pending != null)
+				mergedCount++;
+			state.pending = event;
+			return false;
+		}
+
+		if (changeOnly && isUnchanged(state.last, event)) {
+			unchangedCount++;
+			return false;
+		}
+
+		state.last = event;
+		publishedCount++;
+		openWindow(state);
+		return true;
+	}
+
+	private void openWindow(final ValueState state) {
+		long delay = window;
+		if (delay <= 0)
+			return;
+		if (timer == null)
+			timer = new Timer("ZWaveCoalescingTimer", true);
+		state.windowOpen = true;
+		timer.schedule(new TimerTask() {
+			@Override
+			public void run() {
+				closeWindow(state);
+			}
+		}, delay);
+	}
+
+	private void closeWindow(ValueState state) {
+		ZWaveCommandClassValueEvent event;
+		synchronized (this) {
+			state.windowOpen = false;
+			event = state.pending;
+			state.pending = null;
+			if (event == null)
+				return;
+			if (changeOnly && isUnchanged(state.last, event)) {
+				unchangedCount++;
+				return;
+			}
+			state.last = event;
+			publishedCount++;
+			// Keep reports that are still coming in to one per window.
+			openWindow(state);
+		}
+		logger.trace("NODE {}: Publishing coalesced value", event.getNodeId());
+		controller.publishEvent(event);
+	}
+
+	/**
+	 * Gets the key of the value of an event.
+	 * @param event the event
+	 * @return the key, or -1 if the event is not coalesced.
+	 */
+	private static long getKey(ZWaveCommandClassValueEvent event) {
+		if (!(event instanceof ZWaveMeterValueEvent) && !(event instanceof ZWaveMultiLevelSensorValueEvent))
+			return -1;
+		return getValueKey(event);
+	}
+
+	/**
+	 * Gets the key of the value of any value event: the node, endpoint,
+	 * command class and, for the command classes that report several
+	 * values, the type and scale of the value.
+	 * @param event the event
+	 * @return the key
+	 */
+	static long getValueKey(ZWaveCommandClassValueEvent event) {
+		int type = 0;
+		int scale = 0;
+		if (event instanceof ZWaveMeterValueEvent) {
+			ZWaveMeterValueEvent meterEvent = (ZWaveMeterValueEvent) event;
+			type = meterEvent.getMeterType().getKey();
+			scale = meterEvent.getMeterScale().ordinal();
+		} else if (event instanceof ZWaveMultiLevelSensorValueEvent) {
+			ZWaveMultiLevelSensorValueEvent sensorEvent = (ZWaveMultiLevelSensorValueEvent) event;
+			type = sensorEvent.getSensorType().getKey();
+			scale = sensorEvent.getSensorScale();
+		} else if (event instanceof ZWaveThermostatSetpointValueEvent) {
+			type = ((ZWaveThermostatSetpointValueEvent) event).getSetpointType().ordinal();
+		} else if (event instanceof ZWaveAlarmValueEvent) {
+			type = ((ZWaveAlarmValueEvent) event).getAlarmType().ordinal();
+		}
+
+		long key = event.getNodeId() & 0xFF;
+		key = (key << 8) | (event.getEndpoint() & 0xFF);
+		key = (key << 8) | (event.getCommandClass().getKey() & 0xFF);
+		key = (key << 8) | (type & 0xFF);
+		key = (key << 8) | (scale & 0xFF);
+		return key;
+	}
+
+	private static boolean isUnchanged(ZWaveCommandClassValueEvent last, ZWaveCommandClassValueEvent event) {
+		if (last == null)
+			return false;
+		// 21.50 and 21.5 are the same reading at a different precision.
+		if (last.isFixedPoint() && event.isFixedPoint())
+			return FixedPoint.compare(last.getFixedPointValue(), event.getFixedPointValue()) == 0;
+		Object lastValue = last.getValue();
+		return lastValue != null && lastValue.equals(event.getValue());
+	}
+
+	/**
+	 * Sets whether reports that repeat the last published value are dropped.
+	 * @param changeOnly true to drop unchanged values.
+	 */
+	public void setChangeOnly(boolean changeOnly) {
+		this.changeOnly = changeOnly;
+	}
+
+	/**
+	 * Gets whether reports that repeat the last published value are dropped.
+	 * @return true if unchanged values are dropped.
+	 */
+	public boolean isChangeOnly() {
+		return changeOnly;
+	}
+
+	/**
+	 * Sets the window reports of the same value are merged in.
+	 * @param window the window in milliseconds, or 0 to publish every report.
+	 */
+	public void setWindow(long window) {
+		this.window = Math.max(0, window);
+	}
+
+	/**
+	 * Gets the window reports of the same value are merged in.
+	 * @return the window in milliseconds.
+	 */
+	public long getWindow() {
+		return window;
+	}
+
+	/**
+	 * Forgets the values of all nodes and cancels the open windows.
+	 * Pending values are discarded.
+	 */
+	public synchronized void clear() {
+		if (timer != null) {
+			timer.cancel();
+			timer = null;
+		}
+		states.clear();
+	}
+
+	/**
+	 * Gets the number of values that were published.
+	 * @return the published count
+	 */
+	public synchronized long getPublishedCount() {
+		return publishedCount;
+	}
+
+	/**
+	 * Gets the number of reports dropped because the value didn't change.
+	 * @return the unchanged count
+	 */
+	public synchronized long getUnchangedCount() {
+		return unchangedCount;
+	}
+
+	/**
+	 * Gets the number of reports replaced by a later report in the same window.
+	 * @return the merged count
+	 */
+	public synchronized long getMergedCount() {
+		return mergedCount;
+	}
+
+	/**
+	 * The last published and the pending value of one key.
+	 * @author Woodrow Barlow
+	 */
+	private static class ValueState {
+		private ZWaveCommandClassValueEvent last;
+		private ZWaveCommandClassValueEvent pending;
+		private boolean windowOpen = false;
+	}
+}
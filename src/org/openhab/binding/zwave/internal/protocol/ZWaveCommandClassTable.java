@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.internal.protocol;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveCommandClass;
+import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveCommandClass.CommandClass;
+
+/**
+ * Immutable table of the command classes of a node or endpoint, kept as an
+ * array sorted by command class id. A node has a handful of command classes
+ * and an endpoint one to three, so the array is a fraction of the size of
+ * a map, and a lookup is a short binary search. Adding a command class
+ * returns a new table, so readers can iterate a table while classes are added.
+ * @author Woodrow Barlow
+ */
+public class ZWaveCommandClassTable {
+
+	public static final ZWaveCommandClassTable EMPTY = new ZWaveCommandClassTable(new ZWaveCommandClass[0]);
+
+	private final ZWaveCommandClass[] commandClasses;
+
+	private ZWaveCommandClassTable(ZWaveCommandClass[] commandClasses) {
+		this.commandClasses = commandClasses;
+	}
+
+	/**
+	 * Gets a command class.
+	 * @param commandClass the command class to get.
+	 * @return the command class, or null if it's not in the table.
+	 */
+	public ZWaveCommandClass get(CommandClass commandClass) {
+		int index = indexOf(commandClass.getKey());
+		return index < 0 ? null : commandClasses[index];
+	}
+
+	/**
+	 * Checks whether a command class is in the table.
+	 * @param commandClass the command class
+	 * @return true if the table has it.
+	 */
+	public boolean contains(CommandClass commandClass) {
+		return indexOf(commandClass.getKey()) >= 0;
+	}
+
+	/**
+	 * Adds a command class.
+	 * @param commandClass the command class to add.
+	 * @return a new table with the command class, or this table if it
+	 * already has a command class with the same id.
+	 */
+	public ZWaveCommandClassTable with(ZWaveCommandClass commandClass) {
+		int index = indexOf(commandClass.getCommandClass().getKey());
+		if (index >= 0)
+			return this;
+		int insert = -index - 1;
+		ZWaveCommandClass[] added = new ZWaveCommandClass[commandClasses.length + 1];
+		System.arraycopy(commandClasses, 0, added, 0, insert);
+		added[insert] = commandClass;
+		System.arraycopy(commandClasses, insert, added, insert + 1, commandClasses.length - insert);
+		return new ZWaveCommandClassTable(added);
+	}
+
+	/**
+	 * Gets the command classes, ordered by id.
+	 * @return an unmodifiable view of the command classes.
+	 */
+	public List<ZWaveCommandClass> values() {
+		return Collections.unmodifiableList(Arrays.asList(commandClasses));
+	}
+
+	/**
+	 * Gets the number of command classes.
+	 * @return the size
+	 */
+	public int size() {
+		return commandClasses.length;
+	}
+
+	/**
+	 * Binary search by command class id.
+	 * @return the index, or -(insertion point) - 1 if the id isn't in the table.
+	 */
+	private int indexOf(int key) {
+		int low = 0;
+		int high = commandClasses.length - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int middleKey = commandClasses[middle].getCommandClass().getKey();
+			if (middleKey < key)
+				low = middle + 1;
+			else if (middleKey > key)
+				high = middle - 1;
+			else
+				return middle;
+		}
+		return -(low + 1);
+	}
+}
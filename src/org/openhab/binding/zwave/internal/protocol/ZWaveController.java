@@ -11,14 +11,10 @@ package org.openhab.binding.zwave.internal.protocol;
 import jssc.*;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
-import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -32,6 +28,7 @@ import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveCommandClas
 import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveCommandClassDynamicState;
 import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveMultiInstanceCommandClass;
 import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveWakeUpCommandClass;
+import org.openhab.binding.zwave.internal.protocol.event.ZWaveCommandClassValueEvent;
 import org.openhab.binding.zwave.internal.protocol.event.ZWaveEvent;
 import org.openhab.binding.zwave.internal.protocol.event.ZWaveInclusionEvent;
 import org.openhab.binding.zwave.internal.protocol.event.ZWaveInitializationCompletedEvent;
@@ -39,6 +36,9 @@ import org.openhab.binding.zwave.internal.protocol.event.ZWaveNetworkEvent;
 import org.openhab.binding.zwave.internal.protocol.event.ZWaveNodeStatusEvent;
 import org.openhab.binding.zwave.internal.protocol.event.ZWaveTransactionCompletedEvent;
 import org.openhab.binding.zwave.internal.protocol.event.ZWaveNetworkEvent.State;
+import org.openhab.binding.zwave.internal.protocol.initialization.ZWaveInterviewCheckpoints;
+import org.openhab.binding.zwave.internal.protocol.initialization.ZWaveInterviewProfiler;
+import org.openhab.binding.zwave.internal.protocol.initialization.ZWaveInterviewScheduler;
 import org.openhab.binding.zwave.internal.protocol.initialization.ZWaveNodeSerializer;
 import org.openhab.binding.zwave.internal.protocol.serialmessage.AddNodeMessageClass;
 import org.openhab.binding.zwave.internal.protocol.serialmessage.AssignReturnRouteMessageClass;
@@ -80,26 +80,40 @@ public class ZWaveController {
 	
 	private static final int QUERY_STAGE_TIMEOUT = 120000;
 	private static final int ZWAVE_RESPONSE_TIMEOUT = 5000;		// 5000 ms ZWAVE_RESPONSE TIMEOUT
+	private static final int MIN_ZWAVE_RESPONSE_TIMEOUT = 1500;	// lower bound for the configured and estimated timeouts
+	private static final int MAX_ZWAVE_RESPONSE_TIMEOUT = 10000;	// upper bound for the configured timeout
 	private static final int ZWAVE_RECEIVE_TIMEOUT = 1000;		// 1000 ms ZWAVE_RECEIVE_TIMEOUT
-	private static final int INITIAL_QUEUE_SIZE = 128; 
+	private static final int POLL_TIME_TO_LIVE = 60000;		// poll messages older than 60 seconds are dropped
 	private static final long WATCHDOG_TIMER_PERIOD = 10000;	// 10 seconds watchdog timer
+	private static final int NODE_WORKER_THREADS = 2;		// threads processing node messages
 
 	private static final int TRANSMIT_OPTION_ACK = 0x01;
 	private static final int TRANSMIT_OPTION_AUTO_ROUTE = 0x04;
 	private static final int TRANSMIT_OPTION_EXPLORE = 0x20;
 	
-	private final Map<Integer, ZWaveNode> zwaveNodes = new HashMap<Integer, ZWaveNode>();
-	private final ArrayList<ZWaveEventListener> zwaveEventListeners = new ArrayList<ZWaveEventListener>();
-	private final PriorityBlockingQueue<SerialMessage> sendQueue = new PriorityBlockingQueue<SerialMessage>(INITIAL_QUEUE_SIZE, new SerialMessage.SerialMessageComparator(this));
+	private final ZWaveNodeTable zwaveNodes = new ZWaveNodeTable();
+	private final ZWaveEventBus eventBus = new ZWaveEventBus();
+	private final ZWaveSendQueue sendQueue = new ZWaveSendQueue(this);
 	private ZWaveSendThread sendThread;
 	private ZWaveReceiveThread receiveThread;
 	
 	private final Semaphore transactionCompleted = new Semaphore(1);
+	private final Object transactionLock = new Object();
 	private volatile SerialMessage lastSentMessage = null;
+	private volatile boolean transactionRefused = false;
+	private final RetransmissionScheduler retransmissionScheduler = new RetransmissionScheduler(this);
 	private long lastMessageStartTime = 0;
 	private long longestResponseTime = 0;
 	private SerialPort serialPort;
 	private int zWaveResponseTimeout = ZWAVE_RESPONSE_TIMEOUT;
+	private final ResponseTimeEstimator[] responseTimeEstimators = new ResponseTimeEstimator[256];
+	private final AirtimePacer airtimePacer = new AirtimePacer();
+	private final NodeMailboxExecutor nodeExecutor = new NodeMailboxExecutor(NODE_WORKER_THREADS);
+	private final ValueEventCoalescer valueCoalescer = new ValueEventCoalescer(this);
+	private final ZWaveInterviewScheduler interviewScheduler = new ZWaveInterviewScheduler(this);
+	private final ZWaveInterviewProfiler interviewProfiler = new ZWaveInterviewProfiler();
+	private volatile EventJournal eventJournal;
+	private volatile ZWaveInterviewCheckpoints interviewCheckpoints;
 	private Timer watchdog;
 	
 	private String zWaveVersion = "Unknown";
@@ -109,18 +123,21 @@ public class ZWaveController {
 	private int manufactureId = 0;
 	private int deviceType = 0; 
 	private int deviceId = 0;
+	private volatile boolean[] supportedFunctions = null;
+	private final AtomicInteger unsupportedCount = new AtomicInteger(0);
 	private int ZWaveLibraryType = 0;
 	private int sentDataPointer = 1;
 	private boolean setSUC = false;
 	private ZWaveDeviceType controllerType = ZWaveDeviceType.UNKNOWN;
 	private int sucID = 0;
 	
-	private int SOFCount = 0;
-	private int CANCount = 0;
-	private int NAKCount = 0;
-	private int ACKCount = 0;
-	private int OOFCount = 0;
+	private final RateCounter SOFCount = new RateCounter();
+	private final RateCounter CANCount = new RateCounter();
+	private final RateCounter NAKCount = new RateCounter();
+	private final RateCounter ACKCount = new RateCounter();
+	private final RateCounter OOFCount = new RateCounter();
 	private AtomicInteger timeOutCount = new AtomicInteger(0);
+	private final AtomicInteger requeueDropCount = new AtomicInteger(0);
 	
 	private boolean initializationComplete = false;
 	
@@ -137,9 +154,13 @@ public class ZWaveController {
 	public ZWaveController(final boolean isSUC, final String serialPortName, final Integer timeout) throws SerialInterfaceException {
 			logger.info("Starting Z-Wave controller");
 			this.setSUC = isSUC;
-			if(timeout != null && timeout >= 1500 && timeout <= 10000) {
+			if(timeout != null && timeout >= MIN_ZWAVE_RESPONSE_TIMEOUT && timeout <= MAX_ZWAVE_RESPONSE_TIMEOUT) {
 				zWaveResponseTimeout = timeout;
 			}
+			else if(timeout != null) {
+				logger.warn("Z-Wave timeout {}ms is out of range ({}ms - {}ms), ignoring.", timeout,
+						MIN_ZWAVE_RESPONSE_TIMEOUT, MAX_ZWAVE_RESPONSE_TIMEOUT);
+			}
 			logger.info("Z-Wave timeout is set to {}ms.", zWaveResponseTimeout);
 			connect(serialPortName);
 			this.watchdog = new Timer(true);
@@ -176,18 +197,25 @@ public class ZWaveController {
 	 * An incoming request message is a message initiated by a node or the controller.
 	 * @param incomingMessage the incoming message to process.
 	 */
-	private void handleIncomingRequestMessage(SerialMessage incomingMessage) {
+	private void handleIncomingRequestMessage(final SerialMessage incomingMessage) {
 		logger.trace("Message type = REQUEST");
 
-		ZWaveCommandProcessor processor = ZWaveCommandProcessor.getMessageDispatcher(incomingMessage.getMessageClass());
+		final ZWaveCommandProcessor processor = ZWaveCommandProcessor.getMessageDispatcher(incomingMessage.getMessageClass());
 		if(processor != null) {
-			processor.handleRequest(this, lastSentMessage, incomingMessage);
-
-			if(processor.isTransactionComplete()) {
-				notifyEventListeners(new ZWaveTransactionCompletedEvent(this.lastSentMessage));
-				transactionCompleted.release();
-				logger.trace("Released. Transaction completed permit count -> {}", transactionCompleted.availablePermits());
+			// Frames about a node are processed in the mailbox of the node,
+			// so the receive thread can go back to reading from the serial port.
+			final SerialMessage transaction = lastSentMessage;
+			int nodeId = getIncomingNodeId(incomingMessage, transaction);
+			if (nodeId >= 0) {
+				nodeExecutor.submit(nodeId, new Runnable() {
+					public void run() {
+						completeTransaction(processor.handleRequest(ZWaveController.this, transaction, incomingMessage));
+					}
+				});
+				return;
 			}
+
+			completeTransaction(processor.handleRequest(this, transaction, incomingMessage));
 		}
 		else {
 			logger.warn(String.format("TODO: Implement processing of Request Message = %s (0x%02X)",
@@ -196,13 +224,86 @@ public class ZWaveController {
 		}
 	}
 
+	/**
+	 * Gets the node a frame from the controller is about. The state of a node
+	 * is only changed in the mailbox of the node, so frames about a node are
+	 * processed there, in the order they arrived.
+	 * @param incomingMessage the incoming frame.
+	 * @param transaction the message we sent last.
+	 * @return the node id, or -1 if the frame isn't about a single node.
+	 */
+	private int getIncomingNodeId(SerialMessage incomingMessage, SerialMessage transaction) {
+		boolean answersTransaction = transaction != null && transaction.getMessageNode() != 255
+				&& transaction.getMessageClass() == incomingMessage.getMessageClass();
+		switch (incomingMessage.getMessageClass()) {
+			case ApplicationCommandHandler:
+				return incomingMessage.getMessagePayloadByte(1);
+			case ApplicationUpdate:
+				// a failed node info request doesn't carry the node id.
+				int nodeId = incomingMessage.getMessagePayloadByte(1);
+				if (nodeId == 0 && transaction != null && transaction.getMessageClass() == SerialMessageClass.RequestNodeInfo)
+					return transaction.getMessageNode();
+				return nodeId;
+			case SendData:
+			case IdentifyNode:
+			case RequestNodeInfo:
+			case GetRoutingInfo:
+				return answersTransaction ? transaction.getMessageNode() : -1;
+			default:
+				return -1;
+		}
+	}
+
+	/**
+	 * Advances the stage of a node in the mailbox of the node, after the
+	 * frames from the node that are still being processed.
+	 * @param node the node
+	 * @param targetStage the stage to advance to.
+	 */
+	public void advanceNodeStageInMailbox(final ZWaveNode node, final NodeStage targetStage) {
+		nodeExecutor.submit(node.getNodeId(), new Runnable() {
+			public void run() {
+				node.advanceNodeStage(targetStage);
+			}
+		});
+	}
+
+	/**
+	 * Completes the transaction of the message we sent if a processor
+	 * reported it complete. The send thread is only released when the
+	 * message is still the one it is waiting for, because results from the
+	 * node mailboxes can arrive after the send thread gave up on a message.
+	 * @param result the result of processing an incoming message.
+	 */
+	private void completeTransaction(ZWaveCommandProcessor.ProcessorResult result) {
+		if (result == null || !result.isTransactionComplete())
+			return;
+
+		SerialMessage transaction = result.getCompletedTransaction();
+		synchronized (transactionLock) {
+			if (transaction != lastSentMessage) {
+				logger.debug("NODE {}: Transaction completed after it was abandoned.", transaction.getMessageNode());
+				return;
+			}
+			transactionCompleted.release();
+		}
+		logger.trace("Released. Transaction completed permit count -> {}", transactionCompleted.availablePermits());
+		notifyEventListeners(new ZWaveTransactionCompletedEvent(transaction));
+		transaction.notifyCompleted();
+	}
+
 	/**
 	 * Handles a failed SendData request. This can either be because of the stick actively reporting it
 	 * or because of a time-out of the transaction in the send thread.
 	 * @param originalMessage the original message that was sent
 	 */
-	private void handleFailedSendDataRequest(SerialMessage originalMessage) {
-		new SendDataMessageClass().handleFailedSendDataRequest(this, originalMessage);
+	private void handleFailedSendDataRequest(final SerialMessage originalMessage) {
+		// called on the send thread; the node is changed in its mailbox.
+		nodeExecutor.submit(originalMessage.getMessageNode(), new Runnable() {
+			public void run() {
+				new SendDataMessageClass().handleFailedSendDataRequest(ZWaveController.this, originalMessage);
+			}
+		});
 	}
 
 	/**
@@ -210,18 +311,22 @@ public class ZWaveController {
 	 * An incoming response message is a response, based one of our own requests.
 	 * @param incomingMessage the response message to process.
 	 */
-	private void handleIncomingResponseMessage(SerialMessage incomingMessage) {
+	private void handleIncomingResponseMessage(final SerialMessage incomingMessage) {
 		logger.trace("Message type = RESPONSE");
 
-		ZWaveCommandProcessor processor = ZWaveCommandProcessor.getMessageDispatcher(incomingMessage.getMessageClass());
+		final ZWaveCommandProcessor processor = ZWaveCommandProcessor.getMessageDispatcher(incomingMessage.getMessageClass());
 		if(processor != null) {
-			processor.handleResponse(this, lastSentMessage, incomingMessage);
-
-			if(processor.isTransactionComplete()) {
-				notifyEventListeners(new ZWaveTransactionCompletedEvent(this.lastSentMessage));
-				transactionCompleted.release();
-				logger.trace("Released. Transaction completed permit count -> {}", transactionCompleted.availablePermits());
+			final SerialMessage transaction = lastSentMessage;
+			int nodeId = getIncomingNodeId(incomingMessage, transaction);
+			if (nodeId >= 0) {
+				nodeExecutor.submit(nodeId, new Runnable() {
+					public void run() {
+						completeTransaction(processor.handleResponse(ZWaveController.this, transaction, incomingMessage));
+					}
+				});
 			}
+			else
+				completeTransaction(processor.handleResponse(this, transaction, incomingMessage));
 		}
 		else {
 			logger.warn(String.format("TODO: Implement processing of Response Message = %s (0x%02X)",
@@ -231,16 +336,16 @@ public class ZWaveController {
 
 		switch (incomingMessage.getMessageClass()) {
 			case GetVersion:
-				this.zWaveVersion = ((GetVersionMessageClass)processor).getVersion();
-				this.ZWaveLibraryType = ((GetVersionMessageClass)processor).getLibraryType();
+				this.zWaveVersion = GetVersionMessageClass.getVersion(incomingMessage);
+				this.ZWaveLibraryType = GetVersionMessageClass.getLibraryType(incomingMessage);
 				break;
 			case MemoryGetId:
-				this.ownNodeId = ((MemoryGetIdMessageClass)processor).getNodeId();
-				this.homeId = ((MemoryGetIdMessageClass)processor).getHomeId();
+				this.ownNodeId = MemoryGetIdMessageClass.getNodeId(incomingMessage);
+				this.homeId = MemoryGetIdMessageClass.getHomeId(incomingMessage);
 				break;
 			case SerialApiGetInitData:
 				this.isConnected = true;
-				for(Integer nodeId : ((SerialApiGetInitDataMessageClass)processor).getNodes()) {
+				for(Integer nodeId : SerialApiGetInitDataMessageClass.getNodes(incomingMessage)) {
 					ZWaveNode node = null;
 					try {
 						ZWaveNodeSerializer nodeSerializer = new ZWaveNodeSerializer();
@@ -279,7 +384,7 @@ public class ZWaveController {
 
 								// Handle event handlers
 								if (commandClass instanceof ZWaveEventListener) {
-									this.addEventListener((ZWaveEventListener)commandClass);
+									this.addEventListener(ZWaveTransactionCompletedEvent.class, nodeId, (ZWaveEventListener)commandClass);
 								}
 								
 								// If this is the multi-instance class, add all command classes for the endpoints
@@ -293,7 +398,7 @@ public class ZWaveController {
 
 											// Handle event handlers
 											if (endpointCommandClass instanceof ZWaveEventListener) {
-												this.addEventListener((ZWaveEventListener)endpointCommandClass);
+												this.addEventListener(ZWaveTransactionCompletedEvent.class, nodeId, (ZWaveEventListener)endpointCommandClass);
 											}
 										}
 									}
@@ -322,13 +427,13 @@ public class ZWaveController {
 					}
 
 					// Place nodes in the local ZWave Controller
-					this.zwaveNodes.put(nodeId, node);
-					node.advanceNodeStage(NodeStage.PROTOINFO);
+					this.zwaveNodes.put(node);
+					advanceNodeStageInMailbox(node, NodeStage.PROTOINFO);
 				}
 				break;
 			case GetSucNodeId:
 				// Remember the SUC ID
-				this.sucID = ((GetSucNodeIdMessageClass)processor).getSucNodeId();
+				this.sucID = GetSucNodeIdMessageClass.getSucNodeId(incomingMessage);
 				
 				// If we want to be the SUC, enable it here
 				if(this.setSUC == true && this.sucID == 0) {
@@ -345,15 +450,16 @@ public class ZWaveController {
 				this.enqueue(new GetControllerCapabilitiesMessageClass().doRequest());
 				break;
 			case SerialApiGetCapabilities:
-				this.serialAPIVersion = ((SerialApiGetCapabilitiesMessageClass)processor).getSerialAPIVersion();
-				this.manufactureId = ((SerialApiGetCapabilitiesMessageClass)processor).getManufactureId();
-				this.deviceId = ((SerialApiGetCapabilitiesMessageClass)processor).getDeviceId();
-				this.deviceType = ((SerialApiGetCapabilitiesMessageClass)processor).getDeviceType();
+				this.serialAPIVersion = SerialApiGetCapabilitiesMessageClass.getSerialAPIVersion(incomingMessage);
+				this.manufactureId = SerialApiGetCapabilitiesMessageClass.getManufactureId(incomingMessage);
+				this.deviceId = SerialApiGetCapabilitiesMessageClass.getDeviceId(incomingMessage);
+				this.deviceType = SerialApiGetCapabilitiesMessageClass.getDeviceType(incomingMessage);
+				this.supportedFunctions = SerialApiGetCapabilitiesMessageClass.getSupportedFunctions(incomingMessage);
 				
 				this.enqueue(new SerialApiGetInitDataMessageClass().doRequest());
 				break;
 			case GetControllerCapabilities:
-				this.controllerType = ((GetControllerCapabilitiesMessageClass)processor).getDeviceType();
+				this.controllerType = GetControllerCapabilitiesMessageClass.getDeviceType(incomingMessage);
 				break;
 			default:
 				break;				
@@ -399,14 +505,13 @@ public class ZWaveController {
 		disconnect();
 		
 		// clear nodes collection and send queue
-		ArrayList<ZWaveEventListener> copy = new ArrayList<ZWaveEventListener>(this.zwaveEventListeners);
-		for (Object listener : copy.toArray()) {
-			if (!(listener instanceof ZWaveNode))
-				continue;
-			
-			this.zwaveEventListeners.remove(listener);
-		}
+		this.eventBus.unsubscribeNodes();
 		
+		this.retransmissionScheduler.cancel();
+		this.nodeExecutor.shutdown();
+		this.valueCoalescer.clear();
+		this.interviewScheduler.clear();
+		this.interviewProfiler.clear();
 		this.zwaveNodes.clear();
 		this.sendQueue.clear();
 		
@@ -451,12 +556,49 @@ public class ZWaveController {
 	}
 	
 	/**
-	 * Enqueues a message for sending on the send queue.
+	 * Enqueues a message for sending on the send queue. The message is
+	 * rejected when the controller does not support its message class, or
+	 * when the send queue has reached its capacity for the priority of the
+	 * message and no lower priority message can be shed. The completion
+	 * handler of a rejected message is notified of the failure.
 	 * @param serialMessage the serial message to enqueue.
+	 * @return true if the message was enqueued, false if it was rejected.
 	 */
-	public void enqueue(SerialMessage serialMessage) {
-		this.sendQueue.add(serialMessage);
+	public boolean enqueue(SerialMessage serialMessage) {
+		if (!isFunctionSupported(serialMessage.getMessageClass())) {
+			logger.warn(String.format("Controller does not support %s (0x%02X), rejecting message",
+					serialMessage.getMessageClass().getLabel(), serialMessage.getMessageClass().getKey()));
+			unsupportedCount.incrementAndGet();
+			serialMessage.notifyFailed(SerialMessageCompletionHandler.FailureReason.Unsupported);
+			return false;
+		}
+		if (!this.sendQueue.offer(serialMessage))
+			return false;
 		logger.debug("Enqueueing message. Queue length = {}", this.sendQueue.size());
+		return true;
+	}
+
+	/**
+	 * Puts a message that was sent before back on the send queue, to retry
+	 * it. A message the send queue rejects is dropped and counted; enqueue
+	 * has notified its completion handler already.
+	 * @param serialMessage the serial message to retry.
+	 * @return true if the message was enqueued, false if it was dropped.
+	 */
+	boolean requeue(SerialMessage serialMessage) {
+		if (enqueue(serialMessage))
+			return true;
+		requeueDropCount.incrementAndGet();
+		logger.warn("NODE {}: Send queue rejected a retry, dropping message: {}", serialMessage.getMessageNode(), serialMessage.toString());
+		return false;
+	}
+
+	/**
+	 * Gets the number of retries dropped because the send queue rejected them.
+	 * @return the requeue drop count
+	 */
+	public int getRequeueDropCount() {
+		return requeueDropCount.get();
 	}
 
 	/**
@@ -466,17 +608,83 @@ public class ZWaveController {
 		return this.sendQueue.size();
 	}
 
+	/**
+	 * Indicates whether the controller supports a Serial API function.
+	 * Until the capabilities of the controller are known, all functions are
+	 * considered supported.
+	 * @param messageClass the message class of the function
+	 * @return true if the function is supported or the capabilities are unknown.
+	 */
+	public boolean isFunctionSupported(SerialMessageClass messageClass) {
+		boolean[] functions = this.supportedFunctions;
+		return functions == null || functions[messageClass.getKey() & 0xFF];
+	}
+
+	/**
+	 * Indicates whether the Serial API capabilities of the controller are known.
+	 * @return true if the capabilities are known.
+	 */
+	public boolean isCapabilitiesKnown() {
+		return this.supportedFunctions != null;
+	}
+
+	/**
+	 * Gets the number of messages rejected because the controller does not
+	 * support their message class.
+	 * @return the unsupported count
+	 */
+	public int getUnsupportedCount() {
+		return unsupportedCount.get();
+	}
+
+	/**
+	 * Drops a message whose deadline has passed before it was handed to
+	 * the send queue, for instance while it waited in a wake-up queue. The
+	 * message is counted with the send queue's expired messages and its
+	 * completion handle is notified.
+	 * @param serialMessage the expired message
+	 */
+	public void dropExpiredMessage(SerialMessage serialMessage) {
+		this.sendQueue.expire(serialMessage);
+	}
+
+	/**
+	 * Gets the send queue, for its capacities and metrics.
+	 * @return the send queue
+	 */
+	public ZWaveSendQueue getSendQueue() {
+		return this.sendQueue;
+	}
+
+	/**
+	 * Journals an event and publishes it on the event bus. Transaction
+	 * completions are internal to the controller and are not journaled.
+	 * Value events are also recorded as the last value of their node.
+	 * @param event the event to publish.
+	 */
+	void publishEvent(ZWaveEvent event) {
+		EventJournal journal = this.eventJournal;
+		if (journal != null && !(event instanceof ZWaveTransactionCompletedEvent))
+			journal.append(event);
+		if (event instanceof ZWaveCommandClassValueEvent) {
+			ZWaveNode node = getNode(event.getNodeId());
+			if (node != null)
+				node.setLastValue((ZWaveCommandClassValueEvent) event);
+		}
+		this.eventBus.publish(event);
+	}
+
 	/**
 	 * Notify our own event listeners of a Z-Wave event.
 	 * @param event the event to send.
 	 */
 	public void notifyEventListeners(ZWaveEvent event) {
 		logger.debug("Notifying event listeners");
-		ArrayList<ZWaveEventListener> copy = new ArrayList<ZWaveEventListener>(this.zwaveEventListeners);
-		for (ZWaveEventListener listener : copy) {
-			logger.trace("Notifying {}", listener.toString());
-			listener.ZWaveIncomingEvent(event);
+		if (event instanceof ZWaveCommandClassValueEvent && !this.valueCoalescer.offer((ZWaveCommandClassValueEvent) event)) {
+			logger.trace("NODE {}: Value event coalesced", event.getNodeId());
+			return;
 		}
+		publishEvent(event);
 		
 		// We also need to handle the inclusion internally within the controller
 		if(event instanceof ZWaveInclusionEvent) {
@@ -493,8 +701,8 @@ public class ZWaveController {
 				// Initialise the new node
 				ZWaveNode node = new ZWaveNode(this.homeId, incEvent.getNodeId(), this);
 
-				this.zwaveNodes.put(incEvent.getNodeId(), node);
-				node.advanceNodeStage(NodeStage.PROTOINFO);
+				this.zwaveNodes.put(node);
+				advanceNodeStageInMailbox(node, NodeStage.PROTOINFO);
 				break;
 			case ExcludeDone:
 				logger.debug("NODE {}: Excluding node.", incEvent.getNodeId());
@@ -503,11 +711,15 @@ public class ZWaveController {
 					logger.debug("NODE {}: Excluding node that doesn't exist.", incEvent.getNodeId());
 					break;
 				}
-				this.zwaveNodes.remove(incEvent.getNodeId());
+				ZWaveNode excludedNode = this.zwaveNodes.remove(incEvent.getNodeId());
+				if (excludedNode != null)
+					this.interviewScheduler.remove(excludedNode);
 				
 				// Remove the XML file
 				ZWaveNodeSerializer nodeSerializer = new ZWaveNodeSerializer();
 				nodeSerializer.DeleteNode(event.getNodeId());
+				if (this.interviewCheckpoints != null)
+					this.interviewCheckpoints.delete(event.getNodeId());
 				break;
 			default:
 				break;
@@ -523,7 +735,12 @@ public class ZWaveController {
 					}
 					if (networkEvent.getState() == State.Success) {
 						logger.debug("NODE {}: Marking node as failed because its on the controllers failed node list.", networkEvent.getNodeId());
-						getNode(networkEvent.getNodeId()).setNodeStage(NodeStage.FAILED);
+						final ZWaveNode failedNode = getNode(networkEvent.getNodeId());
+						nodeExecutor.submit(failedNode.getNodeId(), new Runnable() {
+							public void run() {
+								failedNode.setNodeStage(NodeStage.FAILED);
+							}
+						});
 						
 						ZWaveEvent zEvent = new ZWaveNodeStatusEvent(networkEvent.getNodeId(), ZWaveNodeStatusEvent.State.Failed);
 						this.notifyEventListeners(zEvent);
@@ -534,11 +751,15 @@ public class ZWaveController {
 						logger.debug("NODE {}: Deleting a node that doesn't exist.", networkEvent.getNodeId());
 						break;
 					}
-					this.zwaveNodes.remove(networkEvent.getNodeId());
+					ZWaveNode deletedNode = this.zwaveNodes.remove(networkEvent.getNodeId());
+					if (deletedNode != null)
+						this.interviewScheduler.remove(deletedNode);
 					
 					//Remove the XML file
 					ZWaveNodeSerializer nodeSerializer = new ZWaveNodeSerializer();
 					nodeSerializer.DeleteNode(event.getNodeId());
+					if (this.interviewCheckpoints != null)
+						this.interviewCheckpoints.delete(event.getNodeId());
 					break;
 				default:
 					break;
@@ -586,39 +807,51 @@ public class ZWaveController {
 		
 		// There are still nodes waiting to get a ping.
 		// So skip the dead node checking.
-		for (SerialMessage serialMessage : sendQueue) {
-			if (serialMessage.getPriority() == SerialMessagePriority.Low)
-				return;
-		}
+		if (sendQueue.size(SerialMessagePriority.Low) > 0)
+			return;
 		
 		logger.trace("Checking for Dead or Sleeping Nodes.");
-		for (Map.Entry<Integer, ZWaveNode> entry : zwaveNodes.entrySet()){
-			if (entry.getValue().getNodeStage() == NodeStage.EMPTYNODE)
+		List<ZWaveNode> nodes = zwaveNodes.getNodes();
+		for (ZWaveNode node : nodes){
+			if (node.getNodeStage() == NodeStage.EMPTYNODE)
 				continue;
 			
-			logger.debug("NODE {}: In Stage {} since {}, listening={}, FLiRS={}", entry.getKey(),
-					entry.getValue().getNodeStage().getLabel(), entry.getValue().getQueryStageTimeStamp().toString(),
-					entry.getValue().isListening(), entry.getValue().isFrequentlyListening());
+			logger.debug("NODE {}: In Stage {} since {}, listening={}, FLiRS={}", node.getNodeId(),
+					node.getNodeStage().getLabel(), node.getQueryStageTimeStamp(),
+					node.isListening(), node.isFrequentlyListening());
 			
-			if(entry.getValue().getNodeStage() == NodeStage.DONE || entry.getValue().isDead() == true
-					 || (!entry.getValue().isListening() && !entry.getValue().isFrequentlyListening())) {
+			if(node.getNodeStage() == NodeStage.DONE || node.isDead() == true
+					 || (!node.isListening() && !node.isFrequentlyListening())) {
 				completeCount++;
 				continue;
 			}
+
+			// a node waiting for an interview slot isn't advancing, but isn't dead either.
+			if (this.interviewScheduler.isQueued(node))
+				continue;
 			
-			logger.trace("NODE {}: Checking if {} miliseconds have passed in current stage.", entry.getKey(), QUERY_STAGE_TIMEOUT);
+			logger.trace("NODE {}: Checking if {} miliseconds have passed in current stage.", node.getNodeId(), QUERY_STAGE_TIMEOUT);
 			
-			if(Calendar.getInstance().getTimeInMillis() < (entry.getValue().getQueryStageTimeStamp().getTime() + QUERY_STAGE_TIMEOUT))
+			if(System.currentTimeMillis() < (node.getQueryStageTimeStamp() + QUERY_STAGE_TIMEOUT))
 				continue;
 			
-			logger.warn("NODE {}: May be dead, setting stage to DEAD.", entry.getKey());
-			entry.getValue().setNodeStage(NodeStage.DEAD);
+			logger.warn("NODE {}: May be dead, setting stage to DEAD.", node.getNodeId());
+			final ZWaveNode deadNode = node;
+			nodeExecutor.submit(deadNode.getNodeId(), new Runnable() {
+				public void run() {
+					// the node may have answered while this was waiting in the mailbox.
+					if (deadNode.getNodeStage() == NodeStage.DONE || deadNode.isDead()
+							|| System.currentTimeMillis() < deadNode.getQueryStageTimeStamp() + QUERY_STAGE_TIMEOUT)
+						return;
+					deadNode.setNodeStage(NodeStage.DEAD);
+				}
+			});
 
 			completeCount++;
 		}
 		
 		// If all nodes are completed, then we say the binding is ready for business
-		if(this.zwaveNodes.size() == completeCount && initializationComplete == false) {
+		if(nodes.size() == completeCount && initializationComplete == false) {
 			logger.debug("ZWave Initialisation Complete");
 			
 			// We only want this event once!
@@ -656,13 +889,13 @@ public class ZWaveController {
 				if (instances == 0) {
 					Collection<SerialMessage> dynamicQueries = zdds.getDynamicValues();
 					for (SerialMessage serialMessage : dynamicQueries) {
-						sendData(serialMessage);
+						sendPollMessage(serialMessage);
 					}
 				} else {
 					for (int i = 1; i <= instances; i++) {
 						Collection<SerialMessage> dynamicQueries = zdds.getDynamicValues();
 						for (SerialMessage serialMessage : dynamicQueries) {
-							sendData(node.encapsulate(serialMessage, zwaveCommandClass, i));
+							sendPollMessage(node.encapsulate(serialMessage, zwaveCommandClass, i));
 						}
 					}
 				}
@@ -678,7 +911,7 @@ public class ZWaveController {
 							ZWaveCommandClassDynamicState zdds2 = (ZWaveCommandClassDynamicState) endpointCommandClass;
 							Collection<SerialMessage> dynamicQueries = zdds2.getDynamicValues();
 							for (SerialMessage serialMessage : dynamicQueries) {
-								sendData(node.encapsulate(serialMessage,
+								sendPollMessage(node.encapsulate(serialMessage,
 										endpointCommandClass, endpoint.getEndpointId()));
 							}
 						}
@@ -688,6 +921,16 @@ public class ZWaveController {
 		}
 	}
 
+	/**
+	 * Sends a message for a poll. Poll results are stale after a while,
+	 * so poll messages expire if they can't be sent in time.
+	 * @param serialMessage the poll message
+	 */
+	private void sendPollMessage(SerialMessage serialMessage) {
+		serialMessage.setTimeToLive(POLL_TIME_TO_LIVE);
+		sendData(serialMessage);
+	}
+
 	/**
 	 * Request the node routing information.
 	 *
@@ -698,6 +941,26 @@ public class ZWaveController {
 		this.enqueue(new GetRoutingInfoMessageClass().doRequest(nodeId));
 	}
 
+	/**
+	 * Re-interviews an initialized node incrementally: its node information
+	 * is compared with its command classes, and only what was added or
+	 * changed is queried. The re-interview starts in the node's mailbox,
+	 * like the other changes to the node.
+	 * @param nodeId the node to re-interview
+	 * @return false if the node doesn't exist or hasn't been initialized.
+	 */
+	public boolean reinterviewNode(int nodeId) {
+		final ZWaveNode node = this.getNode(nodeId);
+		if (node == null || !node.isInitializationComplete())
+			return false;
+		nodeExecutor.submit(nodeId, new Runnable() {
+			public void run() {
+				node.reinterview();
+			}
+		});
+		return true;
+	}
+
 	/**
 	 * Request the node neighbor list to be updated for the specified node.
 	 * Once this is complete, the requestNodeRoutingInfo will be called
@@ -827,17 +1090,22 @@ public class ZWaveController {
 	/**
 	 * Transmits the SerialMessage to a single Z-Wave Node.
 	 * Sets the transmission options as well.
+	 * Can be called from any thread, not only the node's mailbox: the send
+	 * count is written under the node's write lock, and the wake-up queue
+	 * is synchronized by the wake-up command class.
 	 * @param serialMessage the Serial message to send.
+	 * @return true if the message was accepted for sending or placed in the
+	 * wake-up queue, false if it was invalid or rejected by the send queue.
 	 */
-	public void sendData(SerialMessage serialMessage)
+	public boolean sendData(SerialMessage serialMessage)
 	{
     	if (serialMessage.getMessageClass() != SerialMessageClass.SendData) {
     		logger.error(String.format("Invalid message class %s (0x%02X) for sendData", serialMessage.getMessageClass().getLabel(), serialMessage.getMessageClass().getKey()));
-    		return;
+    		return false;
     	}
     	if (serialMessage.getMessageType() != SerialMessageType.Request) {
     		logger.error("Only request messages can be sent");
-    		return;
+    		return false;
     	}
     	
     	ZWaveNode node = this.getNode(serialMessage.getMessageNode());
@@ -850,21 +1118,189 @@ public class ZWaveController {
 
 			// If it's a battery operated device, check if it's awake or place in wake-up queue.
 			if (wakeUpCommandClass != null && !wakeUpCommandClass.processOutgoingWakeupMessage(serialMessage)) {
-				return;
+				return true;
 			}
 		}
     	
     	serialMessage.setTransmitOptions(TRANSMIT_OPTION_ACK | TRANSMIT_OPTION_AUTO_ROUTE | TRANSMIT_OPTION_EXPLORE);
     	serialMessage.setCallbackId(getCallbackId());
-    	this.enqueue(serialMessage);
+    	return this.enqueue(serialMessage);
 	}
 	
+	/**
+	 * Gets the response time estimator for a node. The estimator is fed
+	 * with the time it takes to complete SendData transactions to the node
+	 * and determines the timeout used for those transactions.
+	 * @param nodeId the node ID to get the estimator for.
+	 * @return the response time estimator.
+	 */
+	public ResponseTimeEstimator getResponseTimeEstimator(int nodeId) {
+		synchronized (responseTimeEstimators) {
+			ResponseTimeEstimator estimator = responseTimeEstimators[nodeId & 0xFF];
+			if (estimator == null) {
+				estimator = new ResponseTimeEstimator(MIN_ZWAVE_RESPONSE_TIMEOUT, zWaveResponseTimeout);
+				responseTimeEstimators[nodeId & 0xFF] = estimator;
+			}
+			return estimator;
+		}
+	}
+
+	/**
+	 * Records the response time of a successfully completed transaction.
+	 * Only SendData transactions are recorded, since those are the only
+	 * ones that depend on the node being addressed.
+	 * @param completedMessage the message of the completed transaction.
+	 */
+	public void recordResponseTime(SerialMessage completedMessage) {
+		if (completedMessage == null || completedMessage.getMessageClass() != SerialMessageClass.SendData
+				|| completedMessage.getTransmitTime() == 0)
+			return;
+
+		long responseTime = System.currentTimeMillis() - completedMessage.getTransmitTime();
+		ResponseTimeEstimator estimator = getResponseTimeEstimator(completedMessage.getMessageNode());
+		estimator.addSample(responseTime);
+		airtimePacer.onSuccess(completedMessage.getMessageNode());
+		logger.trace("NODE {}: Response time {}ms, smoothed {}ms, timeout {}ms.", completedMessage.getMessageNode(),
+				responseTime, estimator.getSmoothedResponseTime(), estimator.getTimeout());
+	}
+
+	/**
+	 * Gets the airtime pacer that spaces out SendData frames.
+	 * @return the airtime pacer
+	 */
+	public AirtimePacer getAirtimePacer() {
+		return airtimePacer;
+	}
+
+	/**
+	 * Gets the event bus the controller publishes its events on.
+	 * @return the event bus
+	 */
+	public ZWaveEventBus getEventBus() {
+		return eventBus;
+	}
+
+	/**
+	 * Sets the journal the published events are appended to.
+	 * @param eventJournal the journal, or null to stop journaling.
+	 */
+	public void setEventJournal(EventJournal eventJournal) {
+		this.eventJournal = eventJournal;
+	}
+
+	/**
+	 * Gets the journal the published events are appended to.
+	 * @return the journal, or null if events are not journaled.
+	 */
+	public EventJournal getEventJournal() {
+		return eventJournal;
+	}
+
+	/**
+	 * Sets the store that lets interrupted interviews resume after a restart.
+	 * @param interviewCheckpoints the checkpoints, or null to always interview from the start.
+	 */
+	public void setInterviewCheckpoints(ZWaveInterviewCheckpoints interviewCheckpoints) {
+		this.interviewCheckpoints = interviewCheckpoints;
+	}
+
+	/**
+	 * Gets the store that lets interrupted interviews resume after a restart.
+	 * @return the checkpoints, or null if interviews aren't checkpointed.
+	 */
+	public ZWaveInterviewCheckpoints getInterviewCheckpoints() {
+		return interviewCheckpoints;
+	}
+
+	/**
+	 * Gets the coalescer that drops or merges repeated meter and sensor values.
+	 * @return the value coalescer
+	 */
+	public ValueEventCoalescer getValueCoalescer() {
+		return valueCoalescer;
+	}
+
+	/**
+	 * Gets the scheduler that limits how many nodes are interviewed at once.
+	 * @return the interview scheduler
+	 */
+	public ZWaveInterviewScheduler getInterviewScheduler() {
+		return interviewScheduler;
+	}
+
+	/**
+	 * Gets the profiler that records what the interview of each node costs.
+	 * @return the interview profiler
+	 */
+	public ZWaveInterviewProfiler getInterviewProfiler() {
+		return interviewProfiler;
+	}
+
+	/**
+	 * Gets the executor that processes the messages from nodes in a
+	 * mailbox per node.
+	 * @return the node executor
+	 */
+	public NodeMailboxExecutor getNodeExecutor() {
+		return nodeExecutor;
+	}
+
+	/**
+	 * Lowers the pacing rate after the controller answered with a CAN or NAK.
+	 * @param serialMessage the message that was refused, may be null.
+	 */
+	private void signalCongestion(SerialMessage serialMessage) {
+		if (serialMessage != null && serialMessage.getMessageClass() == SerialMessageClass.SendData)
+			airtimePacer.onCongestion(serialMessage.getMessageNode());
+		else
+			airtimePacer.onCongestion(0);
+	}
+
+	/**
+	 * Gets the time the send thread has to wait before sending a SendData
+	 * message, to keep within the airtime budget. The airtime is estimated
+	 * from the command length and the link speed of the destination node.
+	 * @param serialMessage the SendData message that is about to be sent.
+	 * @return the delay in milliseconds.
+	 */
+	private long getPacingDelay(SerialMessage serialMessage) {
+		ZWaveNode node = getNode(serialMessage.getMessageNode());
+		int baudRate = node == null ? 9600 : node.getMaxBaudRate();
+		long airtime = AirtimePacer.estimateAirtime(serialMessage.getMessagePayloadByte(1), baudRate);
+		return airtimePacer.reserve(serialMessage.getMessageNode(), airtime);
+	}
+
+	/**
+	 * Gets the timeout to use for the transaction of a message.
+	 * SendData transactions use the timeout estimated for the destination node,
+	 * all other transactions use the configured Z-Wave response timeout.
+	 * @param serialMessage the message that is about to be sent.
+	 * @return the timeout in milliseconds.
+	 */
+	private long getTransactionTimeout(SerialMessage serialMessage) {
+		if (serialMessage.getMessageClass() != SerialMessageClass.SendData)
+			return zWaveResponseTimeout;
+
+		return getResponseTimeEstimator(serialMessage.getMessageNode()).getTimeout();
+	}
+
 	/**
 	 * Add a listener for Z-Wave events to this controller.
 	 * @param eventListener the event listener to add.
 	 */
 	public void addEventListener(ZWaveEventListener eventListener) {
-		this.zwaveEventListeners.add(eventListener);
+		this.eventBus.subscribe(eventListener);
+	}
+
+	/**
+	 * Add a listener for one type of Z-Wave event of one node to this controller.
+	 * Used for listeners that belong to a node, such as its command classes.
+	 * @param eventType the type of event to receive, including its subclasses.
+	 * @param nodeId the node to receive events of.
+	 * @param eventListener the event listener to add.
+	 */
+	public void addEventListener(Class<? extends ZWaveEvent> eventType, int nodeId, ZWaveEventListener eventListener) {
+		this.eventBus.subscribe(eventType, nodeId, null, eventListener);
 	}
 
 	/**
@@ -872,7 +1308,7 @@ public class ZWaveController {
 	 * @param eventListener the event listener to remove.
 	 */
 	public void removeEventListener(ZWaveEventListener eventListener) {
-		this.zwaveEventListeners.remove(eventListener);
+		this.eventBus.unsubscribe(eventListener);
 	}
 	
     /**
@@ -950,11 +1386,12 @@ public class ZWaveController {
 	}
 	
 	/**
-	 * Gets the node list
-	 * @return
+	 * Gets the node list. The list is a snapshot, so it can be iterated
+	 * while nodes are added or removed.
+	 * @return an unmodifiable list of the nodes, in node id order.
 	 */
-	public Collection<ZWaveNode> getNodes() {
-		return this.zwaveNodes.values();
+	public List<ZWaveNode> getNodes() {
+		return this.zwaveNodes.getNodes();
 	}
 
 	/**
@@ -971,7 +1408,7 @@ public class ZWaveController {
 	 * @return the sOFCount
 	 */
 	public int getSOFCount() {
-		return SOFCount;
+		return (int) SOFCount.getCount();
 	}
 
 	/**
@@ -979,7 +1416,7 @@ public class ZWaveController {
 	 * @return the cANCount
 	 */
 	public int getCANCount() {
-		return CANCount;
+		return (int) CANCount.getCount();
 	}
 
 	/**
@@ -987,7 +1424,7 @@ public class ZWaveController {
 	 * @return the nAKCount
 	 */
 	public int getNAKCount() {
-		return NAKCount;
+		return (int) NAKCount.getCount();
 	}
 
 	/**
@@ -995,7 +1432,7 @@ public class ZWaveController {
 	 * @return the aCKCount
 	 */
 	public int getACKCount() {
-		return ACKCount;
+		return (int) ACKCount.getCount();
 	}
 
 	/**
@@ -1003,9 +1440,33 @@ public class ZWaveController {
 	 * @return the oOFCount
 	 */
 	public int getOOFCount() {
-		return OOFCount;
+		return (int) OOFCount.getCount();
 	}
 	
+	/**
+	 * Gets the number of Canceled Frames received in the last minute.
+	 * @return the CAN rate per minute
+	 */
+	public long getCANRate() {
+		return CANCount.getRatePerMinute();
+	}
+
+	/**
+	 * Gets the number of Not Acknowledged Frames received in the last minute.
+	 * @return the NAK rate per minute
+	 */
+	public long getNAKRate() {
+		return NAKCount.getRatePerMinute();
+	}
+
+	/**
+	 * Gets the number of Out of Order frames received in the last minute.
+	 * @return the OOF rate per minute
+	 */
+	public long getOOFRate() {
+		return OOFCount.getRatePerMinute();
+	}
+
 	/**
 	 * Returns the number of Time-Outs while sending.
 	 * @return the oOFCount
@@ -1059,15 +1520,34 @@ public class ZWaveController {
 								continue;
 							}
 						}
+
+						// Count the frame now that it goes out, not when it was queued for a sleeping node.
+						interviewProfiler.frameSent(lastSentMessage.getMessageNode());
+						
+						// Space out frames to stay within the airtime budget.
+						long pacingDelay = getPacingDelay(lastSentMessage);
+						if (pacingDelay > 0) {
+							logger.trace("NODE {}: Pacing delay {}ms", lastSentMessage.getMessageNode(), pacingDelay);
+							try {
+								Thread.sleep(pacingDelay);
+							} catch (InterruptedException e) {
+								break;
+							}
+						}
 					}
 					
 					// Clear the semaphore used to acknowledge the response.
-					transactionCompleted.drainPermits();
+					synchronized (transactionLock) {
+						transactionCompleted.drainPermits();
+						transactionRefused = false;
+					}
 					
 					// Send the message to the controller
 					byte[] buffer = lastSentMessage.getMessageBuffer();
 					logger.debug("Sending Message = " + SerialMessage.bb2hex(buffer));
 					lastMessageStartTime = System.currentTimeMillis();
+					lastSentMessage.setTransmitTime(lastMessageStartTime);
+					long transactionTimeout = getTransactionTimeout(lastSentMessage);
 					try {
 						serialPort.writeBytes(buffer);
 						/*
@@ -1084,9 +1564,10 @@ public class ZWaveController {
 					
 					// Now wait for the response...
 					try {
-						if (!transactionCompleted.tryAcquire(1, zWaveResponseTimeout, TimeUnit.MILLISECONDS)) {
+						if (!transactionCompleted.tryAcquire(1, transactionTimeout, TimeUnit.MILLISECONDS)) {
 							timeOutCount.incrementAndGet();
 							if (lastSentMessage.getMessageClass() == SerialMessageClass.SendData) {
+								getResponseTimeEstimator(lastSentMessage.getMessageNode()).backoff();
 								
 								buffer = new SerialMessage(SerialMessageClass.SendDataAbort, SerialMessageType.Request, SerialMessageClass.SendData, SerialMessagePriority.High).getMessageBuffer();
 								logger.debug("Sending Message = " + SerialMessage.bb2hex(buffer));
@@ -1106,17 +1587,23 @@ public class ZWaveController {
 							}
 	
 							if (--lastSentMessage.attempts >= 0) {
-								logger.error("NODE {}: Timeout while sending message. Requeueing", lastSentMessage.getMessageNode());
+								logger.error("NODE {}: Timeout after {}ms while sending message. Requeueing", lastSentMessage.getMessageNode(), transactionTimeout);
 								if (lastSentMessage.getMessageClass() == SerialMessageClass.SendData)
 									handleFailedSendDataRequest(lastSentMessage);
 								else
-									enqueue(lastSentMessage);
+									requeue(lastSentMessage);
 							} else
 							{
 								logger.warn("NODE {}: Discarding message: {}", lastSentMessage.getMessageNode(), lastSentMessage.toString());
+								lastSentMessage.notifyFailed(SerialMessageCompletionHandler.FailureReason.Discarded);
 							}
 							continue;
 						}
+						// The controller refused the frame (CAN or NAK), retransmit it after a backoff.
+						if (transactionRefused) {
+							retransmissionScheduler.schedule(lastSentMessage);
+							continue;
+						}
 						long responseTime = System.currentTimeMillis() - lastMessageStartTime;
 						if(responseTime > longestResponseTime)
 							longestResponseTime = responseTime;
@@ -1242,34 +1729,36 @@ public class ZWaveController {
 							logger.trace("Reading message finished" );
 							logger.debug("Receive Message = {}", SerialMessage.bb2hex(buffer));
 							processIncomingMessage(buffer);
-							SOFCount++;
+							SOFCount.increment();
 							break;
 						case ACK:
 	    					logger.trace("Received ACK");
-							ACKCount++;
+							ACKCount.increment();
 							break;
 						case NAK:
-	    					logger.error("Message not acklowledged by controller (NAK), discarding");
-	    					transactionCompleted.release();
+	    					logger.error("Message not acklowledged by controller (NAK), resending");
+	    					signalCongestion(lastSentMessage);
+	    					synchronized (transactionLock) {
+	    						transactionRefused = true;
+	    						transactionCompleted.release();
+	    					}
 	    					logger.trace("Released. Transaction completed permit count -> {}", transactionCompleted.availablePermits());
-							NAKCount++;
+							NAKCount.increment();
 							break;
 						case CAN:
 	    					logger.error("Message cancelled by controller (CAN), resending");
-							try {
-								Thread.sleep(100);
-							} catch (InterruptedException e) {
-								break;
-							}
-	    					enqueue(lastSentMessage);
-	    					transactionCompleted.release();
+	    					signalCongestion(lastSentMessage);
+	    					synchronized (transactionLock) {
+	    						transactionRefused = true;
+	    						transactionCompleted.release();
+	    					}
 	    					logger.trace("Released. Transaction completed permit count -> {}", transactionCompleted.availablePermits());
-							CANCount++;
+							CANCount.increment();
 							break;
 						default:
 							logger.warn(String.format("Out of Frame flow. Got 0x%02X. Sending NAK.", nextByte));
 	    					sendResponse(NAK);
-	    					OOFCount++;
+	    					OOFCount.increment();
 	    					break;
 					}
 				}
@@ -8,9 +8,6 @@
  */
 package org.openhab.binding.zwave.internal.protocol;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveCommandClass.CommandClass;
 import me.wbarlow.zwavemanagement.logging.Logger;
 import me.wbarlow.zwavemanagement.logging.LoggerFactory;
@@ -154,7 +151,7 @@ public class ZWaveDeviceClass {
 		 * A mapping between the integer code and its corresponding Basic device
 		 * class to facilitate lookup by code.
 		 */
-		private static Map<Integer, Basic> codeToBasicMapping;
+		private static final Basic[] codeToBasicMapping = new Basic[256];
 
 		private int key;
 		private String label;
@@ -164,10 +161,9 @@ public class ZWaveDeviceClass {
 			this.label = label;
 		}
 
-		private static void initMapping() {
-			codeToBasicMapping = new HashMap<Integer, Basic>();
+		static {
 			for (Basic s : values()) {
-				codeToBasicMapping.put(s.key, s);
+				codeToBasicMapping[s.key] = s;
 			}
 		}
 
@@ -178,11 +174,9 @@ public class ZWaveDeviceClass {
 		 * @return enumeration value of the basic device class.
 		 */
 		public static Basic getBasic(int i) {
-			if (codeToBasicMapping == null) {
-				initMapping();
-			}
-			
-			return codeToBasicMapping.get(i);
+			if (i < 0 || i >= codeToBasicMapping.length)
+				return null;
+			return codeToBasicMapping[i];
 		}
 
 		/**
@@ -239,7 +233,7 @@ public class ZWaveDeviceClass {
 		 * A mapping between the integer code and its corresponding Generic
 		 * Device class to facilitate lookup by code.
 		 */
-		private static Map<Integer, Generic> codeToGenericMapping;
+		private static final Generic[] codeToGenericMapping = new Generic[256];
 
 		private int key;
 		private String label;
@@ -249,10 +243,9 @@ public class ZWaveDeviceClass {
 			this.label = label;
 		}
 
-		private static void initMapping() {
-			codeToGenericMapping = new HashMap<Integer, Generic>();
+		static {
 			for (Generic s : values()) {
-				codeToGenericMapping.put(s.key, s);
+				codeToGenericMapping[s.key] = s;
 			}
 		}
 
@@ -263,11 +256,9 @@ public class ZWaveDeviceClass {
 		 * @return enumeration value of the generic device class.
 		 */
 		public static Generic getGeneric(int i) {
-			if (codeToGenericMapping == null) {
-				initMapping();
-			}
-			
-			return codeToGenericMapping.get(i);
+			if (i < 0 || i >= codeToGenericMapping.length)
+				return null;
+			return codeToGenericMapping[i];
 		}
 
 		/**
@@ -398,7 +389,7 @@ public class ZWaveDeviceClass {
 		/**
 	     * A mapping between the integer code and its corresponding Generic Device class to facilitate lookup by code.
 	     */
-	    private static Map<Generic, Map<Integer, Specific>> codeToSpecificMapping;
+	    private static final Specific[][] codeToSpecificMapping = new Specific[256][];
 		
 		private int key;
 		private Generic genericDeviceClass;
@@ -410,12 +401,12 @@ public class ZWaveDeviceClass {
 			this.genericDeviceClass = genericDeviceClass;
 		}
 		
-	    private static void initMapping() {
-	    	codeToSpecificMapping = new HashMap<Generic, Map<Integer, Specific>>();
+	    static {
 	        for (Specific s : values()) {
-	        	if (!codeToSpecificMapping.containsKey(s.genericDeviceClass))
-	        		codeToSpecificMapping.put(s.genericDeviceClass, new HashMap<Integer, Specific>());
-	        	codeToSpecificMapping.get(s.genericDeviceClass).put(s.key, s);
+	        	int generic = s.genericDeviceClass.getKey();
+	        	if (codeToSpecificMapping[generic] == null)
+	        		codeToSpecificMapping[generic] = new Specific[256];
+	        	codeToSpecificMapping[generic][s.key] = s;
 	        }
 	    }
 
@@ -427,18 +418,18 @@ public class ZWaveDeviceClass {
 	     * @return the Specific enumeration
 	     */
 		public static Specific getSpecific(Generic genericDeviceClass, int i) {
-	        if (codeToSpecificMapping == null) {
-	            initMapping();
-	        }
+	        if (i < 0 || i >= 256)
+	        	return null;
+
 	        // special case for SPECIFIC_TYPE_NOT_USED. It's valid for all
 	        // generic classes (and bound to NOT_KNOWN).
 	        if (i == 0)
-	        	return codeToSpecificMapping.get(Generic.NOT_KNOWN).get(i);
+	        	return codeToSpecificMapping[Generic.NOT_KNOWN.getKey()][i];
 	        
-	        if (!codeToSpecificMapping.containsKey(genericDeviceClass))
+	        if (genericDeviceClass == null || codeToSpecificMapping[genericDeviceClass.getKey()] == null)
 				return null;
 
-	        return codeToSpecificMapping.get(genericDeviceClass).get(i);
+	        return codeToSpecificMapping[genericDeviceClass.getKey()][i];
 		}
 
 		/**
@@ -9,8 +9,6 @@
 package org.openhab.binding.zwave.internal.protocol;
 
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
 
 import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveCommandClass;
 import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveCommandClass.CommandClass;
@@ -29,7 +27,8 @@ public class ZWaveEndpoint {
 	private final ZWaveDeviceClass deviceClass;
 	private final int endpointId;
 
-	private Map<CommandClass, ZWaveCommandClass> supportedCommandClasses = new HashMap<CommandClass, ZWaveCommandClass>();
+	// Replaced on write, so readers can iterate it while command classes are added.
+	private volatile ZWaveCommandClassTable supportedCommandClasses = ZWaveCommandClassTable.EMPTY;
 
 	/**
 	 * Constructor. Creates a new instance of the ZWaveEndpoint class.
@@ -78,11 +77,8 @@ public class ZWaveEndpoint {
 	 * endpoint. Does nothing if command class is already added.
 	 * @param commandClass the command class instance to add.
 	 */
-	public void addCommandClass(ZWaveCommandClass commandClass) {
-		CommandClass key = commandClass.getCommandClass();
-
-		if (!supportedCommandClasses.containsKey(key))
-			supportedCommandClasses.put(key, commandClass);
+	public synchronized void addCommandClass(ZWaveCommandClass commandClass) {
+		supportedCommandClasses = supportedCommandClasses.with(commandClass);
 	}
 
 	/**
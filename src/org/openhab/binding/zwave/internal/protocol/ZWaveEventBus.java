@@ -0,0 +1,273 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.internal.protocol;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveCommandClass.CommandClass;
+import org.openhab.binding.zwave.internal.protocol.event.ZWaveCommandClassValueEvent;
+import org.openhab.binding.zwave.internal.protocol.event.ZWaveEvent;
+
+import me.wbarlow.zwavemanagement.logging.Logger;
+import me.wbarlow.zwavemanagement.logging.LoggerFactory;
+
+/**
+ * Z-Wave event bus. Listeners subscribe to a type of event, optionally
+ * limited to one node and one command class. Subscriptions are indexed by
+ * event type, node and command class in copy-on-write arrays, so publishing
+ * an event only visits the matching subscribers and does not allocate.
+ * A subscription to an event type also receives the subclasses of the type;
+ * a subscription to {@link ZWaveEvent} receives every event.
+ * Listeners are called on the publishing thread, unless they are subscribed
+ * asynchronously; those get a queue and a dispatcher thread of their own.
+ * @author Woodrow Barlow
+ */
+public class ZWaveEventBus {
+
+	private static final Logger logger = LoggerFactory.getLogger(ZWaveEventBus.class);
+
+	/**
+	 * Node id that matches events of all nodes.
+	 */
+	public static final int ANY_NODE = -1;
+
+	private static final int MAX_NODES = 256;
+	private static final Subscription[] EMPTY = new Subscription[0];
+
+	private volatile Map<Class<?>, Slot> slots = new HashMap<Class<?>, Slot>();
+	private final List<AsyncEventSubscriber> asyncSubscribers = new ArrayList<AsyncEventSubscriber>();
+
+	/**
+	 * Subscribes a listener to all events.
+	 * @param listener the listener
+	 */
+	public void subscribe(ZWaveEventListener listener) {
+		subscribe(ZWaveEvent.class, ANY_NODE, null, listener);
+	}
+
+	/**
+	 * Subscribes a listener to a type of event of all nodes.
+	 * @param eventType the type of event
+	 * @param listener the listener
+	 */
+	public void subscribe(Class<? extends ZWaveEvent> eventType, ZWaveEventListener listener) {
+		subscribe(eventType, ANY_NODE, null, listener);
+	}
+
+	/**
+	 * Subscribes a listener to a type of event.
+	 * @param eventType the type of event
+	 * @param nodeId the node to receive events of, or {@link #ANY_NODE}.
+	 * @param commandClass the command class to receive value events of, or
+	 * null for all command classes. Events that are not value events never
+	 * match a subscription with a command class.
+	 * @param listener the listener
+	 */
+	public synchronized void subscribe(Class<? extends ZWaveEvent> eventType, int nodeId, CommandClass commandClass,
+			ZWaveEventListener listener) {
+		if (nodeId != ANY_NODE && (nodeId < 0 || nodeId >= MAX_NODES))
+			throw new IllegalArgumentException("Invalid node id " + nodeId);
+
+		Slot slot = slots.get(eventType);
+		if (slot == null) {
+			slot = new Slot();
+			Map<Class<?>, Slot> copy = new HashMap<Class<?>, Slot>(slots);
+			copy.put(eventType, slot);
+			slots = copy;
+		}
+
+		Subscription subscription = new Subscription(listener, commandClass);
+		if (nodeId != ANY_NODE)
+			slot.byNode.set(nodeId, append(slot.byNode.get(nodeId), subscription));
+		else if (commandClass != null)
+			slot.byCommandClass.set(commandClass.getKey(), append(slot.byCommandClass.get(commandClass.getKey()), subscription));
+		else
+			slot.all = append(slot.all, subscription);
+	}
+
+	/**
+	 * Subscribes a listener to a type of event with asynchronous delivery.
+	 * The events are queued and delivered on a dispatcher thread of the
+	 * subscriber.
+	 * @param eventType the type of event
+	 * @param nodeId the node to receive events of, or {@link #ANY_NODE}.
+	 * @param commandClass the command class to receive value events of, or null.
+	 * @param listener the listener
+	 * @param capacity the maximum number of queued events.
+	 * @param policy what to do with an event when the queue is full.
+	 * @return the asynchronous subscriber, for its metrics.
+	 */
+	public synchronized AsyncEventSubscriber subscribeAsync(Class<? extends ZWaveEvent> eventType, int nodeId,
+			CommandClass commandClass, ZWaveEventListener listener, int capacity, AsyncEventSubscriber.OverflowPolicy policy) {
+		AsyncEventSubscriber subscriber = new AsyncEventSubscriber(listener, capacity, policy);
+		subscribe(eventType, nodeId, commandClass, subscriber);
+		asyncSubscribers.add(subscriber);
+		return subscriber;
+	}
+
+	/**
+	 * Gets the asynchronous subscribers.
+	 * @return a copy of the list of asynchronous subscribers.
+	 */
+	public synchronized List<AsyncEventSubscriber> getAsyncSubscribers() {
+		return new ArrayList<AsyncEventSubscriber>(asyncSubscribers);
+	}
+
+	/**
+	 * Removes all subscriptions of a listener. Asynchronous subscriptions
+	 * of the listener are stopped.
+	 * @param listener the listener
+	 */
+	public synchronized void unsubscribe(ZWaveEventListener listener) {
+		for (int i = asyncSubscribers.size() - 1; i >= 0; i--) {
+			AsyncEventSubscriber subscriber = asyncSubscribers.get(i);
+			if (subscriber.getListener() != listener)
+				continue;
+			subscriber.stop();
+			asyncSubscribers.remove(i);
+		}
+
+		for (Slot slot : slots.values()) {
+			slot.all = remove(slot.all, listener);
+			for (int i = 0; i < MAX_NODES; i++) {
+				slot.byNode.set(i, remove(slot.byNode.get(i), listener));
+				slot.byCommandClass.set(i, remove(slot.byCommandClass.get(i), listener));
+			}
+		}
+	}
+
+	/**
+	 * Removes all subscriptions that are limited to a node.
+	 */
+	public synchronized void unsubscribeNodes() {
+		for (Slot slot : slots.values()) {
+			for (int i = 0; i < MAX_NODES; i++)
+				slot.byNode.set(i, EMPTY);
+		}
+	}
+
+	/**
+	 * Publishes an event to the matching subscribers.
+	 * @param event the event
+	 */
+	public void publish(ZWaveEvent event) {
+		Map<Class<?>, Slot> current = slots;
+		int nodeId = event.getNodeId();
+		CommandClass commandClass = null;
+		if (event instanceof ZWaveCommandClassValueEvent)
+			commandClass = ((ZWaveCommandClassValueEvent) event).getCommandClass();
+
+		for (Class<?> type = event.getClass(); type != null && ZWaveEvent.class.isAssignableFrom(type); type = type.getSuperclass()) {
+			Slot slot = current.get(type);
+			if (slot == null)
+				continue;
+
+			deliver(slot.all, event, commandClass);
+			if (nodeId >= 0 && nodeId < MAX_NODES)
+				deliver(slot.byNode.get(nodeId), event, commandClass);
+			if (commandClass != null)
+				deliver(slot.byCommandClass.get(commandClass.getKey()), event, commandClass);
+		}
+	}
+
+	private void deliver(Subscription[] subscriptions, ZWaveEvent event, CommandClass commandClass) {
+		for (int i = 0; i < subscriptions.length; i++) {
+			Subscription subscription = subscriptions[i];
+			if (subscription.commandClass != null && subscription.commandClass != commandClass)
+				continue;
+			try {
+				subscription.listener.ZWaveIncomingEvent(event);
+			} catch (RuntimeException e) {
+				logger.error("NODE {}: Event listener failed on {}.", event.getNodeId(), event.getClass().getSimpleName(), e);
+			}
+		}
+	}
+
+	/**
+	 * Gets the number of subscriptions.
+	 * @return the subscription count
+	 */
+	public synchronized int getSubscriptionCount() {
+		int count = 0;
+		for (Slot slot : slots.values()) {
+			count += slot.all.length;
+			for (int i = 0; i < MAX_NODES; i++)
+				count += slot.byNode.get(i).length + slot.byCommandClass.get(i).length;
+		}
+		return count;
+	}
+
+	private static Subscription[] append(Subscription[] subscriptions, Subscription subscription) {
+		Subscription[] copy = new Subscription[subscriptions.length + 1];
+		System.arraycopy(subscriptions, 0, copy, 0, subscriptions.length);
+		copy[subscriptions.length] = subscription;
+		return copy;
+	}
+
+	private static Subscription[] remove(Subscription[] subscriptions, ZWaveEventListener listener) {
+		int remaining = 0;
+		for (Subscription subscription : subscriptions) {
+			if (!subscription.belongsTo(listener))
+				remaining++;
+		}
+		if (remaining == subscriptions.length)
+			return subscriptions;
+		if (remaining == 0)
+			return EMPTY;
+
+		Subscription[] copy = new Subscription[remaining];
+		int i = 0;
+		for (Subscription subscription : subscriptions) {
+			if (!subscription.belongsTo(listener))
+				copy[i++] = subscription;
+		}
+		return copy;
+	}
+
+	/**
+	 * The subscriptions to one type of event.
+	 * @author Woodrow Barlow
+	 */
+	private static class Slot {
+		private volatile Subscription[] all = EMPTY;
+		private final AtomicReferenceArray<Subscription[]> byNode = newIndex();
+		private final AtomicReferenceArray<Subscription[]> byCommandClass = newIndex();
+
+		private static AtomicReferenceArray<Subscription[]> newIndex() {
+			AtomicReferenceArray<Subscription[]> index = new AtomicReferenceArray<Subscription[]>(MAX_NODES);
+			for (int i = 0; i < MAX_NODES; i++)
+				index.set(i, EMPTY);
+			return index;
+		}
+	}
+
+	/**
+	 * A subscription of a listener.
+	 * @author Woodrow Barlow
+	 */
+	private static class Subscription {
+		private final ZWaveEventListener listener;
+		private final CommandClass commandClass;
+
+		private Subscription(ZWaveEventListener listener, CommandClass commandClass) {
+			this.listener = listener;
+			this.commandClass = commandClass;
+		}
+
+		private boolean belongsTo(ZWaveEventListener owner) {
+			if (listener == owner)
+				return true;
+			return listener instanceof AsyncEventSubscriber && ((AsyncEventSubscriber) listener).getListener() == owner;
+		}
+	}
+}
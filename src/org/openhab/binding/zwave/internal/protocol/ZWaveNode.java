@@ -9,12 +9,13 @@
 package org.openhab.binding.zwave.internal.protocol;
 
 import java.util.ArrayList;
-import java.util.Calendar;
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.openhab.binding.zwave.internal.protocol.ZWaveDeviceClass.Basic;
 import org.openhab.binding.zwave.internal.protocol.ZWaveDeviceClass.Generic;
@@ -24,8 +25,10 @@ import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveCommandClas
 import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveWakeUpCommandClass;
 import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveCommandClass.CommandClass;
 import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveMultiInstanceCommandClass;
+import org.openhab.binding.zwave.internal.protocol.event.ZWaveCommandClassValueEvent;
 import org.openhab.binding.zwave.internal.protocol.event.ZWaveEvent;
 import org.openhab.binding.zwave.internal.protocol.event.ZWaveNodeStatusEvent;
+import org.openhab.binding.zwave.internal.protocol.event.ZWaveTransactionCompletedEvent;
 import org.openhab.binding.zwave.internal.protocol.initialization.ZWaveNodeStageAdvancer;
 import me.wbarlow.zwavemanagement.logging.Logger;
 import me.wbarlow.zwavemanagement.logging.LoggerFactory;
@@ -55,17 +58,22 @@ public class ZWaveNode {
 	private int deviceId = Integer.MAX_VALUE;
 	private int deviceType = Integer.MAX_VALUE;
 	
-	private boolean listening;			 // i.e. sleeping
-	private boolean frequentlyListening; 
+	// Read by ZWaveController.sendData on the caller's thread.
+	private volatile boolean listening;			 // i.e. sleeping
+	private volatile boolean frequentlyListening; 
 	private boolean routing;
+	private int maxBaudRate = 9600;
 	private String healState;
 	
-	private Map<CommandClass, ZWaveCommandClass> supportedCommandClasses = new HashMap<CommandClass, ZWaveCommandClass>();
-	private List<Integer> nodeNeighbors = new ArrayList<Integer>();
-	private Date lastSent;
-	private Date lastReceived;
+	// Replaced on write, so readers can iterate it while command classes are added.
+	private volatile ZWaveCommandClassTable supportedCommandClasses = ZWaveCommandClassTable.EMPTY;
+	private BitSet nodeNeighbors = new BitSet();
 
-	private Date queryStageTimeStamp;
+	// Times are in milliseconds since the epoch, 0 if it hasn't happened yet.
+	private long lastSent;
+	private long lastReceived;
+
+	private long queryStageTimeStamp;
 	private volatile NodeStage nodeStage;
 
 	private int resendCount = 0;
@@ -73,9 +81,15 @@ public class ZWaveNode {
 	private int receiveCount = 0;
 	private int sendCount = 0;
 	private int deadCount = 0;
-	private Date deadTime;
+	private long deadTime;
 	private int retryCount = 0;
 
+	private final Map<Long, ZWaveCommandClassValueEvent> lastValues = new TreeMap<Long, ZWaveCommandClassValueEvent>();
+	// Odd while a write is in progress, see beginWrite() and getSnapshot().
+	private final AtomicInteger stateVersion = new AtomicInteger(0);
+	private final ReentrantLock writeLock = new ReentrantLock();
+	private volatile ZWaveNodeSnapshot snapshot;
+
 	// TODO: Implement ZWaveNodeValue for Nodes that store multiple values.
 	
 	/**
@@ -91,8 +105,6 @@ public class ZWaveNode {
 		this.nodeStageAdvancer = new ZWaveNodeStageAdvancer(this, controller);
 		this.nodeStage = NodeStage.EMPTYNODE;
 		this.deviceClass = new ZWaveDeviceClass(Basic.NOT_KNOWN, Generic.NOT_KNOWN, Specific.NOT_USED);
-		this.lastSent = null;
-		this.lastReceived = null;
 	}
 
 	/**
@@ -129,7 +141,9 @@ public class ZWaveNode {
 	 * @param listening
 	 */
 	public void setListening(boolean listening) {
+		beginWrite();
 		this.listening = listening;
+		endWrite();
 	}
 
 	/**
@@ -153,7 +167,9 @@ public class ZWaveNode {
 	 * listening or not.
 	 */
 	public void setFrequentlyListening(boolean frequentlyListening) {
+		beginWrite();
 		this.frequentlyListening = frequentlyListening;
+		endWrite();
 	}
 	
 	/**
@@ -169,7 +185,9 @@ public class ZWaveNode {
 	 * @param healState
 	 */
 	public void setHealState(String healState) {
+		beginWrite();
 		this.healState = healState;
+		endWrite();
 	}
 	
 	/**
@@ -191,17 +209,28 @@ public class ZWaveNode {
 	 * @return
 	 */
 	public void setAlive(){
-		if(this.nodeStageAdvancer.isInitializationComplete()) {
+		boolean initializationComplete = this.nodeStageAdvancer.isInitializationComplete();
+		if(initializationComplete) {
 			logger.debug("NODE {}: Node is now ALIVE", this.nodeId);
+		}
+
+		beginWrite();
+		if(initializationComplete) {
 			this.nodeStage = NodeStage.DONE;
 		}
 		else {
 			this.nodeStage = NodeStage.DYNAMIC;
-			this.nodeStageAdvancer.advanceNodeStage(NodeStage.DONE);
 		}
 
 		// Reset the resend counter
 		this.resendCount = 0;
+		endWrite();
+
+		if(!initializationComplete) {
+			this.nodeStageAdvancer.advanceNodeStage(NodeStage.DONE);
+		}
+		this.controller.getInterviewScheduler().stageChanged(this);
+		this.controller.getInterviewProfiler().stageChanged(this);
 
 		// Alert anyone who wants to know...
 		ZWaveEvent zEvent = new ZWaveNodeStatusEvent(this.getNodeId(), ZWaveNodeStatusEvent.State.Alive);
@@ -229,7 +258,9 @@ public class ZWaveNode {
 	 * @param name the name to set
 	 */
 	public void setName(String name) {
+		beginWrite();
 		this.name = name;
+		endWrite();
 	}
 
 	/**
@@ -245,7 +276,9 @@ public class ZWaveNode {
 	 * @param location the location to set
 	 */
 	public void setLocation(String location) {
+		beginWrite();
 		this.location = location;
+		endWrite();
 	}
 
 	/**
@@ -261,7 +294,9 @@ public class ZWaveNode {
 	 * @param tempMan the manufacturer to set
 	 */
 	public void setManufacturer(int tempMan) {
+		beginWrite();
 		this.manufacturer = tempMan;
+		endWrite();
 	}
 
 	/**
@@ -277,7 +312,9 @@ public class ZWaveNode {
 	 * @param tempDeviceId the device to set
 	 */
 	public void setDeviceId(int tempDeviceId) {
+		beginWrite();
 		this.deviceId = tempDeviceId;
+		endWrite();
 	}
 
 	/**
@@ -293,22 +330,24 @@ public class ZWaveNode {
 	 * @param tempDeviceType the deviceType to set
 	 */
 	public void setDeviceType(int tempDeviceType) {
+		beginWrite();
 		this.deviceType = tempDeviceType;
+		endWrite();
 	}
 
 	/**
-	 * Get the date/time the node was last updated (ie a frame was received from it).
-	 * @return the lastUpdated time
+	 * Get the time the node was last updated (ie a frame was received from it).
+	 * @return the lastUpdated time in milliseconds since the epoch, or 0 if nothing was received yet.
 	 */
-	public Date getLastReceived() {
+	public long getLastReceived() {
 		return lastReceived;
 	}
 
 	/**
-	 * Get the date/time we last sent a frame to the node.
-	 * @return the lastSent
+	 * Get the time we last sent a frame to the node.
+	 * @return the lastSent time in milliseconds since the epoch, or 0 if nothing was sent yet.
 	 */
-	public Date getLastSent() {
+	public long getLastSent() {
 		return lastSent;
 	}
 
@@ -334,7 +373,11 @@ public class ZWaveNode {
 	 * @param nodeStage the nodeStage to set
 	 */
 	public void setNodeStage(NodeStage nodeStage) {
+		beginWrite();
 		this.nodeStage = nodeStage;
+		endWrite();
+		this.controller.getInterviewScheduler().stageChanged(this);
+		this.controller.getInterviewProfiler().stageChanged(this);
 	}
 
 	/**
@@ -350,7 +393,9 @@ public class ZWaveNode {
 	 * @param version the version to set
 	 */
 	public void setVersion(int version) {
+		beginWrite();
 		this.version = version;
+		endWrite();
 	}
 
 	/**
@@ -366,23 +411,45 @@ public class ZWaveNode {
 	 * @param routing the routing to set
 	 */
 	public void setRouting(boolean routing) {
+		beginWrite();
 		this.routing = routing;
+		endWrite();
+	}
+
+	/**
+	 * Gets the maximum baud rate of the node (9600, 40000 or 100000).
+	 * @return the maximum baud rate in bit/s
+	 */
+	public int getMaxBaudRate() {
+		return maxBaudRate;
+	}
+
+	/**
+	 * Sets the maximum baud rate of the node.
+	 * @param maxBaudRate the maximum baud rate in bit/s
+	 */
+	public void setMaxBaudRate(int maxBaudRate) {
+		beginWrite();
+		this.maxBaudRate = maxBaudRate;
+		endWrite();
 	}
 
 	/**
 	 * Gets the time stamp the node was last queried.
-	 * @return the queryStageTimeStamp
+	 * @return the queryStageTimeStamp in milliseconds since the epoch.
 	 */
-	public Date getQueryStageTimeStamp() {
+	public long getQueryStageTimeStamp() {
 		return queryStageTimeStamp;
 	}
 
 	/**
 	 * Sets the time stamp the node was last queried.
-	 * @param queryStageTimeStamp the queryStageTimeStamp to set
+	 * @param queryStageTimeStamp the queryStageTimeStamp to set, in milliseconds since the epoch.
 	 */
-	public void setQueryStageTimeStamp(Date queryStageTimeStamp) {
+	public void setQueryStageTimeStamp(long queryStageTimeStamp) {
+		beginWrite();
 		this.queryStageTimeStamp = queryStageTimeStamp;
+		endWrite();
 	}
 
 	/**
@@ -391,11 +458,22 @@ public class ZWaveNode {
 	 * more messages will be sent.
 	 */
 	public void incrementResendCount() {
-		if (++resendCount >= 3) {
+		// counted before the node may go DEAD, the retry belongs to the stage it was in.
+		this.controller.getInterviewProfiler().frameRetried(this.nodeId);
+		beginWrite();
+		this.retryCount++;
+		boolean dead = ++resendCount >= 3;
+		if (dead) {
 			this.nodeStage = NodeStage.DEAD;
 			this.deadCount++;
-			this.deadTime = Calendar.getInstance().getTime();
-			this.queryStageTimeStamp = Calendar.getInstance().getTime();
+			this.deadTime = System.currentTimeMillis();
+			this.queryStageTimeStamp = this.deadTime;
+		}
+		endWrite();
+
+		if (dead) {
+			this.controller.getInterviewScheduler().stageChanged(this);
+			this.controller.getInterviewProfiler().stageChanged(this);
 			logger.debug("NODE {}: Retry count exceeded. Node is DEAD.", this.nodeId);
 
 			if(nodeStageAdvancer.isInitializationComplete() == true) {
@@ -406,7 +484,6 @@ public class ZWaveNode {
 				logger.debug("NODE {}: Initialisation incomplete, not signalling DEAD node.", this.nodeId);				
 			}
 		}
-		this.retryCount++;
 	}
 
 	/**
@@ -416,10 +493,19 @@ public class ZWaveNode {
 	 * Note that if the node is DEAD, then the nodeStage stays DEAD
 	 */
 	public void resetResendCount() {
+		boolean initializationComplete = this.nodeStageAdvancer.isInitializationComplete();
+		beginWrite();
 		this.resendCount = 0;
-		if (this.nodeStageAdvancer.isInitializationComplete() && this.isDead() == false) {
+		boolean done = initializationComplete && this.isDead() == false;
+		if (done) {
 			this.nodeStage = NodeStage.DONE;
 		}
+		endWrite();
+
+		if (done) {
+			this.controller.getInterviewScheduler().stageChanged(this);
+			this.controller.getInterviewProfiler().stageChanged(this);
+		}
 	}
 
 	/**
@@ -455,7 +541,7 @@ public class ZWaveNode {
 	 * @return true if the command class is supported, false otherwise.
 	 */
 	public boolean supportsCommandClass(CommandClass commandClass) {
-		return supportedCommandClasses.containsKey(commandClass);
+		return supportedCommandClasses.contains(commandClass);
 	}
 	
 	/**
@@ -463,16 +549,19 @@ public class ZWaveNode {
 	 * Does nothing if command class is already added.
 	 * @param commandClass the command class instance to add.
 	 */
-	public void addCommandClass(ZWaveCommandClass commandClass)
+	public synchronized void addCommandClass(ZWaveCommandClass commandClass)
 	{
 		CommandClass key = commandClass.getCommandClass();
 		
-		if (!supportedCommandClasses.containsKey(key)) {
+		if (!supportedCommandClasses.contains(key)) {
 			logger.debug("NODE {}: Adding command class {} to the list of supported command classes.", nodeId, commandClass.getCommandClass().getLabel());
-			supportedCommandClasses.put(key, commandClass);
+			ZWaveCommandClassTable commandClasses = supportedCommandClasses.with(commandClass);
+			beginWrite();
+			supportedCommandClasses = commandClasses;
+			endWrite();
 			
 			if (commandClass instanceof ZWaveEventListener) {
-				this.controller.addEventListener((ZWaveEventListener)commandClass);
+				this.controller.addEventListener(ZWaveTransactionCompletedEvent.class, nodeId, (ZWaveEventListener)commandClass);
 			}
 		}
 	}
@@ -537,6 +626,41 @@ public class ZWaveNode {
 		this.nodeStageAdvancer.advanceNodeStage(targetStage);
 	}
 
+	/**
+	 * Starts an incremental re-interview of the node: only the command
+	 * classes that changed since the node was initialized are queried.
+	 * @return false if the node hasn't been initialized yet.
+	 */
+	public boolean reinterview() {
+		return this.nodeStageAdvancer.reinterview();
+	}
+
+	/**
+	 * Passes a node information frame to a re-interview of the node.
+	 * @param commandClassKeys the command classes in the frame.
+	 * @return false if no re-interview was waiting for it.
+	 */
+	public boolean nodeInformationReceived(List<Integer> commandClassKeys) {
+		return this.nodeStageAdvancer.nodeInformationReceived(commandClassKeys);
+	}
+
+	/**
+	 * Tells the node that it woke up, so a re-interview waiting for that
+	 * can start.
+	 */
+	public void wokeUp() {
+		this.nodeStageAdvancer.wokeUp();
+	}
+
+	/**
+	 * Passes a report from the node to the stage advancer, which tracks
+	 * the queries of the current stage.
+	 * @param incomingMessage the application command from the node.
+	 */
+	public void queryReportReceived(SerialMessage incomingMessage) {
+		this.nodeStageAdvancer.reportReceived(incomingMessage);
+	}
+
 	/**
 	 * Encapsulates a serial message for sending to a 
 	 * multi-instance instance/ multi-channel endpoint on
@@ -589,7 +713,27 @@ public class ZWaveNode {
 	 * @return list of node IDs
 	 */
 	public List<Integer> getNeighbors() {
-		return nodeNeighbors;
+		List<Integer> neighbors = new ArrayList<Integer>(nodeNeighbors.cardinality());
+		for (int i = nodeNeighbors.nextSetBit(0); i >= 0; i = nodeNeighbors.nextSetBit(i + 1))
+			neighbors.add(i);
+		return neighbors;
+	}
+
+	/**
+	 * Checks whether a node is a neighbor of this node.
+	 * @param nodeId the node to check
+	 * @return true if the node is in the neighbor list
+	 */
+	public boolean isNeighbor(int nodeId) {
+		return nodeId >= 0 && nodeNeighbors.get(nodeId);
+	}
+
+	/**
+	 * Gets the number of neighbors of the node.
+	 * @return the neighbor count
+	 */
+	public int getNeighborCount() {
+		return nodeNeighbors.cardinality();
 	}
 	
 	/**
@@ -654,7 +798,7 @@ public class ZWaveNode {
 	 * @param nodeId the node to add
 	 */
 	public void addNeighbor(Integer nodeId) {
-		nodeNeighbors.add(nodeId);
+		nodeNeighbors.set(nodeId);
 	}
 
 	/**
@@ -666,10 +810,10 @@ public class ZWaveNode {
 	}
 	
 	/**
-	 * Gets the number of times the node has been determined as DEAD
-	 * @return dead count
+	 * Gets the time the node was last determined as DEAD
+	 * @return dead time in milliseconds since the epoch, or 0 if the node was never DEAD.
 	 */
-	public Date getDeadTime() {
+	public long getDeadTime() {
 		return deadTime;
 	}
 	
@@ -687,8 +831,10 @@ public class ZWaveNode {
 	 * of a node.
 	 */
 	public void incrementSendCount() {
+		beginWrite();
 		sendCount++;
-		this.lastSent = Calendar.getInstance().getTime();
+		this.lastSent = System.currentTimeMillis();
+		endWrite();
 	}
 	
 	/**
@@ -697,8 +843,10 @@ public class ZWaveNode {
 	 * of a node.
 	 */
 	public void incrementReceiveCount() {
+		beginWrite();
 		receiveCount++;
-		this.lastReceived = Calendar.getInstance().getTime();
+		this.lastReceived = System.currentTimeMillis();
+		endWrite();
 	}
 	
 	/**
@@ -708,4 +856,94 @@ public class ZWaveNode {
 	public int getSendCount() {
 		return sendCount;
 	}
+
+	/**
+	 * Gets the number of packets received from the node
+	 * @return receive count
+	 */
+	public int getReceiveCount() {
+		return receiveCount;
+	}
+
+	/**
+	 * Records the last value the node reported. There is one value per
+	 * endpoint, command class and sensor or meter type.
+	 * @param event the value event
+	 */
+	public void setLastValue(ZWaveCommandClassValueEvent event) {
+		beginWrite();
+		synchronized (lastValues) {
+			lastValues.put(ValueEventCoalescer.getValueKey(event), event);
+		}
+		endWrite();
+	}
+
+	/**
+	 * Gets the last values the node reported.
+	 * @return a copy of the value events, ordered by endpoint and command class.
+	 */
+	public List<ZWaveCommandClassValueEvent> getLastValues() {
+		synchronized (lastValues) {
+			return new ArrayList<ZWaveCommandClassValueEvent>(lastValues.values());
+		}
+	}
+
+	/**
+	 * Gets the state version of the node. It changes every time the state
+	 * in the {@link ZWaveNodeSnapshot} changes, so readers can cheaply
+	 * check whether they're up to date.
+	 * @return the state version
+	 */
+	public int getStateVersion() {
+		return stateVersion.get();
+	}
+
+	/**
+	 * Starts a write of the state in the {@link ZWaveNodeSnapshot}. Writers
+	 * are serialized, and the outermost write makes the state version odd
+	 * until {@link #endWrite()}, so snapshot readers can tell a write is in
+	 * progress. Don't call out of the node between the two.
+	 */
+	private void beginWrite() {
+		writeLock.lock();
+		if (writeLock.getHoldCount() == 1)
+			stateVersion.incrementAndGet();
+	}
+
+	/**
+	 * Ends a write started with {@link #beginWrite()}, making the state
+	 * version even again.
+	 */
+	private void endWrite() {
+		if (writeLock.getHoldCount() == 1)
+			stateVersion.incrementAndGet();
+		writeLock.unlock();
+	}
+
+	/**
+	 * Gets an immutable snapshot of the state of the node. A new snapshot
+	 * is taken when the state has changed since the last one. It's only
+	 * kept when no write was in progress and the state version didn't
+	 * change while it was taken; otherwise it's taken again, so the
+	 * snapshot is always consistent.
+	 * @return the snapshot
+	 */
+	public ZWaveNodeSnapshot getSnapshot() {
+		ZWaveNodeSnapshot current = snapshot;
+		if (current != null && current.getStateVersion() == stateVersion.get())
+			return current;
+
+		while (true) {
+			int version = stateVersion.get();
+			if ((version & 1) != 0) {
+				Thread.yield();
+				continue;
+			}
+			ZWaveNodeSnapshot taken = new ZWaveNodeSnapshot(this, version);
+			if (stateVersion.get() == version) {
+				snapshot = taken;
+				return taken;
+			}
+		}
+	}
 }
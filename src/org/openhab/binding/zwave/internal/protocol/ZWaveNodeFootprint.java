@@ -0,0 +1,122 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.internal.protocol;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveCommandClass.CommandClass;
+import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveMultiInstanceCommandClass;
+
+/**
+ * Estimates the heap used by the bookkeeping of a node: the command class
+ * tables of the node and its endpoints, the neighbor list and the
+ * timestamps. The sizes are for a 32 bit VM (8 byte object headers,
+ * 4 byte references, 8 byte alignment), like the small VMs the application
+ * runs on. The command class objects themselves aren't counted, since
+ * they're the same in either layout.
+ * @author Woodrow Barlow
+ */
+public class ZWaveNodeFootprint {
+
+	private static final int OBJECT_HEADER = 8;
+	private static final int ARRAY_HEADER = 12;
+	private static final int REFERENCE = 4;
+
+	// Shallow sizes of the classes involved.
+	private static final int COMMAND_CLASS_TABLE = align(OBJECT_HEADER + REFERENCE);
+	private static final int BIT_SET = align(OBJECT_HEADER + REFERENCE + 4 + 1);
+	private static final int HASH_MAP = align(OBJECT_HEADER + 4 * REFERENCE + 4 * 4);
+	private static final int HASH_MAP_ENTRY = align(OBJECT_HEADER + 3 * REFERENCE + 4);
+	private static final int ARRAY_LIST = align(OBJECT_HEADER + REFERENCE + 2 * 4);
+	private static final int INTEGER = align(OBJECT_HEADER + 4);
+	private static final int DATE = align(OBJECT_HEADER + 8 + REFERENCE);
+	private static final int TIMESTAMPS = 4;
+
+	private ZWaveNodeFootprint() {
+	}
+
+	private static int align(int size) {
+		return (size + 7) & ~7;
+	}
+
+	/**
+	 * Estimates the heap the bookkeeping of a node uses, as it's stored:
+	 * a command class table for the node and each endpoint, a BitSet of
+	 * the neighbors and long timestamps.
+	 * @param node the node
+	 * @return the estimated size in bytes.
+	 */
+	public static int estimate(ZWaveNode node) {
+		int size = estimateTable(node.getCommandClasses().size());
+		for (ZWaveEndpoint endpoint : getEndpoints(node))
+			size += estimateTable(endpoint.getCommandClasses().size());
+
+		int highestNeighbor = 0;
+		for (Integer neighbor : node.getNeighbors())
+			highestNeighbor = neighbor;
+		int words = node.getNeighborCount() == 0 ? 1 : highestNeighbor / 64 + 1;
+		size += BIT_SET + align(ARRAY_HEADER + words * 8);
+
+		// The timestamps are long fields of the node.
+		size += TIMESTAMPS * 8;
+		return size;
+	}
+
+	/**
+	 * Estimates the heap the same bookkeeping would use as a HashMap of
+	 * the command classes of the node and each endpoint, an ArrayList of
+	 * boxed neighbor ids and Date timestamps, for comparison. A Date is
+	 * only counted once its timestamp was set, since it was null until then.
+	 * @param node the node
+	 * @return the estimated size in bytes.
+	 */
+	public static int estimateBoxed(ZWaveNode node) {
+		int size = estimateHashMap(node.getCommandClasses().size());
+		for (ZWaveEndpoint endpoint : getEndpoints(node))
+			size += estimateHashMap(endpoint.getCommandClasses().size());
+
+		int neighbors = node.getNeighborCount();
+		int capacity = 10;
+		while (neighbors > capacity)
+			capacity = capacity * 3 / 2 + 1;
+		size += ARRAY_LIST + align(ARRAY_HEADER + capacity * REFERENCE);
+		// Integer.valueOf only caches ids up to 127.
+		for (Integer neighbor : node.getNeighbors()) {
+			if (neighbor > 127)
+				size += INTEGER;
+		}
+
+		size += TIMESTAMPS * REFERENCE;
+		long[] timestamps = { node.getLastSent(), node.getLastReceived(), node.getQueryStageTimeStamp(), node.getDeadTime() };
+		for (long timestamp : timestamps) {
+			if (timestamp != 0)
+				size += DATE;
+		}
+		return size;
+	}
+
+	private static int estimateTable(int commandClasses) {
+		return COMMAND_CLASS_TABLE + align(ARRAY_HEADER + commandClasses * REFERENCE);
+	}
+
+	private static int estimateHashMap(int commandClasses) {
+		int buckets = 16;
+		while (commandClasses > buckets * 3 / 4)
+			buckets *= 2;
+		return HASH_MAP + align(ARRAY_HEADER + buckets * REFERENCE) + commandClasses * HASH_MAP_ENTRY;
+	}
+
+	private static Collection<ZWaveEndpoint> getEndpoints(ZWaveNode node) {
+		ZWaveMultiInstanceCommandClass multiInstance = (ZWaveMultiInstanceCommandClass) node.getCommandClass(CommandClass.MULTI_INSTANCE);
+		if (multiInstance == null)
+			return Collections.emptyList();
+		return multiInstance.getEndpoints();
+	}
+}
@@ -0,0 +1,244 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.internal.protocol;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveCommandClass;
+import org.openhab.binding.zwave.internal.protocol.event.ZWaveCommandClassValueEvent;
+
+/**
+ * Immutable snapshot of the state of a node: stage, flags, command classes,
+ * last values and statistics. Readers such as the web interface use it
+ * instead of the node itself, so they see a consistent view without
+ * locking while the receive thread updates the node. Get one with
+ * {@link ZWaveNode#getSnapshot()}.
+ * @author Woodrow Barlow
+ */
+public class ZWaveNodeSnapshot {
+
+	private final int stateVersion;
+	private final int nodeId;
+	private final NodeStage nodeStage;
+	private final boolean listening;
+	private final boolean frequentlyListening;
+	private final boolean routing;
+	private final String name;
+	private final String location;
+	private final int manufacturer;
+	private final int deviceId;
+	private final int deviceType;
+	private final List<ZWaveCommandClass> commandClasses;
+	private final List<ZWaveCommandClassValueEvent> lastValues;
+	private final int sendCount;
+	private final int receiveCount;
+	private final int retryCount;
+	private final int deadCount;
+	private final long lastSent;
+	private final long lastReceived;
+	private final long deadTime;
+
+	/**
+	 * Constructor. Takes a snapshot of a node.
+	 * @param node the node
+	 * @param stateVersion the state version of the node when the snapshot was started.
+	 */
+	ZWaveNodeSnapshot(ZWaveNode node, int stateVersion) {
+		this.stateVersion = stateVersion;
+		this.nodeId = node.getNodeId();
+		this.nodeStage = node.getNodeStage();
+		this.listening = node.isListening();
+		this.frequentlyListening = node.isFrequentlyListening();
+		this.routing = node.isRouting();
+		this.name = node.getName();
+		this.location = node.getLocation();
+		this.manufacturer = node.getManufacturer();
+		this.deviceId = node.getDeviceId();
+		this.deviceType = node.getDeviceType();
+		this.commandClasses = Collections.unmodifiableList(new ArrayList<ZWaveCommandClass>(node.getCommandClasses()));
+		this.lastValues = Collections.unmodifiableList(node.getLastValues());
+		this.sendCount = node.getSendCount();
+		this.receiveCount = node.getReceiveCount();
+		this.retryCount = node.getRetryCount();
+		this.deadCount = node.getDeadCount();
+		this.lastSent = node.getLastSent();
+		this.lastReceived = node.getLastReceived();
+		this.deadTime = node.getDeadTime();
+	}
+
+	/**
+	 * Gets the state version of the node the snapshot was taken at.
+	 * @return the state version
+	 */
+	public int getStateVersion() {
+		return stateVersion;
+	}
+
+	/**
+	 * Gets the node id.
+	 * @return the node id
+	 */
+	public int getNodeId() {
+		return nodeId;
+	}
+
+	/**
+	 * Gets the node stage.
+	 * @return the node stage
+	 */
+	public NodeStage getNodeStage() {
+		return nodeStage;
+	}
+
+	/**
+	 * Gets whether the node is dead or failed.
+	 * @return true if the node is dead or failed.
+	 */
+	public boolean isDead() {
+		return nodeStage == NodeStage.DEAD || nodeStage == NodeStage.FAILED;
+	}
+
+	/**
+	 * Gets whether the node is listening.
+	 * @return true if the node is listening.
+	 */
+	public boolean isListening() {
+		return listening;
+	}
+
+	/**
+	 * Gets whether the node is frequently listening.
+	 * @return true if the node is frequently listening.
+	 */
+	public boolean isFrequentlyListening() {
+		return frequentlyListening;
+	}
+
+	/**
+	 * Gets whether the node is routing.
+	 * @return true if the node is routing.
+	 */
+	public boolean isRouting() {
+		return routing;
+	}
+
+	/**
+	 * Gets the name of the node.
+	 * @return the name, or null if it has none.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Gets the location of the node.
+	 * @return the location, or null if it has none.
+	 */
+	public String getLocation() {
+		return location;
+	}
+
+	/**
+	 * Gets the manufacturer id of the node.
+	 * @return the manufacturer
+	 */
+	public int getManufacturer() {
+		return manufacturer;
+	}
+
+	/**
+	 * Gets the device id of the node.
+	 * @return the device id
+	 */
+	public int getDeviceId() {
+		return deviceId;
+	}
+
+	/**
+	 * Gets the device type of the node.
+	 * @return the device type
+	 */
+	public int getDeviceType() {
+		return deviceType;
+	}
+
+	/**
+	 * Gets the command classes of the node.
+	 * @return an unmodifiable list of the command classes.
+	 */
+	public List<ZWaveCommandClass> getCommandClasses() {
+		return commandClasses;
+	}
+
+	/**
+	 * Gets the last values the node reported.
+	 * @return an unmodifiable list of the value events.
+	 */
+	public List<ZWaveCommandClassValueEvent> getLastValues() {
+		return lastValues;
+	}
+
+	/**
+	 * Gets the number of packets sent to the node.
+	 * @return send count
+	 */
+	public int getSendCount() {
+		return sendCount;
+	}
+
+	/**
+	 * Gets the number of packets received from the node.
+	 * @return receive count
+	 */
+	public int getReceiveCount() {
+		return receiveCount;
+	}
+
+	/**
+	 * Gets the number of packets that have been resent to the node.
+	 * @return retry count
+	 */
+	public int getRetryCount() {
+		return retryCount;
+	}
+
+	/**
+	 * Gets the number of times the node has been determined as DEAD.
+	 * @return dead count
+	 */
+	public int getDeadCount() {
+		return deadCount;
+	}
+
+	/**
+	 * Gets the time a frame was last sent to the node.
+	 * @return the time in milliseconds since the epoch, or 0 if nothing was sent yet.
+	 */
+	public long getLastSent() {
+		return lastSent;
+	}
+
+	/**
+	 * Gets the time a frame was last received from the node.
+	 * @return the time in milliseconds since the epoch, or 0 if nothing was received yet.
+	 */
+	public long getLastReceived() {
+		return lastReceived;
+	}
+
+	/**
+	 * Gets the time the node was last determined as DEAD.
+	 * @return the time in milliseconds since the epoch, or 0 if the node was never DEAD.
+	 */
+	public long getDeadTime() {
+		return deadTime;
+	}
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.internal.protocol;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Table of the nodes of the network, indexed by node id. Lookups read one
+ * array slot without locking or boxing. Nodes are added and removed rarely,
+ * so every change also builds an immutable list of the nodes, which readers
+ * can iterate without seeing a change halfway.
+ * @author Woodrow Barlow
+ */
+public class ZWaveNodeTable {
+
+	private static final int MAX_NODES = 256;
+
+	private final AtomicReferenceArray<ZWaveNode> nodes = new AtomicReferenceArray<ZWaveNode>(MAX_NODES);
+	private volatile List<ZWaveNode> snapshot = Collections.emptyList();
+
+	/**
+	 * Gets a node.
+	 * @param nodeId the node id
+	 * @return the node, or null if there is no node with the id.
+	 */
+	public ZWaveNode get(int nodeId) {
+		if (nodeId < 0 || nodeId >= MAX_NODES)
+			return null;
+		return nodes.get(nodeId);
+	}
+
+	/**
+	 * Adds a node, replacing a node with the same id.
+	 * @param node the node
+	 */
+	public synchronized void put(ZWaveNode node) {
+		int nodeId = node.getNodeId();
+		if (nodeId < 0 || nodeId >= MAX_NODES)
+			throw new IllegalArgumentException("Invalid node id " + nodeId);
+		nodes.set(nodeId, node);
+		updateSnapshot();
+	}
+
+	/**
+	 * Removes a node.
+	 * @param nodeId the node id
+	 * @return the removed node, or null if there was no node with the id.
+	 */
+	public synchronized ZWaveNode remove(int nodeId) {
+		if (nodeId < 0 || nodeId >= MAX_NODES)
+			return null;
+		ZWaveNode removed = nodes.getAndSet(nodeId, null);
+		if (removed != null)
+			updateSnapshot();
+		return removed;
+	}
+
+	/**
+	 * Removes all nodes.
+	 */
+	public synchronized void clear() {
+		for (int i = 0; i < MAX_NODES; i++)
+			nodes.set(i, null);
+		snapshot = Collections.emptyList();
+	}
+
+	private void updateSnapshot() {
+		List<ZWaveNode> list = new ArrayList<ZWaveNode>();
+		for (int i = 0; i < MAX_NODES; i++) {
+			ZWaveNode node = nodes.get(i);
+			if (node != null)
+				list.add(node);
+		}
+		snapshot = Collections.unmodifiableList(list);
+	}
+
+	/**
+	 * Gets the nodes, in node id order. The list doesn't change when nodes
+	 * are added or removed later.
+	 * @return an unmodifiable list of the nodes.
+	 */
+	public List<ZWaveNode> getNodes() {
+		return snapshot;
+	}
+
+	/**
+	 * Gets the number of nodes.
+	 * @return the node count
+	 */
+	public int size() {
+		return snapshot.size();
+	}
+
+	/**
+	 * Gets whether there are no nodes.
+	 * @return true if the table is empty.
+	 */
+	public boolean isEmpty() {
+		return snapshot.isEmpty();
+	}
+}
@@ -0,0 +1,339 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.internal.protocol;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.openhab.binding.zwave.internal.protocol.SerialMessage.SerialMessageClass;
+import org.openhab.binding.zwave.internal.protocol.SerialMessage.SerialMessageLatencyClass;
+import org.openhab.binding.zwave.internal.protocol.SerialMessage.SerialMessagePriority;
+import me.wbarlow.zwavemanagement.logging.Logger;
+import me.wbarlow.zwavemanagement.logging.LoggerFactory;
+
+/**
+ * Z-Wave send queue. A priority queue of serial messages with bounded
+ * admission. Every message priority has its own capacity, and the queue as a
+ * whole has a total capacity. When the total capacity is reached, queued
+ * messages of a lower priority are shed to make room for a message of a
+ * higher priority; if there is nothing to shed, the new message is rejected.
+ * Interactive messages are not held to the capacity of their priority and
+ * may shed any message that is not interactive.
+ * The queue keeps metrics for its depth, rejections and queue wait time,
+ * with a queue wait histogram for every latency class.
+ * Messages whose deadline has passed are dropped when they are offered or
+ * taken. The completion handle of a message is notified when the message
+ * is rejected, shed or dropped.
+ * @author Woodrow Barlow
+ */
+public class ZWaveSendQueue {
+
+	private static final Logger logger = LoggerFactory.getLogger(ZWaveSendQueue.class);
+
+	private static final int INITIAL_QUEUE_SIZE = 128;
+	private static final int DEFAULT_CAPACITY = 256;
+	private static final int[] DEFAULT_PRIORITY_CAPACITIES = { 64, 64, 128, 128 };	// High, Set, Get, Low
+
+	private final PriorityBlockingQueue<SerialMessage> queue;
+	private final SerialMessagePriority[] priorities = SerialMessagePriority.values();
+	private final int[] capacities = new int[priorities.length];
+	private final AtomicInteger[] depths = new AtomicInteger[priorities.length];
+	private final AtomicLong[] rejections = new AtomicLong[priorities.length];
+	private final AtomicLong[] shed = new AtomicLong[priorities.length];
+	private final AtomicLong[] expiredByPriority = new AtomicLong[priorities.length];
+	private final AtomicLongArray expiredByClass = new AtomicLongArray(256);
+	private volatile int capacity = DEFAULT_CAPACITY;
+
+	private final AtomicLong dequeueCount = new AtomicLong();
+	private final AtomicLong totalWaitTime = new AtomicLong();
+	private volatile long maxWaitTime = 0;
+	private volatile int maxDepth = 0;
+	private final LatencyHistogram[] waitHistograms = new LatencyHistogram[SerialMessageLatencyClass.values().length];
+
+	/**
+	 * Constructor. Creates a new instance of the ZWaveSendQueue class.
+	 * @param controller the controller used to order the messages.
+	 */
+	ZWaveSendQueue(ZWaveController controller) {
+		this.queue = new PriorityBlockingQueue<SerialMessage>(INITIAL_QUEUE_SIZE, new SerialMessage.SerialMessageComparator(controller));
+		for (int i = 0; i < priorities.length; i++) {
+			capacities[i] = DEFAULT_PRIORITY_CAPACITIES[i];
+			depths[i] = new AtomicInteger();
+			rejections[i] = new AtomicLong();
+			shed[i] = new AtomicLong();
+			expiredByPriority[i] = new AtomicLong();
+		}
+		for (int i = 0; i < waitHistograms.length; i++)
+			waitHistograms[i] = new LatencyHistogram();
+	}
+
+	/**
+	 * Offers a message to the queue.
+	 * @param serialMessage the message to enqueue.
+	 * @return true if the message was admitted, false if it was rejected.
+	 */
+	boolean offer(SerialMessage serialMessage) {
+		if (serialMessage.isExpired()) {
+			expire(serialMessage);
+			return false;
+		}
+
+		int priority = serialMessage.getPriority().ordinal();
+		boolean interactive = serialMessage.getLatencyClass() == SerialMessageLatencyClass.Interactive;
+		String rejectReason = null;
+		SerialMessage victim = null;
+
+		synchronized (this) {
+			if (!interactive && depths[priority].get() >= capacities[priority]) {
+				rejectReason = "priority capacity reached";
+			} else if (queue.size() >= capacity && (victim = shedLowerPriority(priority, interactive)) == null) {
+				rejectReason = "queue capacity reached";
+			} else {
+				serialMessage.setEnqueueTime(System.currentTimeMillis());
+				depths[priority].incrementAndGet();
+				queue.add(serialMessage);
+			}
+		}
+
+		// notify outside the lock, handlers may enqueue messages themselves.
+		if (victim != null)
+			victim.notifyFailed(SerialMessageCompletionHandler.FailureReason.Shed);
+		if (rejectReason != null) {
+			reject(serialMessage, rejectReason);
+			return false;
+		}
+
+		int depth = queue.size();
+		if (depth > maxDepth)
+			maxDepth = depth;
+		return true;
+	}
+
+	/**
+	 * Takes the next message from the queue, waiting if necessary.
+	 * Messages whose deadline has passed are dropped.
+	 * @return the next message
+	 * @throws InterruptedException when interrupted while waiting.
+	 */
+	SerialMessage take() throws InterruptedException {
+		SerialMessage serialMessage;
+		while (true) {
+			serialMessage = queue.take();
+			depths[serialMessage.getPriority().ordinal()].decrementAndGet();
+			if (!serialMessage.isExpired())
+				break;
+			expire(serialMessage);
+		}
+
+		long waitTime = System.currentTimeMillis() - serialMessage.getEnqueueTime();
+		dequeueCount.incrementAndGet();
+		totalWaitTime.addAndGet(waitTime);
+		if (waitTime > maxWaitTime)
+			maxWaitTime = waitTime;
+		waitHistograms[serialMessage.getLatencyClass().ordinal()].record(waitTime);
+		return serialMessage;
+	}
+
+	/**
+	 * Removes all messages from the queue.
+	 */
+	synchronized void clear() {
+		queue.clear();
+		for (AtomicInteger depth : depths)
+			depth.set(0);
+	}
+
+	/**
+	 * Drops a message whose deadline has passed and notifies its completion handle.
+	 * @param serialMessage the expired message
+	 */
+	void expire(SerialMessage serialMessage) {
+		expiredByPriority[serialMessage.getPriority().ordinal()].incrementAndGet();
+		expiredByClass.incrementAndGet(serialMessage.getMessageClass().getKey() & 0xFF);
+		logger.debug("NODE {}: Dropping expired {} priority message: {}", serialMessage.getMessageNode(),
+				serialMessage.getPriority(), serialMessage.toString());
+		serialMessage.notifyFailed(SerialMessageCompletionHandler.FailureReason.Expired);
+	}
+
+	/**
+	 * Removes the newest queued message with a priority lower than the given
+	 * priority. Must be called while holding the queue lock.
+	 * @param priority the ordinal of the priority to make room for.
+	 * @param interactive true to make room for an interactive message, which
+	 * may shed any message that is not interactive.
+	 * @return the removed message, or null if no message was removed.
+	 */
+	private SerialMessage shedLowerPriority(int priority, boolean interactive) {
+		SerialMessage victim = null;
+		for (SerialMessage serialMessage : queue) {
+			int victimPriority = serialMessage.getPriority().ordinal();
+			if (serialMessage.getLatencyClass() == SerialMessageLatencyClass.Interactive)
+				continue;
+			if (!interactive && victimPriority <= priority)
+				continue;
+			if (victim == null || victimPriority > victim.getPriority().ordinal()
+					|| (victimPriority == victim.getPriority().ordinal() && serialMessage.getSequenceNumber() > victim.getSequenceNumber()))
+				victim = serialMessage;
+		}
+
+		if (victim == null || !queue.remove(victim))
+			return null;
+
+		depths[victim.getPriority().ordinal()].decrementAndGet();
+		shed[victim.getPriority().ordinal()].incrementAndGet();
+		logger.warn("NODE {}: Send queue full, shedding {} priority message: {}", victim.getMessageNode(),
+				victim.getPriority(), victim.toString());
+		return victim;
+	}
+
+	private void reject(SerialMessage serialMessage, String reason) {
+		rejections[serialMessage.getPriority().ordinal()].incrementAndGet();
+		logger.warn("NODE {}: Send queue rejected {} priority message ({}): {}", serialMessage.getMessageNode(),
+				serialMessage.getPriority(), reason, serialMessage.toString());
+		serialMessage.notifyFailed(SerialMessageCompletionHandler.FailureReason.Rejected);
+	}
+
+	/**
+	 * Gets the number of queued messages.
+	 * @return the queue depth
+	 */
+	public int size() {
+		return queue.size();
+	}
+
+	/**
+	 * Gets the number of queued messages with a certain priority.
+	 * @param priority the priority
+	 * @return the queue depth for the priority
+	 */
+	public int size(SerialMessagePriority priority) {
+		return depths[priority.ordinal()].get();
+	}
+
+	/**
+	 * Gets the highest queue depth seen.
+	 * @return the maximum queue depth
+	 */
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 * Gets the total capacity of the queue.
+	 * @return the capacity
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Sets the total capacity of the queue.
+	 * @param capacity the capacity to set
+	 */
+	public void setCapacity(int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("Capacity must be positive");
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Gets the capacity for messages of a certain priority.
+	 * @param priority the priority
+	 * @return the capacity
+	 */
+	public int getCapacity(SerialMessagePriority priority) {
+		return capacities[priority.ordinal()];
+	}
+
+	/**
+	 * Sets the capacity for messages of a certain priority.
+	 * @param priority the priority
+	 * @param capacity the capacity to set
+	 */
+	public synchronized void setCapacity(SerialMessagePriority priority, int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("Capacity must be positive");
+		capacities[priority.ordinal()] = capacity;
+	}
+
+	/**
+	 * Gets the number of messages with a certain priority that were rejected.
+	 * @param priority the priority
+	 * @return the rejection count
+	 */
+	public long getRejectedCount(SerialMessagePriority priority) {
+		return rejections[priority.ordinal()].get();
+	}
+
+	/**
+	 * Gets the number of queued messages with a certain priority that were
+	 * removed to make room for messages of a higher priority.
+	 * @param priority the priority
+	 * @return the shed count
+	 */
+	public long getShedCount(SerialMessagePriority priority) {
+		return shed[priority.ordinal()].get();
+	}
+
+	/**
+	 * Gets the number of messages with a certain priority that were dropped
+	 * because their deadline passed.
+	 * @param priority the priority
+	 * @return the expired count
+	 */
+	public long getExpiredCount(SerialMessagePriority priority) {
+		return expiredByPriority[priority.ordinal()].get();
+	}
+
+	/**
+	 * Gets the number of messages of a certain message class that were
+	 * dropped because their deadline passed.
+	 * @param messageClass the message class
+	 * @return the expired count
+	 */
+	public long getExpiredCount(SerialMessageClass messageClass) {
+		return expiredByClass.get(messageClass.getKey() & 0xFF);
+	}
+
+	/**
+	 * Gets the number of messages taken from the queue.
+	 * @return the dequeue count
+	 */
+	public long getDequeuedCount() {
+		return dequeueCount.get();
+	}
+
+	/**
+	 * Gets the average time messages have waited in the queue.
+	 * @return the average queue wait time in milliseconds.
+	 */
+	public long getAverageWaitTime() {
+		long count = dequeueCount.get();
+		return count == 0 ? 0 : totalWaitTime.get() / count;
+	}
+
+	/**
+	 * Gets the queue wait histogram of a latency class.
+	 * @param latencyClass the latency class
+	 * @return the queue wait histogram
+	 */
+	public LatencyHistogram getWaitHistogram(SerialMessageLatencyClass latencyClass) {
+		return waitHistograms[latencyClass.ordinal()];
+	}
+
+	/**
+	 * Gets the longest time a message has waited in the queue.
+	 * @return the maximum queue wait time in milliseconds.
+	 */
+	public long getMaxWaitTime() {
+		return maxWaitTime;
+	}
+}
@@ -8,9 +8,7 @@
  */
 package org.openhab.binding.zwave.internal.protocol.commandclass;
 
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 
 import org.openhab.binding.zwave.internal.protocol.SerialMessage;
@@ -154,7 +152,7 @@ public class ZWaveAlarmCommandClass extends ZWaveCommandClass
 		 * A mapping between the integer code and its corresponding Alarm type
 		 * to facilitate lookup by code.
 		 */
-		private static Map<Integer, AlarmType> codeToAlarmTypeMapping;
+		private static final AlarmType[] codeToAlarmTypeMapping = new AlarmType[256];
 
 		private int key;
 		private String label;
@@ -164,10 +162,9 @@ public class ZWaveAlarmCommandClass extends ZWaveCommandClass
 			this.label = label;
 		}
 
-		private static void initMapping() {
-			codeToAlarmTypeMapping = new HashMap<Integer, AlarmType>();
+		static {
 			for (AlarmType s : values()) {
-				codeToAlarmTypeMapping.put(s.key, s);
+				codeToAlarmTypeMapping[s.key] = s;
 			}
 		}
 
@@ -178,11 +175,9 @@ public class ZWaveAlarmCommandClass extends ZWaveCommandClass
 		 * @return enumeration value of the alarm type.
 		 */
 		public static AlarmType getAlarmType(int i) {
-			if (codeToAlarmTypeMapping == null) {
-				initMapping();
-			}
-			
-			return codeToAlarmTypeMapping.get(i);
+			if (i < 0 || i >= codeToAlarmTypeMapping.length)
+				return null;
+			return codeToAlarmTypeMapping[i];
 		}
 
 		/**
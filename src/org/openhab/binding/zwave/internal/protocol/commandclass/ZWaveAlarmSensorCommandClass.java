@@ -10,9 +10,7 @@ package org.openhab.binding.zwave.internal.protocol.commandclass;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 
 import org.openhab.binding.zwave.internal.protocol.SerialMessage;
@@ -274,7 +272,7 @@ public class ZWaveAlarmSensorCommandClass extends ZWaveCommandClass
 		 * A mapping between the integer code and its corresponding Alarm type
 		 * to facilitate lookup by code.
 		 */
-		private static Map<Integer, AlarmType> codeToAlarmTypeMapping;
+		private static final AlarmType[] codeToAlarmTypeMapping = new AlarmType[256];
 
 		private int key;
 		private String label;
@@ -284,10 +282,9 @@ public class ZWaveAlarmSensorCommandClass extends ZWaveCommandClass
 			this.label = label;
 		}
 
-		private static void initMapping() {
-			codeToAlarmTypeMapping = new HashMap<Integer, AlarmType>();
+		static {
 			for (AlarmType s : values()) {
-				codeToAlarmTypeMapping.put(s.key, s);
+				codeToAlarmTypeMapping[s.key] = s;
 			}
 		}
 
@@ -298,11 +295,9 @@ public class ZWaveAlarmSensorCommandClass extends ZWaveCommandClass
 		 * @return enumeration value of the alarm type.
 		 */
 		public static AlarmType getAlarmType(int i) {
-			if (codeToAlarmTypeMapping == null) {
-				initMapping();
-			}
-			
-			return codeToAlarmTypeMapping.get(i);
+			if (i < 0 || i >= codeToAlarmTypeMapping.length)
+				return null;
+			return codeToAlarmTypeMapping[i];
 		}
 
 		/**
@@ -10,8 +10,6 @@ package org.openhab.binding.zwave.internal.protocol.commandclass;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
 
 import org.openhab.binding.zwave.internal.protocol.SerialMessage;
 import org.openhab.binding.zwave.internal.protocol.ZWaveController;
@@ -175,7 +173,7 @@ public class ZWaveBinarySensorCommandClass extends ZWaveCommandClass implements
 		 * A mapping between the integer code and its corresponding Sensor type
 		 * to facilitate lookup by code.
 		 */
-		private static Map<Integer, SensorType> codeToSensorTypeMapping;
+		private static final SensorType[] codeToSensorTypeMapping = new SensorType[256];
 
 		private int key;
 		private String label;
@@ -185,10 +183,9 @@ public class ZWaveBinarySensorCommandClass extends ZWaveCommandClass implements
 			this.label = label;
 		}
 
-		private static void initMapping() {
-			codeToSensorTypeMapping = new HashMap<Integer, SensorType>();
+		static {
 			for (SensorType s : values()) {
-				codeToSensorTypeMapping.put(s.key, s);
+				codeToSensorTypeMapping[s.key] = s;
 			}
 		}
 
@@ -199,11 +196,9 @@ public class ZWaveBinarySensorCommandClass extends ZWaveCommandClass implements
 		 * @return enumeration value of the sensor type.
 		 */
 		public static SensorType getSensorType(int i) {
-			if (codeToSensorTypeMapping == null) {
-				initMapping();
-			}
-			
-			return codeToSensorTypeMapping.get(i);
+			if (i < 0 || i >= codeToSensorTypeMapping.length)
+				return null;
+			return codeToSensorTypeMapping[i];
 		}
 
 		/**
@@ -8,14 +8,11 @@
  */
 package org.openhab.binding.zwave.internal.protocol.commandclass;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
-import java.math.BigDecimal;
-import java.math.BigInteger;
 import java.util.HashMap;
 import java.util.Map;
 import java.lang.NumberFormatException;
 
+import org.openhab.binding.zwave.internal.protocol.FixedPoint;
 import org.openhab.binding.zwave.internal.protocol.SerialMessage;
 import org.openhab.binding.zwave.internal.protocol.ZWaveController;
 import org.openhab.binding.zwave.internal.protocol.ZWaveEndpoint;
@@ -188,70 +185,113 @@ public abstract class ZWaveCommandClass {
 	 */
 	public static ZWaveCommandClass getInstance(int i, ZWaveNode node, ZWaveController controller, ZWaveEndpoint endpoint) {
 		logger.debug(String.format("Creating new instance of command class 0x%02X", i));
-		try {
-			CommandClass commandClass = CommandClass.getCommandClass(i);
-			if (commandClass == null) {
-				logger.warn(String.format("Unsupported command class 0x%02x", i));
-				return null;
-			}
-			Class<? extends ZWaveCommandClass> commandClassClass = commandClass.getCommandClassClass();
-			
-			if (commandClassClass == null) {
-				logger.warn(String.format("Unsupported command class %s (0x%02x)", commandClass.getLabel(), i, endpoint));
-				return null;
-			}
-				
-			Constructor<? extends ZWaveCommandClass> constructor = commandClassClass.getConstructor(ZWaveNode.class, ZWaveController.class, ZWaveEndpoint.class);
-			return constructor.newInstance(new Object[] {node, controller, endpoint});
-		} catch (InstantiationException e) {
-		} catch (IllegalAccessException e) {
-		} catch (IllegalArgumentException e) {
-		} catch (InvocationTargetException e) {
-		} catch (NoSuchMethodException e) {
-		} catch (SecurityException e) {
+		CommandClass commandClass = CommandClass.getCommandClass(i);
+		if (commandClass == null) {
+			logger.warn(String.format("Unsupported command class 0x%02x", i));
+			return null;
+		}
+
+		ZWaveCommandClass instance = newInstance(commandClass, node, controller, endpoint);
+		if (instance == null)
+			logger.warn(String.format("Unsupported command class %s (0x%02x)", commandClass.getLabel(), i));
+		return instance;
+	}
+
+	/**
+	 * Creates an instance of the implementation of a command class. This is
+	 * the factory for all implemented command classes; a new implementation
+	 * must be added here as well as to the {@link CommandClass} enumeration.
+	 * @param commandClass the command class to instantiate.
+	 * @param node the node this instance commands.
+	 * @param controller the controller to send messages to.
+	 * @param endpoint the endpoint this Command class belongs to
+	 * @return the new instance, or null if the command class is not implemented.
+	 */
+	private static ZWaveCommandClass newInstance(CommandClass commandClass, ZWaveNode node, ZWaveController controller, ZWaveEndpoint endpoint) {
+		switch (commandClass) {
+		case NO_OPERATION:
+			return new ZWaveNoOperationCommandClass(node, controller, endpoint);
+		case BASIC:
+			return new ZWaveBasicCommandClass(node, controller, endpoint);
+		case APPLICATION_STATUS:
+			return new ZWaveApplicationStatusClass(node, controller, endpoint);
+		case SWITCH_BINARY:
+			return new ZWaveBinarySwitchCommandClass(node, controller, endpoint);
+		case SWITCH_MULTILEVEL:
+			return new ZWaveMultiLevelSwitchCommandClass(node, controller, endpoint);
+		case SCENE_ACTIVATION:
+			return new ZWaveSceneActivationCommandClass(node, controller, endpoint);
+		case SENSOR_BINARY:
+			return new ZWaveBinarySensorCommandClass(node, controller, endpoint);
+		case SENSOR_MULTILEVEL:
+			return new ZWaveMultiLevelSensorCommandClass(node, controller, endpoint);
+		case METER:
+			return new ZWaveMeterCommandClass(node, controller, endpoint);
+		case THERMOSTAT_MODE:
+			return new ZWaveThermostatModeCommandClass(node, controller, endpoint);
+		case THERMOSTAT_OPERATING_STATE:
+			return new ZWaveThermostatOperatingStateCommandClass(node, controller, endpoint);
+		case THERMOSTAT_SETPOINT:
+			return new ZWaveThermostatSetpointCommandClass(node, controller, endpoint);
+		case THERMOSTAT_FAN_MODE:
+			return new ZWaveThermostatFanModeCommandClass(node, controller, endpoint);
+		case THERMOSTAT_FAN_STATE:
+			return new ZWaveThermostatFanStateCommandClass(node, controller, endpoint);
+		case MULTI_INSTANCE:
+			return new ZWaveMultiInstanceCommandClass(node, controller, endpoint);
+		case CONFIGURATION:
+			return new ZWaveConfigurationCommandClass(node, controller, endpoint);
+		case ALARM:
+			return new ZWaveAlarmCommandClass(node, controller, endpoint);
+		case MANUFACTURER_SPECIFIC:
+			return new ZWaveManufacturerSpecificCommandClass(node, controller, endpoint);
+		case BATTERY:
+			return new ZWaveBatteryCommandClass(node, controller, endpoint);
+		case HAIL:
+			return new ZWaveHailCommandClass(node, controller, endpoint);
+		case WAKE_UP:
+			return new ZWaveWakeUpCommandClass(node, controller, endpoint);
+		case ASSOCIATION:
+			return new ZWaveAssociationCommandClass(node, controller, endpoint);
+		case VERSION:
+			return new ZWaveVersionCommandClass(node, controller, endpoint);
+		case MULTI_CMD:
+			return new ZWaveMultiCommandCommandClass(node, controller, endpoint);
+		case SENSOR_ALARM:
+			return new ZWaveAlarmSensorCommandClass(node, controller, endpoint);
+		default:
+			return null;
 		}
-		logger.error(String.format("Error instantiating command class 0x%02x", i));
-		return null;
 	}
 	
 	/**
 	 * Extract a decimal value from a byte array.
 	 * @param buffer the buffer to be parsed.
 	 * @param offset the offset at which to start reading
-	 * @return the extracted decimal value
+	 * @return the extracted decimal value, as a {@link FixedPoint} value.
 	 */
-	protected BigDecimal extractValue(byte[] buffer, int offset) {
+	protected long extractValue(byte[] buffer, int offset) {
 		int size = buffer[offset] & SIZE_MASK;
 		int precision = (buffer[offset] & PRECISION_MASK) >> PRECISION_SHIFT;
 
-		if((size+offset) >= buffer.length) {
+		if((size+offset) >= buffer.length || size > 4) {
 			logger.error("Error extracting value - length={}, offset={}, size={}.", 
 					new Object[] { buffer.length, offset, size});
 			throw new NumberFormatException();
 		}
 		
-		int value = 0;
-		int i;
-		for (i = 0; i < size; ++i) {
+		long value = 0;
+		for (int i = 0; i < size; ++i) {
 			value <<= 8;
 			value |= buffer[offset + i + 1] & 0xFF;
 		}
 		
 		// Deal with sign extension. All values are signed
-		BigDecimal result;
-		if ((buffer[offset + 1] & 0x80) == 0x80) {
-			// MSB is signed
-			if (size == 1) {
-				value |= 0xffffff00;
-			} else if (size == 2) {
-				value |= 0xffff0000;
-			}
+		if (size > 0 && (buffer[offset + 1] & 0x80) == 0x80) {
+			value |= -1L << (size * 8);
 		}
 
-		result = BigDecimal.valueOf(value);
-
-		BigDecimal divisor = BigDecimal.valueOf(Math.pow(10, precision));
-		return result.divide(divisor);
+		return FixedPoint.valueOf(value, precision);
 	}
 	
 	/**
@@ -282,46 +322,52 @@ public abstract class ZWaveCommandClass {
 	
 
 	/**
-	 * Encodes a decimal value as a byte array.
-	 * @param value the decimal value to encode
-	 * @param index the value index
-	 * @return the value buffer
-	 * @throws ArithmeticException when the supplied value is out of range.
-	 * @since 1.4.0
+	 * Encodes an integer value into a byte array, most significant byte first.
+	 * @param value the value to encode
+	 * @param size the number of bytes to encode the value in.
+	 * @param buffer the buffer to encode the value into.
+	 * @param offset the offset at which to start writing
 	 */
-	protected byte[] encodeValue(BigDecimal value) throws ArithmeticException {
-		
-		if (value.unscaledValue().compareTo(BigInteger.valueOf(Integer.MAX_VALUE)) > 0) {
-			throw new ArithmeticException();
-		} else if (value.unscaledValue().compareTo(BigInteger.valueOf(Integer.MIN_VALUE)) < 0)
-			throw new ArithmeticException();
-		
-		// default size = 4
-		int size = 4;
-		
-		// it might fit in a byte or short
-		if (value.unscaledValue().intValue() >= Byte.MIN_VALUE && value.unscaledValue().intValue() <= Byte.MAX_VALUE) {
-			size = 1;
-		} else if (value.unscaledValue().intValue() >= Short.MIN_VALUE && value.unscaledValue().intValue() <= Short.MAX_VALUE) {
-			size = 2;
+	protected void encodeValue(int value, int size, byte[] buffer, int offset) {
+		for (int i = 0; i < size; i++) {
+			buffer[offset + i] = (byte) ((value >> ((size - i - 1) * 8)) & 0xFF);
 		}
-		
-		int precision = value.scale();
-		
-		// precision cannot be negative, cannot be more than 7 as well, 
-		// but this is guarded by the Integer min / max values already.
-		if (precision < 0) {
-			throw new ArithmeticException();
+	}
+
+	/**
+	 * Gets the number of bytes a decimal value is encoded in, including the
+	 * precision and size byte.
+	 * @param value the {@link FixedPoint} value to encode
+	 * @return the encoded size
+	 */
+	protected int getEncodedSize(long value) {
+		long unscaledValue = FixedPoint.getUnscaledValue(value);
+
+		// it might fit in a byte or short
+		if (unscaledValue >= Byte.MIN_VALUE && unscaledValue <= Byte.MAX_VALUE) {
+			return 2;
+		} else if (unscaledValue >= Short.MIN_VALUE && unscaledValue <= Short.MAX_VALUE) {
+			return 3;
 		}
+		return 5;
+	}
+
+	/**
+	 * Encodes a decimal value into a byte array.
+	 * @param value the {@link FixedPoint} value to encode
+	 * @param buffer the buffer to encode the value into. Must have room
+	 * for {@link #getEncodedSize(long)} bytes.
+	 * @param offset the offset at which to start writing
+	 * @return the number of bytes written.
+	 */
+	protected int encodeValue(long value, byte[] buffer, int offset) {
+		int size = getEncodedSize(value) - 1;
+		int precision = FixedPoint.getPrecision(value);
 		
-		byte[] result = new byte[size + 1];
 		// precision + scale (unused) + size
-		result[0] = (byte) ((precision << PRECISION_SHIFT) | size);
-		int unscaledValue = value.unscaledValue().intValue(); // ie. 22.5 = 225
-		for (int i = 0; i < size; i++) {
-			result[size - i] = (byte) ((unscaledValue >> (i * 8)) & 0xFF);
-		}
-		return result;
+		buffer[offset] = (byte) ((precision << PRECISION_SHIFT) | size);
+		encodeValue((int) FixedPoint.getUnscaledValue(value), size, buffer, offset + 1); // ie. 22.5 = 225
+		return size + 1;
 	}
 
 	/**
@@ -421,13 +467,13 @@ public abstract class ZWaveCommandClass {
 		 * A mapping between the integer code and its corresponding
 		 * Command class to facilitate lookup by code.
 		 */
-		private static Map<Integer, CommandClass> codeToCommandClassMapping;
+		private static final CommandClass[] codeToCommandClassMapping = new CommandClass[256];
 
 		/**
 		 * A mapping between the string label and its corresponding
 		 * Command class to facilitate lookup by label.
 		 */
-		private static Map<String, CommandClass> labelToCommandClassMapping;
+		private static final Map<String, CommandClass> labelToCommandClassMapping = new HashMap<String, CommandClass>();
 
 		private int key;
 		private String label;
@@ -440,11 +486,9 @@ public abstract class ZWaveCommandClass {
 			this.commandClassClass = commandClassClass;
 		}
 
-		private static void initMapping() {
-			codeToCommandClassMapping = new HashMap<Integer, CommandClass>();
-			labelToCommandClassMapping = new HashMap<String, CommandClass>();
+		static {
 			for (CommandClass s : values()) {
-				codeToCommandClassMapping.put(s.key, s);
+				codeToCommandClassMapping[s.key] = s;
 				labelToCommandClassMapping.put(s.label.toLowerCase(), s);
 			}
 		}
@@ -456,11 +500,10 @@ public abstract class ZWaveCommandClass {
 		 * @return enumeration value of the command class.
 		 */
 		public static CommandClass getCommandClass(int i) {
-			if (codeToCommandClassMapping == null) {
-				initMapping();
-			}
+			if (i < 0 || i >= codeToCommandClassMapping.length)
+				return null;
 			
-			return codeToCommandClassMapping.get(i);
+			return codeToCommandClassMapping[i];
 		}
 		
 		/**
@@ -470,10 +513,6 @@ public abstract class ZWaveCommandClass {
 		 * @return enumeration value of the command class.
 		 */
 		public static CommandClass getCommandClass(String label) {
-			if (labelToCommandClassMapping == null) {
-				initMapping();
-			}
-			
 			return labelToCommandClassMapping.get(label.toLowerCase());
 		}
 
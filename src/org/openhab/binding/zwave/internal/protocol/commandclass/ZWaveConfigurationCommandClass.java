@@ -159,9 +159,7 @@ public class ZWaveConfigurationCommandClass extends ZWaveCommandClass {
 		newPayload[4] = (byte) (parameter.getIndex() & 0xFF);
 		newPayload[5] = (byte) (parameter.getSize() & 0xFF);
 
-		for (int i=0; i < parameter.getSize(); i++) {
-			newPayload[6 + i] = (byte) (parameter.getValue() >> ((parameter.getSize() - i - 1) * 8) & 0xFF);
-		}
+		encodeValue(parameter.getValue(), parameter.getSize(), newPayload, 6);
 
 		result.setMessagePayload(newPayload);
 		return result;
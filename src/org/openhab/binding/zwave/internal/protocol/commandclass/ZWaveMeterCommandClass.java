@@ -8,7 +8,6 @@
  */
 package org.openhab.binding.zwave.internal.protocol.commandclass;
 
-import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -16,6 +15,7 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
+import org.openhab.binding.zwave.internal.protocol.FixedPoint;
 import org.openhab.binding.zwave.internal.protocol.SerialMessage;
 import org.openhab.binding.zwave.internal.protocol.SerialMessage.SerialMessageClass;
 import org.openhab.binding.zwave.internal.protocol.SerialMessage.SerialMessagePriority;
@@ -144,8 +144,8 @@ public class ZWaveMeterCommandClass extends ZWaveCommandClass implements ZWaveGe
 			}
 
 			try {
-				BigDecimal value = extractValue(serialMessage.getMessagePayload(), offset + 2);
-				logger.debug("NODE {}: Meter Value = {}", this.getNode().getNodeId(), value);
+				long value = extractValue(serialMessage.getMessagePayload(), offset + 2);
+				logger.debug("NODE {}: Meter Value = {}", this.getNode().getNodeId(), FixedPoint.toString(value));
 	
 				ZWaveMeterValueEvent zEvent = new ZWaveMeterValueEvent(this.getNode().getNodeId(), endpoint, 
 						meterType, scale, value);
@@ -323,7 +323,7 @@ public class ZWaveMeterCommandClass extends ZWaveCommandClass implements ZWaveGe
 		 * A mapping between the integer code and its corresponding Meter type
 		 * to facilitate lookup by code.
 		 */
-		private static Map<Integer, MeterType> codeToMeterTypeMapping;
+		private static final MeterType[] codeToMeterTypeMapping = new MeterType[256];
 
 		private int key;
 		private String label;
@@ -333,10 +333,9 @@ public class ZWaveMeterCommandClass extends ZWaveCommandClass implements ZWaveGe
 			this.label = label;
 		}
 
-		private static void initMapping() {
-			codeToMeterTypeMapping = new HashMap<Integer, MeterType>();
+		static {
 			for (MeterType s : values()) {
-				codeToMeterTypeMapping.put(s.key, s);
+				codeToMeterTypeMapping[s.key] = s;
 			}
 		}
 
@@ -349,11 +348,9 @@ public class ZWaveMeterCommandClass extends ZWaveCommandClass implements ZWaveGe
 		 * @return enumeration value of the meter type.
 		 */
 		public static MeterType getMeterType(int i) {
-			if (codeToMeterTypeMapping == null) {
-				initMapping();
-			}
-
-			return codeToMeterTypeMapping.get(i);
+			if (i < 0 || i >= codeToMeterTypeMapping.length)
+				return null;
+			return codeToMeterTypeMapping[i];
 		}
 
 		/**
@@ -403,13 +400,13 @@ public class ZWaveMeterCommandClass extends ZWaveCommandClass implements ZWaveGe
 		 * A mapping between the integer code, Meter type and its corresponding Meter scale
 		 * to facilitate lookup by code.
 		 */
-		private static Map<MeterType, Map<Integer, MeterScale>> codeToMeterScaleMapping;
+		private static final MeterScale[][] codeToMeterScaleMapping = new MeterScale[256][];
 
 		/**
 		 * A mapping between the name,and its corresponding Meter scale
 		 * to facilitate lookup by enumeration name.
 		 */
-		private static Map<String, MeterScale> nameToMeterScaleMapping;
+		private static final Map<String, MeterScale> nameToMeterScaleMapping = new HashMap<String, MeterScale>();
 
 		/**
 		 * Constructor. Creates a new enumeration value.
@@ -425,13 +422,12 @@ public class ZWaveMeterCommandClass extends ZWaveCommandClass implements ZWaveGe
 			this.label = label;
 		}
 		
-		private static void initMapping() {
-			codeToMeterScaleMapping = new HashMap<MeterType, Map<Integer, MeterScale>>();
-			nameToMeterScaleMapping= new HashMap<String, MeterScale>();
+		static {
 			for (MeterScale s : values()) {
-				if (!codeToMeterScaleMapping.containsKey(s.getMeterType()))
-					codeToMeterScaleMapping.put(s.getMeterType(), new HashMap<Integer, MeterScale>());
-				codeToMeterScaleMapping.get(s.getMeterType()).put(s.getScale(), s);
+				int meterType = s.getMeterType().getKey();
+				if (codeToMeterScaleMapping[meterType] == null)
+					codeToMeterScaleMapping[meterType] = new MeterScale[256];
+				codeToMeterScaleMapping[meterType][s.getScale()] = s;
 				nameToMeterScaleMapping.put(s.name().toLowerCase(), s);
 			}
 		}
@@ -445,13 +441,13 @@ public class ZWaveMeterCommandClass extends ZWaveCommandClass implements ZWaveGe
 		 * @return enumeration value of the meter scale.
 		 */
 		public static MeterScale getMeterScale(MeterType meterType, int i) {
-			if (codeToMeterScaleMapping == null) {
-				initMapping();
-			}
-			if (!codeToMeterScaleMapping.containsKey(meterType))
+			if (meterType == null || i < 0 || i >= 256)
+				return null;
+			MeterScale[] scales = codeToMeterScaleMapping[meterType.getKey()];
+			if (scales == null)
 				return null;
 			
-			return codeToMeterScaleMapping.get(meterType).get(i);
+			return scales[i];
 		}
 		
 		/**
@@ -462,10 +458,6 @@ public class ZWaveMeterCommandClass extends ZWaveCommandClass implements ZWaveGe
 		 * @return enumeration value of the meter scale.
 		 */
 		public static MeterScale getMeterScale(String name) {
-			if (nameToMeterScaleMapping == null) {
-				initMapping();
-			}
-			
 			return nameToMeterScaleMapping.get(name.toLowerCase());
 		}
 		
@@ -527,10 +519,10 @@ public class ZWaveMeterCommandClass extends ZWaveCommandClass implements ZWaveGe
 		 * @param meterType
 		 *            the meter scale for the event;
 		 * @param value
-		 *            the value for the event.
+		 *            the {@link FixedPoint} value for the event.
 		 */
-		private ZWaveMeterValueEvent(int nodeId, int endpoint, MeterType meterType, MeterScale meterScale, Object value) {
-			super(nodeId, endpoint, CommandClass.METER, value);
+		private ZWaveMeterValueEvent(int nodeId, int endpoint, MeterType meterType, MeterScale meterScale, long value) {
+			super(nodeId, endpoint, CommandClass.METER, FixedPoint.getUnscaledValue(value), FixedPoint.getPrecision(value));
 			this.meterType = meterType;
 			this.meterScale = meterScale;
 		}
@@ -8,14 +8,12 @@
  */
 package org.openhab.binding.zwave.internal.protocol.commandclass;
 
-import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 
+import org.openhab.binding.zwave.internal.protocol.FixedPoint;
 import org.openhab.binding.zwave.internal.protocol.SerialMessage;
 import org.openhab.binding.zwave.internal.protocol.ZWaveController;
 import org.openhab.binding.zwave.internal.protocol.ZWaveEndpoint;
@@ -138,9 +136,9 @@ public class ZWaveMultiLevelSensorCommandClass extends ZWaveCommandClass impleme
 				this.sensors.add(sensorType);
 
 			try {
-				BigDecimal value = extractValue(serialMessage.getMessagePayload(), offset + 2);
+				long value = extractValue(serialMessage.getMessagePayload(), offset + 2);
 
-				logger.debug(String.format("NODE %d: Sensor Value = (%f)", this.getNode().getNodeId(), value));
+				logger.debug("NODE {}: Sensor Value = ({})", this.getNode().getNodeId(), FixedPoint.toString(value));
 				
 				ZWaveMultiLevelSensorValueEvent zEvent = new ZWaveMultiLevelSensorValueEvent(this.getNode().getNodeId(), endpoint, sensorType, sensorScale, value);
 				this.getController().notifyEventListeners(zEvent);
@@ -306,7 +304,7 @@ public class ZWaveMultiLevelSensorCommandClass extends ZWaveCommandClass impleme
 		 * A mapping between the integer code and its corresponding Sensor type
 		 * to facilitate lookup by code.
 		 */
-		private static Map<Integer, SensorType> codeToSensorTypeMapping;
+		private static final SensorType[] codeToSensorTypeMapping = new SensorType[256];
 
 		private int key;
 		private String label;
@@ -316,10 +314,9 @@ public class ZWaveMultiLevelSensorCommandClass extends ZWaveCommandClass impleme
 			this.label = label;
 		}
 
-		private static void initMapping() {
-			codeToSensorTypeMapping = new HashMap<Integer, SensorType>();
+		static {
 			for (SensorType s : values()) {
-				codeToSensorTypeMapping.put(s.key, s);
+				codeToSensorTypeMapping[s.key] = s;
 			}
 		}
 
@@ -330,11 +327,9 @@ public class ZWaveMultiLevelSensorCommandClass extends ZWaveCommandClass impleme
 		 * @return enumeration value of the sensor type.
 		 */
 		public static SensorType getSensorType(int i) {
-			if (codeToSensorTypeMapping == null) {
-				initMapping();
-			}
-			
-			return codeToSensorTypeMapping.get(i);
+			if (i < 0 || i >= codeToSensorTypeMapping.length)
+				return null;
+			return codeToSensorTypeMapping[i];
 		}
 
 		/**
@@ -370,11 +365,11 @@ public class ZWaveMultiLevelSensorCommandClass extends ZWaveCommandClass impleme
 		 * @param endpoint the endpoint of the event.
 		 * @param sensorType the sensor type that triggered the event;
 		 * @param scale the scale for the event
-		 * @param value the value for the event.
+		 * @param value the {@link FixedPoint} value for the event.
 		 */
 		private ZWaveMultiLevelSensorValueEvent(int nodeId, int endpoint,
-				SensorType sensorType, int scale, Object value) {
-			super(nodeId, endpoint, CommandClass.SENSOR_MULTILEVEL, value);
+				SensorType sensorType, int scale, long value) {
+			super(nodeId, endpoint, CommandClass.SENSOR_MULTILEVEL, FixedPoint.getUnscaledValue(value), FixedPoint.getPrecision(value));
 			this.sensorType = sensorType;
 			this.scale = scale;
 		}
@@ -8,12 +8,9 @@
  */
 package org.openhab.binding.zwave.internal.protocol.commandclass;
 
-import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 
 import org.openhab.binding.zwave.internal.protocol.NodeStage;
@@ -161,7 +158,7 @@ ZWaveCommandClassDynamicState {
 			this.fanModeTypes.add(fanModeType);
 
 		logger.debug("NODE {}: Thermostat Fan Mode Report value = {}", this.getNode().getNodeId(), fanModeType.getLabel());
-		ZWaveCommandClassValueEvent zEvent = new ZWaveCommandClassValueEvent(this.getNode().getNodeId(), endpoint, this.getCommandClass(), new BigDecimal(value));
+		ZWaveCommandClassValueEvent zEvent = new ZWaveCommandClassValueEvent(this.getNode().getNodeId(), endpoint, this.getCommandClass(), value, 0);
 		this.getController().notifyEventListeners(zEvent);
 	}
 
@@ -263,7 +260,7 @@ ZWaveCommandClassDynamicState {
 		 * A mapping between the integer code and its corresponding fan mode type
 		 * to facilitate lookup by code.
 		 */
-		private static Map<Integer, FanModeType> codeToFanModeTypeMapping;
+		private static final FanModeType[] codeToFanModeTypeMapping = new FanModeType[256];
 
 		private int key;
 		private String label;
@@ -273,10 +270,9 @@ ZWaveCommandClassDynamicState {
 			this.label = label;
 		}
 
-		private static void initMapping() {
-			codeToFanModeTypeMapping = new HashMap<Integer, FanModeType>();
+		static {
 			for (FanModeType s : values()) {
-				codeToFanModeTypeMapping.put(s.key, s);
+				codeToFanModeTypeMapping[s.key] = s;
 			}
 		}
 
@@ -287,10 +283,9 @@ ZWaveCommandClassDynamicState {
 		 * @return enumeration value of the fan mode type.
 		 */
 		public static FanModeType getFanModeType(int i) {
-			if (codeToFanModeTypeMapping == null) {
-				initMapping();
-			}
-			return codeToFanModeTypeMapping.get(i);
+			if (i < 0 || i >= codeToFanModeTypeMapping.length)
+				return null;
+			return codeToFanModeTypeMapping[i];
 		}
 
 		/**
@@ -8,12 +8,9 @@
  */
 package org.openhab.binding.zwave.internal.protocol.commandclass;
 
-import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 
 import org.openhab.binding.zwave.internal.protocol.NodeStage;
@@ -122,7 +119,7 @@ implements ZWaveGetCommands, ZWaveCommandClassDynamicState {
 			this.fanStateTypes.add(fanStateType);
 
 		logger.debug("NODE {}: Thermostat fan state  Report value = {}", this.getNode().getNodeId(), fanStateType.getLabel());
-		ZWaveCommandClassValueEvent zEvent = new ZWaveCommandClassValueEvent(this.getNode().getNodeId(), endpoint, this.getCommandClass(), new BigDecimal(value));
+		ZWaveCommandClassValueEvent zEvent = new ZWaveCommandClassValueEvent(this.getNode().getNodeId(), endpoint, this.getCommandClass(), value, 0);
 		this.getController().notifyEventListeners(zEvent);
 	}
 
@@ -181,7 +178,7 @@ implements ZWaveGetCommands, ZWaveCommandClassDynamicState {
 		 * A mapping between the integer code and its corresponding fanState type
 		 * to facilitate lookup by code.
 		 */
-		private static Map<Integer, FanStateType> codeToFanStateTypeMapping;
+		private static final FanStateType[] codeToFanStateTypeMapping = new FanStateType[256];
 
 		private int key;
 		private String label;
@@ -191,10 +188,9 @@ implements ZWaveGetCommands, ZWaveCommandClassDynamicState {
 			this.label = label;
 		}
 
-		private static void initMapping() {
-			codeToFanStateTypeMapping = new HashMap<Integer, FanStateType>();
+		static {
 			for (FanStateType s : values()) {
-				codeToFanStateTypeMapping.put(s.key, s);
+				codeToFanStateTypeMapping[s.key] = s;
 			}
 		}
 
@@ -205,10 +201,9 @@ implements ZWaveGetCommands, ZWaveCommandClassDynamicState {
 		 * @return enumeration value of the fanState type.
 		 */
 		public static FanStateType getFanStateType(int i) {
-			if (codeToFanStateTypeMapping == null) {
-				initMapping();
-			}
-			return codeToFanStateTypeMapping.get(i);
+			if (i < 0 || i >= codeToFanStateTypeMapping.length)
+				return null;
+			return codeToFanStateTypeMapping[i];
 		}
 
 		/**
@@ -8,12 +8,9 @@
  */
 package org.openhab.binding.zwave.internal.protocol.commandclass;
 
-import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 
 import org.openhab.binding.zwave.internal.protocol.NodeStage;
@@ -160,7 +157,7 @@ ZWaveCommandClassDynamicState {
 			this.modeTypes.add(modeType);
 
 		logger.debug("NODE {}: Thermostat Mode Report, value = {}", this.getNode().getNodeId(), modeType.getLabel());
-		ZWaveCommandClassValueEvent zEvent = new ZWaveCommandClassValueEvent(this.getNode().getNodeId(), endpoint, this.getCommandClass(), new BigDecimal(value));
+		ZWaveCommandClassValueEvent zEvent = new ZWaveCommandClassValueEvent(this.getNode().getNodeId(), endpoint, this.getCommandClass(), value, 0);
 		this.getController().notifyEventListeners(zEvent);
 	}
 
@@ -273,7 +270,7 @@ ZWaveCommandClassDynamicState {
 		 * A mapping between the integer code and its corresponding mode type
 		 * to facilitate lookup by code.
 		 */
-		private static Map<Integer, ModeType> codeToModeTypeMapping;
+		private static final ModeType[] codeToModeTypeMapping = new ModeType[256];
 
 		private int key;
 		private String label;
@@ -283,10 +280,9 @@ ZWaveCommandClassDynamicState {
 			this.label = label;
 		}
 
-		private static void initMapping() {
-			codeToModeTypeMapping = new HashMap<Integer, ModeType>();
+		static {
 			for (ModeType s : values()) {
-				codeToModeTypeMapping.put(s.key, s);
+				codeToModeTypeMapping[s.key] = s;
 			}
 		}
 
@@ -297,10 +293,9 @@ ZWaveCommandClassDynamicState {
 		 * @return enumeration value of the mode type.
 		 */
 		public static ModeType getModeType(int i) {
-			if (codeToModeTypeMapping == null) {
-				initMapping();
-			}
-			return codeToModeTypeMapping.get(i);
+			if (i < 0 || i >= codeToModeTypeMapping.length)
+				return null;
+			return codeToModeTypeMapping[i];
 		}
 
 		/**
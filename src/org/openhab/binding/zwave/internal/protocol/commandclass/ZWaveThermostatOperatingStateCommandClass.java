@@ -8,12 +8,9 @@
  */
 package org.openhab.binding.zwave.internal.protocol.commandclass;
 
-import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 
 import org.openhab.binding.zwave.internal.protocol.NodeStage;
@@ -124,7 +121,7 @@ implements ZWaveGetCommands, ZWaveCommandClassDynamicState {
 		logger.debug("NODE {}: Operating State Type = {} ({})", this.getNode().getNodeId(), operatingStateType.getLabel(), value);
 
 		logger.debug("NODE {}: Thermostat Operating State Report value = {}", this.getNode().getNodeId(), operatingStateType.getLabel());
-		ZWaveCommandClassValueEvent zEvent = new ZWaveCommandClassValueEvent(this.getNode().getNodeId(), endpoint, this.getCommandClass(), new BigDecimal(value));
+		ZWaveCommandClassValueEvent zEvent = new ZWaveCommandClassValueEvent(this.getNode().getNodeId(), endpoint, this.getCommandClass(), value, 0);
 		this.getController().notifyEventListeners(zEvent);
 	}
 
@@ -184,7 +181,7 @@ implements ZWaveGetCommands, ZWaveCommandClassDynamicState {
 		 * A mapping between the integer code and its corresponding operating state type
 		 * to facilitate lookup by code.
 		 */
-		private static Map<Integer, OperatingStateType> codeToOperatingStateTypeMapping;
+		private static final OperatingStateType[] codeToOperatingStateTypeMapping = new OperatingStateType[256];
 
 		private int key;
 		private String label;
@@ -194,10 +191,9 @@ implements ZWaveGetCommands, ZWaveCommandClassDynamicState {
 			this.label = label;
 		}
 
-		private static void initMapping() {
-			codeToOperatingStateTypeMapping = new HashMap<Integer, OperatingStateType>();
+		static {
 			for (OperatingStateType s : values()) {
-				codeToOperatingStateTypeMapping.put(s.key, s);
+				codeToOperatingStateTypeMapping[s.key] = s;
 			}
 		}
 
@@ -208,10 +204,9 @@ implements ZWaveGetCommands, ZWaveCommandClassDynamicState {
 		 * @return enumeration value of the operatingState type.
 		 */
 		public static OperatingStateType getOperatingStateType(int i) {
-			if (codeToOperatingStateTypeMapping == null) {
-				initMapping();
-			}
-			return codeToOperatingStateTypeMapping.get(i);
+			if (i < 0 || i >= codeToOperatingStateTypeMapping.length)
+				return null;
+			return codeToOperatingStateTypeMapping[i];
 		}
 
 		/**
@@ -11,12 +11,11 @@ package org.openhab.binding.zwave.internal.protocol.commandclass;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 
 import org.openhab.binding.zwave.internal.protocol.NodeStage;
+import org.openhab.binding.zwave.internal.protocol.FixedPoint;
 import org.openhab.binding.zwave.internal.protocol.SerialMessage;
 import org.openhab.binding.zwave.internal.protocol.SerialMessage.SerialMessageClass;
 import org.openhab.binding.zwave.internal.protocol.SerialMessage.SerialMessagePriority;
@@ -147,10 +146,10 @@ public class ZWaveThermostatSetpointCommandClass extends ZWaveCommandClass
 		int scale = (serialMessage.getMessagePayloadByte(offset + 2) >> 3) & 0x03;
 		
 		try {
-			BigDecimal value = extractValue(serialMessage.getMessagePayload(), offset + 2);
+			long value = extractValue(serialMessage.getMessagePayload(), offset + 2);
 			
 			logger.debug("NODE {}: Thermostat Setpoint report Scale = {}", this.getNode().getNodeId(), scale);
-			logger.debug("NODE {}: Thermostat Setpoint Value = {}", this.getNode().getNodeId(), value);
+			logger.debug("NODE {}: Thermostat Setpoint Value = {}", this.getNode().getNodeId(), FixedPoint.toString(value));
 			
 			SetpointType setpointType = SetpointType.getSetpointType(setpointTypeCode);
 			
@@ -165,7 +164,6 @@ public class ZWaveThermostatSetpointCommandClass extends ZWaveCommandClass
 	
 			logger.debug("NODE {}: Setpoint Type = {} ({})", this.getNode().getNodeId(), setpointType.getLabel(), setpointTypeCode);
 			
-			logger.debug("NODE {}: Thermostat Setpoint Report value = {}", this.getNode().getNodeId(), value.toPlainString());
 			ZWaveThermostatSetpointValueEvent zEvent = new ZWaveThermostatSetpointValueEvent(this.getNode().getNodeId(), endpoint, setpointType, scale, value);
 			this.getController().notifyEventListeners(zEvent);
 		}
@@ -245,7 +243,7 @@ public class ZWaveThermostatSetpointCommandClass extends ZWaveCommandClass
 	 * {@inheritDoc}
 	 */
 	public SerialMessage setValueMessage(int value) {
-			return setMessage(0, new BigDecimal(value));
+			return setMessage(0, FixedPoint.valueOf(value, 0));
 	}
 	
 	/**
@@ -262,6 +260,20 @@ public class ZWaveThermostatSetpointCommandClass extends ZWaveCommandClass
 		return this.getSupportedMessage();
 	}
 	
+	/**
+	 * Gets a SerialMessage with the THERMOSTAT_SETPOINT_SET command 
+	 * @param setpoint the {@link FixedPoint} setpoint to set.
+	 * @return the serial message
+	 */
+	public SerialMessage setMessage(int scale, long setpoint) {
+		for (SetpointType setpointType : this.setpointTypes) {
+			return setMessage(scale, setpointType, setpoint);
+		}
+		
+		// in case there are no supported setpoint types, get them.
+		return this.getSupportedMessage();
+	}
+	
 	/**
 	 * Gets a SerialMessage with the THERMOSTAT_SETPOINT_SET command
 	 * @param scale the scale (DegC or DegF)
@@ -270,35 +282,40 @@ public class ZWaveThermostatSetpointCommandClass extends ZWaveCommandClass
 	 * @return the serial message
 	 */
 	public SerialMessage setMessage(int scale, SetpointType setpointType, BigDecimal setpoint) {
-		logger.debug("NODE {}: Creating new message for application command THERMOSTAT_SETPOINT_SET", this.getNode().getNodeId());
-		SerialMessage result = new SerialMessage(this.getNode().getNodeId(), SerialMessageClass.SendData, SerialMessageType.Request, SerialMessageClass.SendData, SerialMessagePriority.Set);
-
-		try
-		{
-
-			byte[] encodedValue = encodeValue(setpoint);
-			byte[] tmp = { 
-					(byte) this.getNode().getNodeId(),
-					(byte) (3 + encodedValue.length),
-					(byte) getCommandClass().getKey(),
-					THERMOSTAT_SETPOINT_SET,
-					(byte) setpointType.getKey()
-				};
-			
-			byte[] payload = new byte[tmp.length + encodedValue.length];
-			System.arraycopy(tmp, 0, payload, 0, tmp.length);
-			System.arraycopy(encodedValue, 0, payload, tmp.length, encodedValue.length);
-			// Add the scale
-			payload[5] += (byte)(scale << 3);
-			
-			result.setMessagePayload(payload);
-    	return result;
+		try {
+			return setMessage(scale, setpointType, FixedPoint.valueOf(setpoint));
 		} catch (ArithmeticException e) {
 			logger.error("NODE {}: Got an arithmetic exception converting value {} to a valid Z-Wave value. Ignoring THERMOSTAT_SETPOINT_SET message.", this.getNode().getNodeId(), setpoint);
 			return null;
 		}
 	}
 	
+	/**
+	 * Gets a SerialMessage with the THERMOSTAT_SETPOINT_SET command
+	 * @param scale the scale (DegC or DegF)
+	 * @param setpointType the setpoint type to set
+	 * @param setpoint the {@link FixedPoint} setpoint to set.
+	 * @return the serial message
+	 */
+	public SerialMessage setMessage(int scale, SetpointType setpointType, long setpoint) {
+		logger.debug("NODE {}: Creating new message for application command THERMOSTAT_SETPOINT_SET", this.getNode().getNodeId());
+		SerialMessage result = new SerialMessage(this.getNode().getNodeId(), SerialMessageClass.SendData, SerialMessageType.Request, SerialMessageClass.SendData, SerialMessagePriority.Set);
+
+		int encodedSize = getEncodedSize(setpoint);
+		byte[] payload = new byte[5 + encodedSize];
+		payload[0] = (byte) this.getNode().getNodeId();
+		payload[1] = (byte) (3 + encodedSize);
+		payload[2] = (byte) getCommandClass().getKey();
+		payload[3] = THERMOSTAT_SETPOINT_SET;
+		payload[4] = (byte) setpointType.getKey();
+		encodeValue(setpoint, payload, 5);
+		// Add the scale
+		payload[5] += (byte)(scale << 3);
+		
+		result.setMessagePayload(payload);
+		return result;
+	}
+	
 	/**
 	 * Z-Wave SetpointType enumeration. The setpoint type indicates the type
 	 * of setpoint that is reported.
@@ -321,7 +338,7 @@ public class ZWaveThermostatSetpointCommandClass extends ZWaveCommandClass
 		 * A mapping between the integer code and its corresponding setpoint type
 		 * to facilitate lookup by code.
 		 */
-		private static Map<Integer, SetpointType> codeToSetpointTypeMapping;
+		private static final SetpointType[] codeToSetpointTypeMapping = new SetpointType[256];
 
 		private int key;
 		private String label;
@@ -331,10 +348,9 @@ public class ZWaveThermostatSetpointCommandClass extends ZWaveCommandClass
 			this.label = label;
 		}
 
-		private static void initMapping() {
-			codeToSetpointTypeMapping = new HashMap<Integer, SetpointType>();
+		static {
 			for (SetpointType s : values()) {
-				codeToSetpointTypeMapping.put(s.key, s);
+				codeToSetpointTypeMapping[s.key] = s;
 			}
 		}
 
@@ -345,10 +361,9 @@ public class ZWaveThermostatSetpointCommandClass extends ZWaveCommandClass
 		 * @return enumeration value of the setpoint type.
 		 */
 		public static SetpointType getSetpointType(int i) {
-			if (codeToSetpointTypeMapping == null) {
-				initMapping();
-			}
-			return codeToSetpointTypeMapping.get(i);
+			if (i < 0 || i >= codeToSetpointTypeMapping.length)
+				return null;
+			return codeToSetpointTypeMapping[i];
 		}
 
 		/**
@@ -382,11 +397,11 @@ public class ZWaveThermostatSetpointCommandClass extends ZWaveCommandClass
 		 * @param nodeId the nodeId of the event
 		 * @param endpoint the endpoint of the event.
 		 * @param setpointType the setpoint type that triggered the event;
-		 * @param value the value for the event.
+		 * @param value the {@link FixedPoint} value for the event.
 		 */
 		private ZWaveThermostatSetpointValueEvent(int nodeId, int endpoint,
-				SetpointType setpointType, int scale, Object value) {
-			super(nodeId, endpoint, CommandClass.THERMOSTAT_SETPOINT, value);
+				SetpointType setpointType, int scale, long value) {
+			super(nodeId, endpoint, CommandClass.THERMOSTAT_SETPOINT, FixedPoint.getUnscaledValue(value), FixedPoint.getPrecision(value));
 			this.setpointType = setpointType;
 			this.scale = scale;
 		}
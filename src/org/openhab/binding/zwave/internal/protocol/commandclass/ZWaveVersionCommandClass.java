@@ -8,9 +8,6 @@
  */
 package org.openhab.binding.zwave.internal.protocol.commandclass;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import org.openhab.binding.zwave.internal.protocol.SerialMessage;
 import org.openhab.binding.zwave.internal.protocol.ZWaveController;
 import org.openhab.binding.zwave.internal.protocol.ZWaveEndpoint;
@@ -231,7 +228,7 @@ public class ZWaveVersionCommandClass extends ZWaveCommandClass {
 		 * A mapping between the integer code and its corresponding Library type
 		 * to facilitate lookup by code.
 		 */
-		private static Map<Integer, LibraryType> libraryMapping;
+		private static final LibraryType[] libraryMapping = new LibraryType[256];
 
 		private int key;
 		private String label;
@@ -241,10 +238,9 @@ public class ZWaveVersionCommandClass extends ZWaveCommandClass {
 			this.label = label;
 		}
 
-		private static void initMapping() {
-			libraryMapping = new HashMap<Integer, LibraryType>();
+		static {
 			for (LibraryType s : values()) {
-				libraryMapping.put(s.key, s);
+				libraryMapping[s.key] = s;
 			}
 		}
 
@@ -255,14 +251,10 @@ public class ZWaveVersionCommandClass extends ZWaveCommandClass {
 		 * @return enumeration value of the sensor type.
 		 */
 		public static LibraryType getLibraryType(int i) {
-			if (libraryMapping == null) {
-				initMapping();
-			}
-			
-			if(libraryMapping.get(i) == null)
+			if (i < 0 || i >= libraryMapping.length || libraryMapping[i] == null)
 				return LIB_UNKNOWN;
 
-			return libraryMapping.get(i);
+			return libraryMapping[i];
 		}
 
 		/**
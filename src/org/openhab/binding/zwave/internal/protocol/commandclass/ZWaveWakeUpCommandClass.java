@@ -50,6 +50,12 @@ public class ZWaveWakeUpCommandClass extends ZWaveCommandClass implements ZWaveC
 
 	private static final int MAX_BUFFFER_SIZE = 128;
 
+	// One timer thread serves the sleep timers of all nodes.
+	private static final Timer timer = new Timer("ZWaveWakeUpTimer", true);
+
+	// Messages are queued from any thread that calls sendData, and taken off
+	// in the node's mailbox. Queueing and isAwake are guarded by this object,
+	// so a message can't be queued after the queue was emptied on wake-up.
 	private ArrayBlockingQueue<SerialMessage> wakeUpQueue;
 	
 	private int targetNodeId = 0;
@@ -64,7 +70,6 @@ public class ZWaveWakeUpCommandClass extends ZWaveCommandClass implements ZWaveC
 	
 	private boolean initializationComplete = false;
 	
-	private Timer timer = null;
 	private TimerTask timerTask = null;
 
 	
@@ -78,8 +83,6 @@ public class ZWaveWakeUpCommandClass extends ZWaveCommandClass implements ZWaveC
 			ZWaveController controller, ZWaveEndpoint endpoint) {
 		super(node, controller, endpoint);
 		wakeUpQueue = new ArrayBlockingQueue<SerialMessage>(MAX_BUFFFER_SIZE, true);
-		
-		timer = new Timer();
 	}
 	
 	/**
@@ -89,7 +92,6 @@ public class ZWaveWakeUpCommandClass extends ZWaveCommandClass implements ZWaveC
 	 */
 	private Object readResolve() {
 		wakeUpQueue = new ArrayBlockingQueue<SerialMessage>(MAX_BUFFFER_SIZE, true);
-		timer = new Timer();
 		return this;
 	}	
 	
@@ -183,6 +185,9 @@ public class ZWaveWakeUpCommandClass extends ZWaveCommandClass implements ZWaveC
 
 				// Set the awake flag. This will also empty the queue
 				this.setAwake(true);
+
+				// a re-interview of a sleeping node starts now.
+				this.getNode().wokeUp();
 				break;
 			default:
 				logger.warn(String.format("NODE %d: Unsupported Command 0x%02X for command class %s (0x%02X).", 
@@ -216,10 +221,11 @@ public class ZWaveWakeUpCommandClass extends ZWaveCommandClass implements ZWaveC
 	 * The message is only added if it's not the WAKE_UP_NO_MORE_INFORMATION message
 	 * since we don't want to send this at the next wakeup.
 	 * This combines the previous 'putInWakeUpQueue' with 'isAlive'.
+	 * Can be called from any thread.
 	 * @param serialMessage the message to put in the wake-up queue.
 	 * @return true if the message can be sent immediately
 	 */
-	public boolean processOutgoingWakeupMessage(SerialMessage serialMessage) {
+	public synchronized boolean processOutgoingWakeupMessage(SerialMessage serialMessage) {
 		// The message is Ok, if we're awake, send it now...
 		if(isAwake) {
 			return true;
@@ -356,8 +362,8 @@ public class ZWaveWakeUpCommandClass extends ZWaveCommandClass implements ZWaveC
 		}
 		
 		// Send the next message in the wake-up queue
-		if (!this.wakeUpQueue.isEmpty()) {
-			serialMessage = this.wakeUpQueue.poll();
+		serialMessage = pollWakeUpQueue();
+		if (serialMessage != null) {
 			this.getController().sendData(serialMessage);
 		}
 		else if(isAwake() == true){
@@ -368,6 +374,21 @@ public class ZWaveWakeUpCommandClass extends ZWaveCommandClass implements ZWaveC
 		}
 	}
 
+	/**
+	 * Takes the next message from the wake-up queue. Messages whose
+	 * deadline passed while the node was asleep are dropped.
+	 * @return the next message, or null if the queue is empty.
+	 */
+	private SerialMessage pollWakeUpQueue() {
+		SerialMessage serialMessage;
+		while ((serialMessage = this.wakeUpQueue.poll()) != null) {
+			if (!serialMessage.isExpired())
+				return serialMessage;
+			this.getController().dropExpiredMessage(serialMessage);
+		}
+		return null;
+	}
+
 	/**
 	 * Returns whether the node is awake.
 	 * @return the isAwake
@@ -383,7 +404,9 @@ public class ZWaveWakeUpCommandClass extends ZWaveCommandClass implements ZWaveC
 	 * @param isAwake the isAwake to set
 	 */
 	public void setAwake(boolean isAwake) {
-		this.isAwake = isAwake;
+		synchronized (this) {
+			this.isAwake = isAwake;
+		}
 		
 		if(isAwake) {
 			ZWaveWakeUpEvent event = new ZWaveWakeUpEvent(getNode().getNodeId(), WAKE_UP_NOTIFICATION);
@@ -393,8 +416,8 @@ public class ZWaveWakeUpCommandClass extends ZWaveCommandClass implements ZWaveC
 
 			// Handle the wake-up queue for this node.
 			// We send the first message, and when that's ACKed, we sent the next
-			if (!this.wakeUpQueue.isEmpty()) {
-				SerialMessage serialMessage = this.wakeUpQueue.poll();
+			SerialMessage serialMessage = pollWakeUpQueue();
+			if (serialMessage != null) {
 				this.getController().sendData(serialMessage);
 			}
 			else {
@@ -458,6 +481,15 @@ public class ZWaveWakeUpCommandClass extends ZWaveCommandClass implements ZWaveC
 
 		@Override
 		public void run() {
+			// the timer thread is shared; the node is handled in its mailbox.
+			wakeup.getController().getNodeExecutor().submit(wakeup.getNode().getNodeId(), new Runnable() {
+				public void run() {
+					goToSleep();
+				}
+			});
+		}
+
+		private void goToSleep() {
 			if(!wakeup.isAwake()) {
 				logger.debug("NODE {}: Already asleep", wakeup.getNode().getNodeId());
 				return;
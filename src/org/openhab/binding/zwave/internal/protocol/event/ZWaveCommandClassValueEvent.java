@@ -8,12 +8,16 @@
  */
 package org.openhab.binding.zwave.internal.protocol.event;
 
+import java.math.BigDecimal;
+
+import org.openhab.binding.zwave.internal.protocol.FixedPoint;
 import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveCommandClass.CommandClass;
 
 /**
  * ZWave Command Class event. This event is fired when a command class
  * receives a value from the node. The event can be subclasses to add
- * additional information to the event. 
+ * additional information to the event. Decimal values are carried as a
+ * {@link FixedPoint} value; a BigDecimal is only created when it is asked for.
  * @author Jan-Willem Spuij
  * @since 1.4.0
  */
@@ -21,6 +25,8 @@ public class ZWaveCommandClassValueEvent extends ZWaveEvent {
 
 	private final CommandClass commandClass;
 	private final Object value;
+	private final long fixedPointValue;
+	private final boolean fixedPoint;
 	
 	/**
 	 * Constructor. Creates a new instance of the ZWaveCommandClassValueEvent class.
@@ -34,6 +40,26 @@ public class ZWaveCommandClassValueEvent extends ZWaveEvent {
 		
 		this.commandClass = commandClass;
 		this.value = value;
+		this.fixedPointValue = 0;
+		this.fixedPoint = false;
+	}
+
+	/**
+	 * Constructor. Creates a new instance of the ZWaveCommandClassValueEvent
+	 * class with a decimal value.
+	 * @param nodeId the nodeId of the event
+	 * @param endpoint the endpoint of the event.
+	 * @param commandClass the command class that fired the ZWaveCommandClassValueEvent;
+	 * @param unscaledValue the mantissa of the value, i.e. 225 for 22.5
+	 * @param precision the number of decimal places of the value.
+	 */
+	public ZWaveCommandClassValueEvent(int nodeId, int endpoint, CommandClass commandClass, long unscaledValue, int precision) {
+		super(nodeId, endpoint);
+		
+		this.commandClass = commandClass;
+		this.value = null;
+		this.fixedPointValue = FixedPoint.valueOf(unscaledValue, precision);
+		this.fixedPoint = true;
 	}
 
 	/**
@@ -45,10 +71,61 @@ public class ZWaveCommandClassValueEvent extends ZWaveEvent {
 	}
 
 	/**
-	 * Gets the value for the event.
+	 * Gets the value for the event. A decimal value is returned as a new
+	 * BigDecimal.
 	 * @return the value.
 	 */
 	public Object getValue() {
+		if (fixedPoint)
+			return FixedPoint.toBigDecimal(fixedPointValue);
 		return value;
 	}
+
+	/**
+	 * Gets whether the value of the event is a decimal value.
+	 * @return true if the typed decimal accessors can be used.
+	 */
+	public boolean isFixedPoint() {
+		return fixedPoint;
+	}
+
+	/**
+	 * Gets the decimal value of the event.
+	 * @return the {@link FixedPoint} value, or 0 if the value isn't decimal.
+	 */
+	public long getFixedPointValue() {
+		return fixedPointValue;
+	}
+
+	/**
+	 * Gets the mantissa of the decimal value of the event.
+	 * @return the mantissa, i.e. 225 for 22.5
+	 */
+	public long getUnscaledValue() {
+		return FixedPoint.getUnscaledValue(fixedPointValue);
+	}
+
+	/**
+	 * Gets the precision of the decimal value of the event.
+	 * @return the number of decimal places.
+	 */
+	public int getPrecision() {
+		return FixedPoint.getPrecision(fixedPointValue);
+	}
+
+	/**
+	 * Gets the decimal value of the event as a double.
+	 * @return the value
+	 */
+	public double getDoubleValue() {
+		return FixedPoint.toDouble(fixedPointValue);
+	}
+
+	/**
+	 * Gets the decimal value of the event as a BigDecimal.
+	 * @return a new BigDecimal with the value.
+	 */
+	public BigDecimal getDecimalValue() {
+		return FixedPoint.toBigDecimal(fixedPointValue);
+	}
 }
@@ -0,0 +1,204 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.internal.protocol.initialization;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Properties;
+
+import org.openhab.binding.zwave.internal.protocol.NodeStage;
+import org.openhab.binding.zwave.internal.protocol.ZWaveController;
+import org.openhab.binding.zwave.internal.protocol.ZWaveNode;
+import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveCommandClass;
+import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveCommandClass.CommandClass;
+import me.wbarlow.zwavemanagement.logging.Logger;
+import me.wbarlow.zwavemanagement.logging.LoggerFactory;
+
+/**
+ * Stores the progress of node interviews, so an interview that was
+ * interrupted by a restart resumes where it was instead of starting over.
+ * Every node gets a properties file with the last stage it completed and
+ * what the node told over the air up to that stage: its command classes,
+ * manufacturer and device ids, and command class versions and instances.
+ * What the controller knows about the node is asked again anyway.
+ * The stage is checkpointed no further than INSTANCES_ENDPOINTS, since the
+ * values the command classes collect in the later stages aren't stored,
+ * and no further than VERSION for nodes with multi channel endpoints,
+ * since the endpoints aren't stored either.
+ * @author Woodrow Barlow
+ */
+public class ZWaveInterviewCheckpoints {
+
+	private static final Logger logger = LoggerFactory.getLogger(ZWaveInterviewCheckpoints.class);
+
+	private static final String FILE_PREFIX = "node";
+	private static final String FILE_SUFFIX = ".properties";
+
+	private static final String HOME_ID = "homeId";
+	private static final String STAGE = "stage";
+	private static final String MANUFACTURER = "manufacturer";
+	private static final String DEVICE_TYPE = "deviceType";
+	private static final String DEVICE_ID = "deviceId";
+	private static final String COMMAND_CLASS = "commandClass.";
+	private static final String VERSION = ".version";
+	private static final String INSTANCES = ".instances";
+
+	private final File directory;
+
+	/**
+	 * Constructor. Creates a new instance of the ZWaveInterviewCheckpoints class.
+	 * @param directory the directory for the checkpoint files, created if it doesn't exist.
+	 * @throws IOException when the directory can't be created.
+	 */
+	public ZWaveInterviewCheckpoints(File directory) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("Could not create the checkpoint directory " + directory);
+		this.directory = directory;
+	}
+
+	/**
+	 * Gets the last stage of an interview that can be checkpointed, given the
+	 * stage the node got to.
+	 * @param node the node
+	 * @param stage the last stage the node completed.
+	 * @return the stage to checkpoint, or null if nothing worth keeping was collected yet.
+	 */
+	public static NodeStage getCheckpointStage(ZWaveNode node, NodeStage stage) {
+		if (stage == NodeStage.DEAD || stage == NodeStage.FAILED || stage == NodeStage.INIT)
+			return null;
+		if (stage.getStage() < NodeStage.DETAILS.getStage())
+			return null;
+		NodeStage last = node.getCommandClass(CommandClass.MULTI_INSTANCE) != null ? NodeStage.VERSION : NodeStage.INSTANCES_ENDPOINTS;
+		return stage.getStage() > last.getStage() ? last : stage;
+	}
+
+	/**
+	 * Stores the progress of a node.
+	 * @param node the node
+	 * @param stage the last stage the node completed, see {@link #getCheckpointStage}.
+	 */
+	public synchronized void save(ZWaveNode node, NodeStage stage) {
+		Properties properties = new Properties();
+		properties.setProperty(HOME_ID, Integer.toString(node.getHomeId()));
+		properties.setProperty(STAGE, stage.name());
+		if (stage.getStage() >= NodeStage.MANSPEC01.getStage()) {
+			properties.setProperty(MANUFACTURER, Integer.toString(node.getManufacturer()));
+			properties.setProperty(DEVICE_TYPE, Integer.toString(node.getDeviceType()));
+			properties.setProperty(DEVICE_ID, Integer.toString(node.getDeviceId()));
+		}
+		for (ZWaveCommandClass commandClass : node.getCommandClasses()) {
+			String key = COMMAND_CLASS + commandClass.getCommandClass().getKey();
+			properties.setProperty(key, commandClass.getCommandClass().name());
+			if (stage.getStage() >= NodeStage.VERSION.getStage())
+				properties.setProperty(key + VERSION, Integer.toString(commandClass.getVersion()));
+			if (stage.getStage() >= NodeStage.INSTANCES_ENDPOINTS.getStage())
+				properties.setProperty(key + INSTANCES, Integer.toString(commandClass.getInstances()));
+		}
+
+		File file = new File(directory, FILE_PREFIX + node.getNodeId() + FILE_SUFFIX + ".tmp");
+		try {
+			FileOutputStream out = new FileOutputStream(file);
+			try {
+				properties.store(out, "Z-Wave interview checkpoint of node " + node.getNodeId());
+				out.getFD().sync();
+			} finally {
+				out.close();
+			}
+			File target = getFile(node.getNodeId());
+			// renameTo doesn't replace an existing file on every platform.
+			if (!file.renameTo(target) && !(target.delete() && file.renameTo(target)))
+				throw new IOException("Could not replace " + target);
+			logger.debug("NODE {}: Interview checkpointed at stage {}", node.getNodeId(), stage.getLabel());
+		} catch (IOException e) {
+			logger.error("NODE " + node.getNodeId() + ": Could not store the interview checkpoint.", e);
+		}
+	}
+
+	/**
+	 * Restores the progress of a node: adds the command classes it had and
+	 * sets what it told about itself.
+	 * @param node the node, which has been identified by the controller.
+	 * @param controller the controller the command classes send with.
+	 * @return the last stage the node completed, or null if there is no
+	 * usable checkpoint for the node.
+	 */
+	public synchronized NodeStage restore(ZWaveNode node, ZWaveController controller) {
+		File file = getFile(node.getNodeId());
+		if (!file.exists())
+			return null;
+
+		Properties properties = new Properties();
+		NodeStage stage;
+		try {
+			FileInputStream in = new FileInputStream(file);
+			try {
+				properties.load(in);
+			} finally {
+				in.close();
+			}
+			if (Integer.parseInt(properties.getProperty(HOME_ID, "0")) != node.getHomeId()) {
+				logger.info("NODE {}: Interview checkpoint is from another network, ignoring it.", node.getNodeId());
+				return null;
+			}
+			stage = NodeStage.valueOf(properties.getProperty(STAGE));
+			if (stage.getStage() >= NodeStage.MANSPEC01.getStage()) {
+				node.setManufacturer(Integer.parseInt(properties.getProperty(MANUFACTURER)));
+				node.setDeviceType(Integer.parseInt(properties.getProperty(DEVICE_TYPE)));
+				node.setDeviceId(Integer.parseInt(properties.getProperty(DEVICE_ID)));
+			}
+		} catch (IOException e) {
+			logger.error("NODE " + node.getNodeId() + ": Could not read the interview checkpoint.", e);
+			return null;
+		} catch (RuntimeException e) {
+			// a missing or garbled entry; NumberFormatException, IllegalArgumentException or NullPointerException.
+			logger.warn("NODE {}: Invalid interview checkpoint, ignoring it.", node.getNodeId());
+			return null;
+		}
+
+		for (Object entry : properties.keySet()) {
+			String name = (String) entry;
+			if (!name.startsWith(COMMAND_CLASS) || name.endsWith(VERSION) || name.endsWith(INSTANCES))
+				continue;
+			try {
+				int key = Integer.parseInt(name.substring(COMMAND_CLASS.length()));
+				ZWaveCommandClass commandClass = node.getCommandClass(CommandClass.getCommandClass(key));
+				if (commandClass == null) {
+					commandClass = ZWaveCommandClass.getInstance(key, node, controller);
+					if (commandClass == null)
+						continue;
+					node.addCommandClass(commandClass);
+				}
+				String version = properties.getProperty(name + VERSION);
+				if (version != null)
+					commandClass.setVersion(Integer.parseInt(version));
+				String instances = properties.getProperty(name + INSTANCES);
+				if (instances != null)
+					commandClass.setInstances(Integer.parseInt(instances));
+			} catch (NumberFormatException e) {
+				logger.warn("NODE {}: Invalid interview checkpoint entry {}, ignoring it.", node.getNodeId(), name);
+			}
+		}
+		return stage;
+	}
+
+	/**
+	 * Deletes the checkpoint of a node, for when the node leaves the network.
+	 * @param nodeId the node id
+	 * @return true if the file was deleted
+	 */
+	public synchronized boolean delete(int nodeId) {
+		return getFile(nodeId).delete();
+	}
+
+	private File getFile(int nodeId) {
+		return new File(directory, FILE_PREFIX + nodeId + FILE_SUFFIX);
+	}
+}
@@ -0,0 +1,555 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.internal.protocol.initialization;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openhab.binding.zwave.internal.protocol.LatencyHistogram;
+import org.openhab.binding.zwave.internal.protocol.NodeStage;
+import org.openhab.binding.zwave.internal.protocol.ZWaveNode;
+
+/**
+ * Records what the interview of each node costs: how long every stage
+ * takes, and how many frames, retries and query timeouts it needs. When a
+ * node finishes its interview, its stage times are added to the histograms
+ * of its device model (manufacturer, device type and device id), so the
+ * models that make startup slow stand out.
+ * The node reports its stage changes; the controller reports frames and
+ * retries, and the query tracker reports timeouts. Time spent DEAD during
+ * the interview counts as a stage of its own.
+ * @author Woodrow Barlow
+ */
+public class ZWaveInterviewProfiler {
+
+	private static final int MAX_NODES = 256;
+
+	private final NodeProfile[] nodeProfiles = new NodeProfile[MAX_NODES];
+	private final Map<String, ModelProfile> modelProfiles = new HashMap<String, ModelProfile>();
+
+	/**
+	 * Tells the profiler that the stage of a node may have changed. The
+	 * profile of a node starts at the first stage of an interview and ends
+	 * when the node is DONE or FAILED.
+	 * @param node the node
+	 */
+	public synchronized void stageChanged(ZWaveNode node) {
+		int nodeId = node.getNodeId();
+		if (nodeId < 0 || nodeId >= MAX_NODES)
+			return;
+		NodeStage stage = node.getNodeStage();
+		long now = System.currentTimeMillis();
+		NodeProfile profile = nodeProfiles[nodeId];
+
+		if (profile == null || profile.isFinished()) {
+			// DONE is set again after every answer, and DEAD can happen long after the interview.
+			if (stage == NodeStage.DONE || stage == NodeStage.DEAD || stage == NodeStage.FAILED || stage == NodeStage.INIT)
+				return;
+			profile = new NodeProfile(nodeId, stage, now);
+			nodeProfiles[nodeId] = profile;
+			return;
+		}
+		if (stage == profile.currentStage)
+			return;
+
+		profile.closeStage(now);
+		if (stage != NodeStage.DONE && stage != NodeStage.FAILED) {
+			profile.openStage(stage, now);
+			return;
+		}
+
+		profile.finish(stage == NodeStage.DONE, now);
+		String key = getModelKey(node);
+		ModelProfile model = modelProfiles.get(key);
+		if (model == null) {
+			model = new ModelProfile(key, node.getManufacturer(), node.getDeviceType(), node.getDeviceId());
+			modelProfiles.put(key, model);
+		}
+		model.add(profile);
+	}
+
+	/**
+	 * Counts a frame sent to a node.
+	 * @param nodeId the node id
+	 */
+	public synchronized void frameSent(int nodeId) {
+		NodeProfile profile = getActiveProfile(nodeId);
+		if (profile != null)
+			profile.current.frames++;
+	}
+
+	/**
+	 * Counts a frame that was sent to a node again.
+	 * @param nodeId the node id
+	 */
+	public synchronized void frameRetried(int nodeId) {
+		NodeProfile profile = getActiveProfile(nodeId);
+		if (profile != null)
+			profile.current.retries++;
+	}
+
+	/**
+	 * Counts a query the node didn't answer in time.
+	 * @param nodeId the node id
+	 */
+	public synchronized void queryTimedOut(int nodeId) {
+		NodeProfile profile = getActiveProfile(nodeId);
+		if (profile != null)
+			profile.current.timeouts++;
+	}
+
+	private NodeProfile getActiveProfile(int nodeId) {
+		if (nodeId < 0 || nodeId >= MAX_NODES)
+			return null;
+		NodeProfile profile = nodeProfiles[nodeId];
+		if (profile == null || profile.isFinished())
+			return null;
+		return profile;
+	}
+
+	/**
+	 * Gets the profile of the last interview of a node.
+	 * @param nodeId the node id
+	 * @return a copy of the profile, or null if the node wasn't interviewed.
+	 */
+	public synchronized NodeProfile getNodeProfile(int nodeId) {
+		if (nodeId < 0 || nodeId >= MAX_NODES || nodeProfiles[nodeId] == null)
+			return null;
+		return nodeProfiles[nodeId].copy(System.currentTimeMillis());
+	}
+
+	/**
+	 * Gets the profiles of the last interview of every node, the longest
+	 * interview first.
+	 * @return copies of the profiles
+	 */
+	public synchronized List<NodeProfile> getNodeProfiles() {
+		long now = System.currentTimeMillis();
+		List<NodeProfile> profiles = new ArrayList<NodeProfile>();
+		for (NodeProfile profile : nodeProfiles) {
+			if (profile != null)
+				profiles.add(profile.copy(now));
+		}
+		Collections.sort(profiles, new Comparator<NodeProfile>() {
+			public int compare(NodeProfile a, NodeProfile b) {
+				return compareLong(b.getDuration(), a.getDuration());
+			}
+		});
+		return profiles;
+	}
+
+	/**
+	 * Gets the profiles of the device models, the most expensive model first:
+	 * the one with the longest average interview.
+	 * @return the model profiles
+	 */
+	public synchronized List<ModelProfile> getModelProfiles() {
+		List<ModelProfile> profiles = new ArrayList<ModelProfile>(modelProfiles.values());
+		Collections.sort(profiles, new Comparator<ModelProfile>() {
+			public int compare(ModelProfile a, ModelProfile b) {
+				return compareLong(b.getAverageTime(), a.getAverageTime());
+			}
+		});
+		return profiles;
+	}
+
+	/**
+	 * Forgets all profiles, for when the controller is closed.
+	 */
+	public synchronized void clear() {
+		for (int i = 0; i < MAX_NODES; i++)
+			nodeProfiles[i] = null;
+		modelProfiles.clear();
+	}
+
+	private static String getModelKey(ZWaveNode node) {
+		return String.format("%04X:%04X:%04X", node.getManufacturer(), node.getDeviceType(), node.getDeviceId());
+	}
+
+	private static int compareLong(long a, long b) {
+		return a < b ? -1 : (a == b ? 0 : 1);
+	}
+
+	/**
+	 * The cost of one stage of an interview. A stage that's entered more
+	 * than once, like DEAD, adds up.
+	 */
+	public static class StageCost {
+		private long duration = 0;
+		private int frames = 0;
+		private int retries = 0;
+		private int timeouts = 0;
+
+		private StageCost copy() {
+			StageCost copy = new StageCost();
+			copy.duration = duration;
+			copy.frames = frames;
+			copy.retries = retries;
+			copy.timeouts = timeouts;
+			return copy;
+		}
+
+		/**
+		 * Gets the time spent in the stage.
+		 * @return the duration in milliseconds
+		 */
+		public long getDuration() {
+			return duration;
+		}
+
+		/**
+		 * Gets the number of frames sent during the stage.
+		 * @return the frame count
+		 */
+		public int getFrames() {
+			return frames;
+		}
+
+		/**
+		 * Gets the number of frames sent again during the stage.
+		 * @return the retry count
+		 */
+		public int getRetries() {
+			return retries;
+		}
+
+		/**
+		 * Gets the number of queries that timed out during the stage.
+		 * @return the timeout count
+		 */
+		public int getTimeouts() {
+			return timeouts;
+		}
+	}
+
+	/**
+	 * The stage costs of the interview of one node.
+	 */
+	public static class NodeProfile {
+		private final int nodeId;
+		private final long startTime;
+		private final Map<NodeStage, StageCost> stages = new EnumMap<NodeStage, StageCost>(NodeStage.class);
+		private NodeStage currentStage;
+		private StageCost current;
+		private long stageStartTime;
+		private long endTime = 0;
+		private boolean completed = false;
+
+		private NodeProfile(int nodeId, NodeStage stage, long now) {
+			this.nodeId = nodeId;
+			this.startTime = now;
+			openStage(stage, now);
+		}
+
+		private void openStage(NodeStage stage, long now) {
+			currentStage = stage;
+			stageStartTime = now;
+			current = stages.get(stage);
+			if (current == null) {
+				current = new StageCost();
+				stages.put(stage, current);
+			}
+		}
+
+		private void closeStage(long now) {
+			current.duration += now - stageStartTime;
+		}
+
+		private void finish(boolean completed, long now) {
+			this.completed = completed;
+			this.endTime = now;
+			this.currentStage = completed ? NodeStage.DONE : NodeStage.FAILED;
+		}
+
+		/**
+		 * Copies the profile, with the time in the current stage so far added.
+		 */
+		private NodeProfile copy(long now) {
+			NodeProfile copy = new NodeProfile(nodeId, currentStage, startTime);
+			copy.stages.clear();
+			for (Map.Entry<NodeStage, StageCost> entry : stages.entrySet())
+				copy.stages.put(entry.getKey(), entry.getValue().copy());
+			copy.completed = completed;
+			if (!isFinished())
+				copy.stages.get(currentStage).duration += now - stageStartTime;
+			copy.current = copy.stages.get(currentStage);
+			copy.endTime = isFinished() ? endTime : now;
+			return copy;
+		}
+
+		private boolean isFinished() {
+			return currentStage == NodeStage.DONE || currentStage == NodeStage.FAILED;
+		}
+
+		/**
+		 * Gets the node id.
+		 * @return the node id
+		 */
+		public int getNodeId() {
+			return nodeId;
+		}
+
+		/**
+		 * Gets the stage the interview is in.
+		 * @return the stage, DONE or FAILED when the interview is finished.
+		 */
+		public NodeStage getStage() {
+			return currentStage;
+		}
+
+		/**
+		 * Gets whether the interview completed.
+		 * @return true if the node reached DONE.
+		 */
+		public boolean isCompleted() {
+			return completed;
+		}
+
+		/**
+		 * Gets how long the interview took, or has taken so far.
+		 * @return the duration in milliseconds
+		 */
+		public long getDuration() {
+			return endTime - startTime;
+		}
+
+		/**
+		 * Gets the costs of the stages the interview went through.
+		 * @return the stage costs, in stage order.
+		 */
+		public Map<NodeStage, StageCost> getStages() {
+			return Collections.unmodifiableMap(stages);
+		}
+
+		/**
+		 * Gets the number of frames sent during the interview.
+		 * @return the frame count
+		 */
+		public int getFrames() {
+			int frames = 0;
+			for (StageCost cost : stages.values())
+				frames += cost.frames;
+			return frames;
+		}
+
+		/**
+		 * Gets the number of frames sent again during the interview.
+		 * @return the retry count
+		 */
+		public int getRetries() {
+			int retries = 0;
+			for (StageCost cost : stages.values())
+				retries += cost.retries;
+			return retries;
+		}
+
+		/**
+		 * Gets the number of queries that timed out during the interview.
+		 * @return the timeout count
+		 */
+		public int getTimeouts() {
+			int timeouts = 0;
+			for (StageCost cost : stages.values())
+				timeouts += cost.timeouts;
+			return timeouts;
+		}
+
+		/**
+		 * Gets the stage the interview spent the most time in.
+		 * @return the stage, or null if no time was recorded.
+		 */
+		public NodeStage getSlowestStage() {
+			NodeStage slowest = null;
+			long longest = -1;
+			for (Map.Entry<NodeStage, StageCost> entry : stages.entrySet()) {
+				if (entry.getValue().duration > longest) {
+					longest = entry.getValue().duration;
+					slowest = entry.getKey();
+				}
+			}
+			return slowest;
+		}
+	}
+
+	/**
+	 * The interview costs of all nodes of one device model.
+	 */
+	public static class ModelProfile {
+		private final String key;
+		private final int manufacturer;
+		private final int deviceType;
+		private final int deviceId;
+		private final LatencyHistogram interviewTimes = new LatencyHistogram();
+		private final Map<NodeStage, LatencyHistogram> stageTimes = new EnumMap<NodeStage, LatencyHistogram>(NodeStage.class);
+		private final Map<NodeStage, Long> stageTotals = new EnumMap<NodeStage, Long>(NodeStage.class);
+		private int completedCount = 0;
+		private int failedCount = 0;
+		private long totalTime = 0;
+		private long frames = 0;
+		private long retries = 0;
+		private long timeouts = 0;
+
+		private ModelProfile(String key, int manufacturer, int deviceType, int deviceId) {
+			this.key = key;
+			this.manufacturer = manufacturer;
+			this.deviceType = deviceType;
+			this.deviceId = deviceId;
+		}
+
+		private synchronized void add(NodeProfile profile) {
+			if (profile.completed)
+				completedCount++;
+			else
+				failedCount++;
+			long duration = profile.getDuration();
+			totalTime += duration;
+			interviewTimes.record(duration);
+			for (Map.Entry<NodeStage, StageCost> entry : profile.stages.entrySet()) {
+				StageCost cost = entry.getValue();
+				LatencyHistogram histogram = stageTimes.get(entry.getKey());
+				if (histogram == null) {
+					histogram = new LatencyHistogram();
+					stageTimes.put(entry.getKey(), histogram);
+				}
+				histogram.record(cost.duration);
+				Long total = stageTotals.get(entry.getKey());
+				stageTotals.put(entry.getKey(), (total == null ? 0 : total) + cost.duration);
+				frames += cost.frames;
+				retries += cost.retries;
+				timeouts += cost.timeouts;
+			}
+		}
+
+		/**
+		 * Gets the model as manufacturer:device type:device id in hex.
+		 * @return the key
+		 */
+		public String getKey() {
+			return key;
+		}
+
+		/**
+		 * Gets the manufacturer id of the model.
+		 * @return the manufacturer
+		 */
+		public int getManufacturer() {
+			return manufacturer;
+		}
+
+		/**
+		 * Gets the device type of the model.
+		 * @return the device type
+		 */
+		public int getDeviceType() {
+			return deviceType;
+		}
+
+		/**
+		 * Gets the device id of the model.
+		 * @return the device id
+		 */
+		public int getDeviceId() {
+			return deviceId;
+		}
+
+		/**
+		 * Gets the number of interviews of the model that completed.
+		 * @return the completed count
+		 */
+		public synchronized int getCompletedCount() {
+			return completedCount;
+		}
+
+		/**
+		 * Gets the number of interviews of the model that failed.
+		 * @return the failed count
+		 */
+		public synchronized int getFailedCount() {
+			return failedCount;
+		}
+
+		/**
+		 * Gets the total time the interviews of the model took.
+		 * @return the time in milliseconds
+		 */
+		public synchronized long getTotalTime() {
+			return totalTime;
+		}
+
+		/**
+		 * Gets the average time an interview of the model took.
+		 * @return the time in milliseconds
+		 */
+		public synchronized long getAverageTime() {
+			int count = completedCount + failedCount;
+			return count == 0 ? 0 : totalTime / count;
+		}
+
+		/**
+		 * Gets the histogram of the interview times of the model.
+		 * @return the histogram
+		 */
+		public LatencyHistogram getInterviewTimes() {
+			return interviewTimes;
+		}
+
+		/**
+		 * Gets the histograms of the stage times of the model.
+		 * @return a copy of the histograms by stage, in stage order.
+		 */
+		public synchronized Map<NodeStage, LatencyHistogram> getStageTimes() {
+			return new EnumMap<NodeStage, LatencyHistogram>(stageTimes);
+		}
+
+		/**
+		 * Gets the stage the interviews of the model spent the most time in.
+		 * @return the stage, or null if nothing was recorded.
+		 */
+		public synchronized NodeStage getSlowestStage() {
+			NodeStage slowest = null;
+			long longest = -1;
+			for (Map.Entry<NodeStage, Long> entry : stageTotals.entrySet()) {
+				if (entry.getValue() > longest) {
+					longest = entry.getValue();
+					slowest = entry.getKey();
+				}
+			}
+			return slowest;
+		}
+
+		/**
+		 * Gets the number of frames sent during the interviews of the model.
+		 * @return the frame count
+		 */
+		public synchronized long getFrames() {
+			return frames;
+		}
+
+		/**
+		 * Gets the number of frames sent again during the interviews of the model.
+		 * @return the retry count
+		 */
+		public synchronized long getRetries() {
+			return retries;
+		}
+
+		/**
+		 * Gets the number of queries that timed out during the interviews of the model.
+		 * @return the timeout count
+		 */
+		public synchronized long getTimeouts() {
+			return timeouts;
+		}
+	}
+}
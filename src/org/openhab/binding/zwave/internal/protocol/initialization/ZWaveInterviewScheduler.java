@@ -0,0 +1,357 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.internal.protocol.initialization;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.openhab.binding.zwave.internal.protocol.NodeStage;
+import org.openhab.binding.zwave.internal.protocol.ZWaveController;
+import org.openhab.binding.zwave.internal.protocol.ZWaveNode;
+import me.wbarlow.zwavemanagement.logging.Logger;
+import me.wbarlow.zwavemanagement.logging.LoggerFactory;
+
+/**
+ * Limits how many nodes are interviewed at once. Identifying a node only
+ * asks the controller, so every node gets through the PROTOINFO stage
+ * straight away; the interview over the air, from the PING stage on,
+ * waits for a free slot. Listening nodes are interviewed first, then
+ * frequently listening nodes, which need a beam for every frame.
+ * Sleeping nodes don't take a slot: their messages wait in the wake up
+ * queue until the node wakes up anyway.
+ * A node gives its slot back when it reaches DONE, DEAD or FAILED, or
+ * when it's removed from the network.
+ * @author Woodrow Barlow
+ */
+public class ZWaveInterviewScheduler {
+
+	private static final Logger logger = LoggerFactory.getLogger(ZWaveInterviewScheduler.class);
+
+	public static final int DEFAULT_MAX_CONCURRENT = 2;
+
+	private final ZWaveController controller;
+	private int maxConcurrent = DEFAULT_MAX_CONCURRENT;
+
+	private final LinkedList<ZWaveNode> listeningQueue = new LinkedList<ZWaveNode>();
+	private final LinkedList<ZWaveNode> frequentlyListeningQueue = new LinkedList<ZWaveNode>();
+	// Start times of the interviews in progress, by node id.
+	private final Map<Integer, Long> active = new HashMap<Integer, Long>();
+	private final Map<Integer, Long> sleeping = new HashMap<Integer, Long>();
+
+	private int requestedCount = 0;
+	private int completedCount = 0;
+	private int failedCount = 0;
+	// Sleeping nodes mostly wait for their wake up, so they're timed apart.
+	private int awakeCompletedCount = 0;
+	private long totalInterviewTime = 0;
+	private int sleepingCompletedCount = 0;
+	private long totalSleepingInterviewTime = 0;
+	private long firstRequestTime = 0;
+
+	/**
+	 * Constructor. Creates a new instance of the ZWaveInterviewScheduler class.
+	 * @param controller the controller, whose node mailboxes the interviews start in.
+	 */
+	public ZWaveInterviewScheduler(ZWaveController controller) {
+		this.controller = controller;
+	}
+
+	/**
+	 * Sets how many nodes may be interviewed at once.
+	 * @param maxConcurrent the limit, at least 1.
+	 */
+	public void setMaxConcurrent(int maxConcurrent) {
+		List<ZWaveNode> started;
+		synchronized (this) {
+			this.maxConcurrent = Math.max(1, maxConcurrent);
+			started = takeStartable();
+		}
+		start(started);
+	}
+
+	/**
+	 * Gets how many nodes may be interviewed at once.
+	 * @return the limit
+	 */
+	public synchronized int getMaxConcurrent() {
+		return maxConcurrent;
+	}
+
+	/**
+	 * Asks whether a node may start its interview. If it may not, it's
+	 * queued, and the scheduler advances it to the PING stage when it gets
+	 * a slot.
+	 * @param node the node, which has been identified.
+	 * @return true if the interview may start now.
+	 */
+	public synchronized boolean admit(ZWaveNode node) {
+		Integer nodeId = node.getNodeId();
+		if (active.containsKey(nodeId) || sleeping.containsKey(nodeId))
+			return true;
+		if (listeningQueue.contains(node) || frequentlyListeningQueue.contains(node))
+			return false;
+
+		long now = System.currentTimeMillis();
+		if (requestedCount == completedCount + failedCount)
+			firstRequestTime = now;
+		requestedCount++;
+
+		if (!node.isListening() && !node.isFrequentlyListening()) {
+			logger.debug("NODE {}: Sleeping node, interview starts when it wakes up.", nodeId);
+			sleeping.put(nodeId, now);
+			return true;
+		}
+		if (active.size() < maxConcurrent && listeningQueue.isEmpty() && frequentlyListeningQueue.isEmpty()) {
+			active.put(nodeId, now);
+			return true;
+		}
+
+		logger.debug("NODE {}: Interview queued, {} nodes are being interviewed.", nodeId, active.size());
+		if (node.isListening())
+			listeningQueue.add(node);
+		else
+			frequentlyListeningQueue.add(node);
+		return false;
+	}
+
+	/**
+	 * Checks whether a node is waiting for a slot. The stage of a waiting
+	 * node doesn't advance, but that doesn't mean it's dead.
+	 * @param node the node
+	 * @return true if the node is queued.
+	 */
+	public synchronized boolean isQueued(ZWaveNode node) {
+		return listeningQueue.contains(node) || frequentlyListeningQueue.contains(node);
+	}
+
+	/**
+	 * Tells the scheduler that the stage of a node changed. When the node
+	 * is done or dead its slot goes to the next queued node.
+	 * @param node the node
+	 */
+	public void stageChanged(ZWaveNode node) {
+		NodeStage stage = node.getNodeStage();
+		if (stage != NodeStage.DONE && stage != NodeStage.DEAD && stage != NodeStage.FAILED)
+			return;
+
+		List<ZWaveNode> started;
+		synchronized (this) {
+			Integer nodeId = node.getNodeId();
+			Long startTime = active.remove(nodeId);
+			boolean wasSleeping = false;
+			if (startTime == null) {
+				startTime = sleeping.remove(nodeId);
+				wasSleeping = startTime != null;
+			}
+			if (startTime == null) {
+				// A queued node can be declared dead before it got a slot.
+				if (!listeningQueue.remove(node) && !frequentlyListeningQueue.remove(node))
+					return;
+				failedCount++;
+			} else if (stage == NodeStage.DONE) {
+				completedCount++;
+				long interviewTime = System.currentTimeMillis() - startTime;
+				if (wasSleeping) {
+					sleepingCompletedCount++;
+					totalSleepingInterviewTime += interviewTime;
+				} else {
+					awakeCompletedCount++;
+					totalInterviewTime += interviewTime;
+				}
+			} else {
+				failedCount++;
+			}
+			logger.info("Interviews: " + (completedCount + failedCount) + " of " + requestedCount + " finished, " +
+					active.size() + " in progress, " + (listeningQueue.size() + frequentlyListeningQueue.size()) + " queued");
+			started = takeStartable();
+		}
+		start(started);
+	}
+
+	/**
+	 * Forgets a node that was removed from the network. Its slot goes to the
+	 * next queued node, and if it was queued it won't be started.
+	 * An interview that was in progress counts as failed.
+	 * @param node the node
+	 */
+	public void remove(ZWaveNode node) {
+		List<ZWaveNode> started;
+		synchronized (this) {
+			Integer nodeId = node.getNodeId();
+			boolean removed = active.remove(nodeId) != null;
+			removed |= sleeping.remove(nodeId) != null;
+			removed |= removeQueued(listeningQueue, nodeId);
+			removed |= removeQueued(frequentlyListeningQueue, nodeId);
+			if (!removed)
+				return;
+			logger.debug("NODE {}: Removed from the interviews.", nodeId);
+			failedCount++;
+			started = takeStartable();
+		}
+		start(started);
+	}
+
+	private static boolean removeQueued(List<ZWaveNode> queue, int nodeId) {
+		boolean removed = false;
+		for (Iterator<ZWaveNode> iterator = queue.iterator(); iterator.hasNext(); ) {
+			if (iterator.next().getNodeId() == nodeId) {
+				iterator.remove();
+				removed = true;
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * Takes the nodes that can start now off the queues, listening nodes
+	 * first.
+	 */
+	private List<ZWaveNode> takeStartable() {
+		List<ZWaveNode> started = new ArrayList<ZWaveNode>();
+		long now = System.currentTimeMillis();
+		while (active.size() < maxConcurrent) {
+			ZWaveNode next = listeningQueue.poll();
+			if (next == null)
+				next = frequentlyListeningQueue.poll();
+			if (next == null)
+				break;
+			active.put(next.getNodeId(), now);
+			started.add(next);
+		}
+		return started;
+	}
+
+	/**
+	 * Starts the interviews of nodes that got a slot. The interview is
+	 * advanced in the mailbox of the node that got the slot, not on the
+	 * thread of the node that gave it back.
+	 */
+	private void start(List<ZWaveNode> nodes) {
+		for (ZWaveNode node : nodes) {
+			logger.debug("NODE {}: Starting interview.", node.getNodeId());
+			controller.advanceNodeStageInMailbox(node, NodeStage.PING);
+		}
+	}
+
+	/**
+	 * Forgets all nodes, for when the controller is closed.
+	 */
+	public synchronized void clear() {
+		listeningQueue.clear();
+		frequentlyListeningQueue.clear();
+		active.clear();
+		sleeping.clear();
+		requestedCount = 0;
+		completedCount = 0;
+		failedCount = 0;
+		awakeCompletedCount = 0;
+		totalInterviewTime = 0;
+		sleepingCompletedCount = 0;
+		totalSleepingInterviewTime = 0;
+	}
+
+	/**
+	 * Gets the number of interviews that have been asked for.
+	 * @return the requested count
+	 */
+	public synchronized int getRequestedCount() {
+		return requestedCount;
+	}
+
+	/**
+	 * Gets the number of interviews that completed.
+	 * @return the completed count
+	 */
+	public synchronized int getCompletedCount() {
+		return completedCount;
+	}
+
+	/**
+	 * Gets the number of interviews that ended with the node dead or failed.
+	 * @return the failed count
+	 */
+	public synchronized int getFailedCount() {
+		return failedCount;
+	}
+
+	/**
+	 * Gets the number of listening nodes being interviewed.
+	 * @return the active count
+	 */
+	public synchronized int getActiveCount() {
+		return active.size();
+	}
+
+	/**
+	 * Gets the number of nodes waiting for a slot.
+	 * @return the queued count
+	 */
+	public synchronized int getQueuedCount() {
+		return listeningQueue.size() + frequentlyListeningQueue.size();
+	}
+
+	/**
+	 * Gets the number of sleeping nodes waiting to wake up to finish their
+	 * interview.
+	 * @return the sleeping count
+	 */
+	public synchronized int getSleepingCount() {
+		return sleeping.size();
+	}
+
+	/**
+	 * Gets the average time a completed interview of an awake node took.
+	 * @return the average time in milliseconds, or 0 if none has completed.
+	 */
+	public synchronized long getAverageInterviewTime() {
+		return awakeCompletedCount == 0 ? 0 : totalInterviewTime / awakeCompletedCount;
+	}
+
+	/**
+	 * Gets the average time a completed interview of a sleeping node took,
+	 * including the wait for it to wake up.
+	 * @return the average time in milliseconds, or 0 if none has completed.
+	 */
+	public synchronized long getAverageSleepingInterviewTime() {
+		return sleepingCompletedCount == 0 ? 0 : totalSleepingInterviewTime / sleepingCompletedCount;
+	}
+
+	/**
+	 * Estimates how long until the interviews of the awake nodes are done,
+	 * from the average interview time of awake nodes so far. Sleeping nodes
+	 * aren't counted, since they finish when they wake up.
+	 * @return the estimate in milliseconds, or -1 if no interview of an
+	 * awake node has completed yet.
+	 */
+	public synchronized long getEstimatedTimeRemaining() {
+		int remaining = active.size() + listeningQueue.size() + frequentlyListeningQueue.size();
+		if (remaining == 0)
+			return 0;
+		if (awakeCompletedCount == 0)
+			return -1;
+		int rounds = (remaining + maxConcurrent - 1) / maxConcurrent;
+		return rounds * (totalInterviewTime / awakeCompletedCount);
+	}
+
+	/**
+	 * Gets the time since the first interview of the current batch was
+	 * asked for.
+	 * @return the elapsed time in milliseconds, or 0 if there are no
+	 * interviews in progress.
+	 */
+	public synchronized long getElapsedTime() {
+		if (requestedCount == completedCount + failedCount)
+			return 0;
+		return System.currentTimeMillis() - firstRequestTime;
+	}
+}
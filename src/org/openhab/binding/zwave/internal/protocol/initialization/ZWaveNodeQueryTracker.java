@@ -0,0 +1,336 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.internal.protocol.initialization;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.openhab.binding.zwave.internal.protocol.SerialMessage;
+import org.openhab.binding.zwave.internal.protocol.SerialMessageCompletionHandler;
+import org.openhab.binding.zwave.internal.protocol.ZWaveController;
+import org.openhab.binding.zwave.internal.protocol.ZWaveNode;
+import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveCommandClass.CommandClass;
+import me.wbarlow.zwavemanagement.logging.Logger;
+import me.wbarlow.zwavemanagement.logging.LoggerFactory;
+
+/**
+ * Tracks the queries a node stage sends to a node, one by one. A query is
+ * answered by the first report of its command class and endpoint. A query
+ * that the node acknowledged but didn't answer within {@link #QUERY_TIMEOUT},
+ * or that the send queue dropped or gave up on, is sent again; after
+ * {@link #MAX_ATTEMPTS} it's skipped, so one lost report holds up the
+ * interview for seconds instead of stalling it.
+ * The send thread doesn't retry tracked queries itself, so a query is
+ * never sent again by both.
+ * Queries to sleeping nodes wait in the wake up queue and aren't timed
+ * until they're delivered.
+ * The timeouts are handled in the mailbox of the node, like its reports,
+ * so the interview only ever advances on one thread at a time.
+ * @author Woodrow Barlow
+ */
+public class ZWaveNodeQueryTracker {
+
+	private static final Logger logger = LoggerFactory.getLogger(ZWaveNodeQueryTracker.class);
+
+	public static final long QUERY_TIMEOUT = 5000;
+	public static final int MAX_ATTEMPTS = 3;
+	private static final long CHECK_INTERVAL = 1000;
+
+	private static final int MULTI_INSTANCE_ENCAP = 0x06;
+	private static final int MULTI_CHANNEL_ENCAP = 0x0d;
+
+	// One timer thread checks the queries of all nodes.
+	private static final Timer timer = new Timer("ZWaveQueryTimer", true);
+
+	private final ZWaveNode node;
+	private final ZWaveController controller;
+	private final ZWaveNodeStageAdvancer advancer;
+	private final List<Query> pending = new ArrayList<Query>();
+	private TimerTask checkTask = null;
+	private boolean checkQueued = false;
+
+	private int answeredCount = 0;
+	private int retriedCount = 0;
+	private int skippedCount = 0;
+
+	/**
+	 * Constructor. Creates a new instance of the ZWaveNodeQueryTracker class.
+	 * @param node the node the queries are sent to.
+	 * @param controller the controller to send the queries with.
+	 * @param advancer the advancer to tell when all queries are finished.
+	 */
+	public ZWaveNodeQueryTracker(ZWaveNode node, ZWaveController controller, ZWaveNodeStageAdvancer advancer) {
+		this.node = node;
+		this.controller = controller;
+		this.advancer = advancer;
+	}
+
+	/**
+	 * Sends a query and tracks it until it's answered or skipped.
+	 * @param serialMessage the query, encapsulated for its endpoint if needed.
+	 */
+	public void send(SerialMessage serialMessage) {
+		if (serialMessage == null)
+			return;	// encapsulation failed and was logged
+		Query query = new Query(serialMessage);
+		synchronized (this) {
+			pending.add(query);
+			if (checkTask == null) {
+				checkTask = new TimerTask() {
+					@Override
+					public void run() {
+						queueCheck();
+					}
+				};
+				timer.schedule(checkTask, CHECK_INTERVAL, CHECK_INTERVAL);
+			}
+		}
+		transmit(query);
+	}
+
+	/**
+	 * Marks the oldest query the report answers as answered. If that was the
+	 * last query, the advancer is told to go on with the next stage.
+	 * @param incomingMessage the application command from the node.
+	 */
+	public void reportReceived(SerialMessage incomingMessage) {
+		int key = getReportKey(incomingMessage);
+		synchronized (this) {
+			Iterator<Query> iterator = pending.iterator();
+			Query answered = null;
+			while (iterator.hasNext()) {
+				Query query = iterator.next();
+				if (query.key == key) {
+					answered = query;
+					iterator.remove();
+					break;
+				}
+			}
+			if (answered == null)
+				return;
+			answeredCount++;
+			node.setQueryStageTimeStamp(System.currentTimeMillis());
+			logger.trace("NODE {}: Query answered, {} outstanding", node.getNodeId(), pending.size());
+			if (!pending.isEmpty())
+				return;
+			stopChecking();
+		}
+		advancer.queriesFinished();
+	}
+
+	/**
+	 * Gets whether all queries are answered or skipped.
+	 * @return true if no query is outstanding.
+	 */
+	public synchronized boolean isEmpty() {
+		return pending.isEmpty();
+	}
+
+	/**
+	 * Forgets the outstanding queries.
+	 */
+	public synchronized void clear() {
+		pending.clear();
+		stopChecking();
+	}
+
+	/**
+	 * Gets the number of queries answered.
+	 * @return the answered count
+	 */
+	public synchronized int getAnsweredCount() {
+		return answeredCount;
+	}
+
+	/**
+	 * Gets the number of times a query was sent again.
+	 * @return the retried count
+	 */
+	public synchronized int getRetriedCount() {
+		return retriedCount;
+	}
+
+	/**
+	 * Gets the number of queries given up on.
+	 * @return the skipped count
+	 */
+	public synchronized int getSkippedCount() {
+		return skippedCount;
+	}
+
+	private void stopChecking() {
+		if (checkTask != null) {
+			checkTask.cancel();
+			checkTask = null;
+		}
+	}
+
+	/**
+	 * Queues a timeout check in the mailbox of the node, unless one is
+	 * still waiting there. Called on the timer thread.
+	 */
+	private void queueCheck() {
+		synchronized (this) {
+			if (checkQueued)
+				return;
+			checkQueued = true;
+		}
+		controller.getNodeExecutor().submit(node.getNodeId(), new Runnable() {
+			public void run() {
+				checkTimeouts();
+			}
+		});
+	}
+
+	/**
+	 * Sends the query again or skips it when it timed out or was dropped.
+	 * Runs in the mailbox of the node.
+	 */
+	private void checkTimeouts() {
+		long now = System.currentTimeMillis();
+		List<Query> retries = new ArrayList<Query>();
+		boolean finished = false;
+		synchronized (this) {
+			checkQueued = false;
+			List<Query> expired = new ArrayList<Query>();
+			for (Query query : pending) {
+				if (query.failed || (query.deliveredTime > 0 && now - query.deliveredTime > QUERY_TIMEOUT))
+					expired.add(query);
+			}
+			if (expired.isEmpty())
+				return;
+
+			for (Query query : expired) {
+				if (!query.failed)
+					controller.getInterviewProfiler().queryTimedOut(node.getNodeId());
+				if (query.attempts < MAX_ATTEMPTS) {
+					logger.debug("NODE {}: Query not answered, sending it again (attempt {})", node.getNodeId(), query.attempts + 1);
+					retriedCount++;
+					query.message = copy(query.message);
+					retries.add(query);
+				} else {
+					logger.warn("NODE {}: Query not answered after {} attempts, skipping it", node.getNodeId(), query.attempts);
+					skippedCount++;
+					pending.remove(query);
+				}
+			}
+			node.setQueryStageTimeStamp(now);
+			if (pending.isEmpty()) {
+				stopChecking();
+				finished = true;
+			}
+		}
+
+		// sent without the lock, the send queue calls the completion handlers with its own lock held.
+		for (Query query : retries)
+			transmit(query);
+		if (finished)
+			advancer.queriesFinished();
+	}
+
+	private void transmit(final Query query) {
+		final SerialMessage sent;
+		synchronized (this) {
+			query.attempts++;
+			query.deliveredTime = 0;
+			query.failed = false;
+			sent = query.message;
+		}
+		// a transaction timeout fails the query instead of sending it again.
+		sent.attempts = 0;
+		sent.setCompletionHandler(new SerialMessageCompletionHandler() {
+			public void messageTransmitted(SerialMessage serialMessage) {
+				synchronized (ZWaveNodeQueryTracker.this) {
+					if (query.message == sent)
+						query.deliveredTime = System.currentTimeMillis();
+				}
+			}
+
+			public void messageCompleted(SerialMessage serialMessage) {
+				synchronized (ZWaveNodeQueryTracker.this) {
+					if (query.message == sent)
+						query.deliveredTime = System.currentTimeMillis();
+				}
+			}
+
+			public void messageFailed(SerialMessage serialMessage, FailureReason reason) {
+				synchronized (ZWaveNodeQueryTracker.this) {
+					if (query.message == sent)
+						query.failed = true;
+				}
+			}
+		});
+		controller.sendData(sent);
+	}
+
+	/**
+	 * A message can't be queued twice, so a retry sends a copy.
+	 */
+	private static SerialMessage copy(SerialMessage serialMessage) {
+		SerialMessage copy = new SerialMessage(serialMessage.getMessageNode(), serialMessage.getMessageClass(),
+				serialMessage.getMessageType(), serialMessage.getExpectedReply(), serialMessage.getPriority());
+		copy.setMessagePayload(serialMessage.getMessagePayload().clone());
+		copy.setLatencyClass(serialMessage.getLatencyClass());
+		return copy;
+	}
+
+	/**
+	 * Gets the command class and endpoint a SendData query asks for.
+	 * The payload is node, length, command class, with the real command
+	 * class further on for encapsulated messages.
+	 */
+	private static int getQueryKey(SerialMessage serialMessage) {
+		return getKey(serialMessage.getMessagePayload(), 2);
+	}
+
+	/**
+	 * Gets the command class and endpoint of an application command. The
+	 * payload is status, node, length, command class.
+	 */
+	private static int getReportKey(SerialMessage serialMessage) {
+		return getKey(serialMessage.getMessagePayload(), 3);
+	}
+
+	private static int getKey(byte[] payload, int offset) {
+		if (payload.length <= offset)
+			return -1;
+		int commandClass = payload[offset] & 0xFF;
+		if (commandClass == CommandClass.MULTI_INSTANCE.getKey() && payload.length > offset + 3) {
+			int command = payload[offset + 1] & 0xFF;
+			if (command == MULTI_INSTANCE_ENCAP)
+				return ((payload[offset + 2] & 0xFF) << 8) | (payload[offset + 3] & 0xFF);
+			// source and destination endpoint; the node's endpoint is the
+			// destination of a query and the source of a report.
+			if (command == MULTI_CHANNEL_ENCAP && payload.length > offset + 4) {
+				int endpoint = offset == 2 ? payload[offset + 3] : payload[offset + 2];
+				return ((endpoint & 0xFF) << 8) | (payload[offset + 4] & 0xFF);
+			}
+		}
+		return commandClass;
+	}
+
+	/**
+	 * One outstanding query.
+	 */
+	private static class Query {
+		private final int key;
+		private SerialMessage message;
+		private int attempts = 0;
+		private long deliveredTime = 0;
+		private boolean failed = false;
+
+		private Query(SerialMessage message) {
+			this.key = getQueryKey(message);
+			this.message = message;
+		}
+	}
+}
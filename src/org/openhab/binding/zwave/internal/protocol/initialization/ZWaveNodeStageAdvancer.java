@@ -8,8 +8,13 @@
  */
 package org.openhab.binding.zwave.internal.protocol.initialization;
 
-import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.openhab.binding.zwave.internal.protocol.NodeStage;
 import org.openhab.binding.zwave.internal.protocol.SerialInterfaceException;
@@ -42,9 +47,42 @@ public class ZWaveNodeStageAdvancer {
 
 	private ZWaveNode node;
 	private ZWaveController controller;
-	private int queriesPending = -1;
-	private boolean initializationComplete = false;
+	// The stages that query the command classes, and the stage each one leads to.
+	private static final Map<NodeStage, NodeStage> QUERY_STAGES = new EnumMap<NodeStage, NodeStage>(NodeStage.class);
+	static {
+		QUERY_STAGES.put(NodeStage.STATIC_VALUES, NodeStage.DYNAMIC);
+		QUERY_STAGES.put(NodeStage.DYNAMIC, NodeStage.DONE);
+	}
+
+	private final ZWaveNodeQueryTracker queryTracker;
+	private volatile NodeStage queryStage = null;	// the query stage whose queries were sent
+
+	/**
+	 * The phases of an incremental re-interview.
+	 */
+	private enum ReinterviewPhase {
+		None,
+		WaitingForWakeUp,
+		NodeInfo,	// waiting for the node information frame
+		Versions,	// querying the versions of new command classes and the application
+		AllVersions,	// querying the versions of all command classes, after the application version changed
+		Values;		// querying the values of new or changed command classes
+
+		/**
+		 * Gets whether queries are outstanding in this phase.
+		 * @return true if the phase waits for the query tracker.
+		 */
+		private boolean isQuerying() {
+			return this == Versions || this == AllVersions || this == Values;
+		}
+	}
+
+	private volatile ReinterviewPhase reinterviewPhase = ReinterviewPhase.None;
+	private Double previousApplicationVersion = null;
+	private Set<CommandClass> changedCommandClasses = null;
+	private volatile boolean initializationComplete = false;
 	private boolean restoredFromConfigfile = false;
+	private NodeStage checkpointedStage = null;	// the last stage stored in the interview checkpoint
 
 	/**
 	 * Constructor. Creates a new instance of the ZWaveNodeStageAdvancer class.
@@ -57,6 +95,7 @@ public class ZWaveNodeStageAdvancer {
 	public ZWaveNodeStageAdvancer(ZWaveNode node, ZWaveController controller) {
 		this.node = node;
 		this.controller = controller;
+		this.queryTracker = new ZWaveNodeQueryTracker(node, controller, this);
 	}
 
 	/**
@@ -75,7 +114,9 @@ public class ZWaveNodeStageAdvancer {
 		logger.debug(String.format("NODE %d: Setting stage. current = %s, requested = %s", this.node.getNodeId(),
 				this.node.getNodeStage().getLabel(), targetStage.getLabel()));
 
-		this.node.setQueryStageTimeStamp(Calendar.getInstance().getTime());
+		this.node.setQueryStageTimeStamp(System.currentTimeMillis());
+		// the stage is advanced when the current one is complete.
+		checkpoint();
 		switch (this.node.getNodeStage()) {
 		case EMPTYNODE:
 			try {
@@ -87,6 +128,10 @@ public class ZWaveNodeStageAdvancer {
 			break;
 		case PROTOINFO:
 			if (this.node.getNodeId() != this.controller.getOwnNodeId()) {
+				// wait for the interview scheduler to give this node a slot.
+				if (!this.controller.getInterviewScheduler().admit(this.node))
+					break;
+
 				ZWaveNoOperationCommandClass zwaveCommandClass = (ZWaveNoOperationCommandClass) this.node
 						.getCommandClass(CommandClass.NO_OPERATION);
 				if (zwaveCommandClass == null)
@@ -115,6 +160,8 @@ public class ZWaveNodeStageAdvancer {
 				advanceNodeStage(NodeStage.DONE);
 				break;
 			}
+			if (resumeFromCheckpoint())
+				break;
 			this.node.setNodeStage(NodeStage.DETAILS);
 			this.controller.requestNodeInfo(this.node.getNodeId());
 			break;
@@ -170,113 +217,17 @@ public class ZWaveNodeStageAdvancer {
 		case INSTANCES_ENDPOINTS:
 			this.node.setNodeStage(NodeStage.STATIC_VALUES);
 		case STATIC_VALUES:
-			if (queriesPending == -1) {
-				queriesPending = 0;
-				for (ZWaveCommandClass zwaveCommandClass : this.node.getCommandClasses()) {
-					logger.trace("NODE {}: Inspecting command class {}", this.node.getNodeId(), zwaveCommandClass.getCommandClass().getLabel());
-					if (zwaveCommandClass instanceof ZWaveCommandClassInitialization) {
-						logger.debug("NODE {}: Found initializable command class {}", this.node.getNodeId(), zwaveCommandClass.getCommandClass()
-								.getLabel());
-						ZWaveCommandClassInitialization zcci = (ZWaveCommandClassInitialization) zwaveCommandClass;
-						int instances = zwaveCommandClass.getInstances();
-						if (instances == 0) {
-							Collection<SerialMessage> initqueries = zcci.initialize();
-							for (SerialMessage serialMessage : initqueries) {
-								this.controller.sendData(serialMessage);
-								queriesPending++;
-							}
-						} else {
-							for (int i = 1; i <= instances; i++) {
-								Collection<SerialMessage> initqueries = zcci.initialize();
-								for (SerialMessage serialMessage : initqueries) {
-									this.controller
-											.sendData(this.node.encapsulate(serialMessage, zwaveCommandClass, i));
-									queriesPending++;
-								}
-							}
-						}
-					} else if (zwaveCommandClass instanceof ZWaveMultiInstanceCommandClass) {
-						ZWaveMultiInstanceCommandClass multiInstanceCommandClass = (ZWaveMultiInstanceCommandClass) zwaveCommandClass;
-						for (ZWaveEndpoint endpoint : multiInstanceCommandClass.getEndpoints()) {
-							for (ZWaveCommandClass endpointCommandClass : endpoint.getCommandClasses()) {
-								logger.trace(String.format("NODE %d: Inspecting command class %s for endpoint %d", this.node.getNodeId(), endpointCommandClass
-										.getCommandClass().getLabel(), endpoint.getEndpointId()));
-								if (endpointCommandClass instanceof ZWaveCommandClassInitialization) {
-									logger.debug("NODE {}: Found initializable command class {}", this.node.getNodeId(), endpointCommandClass
-											.getCommandClass().getLabel());
-									ZWaveCommandClassInitialization zcci2 = (ZWaveCommandClassInitialization) endpointCommandClass;
-									Collection<SerialMessage> initqueries = zcci2.initialize();
-									for (SerialMessage serialMessage : initqueries) {
-										this.controller.sendData(this.node.encapsulate(serialMessage,
-												endpointCommandClass, endpoint.getEndpointId()));
-										queriesPending++;
-									}
-								}
-							}
-						}
-					}
-				}
-			}
-			if (queriesPending-- > 0) // there is still something to be
-										// initialized.
+			if (!runQueryStage(NodeStage.STATIC_VALUES)) // there is still something to be
+															// initialized.
 				break;
 
 			logger.trace("NODE {}: Done getting static values, proceeding to dynamic node stage.", this.node.getNodeId());
-			queriesPending = -1;
 			this.node.setNodeStage(NodeStage.DYNAMIC);
 		case DYNAMIC:
-			if (queriesPending == -1) {
-				queriesPending = 0;
-				for (ZWaveCommandClass zwaveCommandClass : this.node.getCommandClasses()) {
-					logger.trace("NODE {}: Inspecting command class {}", this.node.getNodeId(), zwaveCommandClass.getCommandClass().getLabel());
-					if (zwaveCommandClass instanceof ZWaveCommandClassDynamicState) {
-						logger.debug("NODE {}: Found dynamic state command class {}", this.node.getNodeId(), zwaveCommandClass.getCommandClass()
-								.getLabel());
-						ZWaveCommandClassDynamicState zdds = (ZWaveCommandClassDynamicState) zwaveCommandClass;
-						int instances = zwaveCommandClass.getInstances();
-						if (instances == 0) {
-							Collection<SerialMessage> dynamicQueries = zdds.getDynamicValues();
-							for (SerialMessage serialMessage : dynamicQueries) {
-								this.controller.sendData(serialMessage);
-								queriesPending++;
-							}
-						} else {
-							for (int i = 1; i <= instances; i++) {
-								Collection<SerialMessage> dynamicQueries = zdds.getDynamicValues();
-								for (SerialMessage serialMessage : dynamicQueries) {
-									this.controller
-											.sendData(this.node.encapsulate(serialMessage, zwaveCommandClass, i));
-									queriesPending++;
-								}
-							}
-						}
-					} else if (zwaveCommandClass instanceof ZWaveMultiInstanceCommandClass) {
-						ZWaveMultiInstanceCommandClass multiInstanceCommandClass = (ZWaveMultiInstanceCommandClass) zwaveCommandClass;
-						for (ZWaveEndpoint endpoint : multiInstanceCommandClass.getEndpoints()) {
-							for (ZWaveCommandClass endpointCommandClass : endpoint.getCommandClasses()) {
-								logger.trace(String.format("NODE %d: Inspecting command class %s for endpoint %d", this.node.getNodeId(), endpointCommandClass
-										.getCommandClass().getLabel(), endpoint.getEndpointId()));
-								if (endpointCommandClass instanceof ZWaveCommandClassDynamicState) {
-									logger.debug("NODE {}: Found dynamic state command class {}", this.node.getNodeId(), endpointCommandClass
-											.getCommandClass().getLabel());
-									ZWaveCommandClassDynamicState zdds2 = (ZWaveCommandClassDynamicState) endpointCommandClass;
-									Collection<SerialMessage> dynamicQueries = zdds2.getDynamicValues();
-									for (SerialMessage serialMessage : dynamicQueries) {
-										this.controller.sendData(this.node.encapsulate(serialMessage,
-												endpointCommandClass, endpoint.getEndpointId()));
-										queriesPending++;
-									}
-								}
-							}
-						}
-					}
-				}
-			}
-			if (queriesPending-- > 0) // there is still something to be
-										// initialized.
+			if (!runQueryStage(NodeStage.DYNAMIC)) // there is still something to be
+													// initialized.
 				break;
 			logger.trace("NODE {}: Done getting dynamic values, proceeding to done node stage.", this.node.getNodeId());
-			queriesPending = -1;
 
 			this.node.setNodeStage(NodeStage.DONE); // nothing
 													// more
@@ -299,6 +250,309 @@ public class ZWaveNodeStageAdvancer {
 		}
 	}
 
+	/**
+	 * Stores the progress of the interview when the node completed a stage
+	 * that wasn't stored yet.
+	 */
+	private void checkpoint() {
+		ZWaveInterviewCheckpoints checkpoints = this.controller.getInterviewCheckpoints();
+		if (checkpoints == null)
+			return;
+		NodeStage stage = ZWaveInterviewCheckpoints.getCheckpointStage(this.node, this.node.getNodeStage());
+		if (stage == null || (checkpointedStage != null && stage.getStage() <= checkpointedStage.getStage()))
+			return;
+		checkpointedStage = stage;
+		checkpoints.save(this.node, stage);
+	}
+
+	/**
+	 * Resumes an interview that was interrupted by a restart from the last
+	 * stage it completed, once the node answered the ping.
+	 * @return true if the interview was resumed.
+	 */
+	private boolean resumeFromCheckpoint() {
+		ZWaveInterviewCheckpoints checkpoints = this.controller.getInterviewCheckpoints();
+		if (checkpoints == null)
+			return false;
+		NodeStage stage = checkpoints.restore(this.node, this.controller);
+		if (stage == null)
+			return false;
+		logger.info("NODE {}: Resuming interview after stage {}", this.node.getNodeId(), stage.getLabel());
+		checkpointedStage = stage;
+		this.node.setNodeStage(stage);
+		// DONE is always accepted as target; the switch goes on with the stage after the checkpoint.
+		advanceNodeStage(NodeStage.DONE);
+		return true;
+	}
+
+	/**
+	 * Sends the queries of a query stage, the first time the stage is
+	 * advanced, and checks whether they are all answered or skipped.
+	 * @param stage the query stage
+	 * @return true if the stage is finished.
+	 */
+	private boolean runQueryStage(NodeStage stage) {
+		if (queryStage != stage) {
+			queryStage = stage;
+			queryTracker.clear();
+			sendQueries(stage, null);
+		}
+		if (!queryTracker.isEmpty())
+			return false;
+		queryStage = null;
+		return true;
+	}
+
+	/**
+	 * Sends the queries of a query stage for the command classes of the
+	 * node and its instances and endpoints.
+	 * @param stage the query stage
+	 * @param only the command classes to query, or null to query all.
+	 */
+	private void sendQueries(NodeStage stage, Set<CommandClass> only) {
+		for (ZWaveCommandClass zwaveCommandClass : this.node.getCommandClasses()) {
+			logger.trace("NODE {}: Inspecting command class {}", this.node.getNodeId(), zwaveCommandClass.getCommandClass().getLabel());
+			if (zwaveCommandClass instanceof ZWaveMultiInstanceCommandClass) {
+				ZWaveMultiInstanceCommandClass multiInstanceCommandClass = (ZWaveMultiInstanceCommandClass) zwaveCommandClass;
+				for (ZWaveEndpoint endpoint : multiInstanceCommandClass.getEndpoints()) {
+					for (ZWaveCommandClass endpointCommandClass : endpoint.getCommandClasses()) {
+						if (only != null && !only.contains(endpointCommandClass.getCommandClass()))
+							continue;
+						logger.trace(String.format("NODE %d: Inspecting command class %s for endpoint %d", this.node.getNodeId(), endpointCommandClass
+								.getCommandClass().getLabel(), endpoint.getEndpointId()));
+						for (SerialMessage serialMessage : getQueries(endpointCommandClass, stage))
+							queryTracker.send(this.node.encapsulate(serialMessage, endpointCommandClass, endpoint.getEndpointId()));
+					}
+				}
+				continue;
+			}
+			if (only != null && !only.contains(zwaveCommandClass.getCommandClass()))
+				continue;
+
+			int instances = zwaveCommandClass.getInstances();
+			if (instances == 0) {
+				for (SerialMessage serialMessage : getQueries(zwaveCommandClass, stage))
+					queryTracker.send(serialMessage);
+			} else {
+				for (int i = 1; i <= instances; i++) {
+					for (SerialMessage serialMessage : getQueries(zwaveCommandClass, stage))
+						queryTracker.send(this.node.encapsulate(serialMessage, zwaveCommandClass, i));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the queries a command class sends in a query stage.
+	 * @param zwaveCommandClass the command class
+	 * @param stage the query stage
+	 * @return the queries, empty if the command class has nothing to ask.
+	 */
+	private Collection<SerialMessage> getQueries(ZWaveCommandClass zwaveCommandClass, NodeStage stage) {
+		if (stage == NodeStage.STATIC_VALUES && zwaveCommandClass instanceof ZWaveCommandClassInitialization) {
+			logger.debug("NODE {}: Found initializable command class {}", this.node.getNodeId(), zwaveCommandClass.getCommandClass().getLabel());
+			return ((ZWaveCommandClassInitialization) zwaveCommandClass).initialize();
+		}
+		if (stage == NodeStage.DYNAMIC && zwaveCommandClass instanceof ZWaveCommandClassDynamicState) {
+			logger.debug("NODE {}: Found dynamic state command class {}", this.node.getNodeId(), zwaveCommandClass.getCommandClass().getLabel());
+			return ((ZWaveCommandClassDynamicState) zwaveCommandClass).getDynamicValues();
+		}
+		return Collections.emptyList();
+	}
+
+	/**
+	 * Passes a report from the node to the query tracker, which marks the
+	 * query it answers.
+	 * @param incomingMessage the application command from the node.
+	 */
+	public void reportReceived(SerialMessage incomingMessage) {
+		if (queryStage != null || reinterviewPhase.isQuerying())
+			queryTracker.reportReceived(incomingMessage);
+	}
+
+	/**
+	 * Starts an incremental re-interview of an initialized node. The node
+	 * information frame is requested and compared with the command classes
+	 * the node has; only the command classes that were added, or all of
+	 * them if the application version of the node changed, are queried
+	 * again. Everything else is kept, and the node stays usable meanwhile.
+	 * A sleeping node is asked for its node information when it wakes up.
+	 * @return false if the node hasn't been initialized yet, so there's
+	 * nothing to compare with.
+	 */
+	public synchronized boolean reinterview() {
+		if (!initializationComplete)
+			return false;
+
+		ZWaveVersionCommandClass version = (ZWaveVersionCommandClass) this.node.getCommandClass(CommandClass.VERSION);
+		previousApplicationVersion = version == null ? null : version.getApplicationVersion();
+		if (!this.node.isListening() && !this.node.isFrequentlyListening()) {
+			logger.debug("NODE {}: Re-interview starts when the node wakes up.", this.node.getNodeId());
+			reinterviewPhase = ReinterviewPhase.WaitingForWakeUp;
+			return true;
+		}
+		logger.debug("NODE {}: Starting re-interview, requesting node information.", this.node.getNodeId());
+		reinterviewPhase = ReinterviewPhase.NodeInfo;
+		this.controller.requestNodeInfo(this.node.getNodeId());
+		return true;
+	}
+
+	/**
+	 * Called when a sleeping node woke up; requests the node information
+	 * of a re-interview that waits for it.
+	 */
+	public synchronized void wokeUp() {
+		if (reinterviewPhase != ReinterviewPhase.WaitingForWakeUp)
+			return;
+		reinterviewPhase = ReinterviewPhase.NodeInfo;
+		this.controller.requestNodeInfo(this.node.getNodeId());
+	}
+
+	/**
+	 * Compares a node information frame with the command classes of the
+	 * node, during a re-interview. Command classes the node didn't have are
+	 * added and their versions are queried, along with the application
+	 * version of the node.
+	 * @param commandClassKeys the command classes in the frame.
+	 * @return false if no re-interview is waiting for node information.
+	 */
+	public boolean nodeInformationReceived(List<Integer> commandClassKeys) {
+		Set<CommandClass> changed;
+		synchronized (this) {
+			// a sleeping node may send its node information by itself when it wakes up.
+			if (reinterviewPhase != ReinterviewPhase.NodeInfo && reinterviewPhase != ReinterviewPhase.WaitingForWakeUp)
+				return false;
+
+			changed = EnumSet.noneOf(CommandClass.class);
+			Set<CommandClass> advertised = EnumSet.noneOf(CommandClass.class);
+			for (int key : commandClassKeys) {
+				CommandClass commandClass = CommandClass.getCommandClass(key);
+				if (commandClass == null)
+					continue;
+				advertised.add(commandClass);
+				if (this.node.getCommandClass(commandClass) != null)
+					continue;
+				ZWaveCommandClass zwaveCommandClass = ZWaveCommandClass.getInstance(key, this.node, this.controller);
+				if (zwaveCommandClass == null)
+					continue;
+				logger.info("NODE {}: Re-interview found new command class {}", this.node.getNodeId(), commandClass.getLabel());
+				this.node.addCommandClass(zwaveCommandClass);
+				changed.add(commandClass);
+			}
+			for (ZWaveCommandClass zwaveCommandClass : this.node.getCommandClasses()) {
+				// mandatory command classes such as BASIC aren't listed in the frame.
+				if (!advertised.contains(zwaveCommandClass.getCommandClass()))
+					logger.debug("NODE {}: Command class {} is not in the node information", this.node.getNodeId(),
+							zwaveCommandClass.getCommandClass().getLabel());
+			}
+
+			changedCommandClasses = changed;
+			reinterviewPhase = ReinterviewPhase.Versions;
+			queryTracker.clear();
+		}
+
+		ZWaveVersionCommandClass version = (ZWaveVersionCommandClass) this.node.getCommandClass(CommandClass.VERSION);
+		for (CommandClass commandClass : changed) {
+			ZWaveCommandClass zwaveCommandClass = this.node.getCommandClass(commandClass);
+			if (version != null && zwaveCommandClass.getMaxVersion() > 1)
+				queryTracker.send(version.getCommandClassVersionMessage(commandClass));
+			else
+				zwaveCommandClass.setVersion(1);
+		}
+		if (version != null)
+			queryTracker.send(version.getVersionMessage());
+		if (queryTracker.isEmpty())
+			continueReinterview();
+		return true;
+	}
+
+	/**
+	 * Moves a re-interview on when the queries of a phase are finished:
+	 * from the versions to the values of the changed command classes, and
+	 * from the values to done. When the application version changed, the
+	 * versions of all command classes are queried first, since the value
+	 * queries depend on them.
+	 */
+	private void continueReinterview() {
+		ReinterviewPhase phase;
+		Set<CommandClass> changed;
+		synchronized (this) {
+			if (reinterviewPhase == ReinterviewPhase.Versions) {
+				ZWaveVersionCommandClass version = (ZWaveVersionCommandClass) this.node.getCommandClass(CommandClass.VERSION);
+				Double applicationVersion = version == null ? null : version.getApplicationVersion();
+				if (applicationVersion != null && previousApplicationVersion != null && !applicationVersion.equals(previousApplicationVersion)) {
+					logger.info("NODE {}: Application version changed from {} to {}, querying all command classes.", this.node.getNodeId(),
+							previousApplicationVersion, applicationVersion);
+					changedCommandClasses = null;
+					reinterviewPhase = ReinterviewPhase.AllVersions;
+				} else {
+					reinterviewPhase = ReinterviewPhase.Values;
+				}
+			} else if (reinterviewPhase == ReinterviewPhase.AllVersions) {
+				reinterviewPhase = ReinterviewPhase.Values;
+			} else if (reinterviewPhase == ReinterviewPhase.Values) {
+				logger.info("NODE {}: Re-interview complete, {} queries answered, {} skipped.", this.node.getNodeId(),
+						queryTracker.getAnsweredCount(), queryTracker.getSkippedCount());
+				reinterviewPhase = ReinterviewPhase.None;
+				nodeSerializer.SerializeNode(this.node);
+				// the command classes and versions may have changed.
+				checkpointedStage = null;
+				checkpoint();
+				return;
+			} else {
+				return;
+			}
+			phase = reinterviewPhase;
+			changed = changedCommandClasses;
+		}
+
+		if (phase == ReinterviewPhase.AllVersions) {
+			// the firmware changed; the values are queried once the new versions are known.
+			ZWaveVersionCommandClass version = (ZWaveVersionCommandClass) this.node.getCommandClass(CommandClass.VERSION);
+			for (ZWaveCommandClass zwaveCommandClass : this.node.getCommandClasses()) {
+				if (zwaveCommandClass.getMaxVersion() > 1)
+					queryTracker.send(version.getCommandClassVersionMessage(zwaveCommandClass.getCommandClass()));
+			}
+		} else {
+			sendQueries(NodeStage.STATIC_VALUES, changed);
+			sendQueries(NodeStage.DYNAMIC, changed);
+		}
+		if (queryTracker.isEmpty())
+			continueReinterview();
+	}
+
+	/**
+	 * Gets whether a re-interview is in progress.
+	 * @return true if the node is being re-interviewed.
+	 */
+	public boolean isReinterviewing() {
+		return reinterviewPhase != ReinterviewPhase.None;
+	}
+
+	/**
+	 * Called by the query tracker when the last query of the stage was
+	 * answered or skipped; moves on to the stage that follows.
+	 */
+	void queriesFinished() {
+		if (reinterviewPhase.isQuerying()) {
+			continueReinterview();
+			return;
+		}
+		NodeStage next = QUERY_STAGES.get(this.node.getNodeStage());
+		if (next != null)
+			advanceNodeStage(next);
+		else
+			queryStage = null;	// the node left the stage, e.g. it died; query again when it comes back.
+	}
+
+	/**
+	 * Gets the tracker of the queries of the current stage.
+	 * @return the query tracker
+	 */
+	public ZWaveNodeQueryTracker getQueryTracker() {
+		return queryTracker;
+	}
+
 	/**
 	 * Returns whether the initialization process has completed.
 	 * 
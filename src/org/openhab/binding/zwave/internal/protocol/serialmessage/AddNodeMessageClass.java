@@ -66,7 +66,8 @@ public class AddNodeMessageClass extends ZWaveCommandProcessor {
     }
 
 	@Override
-	public boolean handleRequest(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+	public ProcessorResult handleRequest(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+		boolean transactionComplete = false;
 		switch(incomingMessage.getMessagePayloadByte(1)) {
 		case ADD_NODE_STATUS_LEARN_READY:
 			logger.debug("Learn ready.");
@@ -102,8 +103,8 @@ public class AddNodeMessageClass extends ZWaveCommandProcessor {
 			logger.debug("Unknown request ({}).", incomingMessage.getMessagePayloadByte(1));
 			break;
 		}
-		checkTransactionComplete(lastSentMessage, incomingMessage);
+		transactionComplete = checkTransactionComplete(lastSentMessage, incomingMessage);
 
-		return transactionComplete;
+		return ProcessorResult.get(transactionComplete, transactionComplete, lastSentMessage);
 	}
 }
@@ -25,14 +25,15 @@ public class ApplicationCommandMessageClass  extends ZWaveCommandProcessor {
 	private static final Logger logger = LoggerFactory.getLogger(ApplicationCommandMessageClass.class);
 
 	@Override
-	public  boolean handleRequest(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+	public ProcessorResult handleRequest(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+		boolean transactionComplete = false;
 		logger.trace("Handle Message Application Command Request");
 		int nodeId = incomingMessage.getMessagePayloadByte(1);
 		ZWaveNode node = zController.getNode(nodeId);
 		
 		if (node == null) {
 			logger.warn("NODE {}: Not initialized yet, ignoring message.", nodeId);
-			return false;
+			return ProcessorResult.get(false, transactionComplete, lastSentMessage);
 		}
 		logger.debug("NODE {}: Application Command Request (Stage {})", nodeId, node.getNodeStage().getLabel());
 		
@@ -50,7 +51,7 @@ public class ApplicationCommandMessageClass  extends ZWaveCommandProcessor {
 
 		if (commandClass == null) {
 			logger.error(String.format("NODE %d: Unsupported command class 0x%02x", nodeId, commandClassCode));
-			return false;
+			return ProcessorResult.get(false, transactionComplete, lastSentMessage);
 		}
 
 		logger.debug(String.format("NODE %d: Incoming command class %s (0x%02x)", nodeId, commandClass.getLabel(), commandClass.getKey()));
@@ -73,14 +74,17 @@ public class ApplicationCommandMessageClass  extends ZWaveCommandProcessor {
 		// We got an unsupported command class, return.
 		if (zwaveCommandClass == null) {
 			logger.error(String.format("NODE %d: Unsupported command class %s (0x%02x)", nodeId, commandClass.getLabel(), commandClassCode));
-			return false;
+			return ProcessorResult.get(false, transactionComplete, lastSentMessage);
 		}
 		
 		logger.trace("NODE {}: Found Command Class {}, passing to handleApplicationCommandRequest", nodeId, zwaveCommandClass.getCommandClass().getLabel());
 		zwaveCommandClass.handleApplicationCommandRequest(incomingMessage, 4, 0);
+		node.queryReportReceived(incomingMessage);
 
-		checkTransactionComplete(lastSentMessage, incomingMessage);
+		transactionComplete = checkTransactionComplete(lastSentMessage, incomingMessage);
+		if (transactionComplete)
+			zController.recordResponseTime(lastSentMessage);
 		
-		return false;
+		return ProcessorResult.get(false, transactionComplete, lastSentMessage);
 	}
 }
@@ -8,6 +8,9 @@
  */
 package org.openhab.binding.zwave.internal.protocol.serialmessage;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.openhab.binding.zwave.internal.protocol.NodeStage;
 import org.openhab.binding.zwave.internal.protocol.SerialMessage;
 import org.openhab.binding.zwave.internal.protocol.UpdateState;
@@ -29,7 +32,8 @@ public class ApplicationUpdateMessageClass  extends ZWaveCommandProcessor {
 	private static final Logger logger = LoggerFactory.getLogger(ApplicationUpdateMessageClass.class);
 
 	@Override
-	public  boolean handleRequest(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+	public ProcessorResult handleRequest(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+		boolean transactionComplete = false;
 		logger.trace("Handle Message Application Update Request");
 		int nodeId = incomingMessage.getMessagePayloadByte(1);
 		
@@ -44,7 +48,20 @@ public class ApplicationUpdateMessageClass  extends ZWaveCommandProcessor {
 			
 			node.resetResendCount();
 
-			if(node.getNodeStage() == NodeStage.DONE) {
+			List<Integer> commandClassKeys = new ArrayList<Integer>();
+			for (int i = 6; i < length + 3; i++) {
+				int data = incomingMessage.getMessagePayloadByte(i);
+				if(data == 0xef)  {
+					// TODO: Implement control command classes
+					break;
+				}
+				commandClassKeys.add(data);
+			}
+
+			if(node.getNodeStage() == NodeStage.DONE && node.nodeInformationReceived(commandClassKeys)) {
+				logger.debug("NODE {}: Application update request, node information passed to re-interview.", nodeId);
+			}
+			else if(node.getNodeStage() == NodeStage.DONE) {
 				// If this node supports associations, then assume this should be handled through that mechanism
 				if(node.getCommandClass(CommandClass.ASSOCIATION) == null) {
 					// If we receive an Application Update Request and the node is already
@@ -56,12 +73,7 @@ public class ApplicationUpdateMessageClass  extends ZWaveCommandProcessor {
 				}
 			}
 			else {
-				for (int i = 6; i < length + 3; i++) {
-					int data = incomingMessage.getMessagePayloadByte(i);
-					if(data == 0xef)  {
-						// TODO: Implement control command classes
-						break;
-					}
+				for (int data : commandClassKeys) {
 					logger.trace(String.format("NODE %d: Command class 0x%02X is supported.", nodeId, data));
 					ZWaveCommandClass commandClass = ZWaveCommandClass.getInstance(data, node, zController);
 					if (commandClass != null)
@@ -72,7 +84,7 @@ public class ApplicationUpdateMessageClass  extends ZWaveCommandProcessor {
 				node.advanceNodeStage(NodeStage.MANSPEC01);
 			}
 			
-			checkTransactionComplete(lastSentMessage, incomingMessage);
+			transactionComplete = checkTransactionComplete(lastSentMessage, incomingMessage);
 
 			// Treat the node information frame as a wakeup
 			ZWaveWakeUpCommandClass wakeUp = (ZWaveWakeUpCommandClass)node.getCommandClass(ZWaveCommandClass.CommandClass.WAKE_UP);
@@ -87,7 +99,7 @@ public class ApplicationUpdateMessageClass  extends ZWaveCommandProcessor {
 			
 			if (requestInfoMessage.getMessageClass() != SerialMessageClass.RequestNodeInfo) {
 				logger.warn("NODE {}: Got application update request without node info request, ignoring.", nodeId);
-				return false;
+				return ProcessorResult.get(false, transactionComplete, lastSentMessage);
 			}
 				
 			if (--requestInfoMessage.attempts >= 0) {
@@ -102,6 +114,6 @@ public class ApplicationUpdateMessageClass  extends ZWaveCommandProcessor {
 		default:
 			logger.warn(String.format("TODO: Implement Application Update Request Handling of %s (0x%02X).", updateState.getLabel(), updateState.getKey()));
 		}		
-		return false;
+		return ProcessorResult.get(false, transactionComplete, lastSentMessage);
 	}
 }
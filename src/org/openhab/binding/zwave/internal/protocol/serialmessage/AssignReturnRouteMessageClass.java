@@ -37,7 +37,7 @@ public class AssignReturnRouteMessageClass extends ZWaveCommandProcessor {
 	}
 	
 	@Override
-	public boolean handleResponse(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+	public ProcessorResult handleResponse(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
 		int nodeId = lastSentMessage.getMessagePayloadByte(0);
 		
 		logger.debug("NODE {}: Got AssignReturnRoute response.", nodeId);
@@ -50,11 +50,11 @@ public class AssignReturnRouteMessageClass extends ZWaveCommandProcessor {
 					ZWaveNetworkEvent.State.Failure));
 		}
 		
-		return false;
+		return ProcessorResult.NOT_HANDLED;
 	}
 
 	@Override
-	public boolean handleRequest(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+	public ProcessorResult handleRequest(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
 		int nodeId = lastSentMessage.getMessagePayloadByte(0);
 
 		logger.debug("NODE {}: Got AssignReturnRoute request.", nodeId);
@@ -68,6 +68,6 @@ public class AssignReturnRouteMessageClass extends ZWaveCommandProcessor {
 					ZWaveNetworkEvent.State.Success));
 		}
 		
-		return false;
+		return ProcessorResult.NOT_HANDLED;
 	}
 }
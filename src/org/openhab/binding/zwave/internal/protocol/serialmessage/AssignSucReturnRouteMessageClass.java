@@ -40,7 +40,8 @@ public class AssignSucReturnRouteMessageClass extends ZWaveCommandProcessor {
 	}
 	
 	@Override
-	public boolean handleResponse(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+	public ProcessorResult handleResponse(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+		boolean transactionComplete = false;
 		int nodeId = lastSentMessage.getMessagePayloadByte(0);
 		
 		logger.debug("NODE {}: Got AssignSucReturnRoute response.", nodeId);
@@ -53,12 +54,12 @@ public class AssignSucReturnRouteMessageClass extends ZWaveCommandProcessor {
 					ZWaveNetworkEvent.State.Failure));
 		}
 		
-		checkTransactionComplete(lastSentMessage, incomingMessage);
-		return false;
+		transactionComplete = checkTransactionComplete(lastSentMessage, incomingMessage);
+		return ProcessorResult.get(false, transactionComplete, lastSentMessage);
 	}
 
 	@Override
-	public boolean handleRequest(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+	public ProcessorResult handleRequest(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
 		int nodeId = lastSentMessage.getMessagePayloadByte(0);
 
 		logger.debug("NODE {}: Got AssignSucReturnRoute request.", nodeId);
@@ -73,6 +74,6 @@ public class AssignSucReturnRouteMessageClass extends ZWaveCommandProcessor {
 					ZWaveNetworkEvent.State.Success));
 		}
 
-		return false;
+		return ProcessorResult.NOT_HANDLED;
 	}
 }
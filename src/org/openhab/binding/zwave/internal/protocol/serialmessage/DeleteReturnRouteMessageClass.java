@@ -38,7 +38,7 @@ public class DeleteReturnRouteMessageClass extends ZWaveCommandProcessor {
 	}
 	
 	@Override
-	public boolean handleResponse(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+	public ProcessorResult handleResponse(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
 		int nodeId = lastSentMessage.getMessagePayloadByte(0);
 
 		logger.debug("NODE {}: Got DeleteReturnRoute response.", nodeId);
@@ -50,11 +50,11 @@ public class DeleteReturnRouteMessageClass extends ZWaveCommandProcessor {
 					ZWaveNetworkEvent.State.Failure));
 		}
 		
-		return false;
+		return ProcessorResult.NOT_HANDLED;
 	}
 
 	@Override
-	public boolean handleRequest(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+	public ProcessorResult handleRequest(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
 		int nodeId = lastSentMessage.getMessagePayloadByte(0);
 
 		logger.debug("NODE {}: Got DeleteReturnRoute request.", nodeId);
@@ -69,6 +69,6 @@ public class DeleteReturnRouteMessageClass extends ZWaveCommandProcessor {
 					ZWaveNetworkEvent.State.Success));
 		}
 		
-		return false;
+		return ProcessorResult.NOT_HANDLED;
 	}
 }
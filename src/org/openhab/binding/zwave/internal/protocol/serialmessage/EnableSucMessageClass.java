@@ -52,7 +52,8 @@ public class EnableSucMessageClass extends ZWaveCommandProcessor {
 	}
 	
 	@Override
-	public boolean handleResponse(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+	public ProcessorResult handleResponse(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+		boolean transactionComplete = false;
 		logger.debug("Got EnableSUC response.");
 
 		if(incomingMessage.getMessagePayloadByte(0) != 0x00) {
@@ -61,8 +62,8 @@ public class EnableSucMessageClass extends ZWaveCommandProcessor {
 			logger.error("Unable to disable a running SUC!");
 		}
 
-		checkTransactionComplete(lastSentMessage, incomingMessage);
-		return false;
+		transactionComplete = checkTransactionComplete(lastSentMessage, incomingMessage);
+		return ProcessorResult.get(false, transactionComplete, lastSentMessage);
 	}
 	
 	public enum SUCType {
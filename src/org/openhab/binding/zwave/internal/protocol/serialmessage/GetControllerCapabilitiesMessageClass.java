@@ -25,64 +25,52 @@ import me.wbarlow.zwavemanagement.logging.LoggerFactory;
 public class GetControllerCapabilitiesMessageClass extends ZWaveCommandProcessor {
 	private static final Logger logger = LoggerFactory.getLogger(GetControllerCapabilitiesMessageClass.class);
 
-	private final byte CONTROLLER_IS_SECONDARY          = 0x01;
-	private final byte CONTROLLER_ON_OTHER_NETWORK      = 0x02;
-	private final byte CONTROLLER_NODEID_SERVER_PRESENT = 0x04;
-	private final byte CONTROLLER_IS_REAL_PRIMARY       = 0x08;
-	private final byte CONTROLLER_IS_SUC                = 0x10;
-
-	private boolean isSecondary = false;
-	private boolean isOnOtherNetwork = false;
-	private boolean isServerPresent = false;
-	private boolean isRealPrimary = false;
-	private boolean isSUC = false;
+	private static final byte CONTROLLER_IS_SECONDARY          = 0x01;
+	private static final byte CONTROLLER_ON_OTHER_NETWORK      = 0x02;
+	private static final byte CONTROLLER_NODEID_SERVER_PRESENT = 0x04;
+	private static final byte CONTROLLER_IS_REAL_PRIMARY       = 0x08;
+	private static final byte CONTROLLER_IS_SUC                = 0x10;
 
 	public SerialMessage doRequest() {
 		return new SerialMessage(SerialMessageClass.GetControllerCapabilities, SerialMessageType.Request, SerialMessageClass.GetControllerCapabilities, SerialMessagePriority.High);
 	}
 	
 	@Override
-	public boolean handleResponse(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+	public ProcessorResult handleResponse(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
 		logger.trace("Handle Message Get Controller Capabilities - Length {}", incomingMessage.getMessagePayload().length);
 
-		isSecondary = ((incomingMessage.getMessagePayloadByte(0) & CONTROLLER_IS_SECONDARY) != 0) ? true : false;
-		isOnOtherNetwork = ((incomingMessage.getMessagePayloadByte(0) & CONTROLLER_ON_OTHER_NETWORK) != 0) ? true : false;
-		isServerPresent = ((incomingMessage.getMessagePayloadByte(0) & CONTROLLER_NODEID_SERVER_PRESENT) == 1) ? true : false;
-		isRealPrimary = ((incomingMessage.getMessagePayloadByte(0) & CONTROLLER_IS_REAL_PRIMARY) != 0) ? true : false;
-		isSUC = ((incomingMessage.getMessagePayloadByte(0) & CONTROLLER_IS_SUC) != 0) ? true : false;
-
-		logger.debug("Controller is secondary = {}", isSecondary);
-		logger.debug("Controller is on other network = {}", isOnOtherNetwork);
-		logger.debug("Node ID Server is present = {}", isServerPresent);
-		logger.debug("Controller is real primary = {}", isRealPrimary);
-		logger.debug("Controller is SUC = {}", isSUC);
+		logger.debug("Controller is secondary = {}", getIsSecondary(incomingMessage));
+		logger.debug("Controller is on other network = {}", getIsOnOtherNetwork(incomingMessage));
+		logger.debug("Node ID Server is present = {}", getIsServerPresent(incomingMessage));
+		logger.debug("Controller is real primary = {}", getIsRealPrimary(incomingMessage));
+		logger.debug("Controller is SUC = {}", getIsSUC(incomingMessage));
 
-		checkTransactionComplete(lastSentMessage, incomingMessage);
+		boolean transactionComplete = checkTransactionComplete(lastSentMessage, incomingMessage);
 		
-		return true;
+		return ProcessorResult.get(true, transactionComplete, lastSentMessage);
 	}
 	
-	public boolean getIsSecondary() {
-		return isSecondary;
+	public static boolean getIsSecondary(SerialMessage incomingMessage) {
+		return (incomingMessage.getMessagePayloadByte(0) & CONTROLLER_IS_SECONDARY) != 0;
 	}
-	public boolean getIsOnOtherNetwork() {
-		return isOnOtherNetwork;
+	public static boolean getIsOnOtherNetwork(SerialMessage incomingMessage) {
+		return (incomingMessage.getMessagePayloadByte(0) & CONTROLLER_ON_OTHER_NETWORK) != 0;
 	}
-	public boolean getIsServerPresent() {
-		return isServerPresent;
+	public static boolean getIsServerPresent(SerialMessage incomingMessage) {
+		return (incomingMessage.getMessagePayloadByte(0) & CONTROLLER_NODEID_SERVER_PRESENT) != 0;
 	}
-	public boolean getIsRealPrimary() {
-		return isRealPrimary;
+	public static boolean getIsRealPrimary(SerialMessage incomingMessage) {
+		return (incomingMessage.getMessagePayloadByte(0) & CONTROLLER_IS_REAL_PRIMARY) != 0;
 	}
-	public boolean getIsSUC() {
-		return isSUC;
+	public static boolean getIsSUC(SerialMessage incomingMessage) {
+		return (incomingMessage.getMessagePayloadByte(0) & CONTROLLER_IS_SUC) != 0;
 	}
-	public ZWaveDeviceType getDeviceType() {
-		if(isSecondary) {
+	public static ZWaveDeviceType getDeviceType(SerialMessage incomingMessage) {
+		if(getIsSecondary(incomingMessage)) {
 			return ZWaveDeviceType.SECONDARY;
 		}
 		else {
-			if(isSUC)
+			if(getIsSUC(incomingMessage))
 				return ZWaveDeviceType.SUC;
 			else
 				return ZWaveDeviceType.PRIMARY;
@@ -41,7 +41,8 @@ public class GetRoutingInfoMessageClass extends ZWaveCommandProcessor {
 	}
 	
 	@Override
-	public boolean handleResponse(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+	public ProcessorResult handleResponse(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+		boolean transactionComplete = false;
 		int nodeId = lastSentMessage.getMessagePayloadByte(0);
 		
 		logger.debug("NODE {}: Got NodeRoutingInfo request.", nodeId);
@@ -51,7 +52,7 @@ public class GetRoutingInfoMessageClass extends ZWaveCommandProcessor {
 		if(node == null) {
 			logger.error("NODE {}: Routing information for unknown node", nodeId);
 			transactionComplete = true;
-			return false;
+			return ProcessorResult.get(false, transactionComplete, lastSentMessage);
 		}
 
 		node.clearNeighbors();
@@ -82,6 +83,6 @@ public class GetRoutingInfoMessageClass extends ZWaveCommandProcessor {
 				ZWaveNetworkEvent.State.Success));
 
 		transactionComplete = true;
-		return false;
+		return ProcessorResult.get(false, transactionComplete, lastSentMessage);
 	}
 }
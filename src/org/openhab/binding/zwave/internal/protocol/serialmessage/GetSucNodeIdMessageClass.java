@@ -24,8 +24,6 @@ import me.wbarlow.zwavemanagement.logging.LoggerFactory;
 public class GetSucNodeIdMessageClass extends ZWaveCommandProcessor {
 	private static final Logger logger = LoggerFactory.getLogger(GetSucNodeIdMessageClass.class);
 
-	int sucNode = 0;
-	
 	public SerialMessage doRequest() {
 		logger.debug("Get SUC NodeID");
 
@@ -37,21 +35,25 @@ public class GetSucNodeIdMessageClass extends ZWaveCommandProcessor {
 	}
 
 	@Override
-	public boolean handleResponse(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+	public ProcessorResult handleResponse(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
 		logger.debug("Got SUC NodeID response.");
 
 		if(incomingMessage.getMessagePayloadByte(0) != 0x00) {
 			logger.debug("NODE {}: Node is SUC.", incomingMessage.getMessagePayloadByte(0));
-			sucNode = incomingMessage.getMessagePayloadByte(0);
 		} else {
 			logger.debug("No SUC Node is set");
 		}
 
-		checkTransactionComplete(lastSentMessage, incomingMessage);
-		return false;
+		boolean transactionComplete = checkTransactionComplete(lastSentMessage, incomingMessage);
+		return ProcessorResult.get(false, transactionComplete, lastSentMessage);
 	}
 	
-	public int getSucNodeId() {
-		return sucNode;
+	/**
+	 * Gets the SUC node id from a GetSucNodeId response.
+	 * @param incomingMessage the response
+	 * @return the SUC node id, or 0 if no SUC is set.
+	 */
+	public static int getSucNodeId(SerialMessage incomingMessage) {
+		return incomingMessage.getMessagePayloadByte(0);
 	}
 }
@@ -24,33 +24,39 @@ import me.wbarlow.zwavemanagement.logging.LoggerFactory;
 public class GetVersionMessageClass extends ZWaveCommandProcessor {
 	private static final Logger logger = LoggerFactory.getLogger(GetVersionMessageClass.class);
 	
-	private String zWaveVersion = "Unknown";
-	private int ZWaveLibraryType = 0;
-	
 	public SerialMessage doRequest() {
 		return new SerialMessage(SerialMessageClass.GetVersion, SerialMessageType.Request, SerialMessageClass.GetVersion, SerialMessagePriority.High);
 	}
 	
 	@Override
-	public boolean handleResponse(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
-		ZWaveLibraryType = incomingMessage.getMessagePayloadByte(12);
-		zWaveVersion = "";
-		byte[] payload = incomingMessage.getMessagePayload();
-		for(int i=0; i<11; i++) {
-			zWaveVersion += payload[i];
-		}
-		logger.debug(String.format("Got MessageGetVersion response. Version = %s, Library Type = 0x%02X", zWaveVersion, ZWaveLibraryType));
+	public ProcessorResult handleResponse(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+		logger.debug(String.format("Got MessageGetVersion response. Version = %s, Library Type = 0x%02X", getVersion(incomingMessage), getLibraryType(incomingMessage)));
 
-		checkTransactionComplete(lastSentMessage, incomingMessage);
+		boolean transactionComplete = checkTransactionComplete(lastSentMessage, incomingMessage);
 		
-		return true;
+		return ProcessorResult.get(true, transactionComplete, lastSentMessage);
 	}
 
-	public String getVersion() {
-		return zWaveVersion;
+	/**
+	 * Gets the Z-Wave version from a GetVersion response.
+	 * @param incomingMessage the response
+	 * @return the version string
+	 */
+	public static String getVersion(SerialMessage incomingMessage) {
+		StringBuilder zWaveVersion = new StringBuilder();
+		byte[] payload = incomingMessage.getMessagePayload();
+		for(int i=0; i<11; i++) {
+			zWaveVersion.append(payload[i]);
+		}
+		return zWaveVersion.toString();
 	}
 
-	public int getLibraryType() {
-		return ZWaveLibraryType;
+	/**
+	 * Gets the library type from a GetVersion response.
+	 * @param incomingMessage the response
+	 * @return the library type
+	 */
+	public static int getLibraryType(SerialMessage incomingMessage) {
+		return incomingMessage.getMessagePayloadByte(12);
 	}
 }
@@ -40,7 +40,8 @@ public class IdentifyNodeMessageClass  extends ZWaveCommandProcessor {
 	}
 
 	@Override
-	public boolean handleResponse(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+	public ProcessorResult handleResponse(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+		boolean transactionComplete = false;
 		logger.trace("Handle Message Get Node ProtocolInfo Response");
 		
 		int nodeId = lastSentMessage.getMessagePayloadByte(0);
@@ -52,35 +53,42 @@ public class IdentifyNodeMessageClass  extends ZWaveCommandProcessor {
 		boolean routing = (incomingMessage.getMessagePayloadByte(0) & 0x40)!=0 ? true : false;
 		int version = (incomingMessage.getMessagePayloadByte(0) & 0x07) + 1;
 		boolean frequentlyListening = (incomingMessage.getMessagePayloadByte(1) & 0x60)!= 0 ? true : false;
+		int maxBaudRate = 9600;
+		if ((incomingMessage.getMessagePayloadByte(0) & 0x38) == 0x10)
+			maxBaudRate = 40000;
+		if ((incomingMessage.getMessagePayloadByte(2) & 0x01) != 0)
+			maxBaudRate = 100000;
 		
 		logger.debug("NODE {}: Listening = {}", nodeId, listening);
 		logger.debug("NODE {}: Routing = {}", nodeId, routing);
 		logger.debug("NODE {}: Version = {}", nodeId, version);
 		logger.debug("NODE {}: fLIRS = {}", nodeId, frequentlyListening);
+		logger.debug("NODE {}: Max Baud = {}", nodeId, maxBaudRate);
 		
 		node.setListening(listening);
 		node.setRouting(routing);
 		node.setVersion(version);
 		node.setFrequentlyListening(frequentlyListening);
+		node.setMaxBaudRate(maxBaudRate);
 		
 		Basic basic = Basic.getBasic(incomingMessage.getMessagePayloadByte(3));
 		if (basic == null) {
 			logger.error(String.format("NODE %d: Basic device class 0x%02x not found", nodeId, incomingMessage.getMessagePayloadByte(3)));
-			return false;
+			return ProcessorResult.get(false, transactionComplete, lastSentMessage);
 		}
 		logger.debug(String.format("NODE %d: Basic = %s 0x%02x", nodeId, basic.getLabel(), basic.getKey()));
 
 		Generic generic = Generic.getGeneric(incomingMessage.getMessagePayloadByte(4));
 		if (generic == null) {
 			logger.error(String.format("NODE %d: Generic device class 0x%02x not found", nodeId, incomingMessage.getMessagePayloadByte(4)));
-			return false;
+			return ProcessorResult.get(false, transactionComplete, lastSentMessage);
 		}
 		logger.debug(String.format("NODE %d: Generic = %s 0x%02x", nodeId, generic.getLabel(), generic.getKey()));
 
 		Specific specific = Specific.getSpecific(generic, incomingMessage.getMessagePayloadByte(5));
 		if (specific == null) {
 			logger.error(String.format("NODE %d: Specific device class 0x%02x not found", nodeId, incomingMessage.getMessagePayloadByte(5)));
-			return false;
+			return ProcessorResult.get(false, transactionComplete, lastSentMessage);
 		}
 		logger.debug(String.format("NODE %d: Specific = %s 0x%02x", nodeId, specific.getLabel(), specific.getKey()));
 		
@@ -110,8 +118,8 @@ public class IdentifyNodeMessageClass  extends ZWaveCommandProcessor {
     	// advance node stage of the current node.
 		node.advanceNodeStage(NodeStage.PING);
 		
-		checkTransactionComplete(lastSentMessage, incomingMessage);
+		transactionComplete = checkTransactionComplete(lastSentMessage, incomingMessage);
 
-		return false;
+		return ProcessorResult.get(false, transactionComplete, lastSentMessage);
 	}
 }
@@ -35,7 +35,8 @@ public class IsFailedNodeMessageClass  extends ZWaveCommandProcessor {
 	}
 
 	@Override
-	public boolean handleResponse(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+	public ProcessorResult handleResponse(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+		boolean transactionComplete = false;
 		int nodeId = lastSentMessage.getMessagePayloadByte(0);
 
 		logger.trace("Handle IsFailedNode Response");
@@ -50,6 +51,6 @@ public class IsFailedNodeMessageClass  extends ZWaveCommandProcessor {
 		
 		transactionComplete = true;
 
-		return true;
+		return ProcessorResult.get(true, transactionComplete, lastSentMessage);
 	}
 }
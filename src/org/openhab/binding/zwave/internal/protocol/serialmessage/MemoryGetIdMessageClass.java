@@ -24,31 +24,37 @@ import me.wbarlow.zwavemanagement.logging.LoggerFactory;
 public class MemoryGetIdMessageClass extends ZWaveCommandProcessor {
 	private static final Logger logger = LoggerFactory.getLogger(MemoryGetIdMessageClass.class);
 	
-	private int homeId = 0;
-	private int ownNodeId = 0;
-
 	public SerialMessage doRequest() {
 		return new SerialMessage(SerialMessageClass.MemoryGetId, SerialMessageType.Request, SerialMessageClass.MemoryGetId, SerialMessagePriority.High);
 	}
 	
 	@Override
-	public boolean handleResponse(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
-		homeId = ((incomingMessage.getMessagePayloadByte(0)) << 24) | 
-				((incomingMessage.getMessagePayloadByte(1)) << 16) | 
-				((incomingMessage.getMessagePayloadByte(2)) << 8) | 
-				(incomingMessage.getMessagePayloadByte(3));
-		ownNodeId = incomingMessage.getMessagePayloadByte(4);
+	public ProcessorResult handleResponse(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+		logger.debug(String.format("Got MessageMemoryGetId response. Home id = 0x%08X, Controller node id = %d", getHomeId(incomingMessage), getNodeId(incomingMessage)));
 
-		checkTransactionComplete(lastSentMessage, incomingMessage);
+		boolean transactionComplete = checkTransactionComplete(lastSentMessage, incomingMessage);
 		
-		return true;
+		return ProcessorResult.get(true, transactionComplete, lastSentMessage);
 	}
 
-	public int getNodeId() {
-		return ownNodeId;
+	/**
+	 * Gets the node id of the controller from a MemoryGetId response.
+	 * @param incomingMessage the response
+	 * @return the node id
+	 */
+	public static int getNodeId(SerialMessage incomingMessage) {
+		return incomingMessage.getMessagePayloadByte(4);
 	}
 
-	public int getHomeId() {
-		return homeId;
+	/**
+	 * Gets the home id from a MemoryGetId response.
+	 * @param incomingMessage the response
+	 * @return the home id
+	 */
+	public static int getHomeId(SerialMessage incomingMessage) {
+		return ((incomingMessage.getMessagePayloadByte(0)) << 24) | 
+				((incomingMessage.getMessagePayloadByte(1)) << 16) | 
+				((incomingMessage.getMessagePayloadByte(2)) << 8) | 
+				(incomingMessage.getMessagePayloadByte(3));
 	}
 }
@@ -49,7 +49,8 @@ public class RemoveFailedNodeMessageClass extends ZWaveCommandProcessor {
    	}
 	
 	@Override
-	public boolean handleResponse(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+	public ProcessorResult handleResponse(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+		boolean transactionComplete = false;
 		logger.debug("Got RemoveFailedNode response.");
 		int nodeId = lastSentMessage.getMessagePayloadByte(0);
 		
@@ -84,11 +85,12 @@ public class RemoveFailedNodeMessageClass extends ZWaveCommandProcessor {
 				break;
 		}
 		
-		return true;
+		return ProcessorResult.get(true, transactionComplete, lastSentMessage);
 	}
 
 	@Override
-	public boolean handleRequest(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+	public ProcessorResult handleRequest(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+		boolean transactionComplete = false;
 		int nodeId = lastSentMessage.getMessagePayloadByte(0);
 
 		logger.debug("NODE {}: Got RemoveFailedNode request.", nodeId);
@@ -112,6 +114,6 @@ public class RemoveFailedNodeMessageClass extends ZWaveCommandProcessor {
 				break;
 		}
 		
-		return true;
+		return ProcessorResult.get(true, transactionComplete, lastSentMessage);
 	}
 }
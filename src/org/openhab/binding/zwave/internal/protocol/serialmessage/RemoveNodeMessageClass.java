@@ -59,7 +59,8 @@ public class RemoveNodeMessageClass extends ZWaveCommandProcessor {
     }
 
 	@Override
-	public boolean handleRequest(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+	public ProcessorResult handleRequest(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+		boolean transactionComplete = false;
 		switch(incomingMessage.getMessagePayloadByte(1)) {
 		case REMOVE_NODE_STATUS_LEARN_READY:
 			logger.debug("Learn ready.");
@@ -90,8 +91,8 @@ public class RemoveNodeMessageClass extends ZWaveCommandProcessor {
 			logger.debug("Unknown request ({}).", incomingMessage.getMessagePayloadByte(1));
 			break;
 		}
-		checkTransactionComplete(lastSentMessage, incomingMessage);
+		transactionComplete = checkTransactionComplete(lastSentMessage, incomingMessage);
 
-		return transactionComplete;
+		return ProcessorResult.get(transactionComplete, transactionComplete, lastSentMessage);
 	}
 }
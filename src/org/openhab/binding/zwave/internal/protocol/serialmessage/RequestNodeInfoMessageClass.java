@@ -32,15 +32,16 @@ public class RequestNodeInfoMessageClass  extends ZWaveCommandProcessor {
 	}
 
 	@Override
-	public boolean handleResponse(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+	public ProcessorResult handleResponse(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+		boolean transactionComplete = false;
 		logger.trace("Handle RequestNodeInfo Response");
 		if(incomingMessage.getMessagePayloadByte(0) != 0x00)
 			logger.debug("Request node info successfully placed on stack.");
 		else
 			logger.error("Request node info not placed on stack due to error.");
 		
-		checkTransactionComplete(lastSentMessage, incomingMessage);
+		transactionComplete = checkTransactionComplete(lastSentMessage, incomingMessage);
 
-		return true;
+		return ProcessorResult.get(true, transactionComplete, lastSentMessage);
 	}
 }
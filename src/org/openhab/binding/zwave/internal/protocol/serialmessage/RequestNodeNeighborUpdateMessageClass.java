@@ -41,7 +41,8 @@ public class RequestNodeNeighborUpdateMessageClass extends ZWaveCommandProcessor
 	}
 
 	@Override
-	public boolean handleRequest(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+	public ProcessorResult handleRequest(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+		boolean transactionComplete = false;
 		int nodeId = lastSentMessage.getMessagePayloadByte(0);
 
 		logger.debug("NODE {}: Got NodeNeighborUpdate request.", nodeId);
@@ -66,6 +67,6 @@ public class RequestNodeNeighborUpdateMessageClass extends ZWaveCommandProcessor
 			transactionComplete = true;
 			break;
 		}
-		return false;
+		return ProcessorResult.get(false, transactionComplete, lastSentMessage);
 	}
 }
@@ -29,7 +29,7 @@ public class SendDataMessageClass extends ZWaveCommandProcessor {
 	private static final Logger logger = LoggerFactory.getLogger(SendDataMessageClass.class);
 
 	@Override
-	public boolean handleResponse(ZWaveController zController, SerialMessage lastSentMessage,
+	public ProcessorResult handleResponse(ZWaveController zController, SerialMessage lastSentMessage,
 			SerialMessage incomingMessage) {
 		logger.trace("Handle Message Send Data Response");
 		if (incomingMessage.getMessagePayloadByte(0) != 0x00)
@@ -37,12 +37,13 @@ public class SendDataMessageClass extends ZWaveCommandProcessor {
 		else
 			logger.error("Sent Data was not placed on stack due to error {}.", incomingMessage.getMessagePayloadByte(0));
 
-		return true;
+		return ProcessorResult.HANDLED;
 	}
 
 	@Override
-	public boolean handleRequest(ZWaveController zController, SerialMessage lastSentMessage,
+	public ProcessorResult handleRequest(ZWaveController zController, SerialMessage lastSentMessage,
 			SerialMessage incomingMessage) {
+		boolean transactionComplete = false;
 		logger.trace("Handle Message Send Data Request");
 
 		int callbackId = incomingMessage.getMessagePayloadByte(0);
@@ -51,7 +52,7 @@ public class SendDataMessageClass extends ZWaveCommandProcessor {
 
 		if (status == null) {
 			logger.warn("Transmission state not found, ignoring.");
-			return false;
+			return ProcessorResult.get(false, transactionComplete, lastSentMessage);
 		}
 
 		logger.debug("CallBack ID = {}", callbackId);
@@ -59,11 +60,12 @@ public class SendDataMessageClass extends ZWaveCommandProcessor {
 
 		if (originalMessage == null || originalMessage.getCallbackId() != callbackId) {
 			logger.warn("Already processed another send data request for this callback Id, ignoring.");
-			return false;
+			return ProcessorResult.get(false, transactionComplete, lastSentMessage);
 		}
 
 		switch (status) {
 		case COMPLETE_OK:
+			originalMessage.notifyTransmitted();
 			ZWaveNode node = zController.getNode(originalMessage.getMessageNode());
 			if(node == null)
 				break;
@@ -84,8 +86,10 @@ public class SendDataMessageClass extends ZWaveCommandProcessor {
 					node.advanceNodeStage(NodeStage.DETAILS);
 				}
 			}
-			checkTransactionComplete(lastSentMessage, incomingMessage);
-			return true;
+			transactionComplete = checkTransactionComplete(lastSentMessage, incomingMessage);
+			if (transactionComplete)
+				zController.recordResponseTime(originalMessage);
+			return ProcessorResult.get(true, transactionComplete, lastSentMessage);
 		case COMPLETE_NO_ACK:
 			// timeOutCount.incrementAndGet();
 		case COMPLETE_FAIL:
@@ -99,7 +103,7 @@ public class SendDataMessageClass extends ZWaveCommandProcessor {
 		default:
 		}
 
-		return false;
+		return ProcessorResult.get(false, transactionComplete, lastSentMessage);
 	}
 
 	public boolean handleFailedSendDataRequest(ZWaveController zController, SerialMessage originalMessage) {
@@ -24,62 +24,78 @@ import me.wbarlow.zwavemanagement.logging.LoggerFactory;
 public class SerialApiGetCapabilitiesMessageClass extends ZWaveCommandProcessor {
 	private static final Logger logger = LoggerFactory.getLogger(SerialApiGetCapabilitiesMessageClass.class);
 
-	private String serialAPIVersion = "Unknown";
-	private int manufactureId = 0;
-	private int deviceType = 0; 
-	private int deviceId = 0;
-
 	public SerialMessage doRequest() {
 		return new SerialMessage(SerialMessageClass.SerialApiGetCapabilities, SerialMessageType.Request, SerialMessageClass.SerialApiGetCapabilities, SerialMessagePriority.High);
 	}
 	
 	@Override
-	public boolean handleResponse(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+	public ProcessorResult handleResponse(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
 		logger.trace("Handle Message Serial API Get Capabilities - Length {}", incomingMessage.getMessagePayload().length);
 
-		serialAPIVersion = String.format("%d.%d", incomingMessage.getMessagePayloadByte(0), incomingMessage.getMessagePayloadByte(1));
-		manufactureId = ((incomingMessage.getMessagePayloadByte(2)) << 8) | (incomingMessage.getMessagePayloadByte(3));
-		deviceType = ((incomingMessage.getMessagePayloadByte(4)) << 8) | (incomingMessage.getMessagePayloadByte(5));
-		deviceId = (((incomingMessage.getMessagePayloadByte(6)) << 8) | (incomingMessage.getMessagePayloadByte(7)));
-		
-		logger.debug(String.format("API Version = %s", serialAPIVersion));
-		logger.debug(String.format("Manufacture ID = 0x%x", manufactureId));
-		logger.debug(String.format("Device Type = 0x%x" ,deviceType));
-		logger.debug(String.format("Device ID = 0x%x", deviceId));
+		logger.debug(String.format("API Version = %s", getSerialAPIVersion(incomingMessage)));
+		logger.debug(String.format("Manufacture ID = 0x%x", getManufactureId(incomingMessage)));
+		logger.debug(String.format("Device Type = 0x%x" ,getDeviceType(incomingMessage)));
+		logger.debug(String.format("Device ID = 0x%x", getDeviceId(incomingMessage)));
 
 		// Print the list of messages supported by this controller
-		for (int by = 8; by < incomingMessage.getMessagePayload().length; by++) {
-			for (int bi = 0; bi < 8; bi++) {
-				if ((incomingMessage.getMessagePayloadByte(by) & (0x01 << bi)) != 0) {
-					SerialMessage.SerialMessageClass msgClass = SerialMessage.SerialMessageClass.getMessageClass(((by - 8) << 3) + bi + 1);
-					if(msgClass == null) {
-						logger.debug(String.format("Supports: Unknown Class 0x%02x", ((by - 8) << 3) + bi + 1));
-					}
-					else {
-						logger.debug("Supports: {}", msgClass.getLabel());
-					}
+		boolean[] supportedFunctions = getSupportedFunctions(incomingMessage);
+		if (supportedFunctions != null) {
+			for (int function = 1; function < supportedFunctions.length; function++) {
+				if (!supportedFunctions[function])
+					continue;
+				SerialMessage.SerialMessageClass msgClass = SerialMessage.SerialMessageClass.getMessageClass(function);
+				if(msgClass == null) {
+					logger.debug(String.format("Supports: Unknown Class 0x%02x", function));
+				}
+				else {
+					logger.debug("Supports: {}", msgClass.getLabel());
 				}
 			}
 		}
 
-		checkTransactionComplete(lastSentMessage, incomingMessage);
+		boolean transactionComplete = checkTransactionComplete(lastSentMessage, incomingMessage);
 		
-		return true;
+		return ProcessorResult.get(true, transactionComplete, lastSentMessage);
 	}
 	
-	public String getSerialAPIVersion() {
-		return serialAPIVersion;
+	public static String getSerialAPIVersion(SerialMessage incomingMessage) {
+		return String.format("%d.%d", incomingMessage.getMessagePayloadByte(0), incomingMessage.getMessagePayloadByte(1));
 	}
 	
-	public int getManufactureId() {
-		return manufactureId;
+	public static int getManufactureId(SerialMessage incomingMessage) {
+		return ((incomingMessage.getMessagePayloadByte(2)) << 8) | (incomingMessage.getMessagePayloadByte(3));
 	}
 	
-	public int getDeviceType() {
-		return deviceType;
+	public static int getDeviceType(SerialMessage incomingMessage) {
+		return ((incomingMessage.getMessagePayloadByte(4)) << 8) | (incomingMessage.getMessagePayloadByte(5));
 	}
 	
-	public int getDeviceId() {
-		return deviceId;
+	public static int getDeviceId(SerialMessage incomingMessage) {
+		return (((incomingMessage.getMessagePayloadByte(6)) << 8) | (incomingMessage.getMessagePayloadByte(7)));
+	}
+
+	/**
+	 * Gets the functions supported by the controller, indexed by the
+	 * message class key.
+	 * @param incomingMessage the SerialApiGetCapabilities response
+	 * @return the supported functions, or null if the controller did not
+	 * send a function bitmap.
+	 */
+	public static boolean[] getSupportedFunctions(SerialMessage incomingMessage) {
+		byte[] payload = incomingMessage.getMessagePayload();
+		if (payload.length <= 8)
+			return null;
+
+		boolean[] supportedFunctions = new boolean[256];
+		for (int by = 8; by < payload.length; by++) {
+			for (int bi = 0; bi < 8; bi++) {
+				if ((payload[by] & (0x01 << bi)) != 0) {
+					int function = ((by - 8) << 3) + bi + 1;
+					if (function < supportedFunctions.length)
+						supportedFunctions[function] = true;
+				}
+			}
+		}
+		return supportedFunctions;
 	}
 }
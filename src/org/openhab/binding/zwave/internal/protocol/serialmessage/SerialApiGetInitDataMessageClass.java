@@ -26,8 +26,6 @@ import me.wbarlow.zwavemanagement.logging.LoggerFactory;
 public class SerialApiGetInitDataMessageClass extends ZWaveCommandProcessor {
 	private static final Logger logger = LoggerFactory.getLogger(SerialApiGetInitDataMessageClass.class);
 
-	private ArrayList<Integer>zwaveNodes = new ArrayList<Integer>();
-
 	private static final int NODE_BYTES = 29; // 29 bytes = 232 bits, one for each supported node by Z-Wave;
 	
 	public SerialMessage doRequest() {
@@ -35,31 +33,18 @@ public class SerialApiGetInitDataMessageClass extends ZWaveCommandProcessor {
 	}
 	
 	@Override
-	public boolean handleResponse(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+	public ProcessorResult handleResponse(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
 		logger.debug(String.format("Got MessageSerialApiGetInitData response."));
 		int nodeBytes = incomingMessage.getMessagePayloadByte(2);
 		
 		if (nodeBytes != NODE_BYTES) {
 			logger.error("Invalid number of node bytes = {}", nodeBytes);
-			return false;
+			return ProcessorResult.NOT_HANDLED;
 		}
 
-		int nodeId = 1;
-		
-		// loop bytes
-		for (int i = 3;i < 3 + nodeBytes;i++) {
-			int incomingByte = incomingMessage.getMessagePayloadByte(i);
-			// loop bits in byte
-			for (int j=0;j<8;j++) {
-				int b1 = incomingByte & (int)Math.pow(2.0D, j);
-				int b2 = (int)Math.pow(2.0D, j);
-				if (b1 == b2) {
-					logger.info("NODE {}: Node found", nodeId);
-
-					zwaveNodes.add(nodeId);
-				}
-				nodeId++;
-			}
+		ArrayList<Integer> zwaveNodes = getNodes(incomingMessage);
+		for (Integer nodeId : zwaveNodes) {
+			logger.info("NODE {}: Node found", nodeId);
 		}
 		
 		logger.info("ZWave Controller using {} API", ((incomingMessage.getMessagePayloadByte(1) & 0x01) == 1) ? "Slave" : "Controller");
@@ -68,12 +53,34 @@ public class SerialApiGetInitDataMessageClass extends ZWaveCommandProcessor {
 		logger.info(String.format("# Nodes = %d", zwaveNodes.size()));
 		logger.info("----------------------------------------------------------------------------");
 
-		checkTransactionComplete(lastSentMessage, incomingMessage);
+		boolean transactionComplete = checkTransactionComplete(lastSentMessage, incomingMessage);
 
-		return true;
+		return ProcessorResult.get(true, transactionComplete, lastSentMessage);
 	}
 
-	public ArrayList<Integer> getNodes() {
+	/**
+	 * Gets the nodes registered to the controller from a SerialApiGetInitData response.
+	 * @param incomingMessage the response
+	 * @return the node ids, or an empty list if the node bitmap is invalid.
+	 */
+	public static ArrayList<Integer> getNodes(SerialMessage incomingMessage) {
+		ArrayList<Integer> zwaveNodes = new ArrayList<Integer>();
+		int nodeBytes = incomingMessage.getMessagePayloadByte(2);
+		if (nodeBytes != NODE_BYTES)
+			return zwaveNodes;
+
+		int nodeId = 1;
+		
+		// loop bytes
+		for (int i = 3;i < 3 + nodeBytes;i++) {
+			int incomingByte = incomingMessage.getMessagePayloadByte(i);
+			// loop bits in byte
+			for (int j=0;j<8;j++) {
+				if ((incomingByte & (1 << j)) != 0)
+					zwaveNodes.add(nodeId);
+				nodeId++;
+			}
+		}
 		return zwaveNodes;
 	}
 }
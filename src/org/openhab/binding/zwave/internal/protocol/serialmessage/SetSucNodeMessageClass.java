@@ -54,7 +54,8 @@ public class SetSucNodeMessageClass extends ZWaveCommandProcessor {
 	}
 
 	@Override
-	public boolean handleResponse(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+	public ProcessorResult handleResponse(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+		boolean transactionComplete = false;
 		int nodeId = lastSentMessage.getMessagePayloadByte(0);
 		
 		logger.debug("NODE {}: SetSucNodeID node response.", nodeId);
@@ -63,14 +64,15 @@ public class SetSucNodeMessageClass extends ZWaveCommandProcessor {
 			logger.debug("NODE {}: SetSucNodeID command OK.", nodeId);
 		} else {
 			logger.error("NODE {}: SetSucNodeID command failed.", nodeId);
-			checkTransactionComplete(lastSentMessage, incomingMessage);
+			transactionComplete = checkTransactionComplete(lastSentMessage, incomingMessage);
 		}
 		
-		return false;
+		return ProcessorResult.get(false, transactionComplete, lastSentMessage);
 	}
 
 	@Override
-	public boolean handleRequest(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+	public ProcessorResult handleRequest(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+		boolean transactionComplete = false;
 		int nodeId = lastSentMessage.getMessagePayloadByte(0);
 
 		logger.debug("NODE {}: SetSucNodeID node request.", nodeId);
@@ -81,8 +83,8 @@ public class SetSucNodeMessageClass extends ZWaveCommandProcessor {
 		} else {
 		}
 
-		checkTransactionComplete(lastSentMessage, incomingMessage);
-		return false;
+		transactionComplete = checkTransactionComplete(lastSentMessage, incomingMessage);
+		return ProcessorResult.get(false, transactionComplete, lastSentMessage);
 	}
 	
 	public enum SUCType {
@@ -8,10 +8,6 @@
  */
 package org.openhab.binding.zwave.internal.protocol.serialmessage;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
-import java.util.HashMap;
-
 import org.openhab.binding.zwave.internal.protocol.SerialMessage;
 import org.openhab.binding.zwave.internal.protocol.ZWaveController;
 import me.wbarlow.zwavemanagement.logging.Logger;
@@ -26,24 +22,47 @@ import me.wbarlow.zwavemanagement.logging.LoggerFactory;
  * When the controller has further data, it responds with a REQUEST.
  * These calls map to the handleResponse and handleRequest methods
  * which must be overridden by the individual classes.
+ * Processors are stateless: one instance of each processor is registered in
+ * a dispatch table indexed by the message class key, and the outcome of
+ * processing a message is returned as a {@link ProcessorResult}.
  * @author Chris Jackson
  * @since 1.5.0
  */
 public abstract class ZWaveCommandProcessor {
 	private static final Logger logger = LoggerFactory.getLogger(ZWaveCommandProcessor.class);
 
-	private static HashMap<SerialMessage.SerialMessageClass, Class<? extends ZWaveCommandProcessor>> messageMap = null;
-	protected boolean transactionComplete = false;
+	private static final ZWaveCommandProcessor[] dispatchTable = new ZWaveCommandProcessor[256];
+
+	static {
+		register(SerialMessage.SerialMessageClass.AddNodeToNetwork, new AddNodeMessageClass());
+		register(SerialMessage.SerialMessageClass.ApplicationCommandHandler, new ApplicationCommandMessageClass());
+		register(SerialMessage.SerialMessageClass.ApplicationUpdate, new ApplicationUpdateMessageClass());
+		register(SerialMessage.SerialMessageClass.AssignReturnRoute, new AssignReturnRouteMessageClass());
+		register(SerialMessage.SerialMessageClass.AssignSucReturnRoute, new AssignSucReturnRouteMessageClass());
+		register(SerialMessage.SerialMessageClass.DeleteReturnRoute, new DeleteReturnRouteMessageClass());
+		register(SerialMessage.SerialMessageClass.EnableSuc, new EnableSucMessageClass());
+		register(SerialMessage.SerialMessageClass.GetRoutingInfo, new GetRoutingInfoMessageClass());
+		register(SerialMessage.SerialMessageClass.GetVersion, new GetVersionMessageClass());
+		register(SerialMessage.SerialMessageClass.GetSucNodeId, new GetSucNodeIdMessageClass());
+		register(SerialMessage.SerialMessageClass.GetControllerCapabilities, new GetControllerCapabilitiesMessageClass());
+		register(SerialMessage.SerialMessageClass.IdentifyNode, new IdentifyNodeMessageClass());
+		register(SerialMessage.SerialMessageClass.MemoryGetId, new MemoryGetIdMessageClass());
+		register(SerialMessage.SerialMessageClass.RemoveFailedNodeID, new RemoveFailedNodeMessageClass());
+		register(SerialMessage.SerialMessageClass.IsFailedNodeID, new IsFailedNodeMessageClass());
+		register(SerialMessage.SerialMessageClass.RemoveNodeFromNetwork, new RemoveNodeMessageClass());
+		register(SerialMessage.SerialMessageClass.RequestNodeInfo, new RequestNodeInfoMessageClass());
+		register(SerialMessage.SerialMessageClass.RequestNodeNeighborUpdate, new RequestNodeNeighborUpdateMessageClass());
+		register(SerialMessage.SerialMessageClass.SendData, new SendDataMessageClass());
+		register(SerialMessage.SerialMessageClass.SerialApiGetCapabilities, new SerialApiGetCapabilitiesMessageClass());
+		register(SerialMessage.SerialMessageClass.SerialApiGetInitData, new SerialApiGetInitDataMessageClass());
+		register(SerialMessage.SerialMessageClass.SetSucNodeID, new SetSucNodeMessageClass());
+	}
 
 	public ZWaveCommandProcessor() {
 	}
-	
-	/**
-	 * Checks if the processor marked the transaction as complete
-	 * @return true is the transaction was completed.
-	 */
-	public boolean isTransactionComplete() {
-		return transactionComplete;
+
+	private static void register(SerialMessage.SerialMessageClass messageClass, ZWaveCommandProcessor processor) {
+		dispatchTable[messageClass.getKey() & 0xFF] = processor;
 	}
 
 	/**
@@ -51,11 +70,10 @@ public abstract class ZWaveCommandProcessor {
 	 * and we can complete the transaction
 	 * @param lastSentMessage The original message we sent to the controller
 	 * @param incomingMessage The response from the controller
+	 * @return true if the transaction is complete
 	 */
-	protected void checkTransactionComplete(SerialMessage lastSentMessage, SerialMessage incomingMessage) {
-		if (incomingMessage.getMessageClass() == lastSentMessage.getExpectedReply() && !incomingMessage.isTransActionCanceled()) {
-			transactionComplete = true;
-		}
+	protected boolean checkTransactionComplete(SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+		return incomingMessage.getMessageClass() == lastSentMessage.getExpectedReply() && !incomingMessage.isTransActionCanceled();
 	}
 
 	/**
@@ -63,11 +81,11 @@ public abstract class ZWaveCommandProcessor {
 	 * @param zController the ZWave controller
 	 * @param lastSentMessage The original message we sent to the controller
 	 * @param incomingMessage The response from the controller
-	 * @return
+	 * @return the result of processing the message
 	 */
-	public boolean handleResponse(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+	public ProcessorResult handleResponse(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
 		logger.warn("TODO: {} unsupported RESPONSE.", incomingMessage.getMessageClass().getLabel());
-		return false;
+		return ProcessorResult.NOT_HANDLED;
 	}
 
 	/**
@@ -75,63 +93,79 @@ public abstract class ZWaveCommandProcessor {
 	 * @param zController the ZWave controller
 	 * @param lastSentMessage The original message we sent to the controller
 	 * @param incomingMessage The response from the controller
-	 * @return
+	 * @return the result of processing the message
 	 */
-	public boolean handleRequest(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+	public ProcessorResult handleRequest(ZWaveController zController, SerialMessage lastSentMessage, SerialMessage incomingMessage) {
 		logger.warn("TODO: {} unsupported REQUEST.", incomingMessage.getMessageClass().getLabel());
-		return false;
+		return ProcessorResult.NOT_HANDLED;
 	}
 
 	/**
 	 * Returns the message processor for the specified message class
 	 * @param serialMessage The message class required to be processed
-	 * @return The message processor
+	 * @return The message processor, or null if the message class has no processor
 	 */
 	public static ZWaveCommandProcessor getMessageDispatcher(SerialMessage.SerialMessageClass serialMessage) {
-		if(messageMap == null) {
-			messageMap = new HashMap<SerialMessage.SerialMessageClass, Class<? extends ZWaveCommandProcessor>>();
-			messageMap.put(SerialMessage.SerialMessageClass.AddNodeToNetwork, AddNodeMessageClass.class);
-			messageMap.put(SerialMessage.SerialMessageClass.ApplicationCommandHandler, ApplicationCommandMessageClass.class);
-			messageMap.put(SerialMessage.SerialMessageClass.ApplicationUpdate, ApplicationUpdateMessageClass.class);
-			messageMap.put(SerialMessage.SerialMessageClass.AssignReturnRoute, AssignReturnRouteMessageClass.class);
-			messageMap.put(SerialMessage.SerialMessageClass.AssignSucReturnRoute, AssignSucReturnRouteMessageClass.class);
-			messageMap.put(SerialMessage.SerialMessageClass.DeleteReturnRoute, DeleteReturnRouteMessageClass.class);
-			messageMap.put(SerialMessage.SerialMessageClass.EnableSuc, EnableSucMessageClass.class);
-			messageMap.put(SerialMessage.SerialMessageClass.GetRoutingInfo, GetRoutingInfoMessageClass.class);
-			messageMap.put(SerialMessage.SerialMessageClass.GetVersion, GetVersionMessageClass.class);
-			messageMap.put(SerialMessage.SerialMessageClass.GetSucNodeId, GetSucNodeIdMessageClass.class);
-			messageMap.put(SerialMessage.SerialMessageClass.GetControllerCapabilities, GetControllerCapabilitiesMessageClass.class);
-			messageMap.put(SerialMessage.SerialMessageClass.IdentifyNode, IdentifyNodeMessageClass.class);
-			messageMap.put(SerialMessage.SerialMessageClass.MemoryGetId, MemoryGetIdMessageClass.class);
-			messageMap.put(SerialMessage.SerialMessageClass.RemoveFailedNodeID, RemoveFailedNodeMessageClass.class);
-			messageMap.put(SerialMessage.SerialMessageClass.IsFailedNodeID, IsFailedNodeMessageClass.class);
-			messageMap.put(SerialMessage.SerialMessageClass.RemoveNodeFromNetwork, RemoveNodeMessageClass.class);
-			messageMap.put(SerialMessage.SerialMessageClass.RequestNodeInfo, RequestNodeInfoMessageClass.class);
-			messageMap.put(SerialMessage.SerialMessageClass.RequestNodeNeighborUpdate, RequestNodeNeighborUpdateMessageClass.class);
-			messageMap.put(SerialMessage.SerialMessageClass.SendData, SendDataMessageClass.class);
-			messageMap.put(SerialMessage.SerialMessageClass.SerialApiGetCapabilities, SerialApiGetCapabilitiesMessageClass.class);
-			messageMap.put(SerialMessage.SerialMessageClass.SerialApiGetInitData, SerialApiGetInitDataMessageClass.class);
-			messageMap.put(SerialMessage.SerialMessageClass.SetSucNodeID, SetSucNodeMessageClass.class);
+		if (serialMessage == null)
+			return null;
+		return dispatchTable[serialMessage.getKey() & 0xFF];
+	}
+
+	/**
+	 * The result of processing a message: whether the processor handled it,
+	 * and whether it completed the transaction of the message we sent.
+	 * Results that don't complete a transaction are shared constants.
+	 * @author Woodrow Barlow
+	 */
+	public static final class ProcessorResult {
+		public static final ProcessorResult NOT_HANDLED = new ProcessorResult(false, false, null);
+		public static final ProcessorResult HANDLED = new ProcessorResult(true, false, null);
+
+		private final boolean handled;
+		private final boolean transactionComplete;
+		private final SerialMessage completedTransaction;
+
+		private ProcessorResult(boolean handled, boolean transactionComplete, SerialMessage completedTransaction) {
+			this.handled = handled;
+			this.transactionComplete = transactionComplete;
+			this.completedTransaction = completedTransaction;
+		}
+
+		/**
+		 * Gets the result of processing a message.
+		 * @param handled whether the message was handled
+		 * @param transactionComplete whether the transaction is complete
+		 * @param lastSentMessage the message of the transaction
+		 * @return the result
+		 */
+		public static ProcessorResult get(boolean handled, boolean transactionComplete, SerialMessage lastSentMessage) {
+			if (!transactionComplete)
+				return handled ? HANDLED : NOT_HANDLED;
+			return new ProcessorResult(handled, true, lastSentMessage);
+		}
+
+		/**
+		 * Indicates whether the processor handled the message.
+		 * @return true if the message was handled
+		 */
+		public boolean isHandled() {
+			return handled;
+		}
+
+		/**
+		 * Indicates whether the message completed the transaction.
+		 * @return true if the transaction is complete
+		 */
+		public boolean isTransactionComplete() {
+			return transactionComplete;
 		}
 
-		Constructor<? extends ZWaveCommandProcessor> constructor;
-		try {
-			constructor = messageMap.get(serialMessage).getConstructor();
-			return constructor.newInstance();
-		} catch (NoSuchMethodException e) {
-			logger.error("Command processor error: {}", e);
-		} catch (InvocationTargetException e) {
-			logger.error("Command processor error: {}", e);
-		} catch (InstantiationException e) {
-			logger.error("Command processor error: {}", e);
-		} catch (IllegalAccessException e) {
-			logger.error("Command processor error: {}", e);
-		} catch (SecurityException e) {
-			logger.error("Command processor error: {}", e);
-		} catch (IllegalArgumentException e) {
-			logger.error("Command processor error: {}", e);
+		/**
+		 * Gets the message whose transaction was completed.
+		 * @return the completed message, or null if no transaction was completed.
+		 */
+		public SerialMessage getCompletedTransaction() {
+			return completedTransaction;
 		}
-		
-		return null;
 	}
 }
@@ -0,0 +1,272 @@
+package me.wbarlow.zwavemanagement.mqtt;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An in-process stand-in for an MQTT broker, for testing the publisher.
+ * It accepts one client at a time on a local port, decodes CONNECT,
+ * PUBLISH, PINGREQ and DISCONNECT, and records what the client sent.
+ * Connections can be refused or dropped to test reconnecting.
+ * @author Woodrow Barlow
+ *
+ */
+public class MqttBrokerStandIn {
+
+	private static final int CONNECT = 0x10;
+	private static final int PUBLISH = 0x30;
+	private static final int PINGREQ = 0xC0;
+	private static final int DISCONNECT = 0xE0;
+
+	private static final int NOT_AUTHORIZED = 5;
+
+	private final ServerSocket server;
+	private final Thread acceptor;
+	private volatile boolean running = true;
+	private Socket client;
+
+	private int refuseCount = 0;
+	private final List<Long> connectTimes = new ArrayList<Long>();
+	private final List<String> clientIds = new ArrayList<String>();
+	private final List<Publish> publishes = new ArrayList<Publish>();
+
+	/**
+	 * Constructor. Starts listening on a free local port.
+	 * @throws IOException when no port is available.
+	 */
+	public MqttBrokerStandIn() throws IOException {
+		this.server = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"));
+		this.acceptor = new Thread("MqttBrokerStandIn") {
+			@Override
+			public void run() {
+				accept();
+			}
+		};
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	/**
+	 * Gets the port the stand-in listens on.
+	 * @return the port
+	 */
+	public int getPort() {
+		return server.getLocalPort();
+	}
+
+	/**
+	 * Refuses the next connections with "not authorized".
+	 * @param count the number of connections to refuse.
+	 */
+	public synchronized void refuseConnections(int count) {
+		refuseCount = count;
+	}
+
+	/**
+	 * Drops the connection of the current client without a DISCONNECT.
+	 */
+	public synchronized void dropConnection() {
+		closeClient();
+	}
+
+	/**
+	 * Gets the times clients connected, accepted or refused.
+	 * @return a copy of the connect times in milliseconds since the epoch.
+	 */
+	public synchronized List<Long> getConnectTimes() {
+		return new ArrayList<Long>(connectTimes);
+	}
+
+	/**
+	 * Gets the client ids the clients connected with.
+	 * @return a copy of the client ids.
+	 */
+	public synchronized List<String> getClientIds() {
+		return new ArrayList<String>(clientIds);
+	}
+
+	/**
+	 * Waits until the stand-in received a number of publishes.
+	 * @param count the number of publishes to wait for.
+	 * @param timeout the time to wait in milliseconds.
+	 * @return a copy of the publishes received, which can be fewer than
+	 * asked for when the time ran out.
+	 * @throws InterruptedException when interrupted while waiting.
+	 */
+	public synchronized List<Publish> awaitPublishes(int count, long timeout) throws InterruptedException {
+		long end = System.currentTimeMillis() + timeout;
+		long left = timeout;
+		while (publishes.size() < count && left > 0) {
+			wait(left);
+			left = end - System.currentTimeMillis();
+		}
+		return new ArrayList<Publish>(publishes);
+	}
+
+	/**
+	 * Stops listening and closes the connection of the current client.
+	 */
+	public void close() {
+		running = false;
+		try {
+			server.close();
+		} catch (IOException e) {
+			// nothing left to do
+		}
+		synchronized (this) {
+			closeClient();
+		}
+	}
+
+	private void accept() {
+		while (running) {
+			Socket socket;
+			try {
+				socket = server.accept();
+			} catch (IOException e) {
+				return;
+			}
+			synchronized (this) {
+				client = socket;
+			}
+			try {
+				serve(socket);
+			} catch (EOFException e) {
+				// the client went away
+			} catch (SocketException e) {
+				// dropped by us or by the client
+			} catch (IOException e) {
+				System.err.println("MqttBrokerStandIn: " + e);
+			}
+			synchronized (this) {
+				if (client == socket)
+					closeClient();
+			}
+		}
+	}
+
+	private void serve(Socket socket) throws IOException {
+		DataInputStream in = new DataInputStream(socket.getInputStream());
+		OutputStream out = socket.getOutputStream();
+		while (true) {
+			int header = in.readUnsignedByte();
+			byte[] body = new byte[readLength(in)];
+			in.readFully(body);
+
+			switch (header & 0xF0) {
+			case CONNECT:
+				int returnCode = connect(body);
+				out.write(new byte[] { 0x20, 0x02, 0x00, (byte) returnCode });
+				out.flush();
+				if (returnCode != 0)
+					return;
+				break;
+			case PUBLISH:
+				int topicLength = ((body[0] & 0xFF) << 8) | (body[1] & 0xFF);
+				String topic = new String(body, 2, topicLength, "UTF-8");
+				int payloadStart = 2 + topicLength;
+				if ((header & 0x06) != 0)
+					payloadStart += 2;	// packet identifier of QoS 1 and 2
+				String payload = new String(body, payloadStart, body.length - payloadStart, "UTF-8");
+				synchronized (this) {
+					publishes.add(new Publish(header, topic, payload));
+					notifyAll();
+				}
+				break;
+			case PINGREQ:
+				out.write(new byte[] { (byte) 0xD0, 0x00 });
+				out.flush();
+				break;
+			case DISCONNECT:
+				return;
+			default:
+				throw new IOException("Unexpected packet type " + (header >> 4));
+			}
+		}
+	}
+
+	/**
+	 * Decodes a CONNECT and decides whether to accept it.
+	 * @return the return code of the CONNACK.
+	 */
+	private synchronized int connect(byte[] body) throws IOException {
+		connectTimes.add(System.currentTimeMillis());
+		int nameLength = ((body[0] & 0xFF) << 8) | (body[1] & 0xFF);
+		String protocolName = new String(body, 2, nameLength, "UTF-8");
+		int level = body[2 + nameLength];
+		if (!"MQTT".equals(protocolName) || level != 4)
+			throw new IOException("Unexpected protocol " + protocolName + " level " + level);
+		int clientIdStart = 2 + nameLength + 4;
+		int clientIdLength = ((body[clientIdStart] & 0xFF) << 8) | (body[clientIdStart + 1] & 0xFF);
+		clientIds.add(new String(body, clientIdStart + 2, clientIdLength, "UTF-8"));
+		if (refuseCount > 0) {
+			refuseCount--;
+			return NOT_AUTHORIZED;
+		}
+		return 0;
+	}
+
+	private static int readLength(DataInputStream in) throws IOException {
+		int length = 0;
+		int shift = 0;
+		int digit;
+		do {
+			digit = in.readUnsignedByte();
+			length |= (digit & 0x7F) << shift;
+			shift += 7;
+		} while ((digit & 0x80) != 0);
+		return length;
+	}
+
+	private void closeClient() {
+		if (client == null)
+			return;
+		try {
+			client.close();
+		} catch (IOException e) {
+			// nothing left to do
+		}
+		client = null;
+	}
+
+	/**
+	 * A publish the stand-in received.
+	 * @author Woodrow Barlow
+	 *
+	 */
+	public static class Publish {
+		private final int header;
+		private final String topic;
+		private final String payload;
+
+		private Publish(int header, String topic, String payload) {
+			this.header = header;
+			this.topic = topic;
+			this.payload = payload;
+		}
+
+		public String getTopic() {
+			return topic;
+		}
+
+		public String getPayload() {
+			return payload;
+		}
+
+		public int getQos() {
+			return (header >> 1) & 0x03;
+		}
+
+		public boolean isRetain() {
+			return (header & 0x01) != 0;
+		}
+	}
+}
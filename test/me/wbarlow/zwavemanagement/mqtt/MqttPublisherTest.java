@@ -0,0 +1,178 @@
+package me.wbarlow.zwavemanagement.mqtt;
+
+import java.util.List;
+
+import org.openhab.binding.zwave.internal.protocol.ZWaveEventBus;
+import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveCommandClass.CommandClass;
+import org.openhab.binding.zwave.internal.protocol.event.ZWaveCommandClassValueEvent;
+import org.openhab.binding.zwave.internal.protocol.event.ZWaveNodeStatusEvent;
+
+import me.wbarlow.zwavemanagement.mqtt.MqttBrokerStandIn.Publish;
+
+/**
+ * Tests of the MQTT publisher against {@link MqttBrokerStandIn}. The bundle
+ * has no test framework, so the tests run from {@link #main}, after
+ * compiling the sources and this directory onto one class path:
+ * <pre>
+ * javac -d out $(find src test -name '*.java' | grep -v Activator)
+ * java -cp out me.wbarlow.zwavemanagement.mqtt.MqttPublisherTest
+ * </pre>
+ * @author Woodrow Barlow
+ *
+ */
+public class MqttPublisherTest {
+
+	private static final String PREFIX = "zwave";
+	private static final long TIMEOUT = 10000;	// ms
+
+	private MqttBrokerStandIn broker;
+	private MqttPublisher publisher;
+
+	public static void main(String[] args) throws Exception {
+		MqttPublisherTest test = new MqttPublisherTest();
+		int failed = 0;
+		String[] names = { "qos0Publish", "batching", "dropOldestOnOverflow", "reconnectWithBackoff", "reconnectAfterDrop" };
+		for (String name : names) {
+			try {
+				test.setUp();
+				MqttPublisherTest.class.getDeclaredMethod(name).invoke(test);
+				System.out.println("PASS " + name);
+			} catch (java.lang.reflect.InvocationTargetException e) {
+				failed++;
+				System.out.println("FAIL " + name + ": " + e.getCause());
+			} finally {
+				test.tearDown();
+			}
+		}
+		System.out.println(names.length - failed + " of " + names.length + " tests passed");
+		System.exit(failed == 0 ? 0 : 1);
+	}
+
+	private void setUp() throws Exception {
+		broker = new MqttBrokerStandIn();
+	}
+
+	private void tearDown() {
+		if (publisher != null)
+			publisher.stop();
+		publisher = null;
+		broker.close();
+	}
+
+	private MqttPublisher createPublisher(int capacity) {
+		publisher = new MqttPublisher("127.0.0.1", broker.getPort(), "test-client", PREFIX, capacity);
+		return publisher;
+	}
+
+	/**
+	 * A value and a status event are published at QoS 0 on their topics.
+	 */
+	void qos0Publish() throws Exception {
+		createPublisher(16).start(new ZWaveEventBus());
+		publisher.ZWaveIncomingEvent(new ZWaveCommandClassValueEvent(5, 0, CommandClass.SWITCH_BINARY, 255));
+		publisher.ZWaveIncomingEvent(new ZWaveNodeStatusEvent(5, ZWaveNodeStatusEvent.State.Alive));
+
+		List<Publish> received = broker.awaitPublishes(2, TIMEOUT);
+		check(received.size() == 2, "expected 2 publishes, got " + received.size());
+		check(broker.getClientIds().get(0).equals("test-client"), "client id " + broker.getClientIds());
+
+		Publish value = received.get(0);
+		check(value.getTopic().equals("zwave/node/5/switch_binary"), "value topic " + value.getTopic());
+		check(value.getPayload().equals("255"), "value payload " + value.getPayload());
+		check(value.getQos() == 0 && !value.isRetain(), "value QoS " + value.getQos() + ", retain " + value.isRetain());
+
+		Publish status = received.get(1);
+		check(status.getTopic().equals("zwave/node/5/status"), "status topic " + status.getTopic());
+		check(status.getPayload().equals("Alive"), "status payload " + status.getPayload());
+		check(status.getQos() == 0 && status.isRetain(), "status QoS " + status.getQos() + ", retain " + status.isRetain());
+	}
+
+	/**
+	 * Messages buffered while the publisher wasn't connected go out in one
+	 * batch, in order.
+	 */
+	void batching() throws Exception {
+		createPublisher(64);
+		for (int node = 1; node <= 10; node++)
+			publisher.ZWaveIncomingEvent(new ZWaveNodeStatusEvent(node, ZWaveNodeStatusEvent.State.Alive));
+		publisher.start(new ZWaveEventBus());
+
+		List<Publish> received = broker.awaitPublishes(10, TIMEOUT);
+		check(received.size() == 10, "expected 10 publishes, got " + received.size());
+		for (int i = 0; i < 10; i++)
+			check(received.get(i).getTopic().equals("zwave/node/" + (i + 1) + "/status"), "out of order: " + received.get(i).getTopic());
+		waitFor(publisher, 10);
+		check(publisher.getBatchCount() == 1, "expected 1 batch, got " + publisher.getBatchCount());
+	}
+
+	/**
+	 * A full outbound buffer drops its oldest message.
+	 */
+	void dropOldestOnOverflow() throws Exception {
+		createPublisher(3);
+		for (int node = 1; node <= 5; node++)
+			publisher.ZWaveIncomingEvent(new ZWaveNodeStatusEvent(node, ZWaveNodeStatusEvent.State.Alive));
+		check(publisher.getDroppedCount() == 2, "expected 2 dropped, got " + publisher.getDroppedCount());
+		check(publisher.getPendingCount() == 3, "expected 3 pending, got " + publisher.getPendingCount());
+		publisher.start(new ZWaveEventBus());
+
+		List<Publish> received = broker.awaitPublishes(3, TIMEOUT);
+		check(received.size() == 3, "expected 3 publishes, got " + received.size());
+		for (int i = 0; i < 3; i++)
+			check(received.get(i).getTopic().equals("zwave/node/" + (i + 3) + "/status"), "kept the wrong message: " + received.get(i).getTopic());
+	}
+
+	/**
+	 * A refused connection is retried with a doubling delay, and what was
+	 * buffered meanwhile is published once connected.
+	 */
+	void reconnectWithBackoff() throws Exception {
+		broker.refuseConnections(2);
+		createPublisher(16).start(new ZWaveEventBus());
+		publisher.ZWaveIncomingEvent(new ZWaveNodeStatusEvent(7, ZWaveNodeStatusEvent.State.Dead));
+
+		List<Publish> received = broker.awaitPublishes(1, TIMEOUT);
+		check(received.size() == 1, "expected 1 publish, got " + received.size());
+		List<Long> connects = broker.getConnectTimes();
+		check(connects.size() == 3, "expected 3 connects, got " + connects.size());
+		long firstDelay = connects.get(1) - connects.get(0);
+		long secondDelay = connects.get(2) - connects.get(1);
+		check(firstDelay >= 1000, "first retry after " + firstDelay + "ms");
+		check(secondDelay >= 2000, "second retry after " + secondDelay + "ms");
+	}
+
+	/**
+	 * A connection the broker drops is made again, and publishing goes on.
+	 */
+	void reconnectAfterDrop() throws Exception {
+		createPublisher(16).start(new ZWaveEventBus());
+		publisher.ZWaveIncomingEvent(new ZWaveNodeStatusEvent(1, ZWaveNodeStatusEvent.State.Alive));
+		check(broker.awaitPublishes(1, TIMEOUT).size() == 1, "nothing published before the drop");
+		broker.dropConnection();
+
+		// QoS 0: what is written to the dropped connection before the failure shows is lost.
+		long end = System.currentTimeMillis() + TIMEOUT;
+		int node = 2;
+		while (broker.getConnectTimes().size() < 2 || broker.awaitPublishes(2, 100).size() < 2) {
+			check(System.currentTimeMillis() < end, "no publish after the connection was dropped");
+			publisher.ZWaveIncomingEvent(new ZWaveNodeStatusEvent(node++, ZWaveNodeStatusEvent.State.Alive));
+		}
+		check(publisher.getReconnectCount() == 1, "expected 1 reconnect, got " + publisher.getReconnectCount());
+		check(publisher.isConnected(), "not connected after reconnecting");
+	}
+
+	/**
+	 * Waits until the publisher counted a number of messages as published,
+	 * which happens right after they were flushed.
+	 */
+	private static void waitFor(MqttPublisher publisher, int published) throws InterruptedException {
+		long end = System.currentTimeMillis() + TIMEOUT;
+		while (publisher.getPublishedCount() < published && System.currentTimeMillis() < end)
+			Thread.sleep(10);
+	}
+
+	private static void check(boolean condition, String message) {
+		if (!condition)
+			throw new AssertionError(message);
+	}
+}